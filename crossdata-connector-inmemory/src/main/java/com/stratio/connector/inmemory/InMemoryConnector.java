@@ -18,8 +18,12 @@
 
 package com.stratio.connector.inmemory;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Timer;
 import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.memory.MemorySettings;
+import com.stratio.connector.inmemory.datastore.persistence.PersistenceSettings;
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
 import com.stratio.connector.inmemory.metadata.MetadataListener;
 import com.stratio.crossdata.common.connector.*;
 import com.stratio.crossdata.common.data.ClusterName;
@@ -30,9 +34,17 @@ import com.stratio.crossdata.common.security.ICredentials;
 import com.stratio.crossdata.connectors.ConnectorApp;
 import org.apache.log4j.Logger;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -54,7 +66,7 @@ public class InMemoryConnector extends AbstractExtendedConnector {
      * Map associating the {@link com.stratio.crossdata.common.data.ClusterName}s with
      * the InMemoryDatastores. This type of map usually links with the established connections.
      */
-    private final Map<ClusterName, InMemoryDatastore> clusters = new HashMap<>();
+    private final Map<ClusterName, InMemoryDatastore> clusters = new ConcurrentHashMap<>();
 
     private InMemoryQueryEngine queryEngine;
 
@@ -64,16 +76,180 @@ public class InMemoryConnector extends AbstractExtendedConnector {
 
     private final Timer connectTimer;
 
+    /**
+     * Settings of the connector.
+     */
+    private final InMemoryConnectorConfig connectorConfig;
+
+    /**
+     * Fork/join pool used to parallelize the scans and the processing of large results.
+     */
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Scanner shared by the datastores to read the tables in parallel segments.
+     */
+    private final SegmentScanner scanner;
+
+    /**
+     * Bounded executor that runs the asynchronous and paged queries.
+     */
+    private final ThreadPoolExecutor queryExecutor;
+
+    /**
+     * Executor that runs the background maintenance of the tables.
+     */
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    /**
+     * Executor that runs the ticks of the window queries.
+     */
+    private final ScheduledExecutorService windowExecutor;
+
     /**
      * Constant defining the required datastore property.
      */
     private static final String DATASTORE_PROPERTY = "TableRowLimit";
 
+    /**
+     * Constant defining the optional property with the time limit of the queries in milliseconds.
+     */
+    private static final String QUERY_TIMEOUT_PROPERTY = "QueryTimeout";
+
     public InMemoryConnector(IConnectorApp connectorApp) {
         super(connectorApp);
         connectTimer = new Timer();
         String timerName = name(InMemoryConnector.class, "connect");
         registerMetric(timerName, connectTimer);
+        registerMetric(name(InMemoryConnector.class, "memory", "used"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                long used = 0;
+                for(InMemoryDatastore datastore : clusters.values()){
+                    used += datastore.getMemoryBudget().getUsed();
+                }
+                return used;
+            }
+        });
+        registerMetric(name(InMemoryConnector.class, "memory", "offHeap"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                long used = 0;
+                for(InMemoryDatastore datastore : clusters.values()){
+                    used += datastore.getOffHeapUsage();
+                }
+                return used;
+            }
+        });
+        connectorConfig = new InMemoryConnectorConfig();
+        int parallelism = connectorConfig.getScanParallelism();
+        forkJoinPool = new ForkJoinPool(parallelism);
+        scanner = new SegmentScanner(forkJoinPool, parallelism, connectorConfig.getScanSegmentSize());
+        LOG.info("Scanning tables with parallelism " + parallelism + " and segments of "
+                + scanner.getSegmentSize() + " rows");
+        queryExecutor = createQueryExecutor(connectorConfig.getQueryThreads(), connectorConfig.getQueryQueueSize());
+        registerMetric(name(InMemoryConnector.class, "queries", "queued"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return queryExecutor.getQueue().size();
+            }
+        });
+        registerMetric(name(InMemoryConnector.class, "rows", "evicted"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                long rows = 0;
+                for(InMemoryDatastore datastore : clusters.values()){
+                    rows += datastore.getEvictedRows();
+                }
+                return rows;
+            }
+        });
+        registerMetric(name(InMemoryConnector.class, "rows", "expired"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                long rows = 0;
+                for(InMemoryDatastore datastore : clusters.values()){
+                    rows += datastore.getExpiredRows();
+                }
+                return rows;
+            }
+        });
+        maintenanceExecutor = createMaintenanceExecutor(connectorConfig.getMaintenanceInterval());
+        windowExecutor = createWindowExecutor(connectorConfig.getQueryThreads());
+    }
+
+    /**
+     * Create the executor that periodically removes the expired rows of the tables, compacts the
+     * tables with many deleted rows and refreshes the materialized views. Its single thread is a
+     * daemon, and a failure is logged without cancelling the next runs.
+     * @param interval The milliseconds between two runs.
+     * @return A {@link java.util.concurrent.ScheduledExecutorService}.
+     */
+    private ScheduledExecutorService createMaintenanceExecutor(int interval){
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "inmemory-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for(InMemoryDatastore datastore : clusters.values()){
+                    try {
+                        datastore.expireRows(InMemoryDatastore.EXPIRY_BATCH_SIZE);
+                        datastore.compactTables();
+                        datastore.refreshViews();
+                    } catch (RuntimeException e) {
+                        LOG.error("Cannot run the maintenance of the tables", e);
+                    }
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    /**
+     * Create the executor that runs the ticks of the window queries. Its threads are daemons, so they do
+     * not prevent the connector from exiting.
+     * @param threads The number of threads.
+     * @return A {@link java.util.concurrent.ScheduledExecutorService}.
+     */
+    private static ScheduledExecutorService createWindowExecutor(int threads){
+        return Executors.newScheduledThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "inmemory-window-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Create the executor that runs the asynchronous and paged queries. Its threads are daemons, so
+     * they do not prevent the connector from exiting, and queries are rejected when the queue is full.
+     * @param threads The number of threads.
+     * @param queueSize The maximum number of queries waiting for a thread.
+     * @return A {@link java.util.concurrent.ThreadPoolExecutor}.
+     */
+    private static ThreadPoolExecutor createQueryExecutor(int threads, int queueSize){
+        LOG.info("Running queries on " + threads + " threads with a queue of " + queueSize + " queries");
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "inmemory-query-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     @Override
@@ -105,7 +281,28 @@ public class InMemoryConnector extends AbstractExtendedConnector {
         if(!options.isEmpty() && options.get(DATASTORE_PROPERTY) != null){
             //At this step we usually connect to the database. As this is an tutorial implementation,
             //we instantiate the Datastore instead.
-            InMemoryDatastore datastore = new InMemoryDatastore(Integer.valueOf(options.get(DATASTORE_PROPERTY)));
+            InMemoryDatastore datastore;
+            try {
+                datastore = new InMemoryDatastore(Integer.valueOf(options.get(DATASTORE_PROPERTY)),
+                        MemorySettings.fromOptions(options));
+                if(options.get(QUERY_TIMEOUT_PROPERTY) != null){
+                    datastore.setQueryTimeout(Long.parseLong(options.get(QUERY_TIMEOUT_PROPERTY).trim()));
+                }
+            } catch (Exception e) {
+                connectTimerContext.stop();
+                throw new ConnectionException("Invalid options: " + e.getMessage(), e);
+            }
+            datastore.setScanner(scanner);
+            try {
+                PersistenceSettings persistence = PersistenceSettings.fromOptions(options);
+                if(persistence != null){
+                    datastore.enablePersistence(persistence);
+                }
+            } catch (Exception e) {
+                connectTimerContext.stop();
+                throw new ConnectionException("Cannot recover the datastore of " + targetCluster + ": "
+                        + e.getMessage(), e);
+            }
             clusters.put(targetCluster, datastore);
         } else {
             long millis = connectTimerContext.stop() / 1000000;
@@ -138,16 +335,34 @@ public class InMemoryConnector extends AbstractExtendedConnector {
     @Override
     public void close(ClusterName name) throws ConnectionException {
         //This method usually closes the session with the given cluster and removes any relevant data.
-        if(clusters.get(name) != null) {
-            clusters.remove(name);
-        } else {
+        InMemoryDatastore datastore = clusters.remove(name);
+        if(datastore == null) {
             throw new ConnectionException("Cluster " + name + "does not exist");
         }
+        try {
+            datastore.close();
+        } catch (Exception e) {
+            throw new ConnectionException("Cannot close the datastore of " + name + ": " + e.getMessage(), e);
+        }
     }
 
     @Override
     public void shutdown() throws ExecutionException {
         LOG.info("Shutting down InMemoryConnector");
+        if(queryEngine != null){
+            queryEngine.stopAll("the connector is shutting down");
+        }
+        queryExecutor.shutdownNow();
+        maintenanceExecutor.shutdownNow();
+        windowExecutor.shutdownNow();
+        for(Map.Entry<ClusterName, InMemoryDatastore> cluster : clusters.entrySet()){
+            try {
+                cluster.getValue().close();
+            } catch (Exception e) {
+                LOG.error("Cannot close the datastore of " + cluster.getKey(), e);
+            }
+        }
+        forkJoinPool.shutdown();
     }
 
     @Override
@@ -181,6 +396,38 @@ public class InMemoryConnector extends AbstractExtendedConnector {
 
 
 
+    /**
+     * Get the settings of the connector.
+     * @return A {@link com.stratio.connector.inmemory.InMemoryConnectorConfig}.
+     */
+    protected InMemoryConnectorConfig getConnectorConfig(){
+        return connectorConfig;
+    }
+
+    /**
+     * Get the fork/join pool used to parallelize the scans and the processing of large results.
+     * @return A {@link java.util.concurrent.ForkJoinPool}.
+     */
+    protected ForkJoinPool getForkJoinPool(){
+        return forkJoinPool;
+    }
+
+    /**
+     * Get the executor that runs the asynchronous and paged queries.
+     * @return A {@link java.util.concurrent.ThreadPoolExecutor}.
+     */
+    protected ThreadPoolExecutor getQueryExecutor(){
+        return queryExecutor;
+    }
+
+    /**
+     * Get the executor that runs the ticks of the window queries.
+     * @return A {@link java.util.concurrent.ScheduledExecutorService}.
+     */
+    protected ScheduledExecutorService getWindowExecutor(){
+        return windowExecutor;
+    }
+
     /**
      * Get the datastore associated to a given cluster.
      * @param cluster The cluster name.
@@ -0,0 +1,186 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory;
+
+import org.apache.log4j.Logger;
+
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Settings of the in-memory connector read from the connector configuration file. Missing settings
+ * take their default values.
+ */
+public class InMemoryConnectorConfig {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = Logger.getLogger(InMemoryConnectorConfig.class);
+
+    /**
+     * Name of the connector configuration resource.
+     */
+    public static final String CONFIG_RESOURCE = "connector-application.conf";
+
+    /**
+     * Prefix of the in-memory connector settings.
+     */
+    private static final String PREFIX = "crossdata-connector.config.inmemory.";
+
+    /**
+     * Number of threads used to scan the tables. Zero stands for the number of available processors.
+     */
+    public static final String SCAN_PARALLELISM = PREFIX + "scan.parallelism";
+
+    /**
+     * Number of rows of each table segment scanned in parallel.
+     */
+    public static final String SCAN_SEGMENT_SIZE = PREFIX + "scan.segment-size";
+
+    /**
+     * Number of threads that run the asynchronous and paged queries. Zero stands for the number of
+     * available processors.
+     */
+    public static final String QUERY_THREADS = PREFIX + "query.threads";
+
+    /**
+     * Maximum number of asynchronous and paged queries waiting for a thread.
+     */
+    public static final String QUERY_QUEUE_SIZE = PREFIX + "query.queue-size";
+
+    /**
+     * Default maximum number of queries waiting for a thread.
+     */
+    public static final int DEFAULT_QUERY_QUEUE_SIZE = 100;
+
+    /**
+     * Milliseconds between two runs of the background maintenance of the tables: removing the expired
+     * rows and compacting the tables with many deleted rows.
+     */
+    public static final String MAINTENANCE_INTERVAL = PREFIX + "maintenance.interval";
+
+    /**
+     * Default milliseconds between two runs of the background maintenance.
+     */
+    public static final int DEFAULT_MAINTENANCE_INTERVAL = 1000;
+
+    /**
+     * The configuration.
+     */
+    private final Config config;
+
+    /**
+     * Class constructor that reads the connector configuration resource.
+     */
+    public InMemoryConnectorConfig(){
+        this(ConfigFactory.parseResources(CONFIG_RESOURCE));
+    }
+
+    /**
+     * Class constructor.
+     * @param config The configuration.
+     */
+    public InMemoryConnectorConfig(Config config){
+        this.config = config;
+    }
+
+    /**
+     * Get the number of threads used to scan the tables.
+     * @return A positive number of threads.
+     */
+    public int getScanParallelism(){
+        int parallelism = getInt(SCAN_PARALLELISM, 0);
+        if(parallelism <= 0){
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return parallelism;
+    }
+
+    /**
+     * Get the number of rows of each table segment scanned in parallel.
+     * @return A positive number of rows.
+     */
+    public int getScanSegmentSize(){
+        int segmentSize = getInt(SCAN_SEGMENT_SIZE, SegmentScanner.DEFAULT_SEGMENT_SIZE);
+        if(segmentSize <= 0){
+            LOG.warn("Invalid " + SCAN_SEGMENT_SIZE + ": " + segmentSize + ", using " + SegmentScanner.DEFAULT_SEGMENT_SIZE);
+            segmentSize = SegmentScanner.DEFAULT_SEGMENT_SIZE;
+        }
+        return segmentSize;
+    }
+
+    /**
+     * Get the number of threads that run the asynchronous and paged queries.
+     * @return A positive number of threads.
+     */
+    public int getQueryThreads(){
+        int threads = getInt(QUERY_THREADS, 0);
+        if(threads <= 0){
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    /**
+     * Get the maximum number of asynchronous and paged queries waiting for a thread.
+     * @return A positive number of queries.
+     */
+    public int getQueryQueueSize(){
+        int queueSize = getInt(QUERY_QUEUE_SIZE, DEFAULT_QUERY_QUEUE_SIZE);
+        if(queueSize <= 0){
+            LOG.warn("Invalid " + QUERY_QUEUE_SIZE + ": " + queueSize + ", using " + DEFAULT_QUERY_QUEUE_SIZE);
+            queueSize = DEFAULT_QUERY_QUEUE_SIZE;
+        }
+        return queueSize;
+    }
+
+    /**
+     * Get the milliseconds between two runs of the background maintenance of the tables.
+     * @return A positive number of milliseconds.
+     */
+    public int getMaintenanceInterval(){
+        int interval = getInt(MAINTENANCE_INTERVAL, DEFAULT_MAINTENANCE_INTERVAL);
+        if(interval <= 0){
+            LOG.warn("Invalid " + MAINTENANCE_INTERVAL + ": " + interval + ", using " + DEFAULT_MAINTENANCE_INTERVAL);
+            interval = DEFAULT_MAINTENANCE_INTERVAL;
+        }
+        return interval;
+    }
+
+    /**
+     * Get an integer setting.
+     * @param path The path of the setting.
+     * @param defaultValue The value used if the setting is missing or invalid.
+     * @return The value.
+     */
+    protected int getInt(String path, int defaultValue){
+        int result = defaultValue;
+        if(config.hasPath(path)){
+            try {
+                result = config.getInt(path);
+            } catch (ConfigException e) {
+                LOG.warn("Invalid value of " + path + ", using " + defaultValue, e);
+            }
+        }
+        return result;
+    }
+}
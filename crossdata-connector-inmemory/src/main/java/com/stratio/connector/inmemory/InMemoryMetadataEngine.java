@@ -30,6 +30,8 @@ import com.stratio.connector.inmemory.datastore.InMemoryCatalog;
 import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
 import com.stratio.connector.inmemory.datastore.InMemoryTable;
 import com.stratio.connector.inmemory.datastore.datatypes.AbstractInMemoryDataType;
+import com.stratio.connector.inmemory.datastore.indexes.AbstractInMemoryIndex;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
 import com.stratio.crossdata.common.connector.IMetadataEngine;
 import com.stratio.crossdata.common.data.AlterOptions;
 import com.stratio.crossdata.common.data.CatalogName;
@@ -45,8 +47,10 @@ import com.stratio.crossdata.common.metadata.ColumnMetadata;
 import com.stratio.crossdata.common.metadata.ColumnType;
 import com.stratio.crossdata.common.metadata.DataType;
 import com.stratio.crossdata.common.metadata.IndexMetadata;
+import com.stratio.crossdata.common.metadata.IndexType;
 import com.stratio.crossdata.common.metadata.TableMetadata;
 import com.stratio.crossdata.common.statements.structures.Selector;
+import com.stratio.crossdata.common.statements.structures.StringSelector;
 
 /**
  * Class that implements the {@link com.stratio.crossdata.common.connector.IMetadataEngine}.
@@ -63,6 +67,11 @@ public class InMemoryMetadataEngine implements IMetadataEngine {
      */
     private static final Logger LOG = Logger.getLogger(InMemoryMetadataEngine.class);
 
+    /**
+     * Name of the index option that selects the type of in-memory index.
+     */
+    public static final String INDEX_TYPE_OPTION = "type";
+
     /**
      * Class constructor.
      * @param connector The linked {@link com.stratio.connector.inmemory.InMemoryConnector}.
@@ -77,7 +86,11 @@ public class InMemoryMetadataEngine implements IMetadataEngine {
         LOG.info("Creating catalog " + catalogMetadata.getName().getQualifiedName() + " on " + targetCluster);
         InMemoryDatastore datastore = connector.getDatastore(targetCluster);
         if(datastore != null){
-            datastore.createCatalog(catalogMetadata.getName().getQualifiedName());
+            try {
+                datastore.createCatalog(catalogMetadata.getName().getQualifiedName());
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
         }else{
             throw new ExecutionException("No datastore connected to " + targetCluster);
         }
@@ -119,11 +132,18 @@ public class InMemoryMetadataEngine implements IMetadataEngine {
                 primaryKey.add(column.getName());
             }
 
+            Map<String, String> options = new HashMap<>();
+            if(tableMetadata.getOptions() != null){
+                for(Map.Entry<Selector, Selector> option : tableMetadata.getOptions().entrySet()){
+                    options.put(toOptionValue(option.getKey()), toOptionValue(option.getValue()));
+                }
+            }
+
             try {
                 if(!datastore.existsCatalog(catalogName)){
                     throw new ExecutionException("The catalog "+catalogName+ " does not exist");
                 }
-                datastore.createTable(catalogName, tableName, columnNames, columnTypes, primaryKey);
+                datastore.createTable(catalogName, tableName, columnNames, columnTypes, primaryKey, options);
             } catch (Exception e) {
                 throw new ExecutionException(e);
             }
@@ -170,12 +190,84 @@ public class InMemoryMetadataEngine implements IMetadataEngine {
     @Override
     public void createIndex(ClusterName targetCluster, IndexMetadata indexMetadata)
             throws ConnectorException {
-        throw new UnsupportedException("Creating indexes is not supported.");
+        LOG.info("Creating index " + indexMetadata.getName().getQualifiedName() + " on " + targetCluster);
+        if(!IndexType.DEFAULT.equals(indexMetadata.getType()) && !IndexType.FULL_TEXT.equals(indexMetadata.getType())){
+            throw new UnsupportedException("Index type " + indexMetadata.getType() + " is not supported.");
+        }
+        if(indexMetadata.getColumns().size() != 1){
+            throw new UnsupportedException("Only single column indexes are supported.");
+        }
+        InMemoryDatastore datastore = connector.getDatastore(targetCluster);
+        if(datastore != null){
+            TableName tableName = indexMetadata.getName().getTableName();
+            String columnName = indexMetadata.getColumns().keySet().iterator().next().getName();
+            InMemoryIndexType type = InMemoryIndexType.FULL_TEXT;
+            if(IndexType.DEFAULT.equals(indexMetadata.getType())){
+                type = getIndexType(indexMetadata.getOptions());
+            }
+            try {
+                datastore.createIndex(tableName.getCatalogName().getQualifiedName(), tableName.getName(),
+                        indexMetadata.getName().getName(), columnName, type);
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }else{
+            throw new ExecutionException("No datastore connected to " + targetCluster);
+        }
+    }
+
+    /**
+     * Get the type of in-memory index requested in the index options. Hash indexes are selected with
+     * the option {@code type: 'hash'} and bitmap indexes, suited to low cardinality columns, with
+     * {@code type: 'bitmap'}; ordered indexes are created otherwise.
+     * @param options The index options.
+     * @return A {@link com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType}.
+     */
+    private InMemoryIndexType getIndexType(Map<Selector, Selector> options){
+        InMemoryIndexType type = InMemoryIndexType.ORDERED;
+        if(options != null){
+            for(Map.Entry<Selector, Selector> option : options.entrySet()){
+                if(!INDEX_TYPE_OPTION.equalsIgnoreCase(toOptionValue(option.getKey()))){
+                    continue;
+                }
+                String value = toOptionValue(option.getValue());
+                if(InMemoryIndexType.HASH.name().equalsIgnoreCase(value)){
+                    type = InMemoryIndexType.HASH;
+                }else if(InMemoryIndexType.BITMAP.name().equalsIgnoreCase(value)){
+                    type = InMemoryIndexType.BITMAP;
+                }
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Get the string value of an option selector without quotes.
+     * @param selector The option selector.
+     * @return The option value.
+     */
+    private String toOptionValue(Selector selector){
+        String value = selector.getStringValue();
+        if(!StringSelector.class.isInstance(selector)){
+            value = value.replace("'", "").replace("\"", "");
+        }
+        return value.trim();
     }
 
     @Override
     public void dropIndex(ClusterName targetCluster, IndexMetadata indexMetadata) throws ConnectorException {
-        throw new UnsupportedException("Deleting indexes is not supported.");
+        InMemoryDatastore datastore = connector.getDatastore(targetCluster);
+        if(datastore != null){
+            TableName tableName = indexMetadata.getName().getTableName();
+            try {
+                datastore.dropIndex(tableName.getCatalogName().getQualifiedName(), tableName.getName(),
+                        indexMetadata.getName().getName());
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }else{
+            throw new ExecutionException("No datastore connected to " + targetCluster);
+        }
     }
 
     @Override
@@ -217,6 +309,18 @@ public class InMemoryMetadataEngine implements IMetadataEngine {
         }
 
         Map<IndexName, IndexMetadata> indexes = new HashMap<>();
+        for(AbstractInMemoryIndex index : inMemoryTable.getIndexes().values()){
+            IndexName indexName = new IndexName(name, index.getName());
+            Map<ColumnName, ColumnMetadata> indexColumns = new HashMap<>();
+            ColumnName columnName = new ColumnName(name, index.getColumnName());
+            indexColumns.put(columnName, columns.get(columnName));
+            IndexType type = IndexType.DEFAULT;
+            if(InMemoryIndexType.FULL_TEXT.equals(index.getType())){
+                type = IndexType.FULL_TEXT;
+            }
+            indexes.put(indexName, new IndexMetadata(indexName, indexColumns, type,
+                    new HashMap<Selector, Selector>()));
+        }
 
         Map<Selector, Selector> options = new HashMap<>();
 
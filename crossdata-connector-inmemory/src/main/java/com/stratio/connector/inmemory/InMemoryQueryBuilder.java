@@ -17,15 +17,20 @@
  */
 package com.stratio.connector.inmemory;
 
+import com.stratio.connector.inmemory.datastore.InMemoryDisjunction;
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
 import com.stratio.connector.inmemory.datastore.InMemoryOperations;
 import com.stratio.connector.inmemory.datastore.InMemoryQuery;
 import com.stratio.connector.inmemory.datastore.InMemoryRelation;
-import com.stratio.connector.inmemory.datastore.datatypes.JoinValue;
+import com.stratio.connector.inmemory.datastore.InMemorySample;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryJoinSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
 import com.stratio.crossdata.common.data.ColumnName;
+import com.stratio.crossdata.common.data.JoinType;
 import com.stratio.crossdata.common.data.TableName;
 import com.stratio.crossdata.common.exceptions.ExecutionException;
 import com.stratio.crossdata.common.logicalplan.*;
@@ -43,6 +48,16 @@ public class InMemoryQueryBuilder {
      */
     private static final Map<Operator, InMemoryOperations> OPERATIONS_TRANFORMATIONS = new HashMap<>();
 
+    /**
+     * Maximum number of distinct join values pushed down to a table as an IN filter.
+     */
+    public static final int MAX_JOIN_FILTER_VALUES = 100;
+
+    /**
+     * Name of the function that samples the rows of the table, see {@link InMemorySample}.
+     */
+    public static final String SAMPLE_FUNCTION = "sample";
+
     /**
      * Singleton instance.
      */
@@ -55,6 +70,8 @@ public class InMemoryQueryBuilder {
         OPERATIONS_TRANFORMATIONS.put(Operator.GET, InMemoryOperations.GET);
         OPERATIONS_TRANFORMATIONS.put(Operator.LET, InMemoryOperations.LET);
         OPERATIONS_TRANFORMATIONS.put(Operator.IN , InMemoryOperations.IN);
+        OPERATIONS_TRANFORMATIONS.put(Operator.BETWEEN, InMemoryOperations.BETWEEN);
+        OPERATIONS_TRANFORMATIONS.put(Operator.MATCH, InMemoryOperations.MATCH);
     }
 
     public static InMemoryQueryBuilder instance() {
@@ -75,7 +92,9 @@ public class InMemoryQueryBuilder {
         result.getRelations().addAll(extractFilters(project));
         result.getOutputColumns().addAll(transformIntoSelectors(project.getColumnList()));
 
-        processJoins(result.getOutputColumns(), project);
+        processSample(result);
+        processJoins(result, project);
+        processGroupBy(result, project);
 
 
         return result;
@@ -83,118 +102,228 @@ public class InMemoryQueryBuilder {
 
     /**
      *
-     * Build a InMemoryQuery using a {@link com.stratio.crossdata.common.logicalplan.Project} and a
-     * result of the others parts of the query, to by added as filters in this part.
+     * Build a InMemoryQuery using a {@link com.stratio.crossdata.common.logicalplan.Project} and the
+     * queries and results of the tables that precede it in the join, to be added as filters in this part.
      *
-     * @param project
-     * @param results
-     * @return
+     * @param project The {@link com.stratio.crossdata.common.logicalplan.Project} of the table.
+     * @param previousQueries The queries of the previous tables.
+     * @param previousResults The results of the previous tables.
+     * @return An {@link com.stratio.connector.inmemory.datastore.InMemoryQuery}.
      */
-    public InMemoryQuery build(Project project,List<SimpleValue[]> results) throws ExecutionException {
+    public InMemoryQuery build(Project project, List<InMemoryQuery> previousQueries,
+            List<List<SimpleValue[]>> previousResults) throws ExecutionException {
         InMemoryQuery query = build(project);
-        query.getRelations().addAll(getJoinFilters(project, results));
-
+        if(JoinType.INNER.equals(query.getJoinType())) {
+            query.getRelations().addAll(getJoinFilters(query, previousQueries, previousResults));
+        }
         return query;
     }
 
-
     /**
-     * Return the JoinTerm of the project.
+     * Determine whether a table name refers to the table of a project, either by its qualified name
+     * or by its alias.
      *
-     * @param joinStep
-     * @param project
-     * @return
+     * @param tableName The {@link com.stratio.crossdata.common.data.TableName}.
+     * @param project The {@link com.stratio.crossdata.common.logicalplan.Project}.
+     * @return Whether the table name refers to the project table.
      */
-    private Selector getMyJoinTerm(Join joinStep, Project project) {
-
-        Selector myTerm;
-
-        TableName leftTable = joinStep.getJoinRelations().get(0).getLeftTerm().getTableName();
+    public boolean belongsTo(TableName tableName, Project project) {
         TableName thisTableName = project.getTableName();
+        return tableName != null && (tableName.getQualifiedName().equals(thisTableName.getQualifiedName())
+                || tableName.getName().equals(thisTableName.getAlias()));
+    }
 
-        if(leftTable.getQualifiedName().equals(thisTableName.getQualifiedName())
-                || leftTable.getName().equals(thisTableName.getAlias())) {
-            myTerm =joinStep.getJoinRelations().get(0).getLeftTerm();
-        }else{
-            myTerm = joinStep.getJoinRelations().get(0).getRightTerm();
+    /**
+     * Adds the new Output Columns that holds the JoinColumns. A join selector is added for each join
+     * relation that involves the table of the project, and the join type is taken from the first join
+     * that consumes the table.
+     */
+    private void processJoins(InMemoryQuery query, Project project) {
+        boolean first = true;
+        LogicalStep currentStep = project;
+        while(currentStep != null){
+            if(Join.class.isInstance(currentStep)){
+                Join joinStep = Join.class.cast(currentStep);
+                if(first && joinStep.getType() != null){
+                    query.setJoinType(joinStep.getType());
+                }
+                first = false;
+                String name = joinStep.toString();
+                for(Relation relation : joinStep.getJoinRelations()){
+                    Selector leftTerm = relation.getLeftTerm();
+                    Selector rightTerm = relation.getRightTerm();
+                    if(belongsTo(leftTerm.getTableName(), project)){
+                        query.getOutputColumns().add(new InMemoryJoinSelector(name, leftTerm, rightTerm));
+                    }else if(belongsTo(rightTerm.getTableName(), project)){
+                        query.getOutputColumns().add(new InMemoryJoinSelector(name, rightTerm, leftTerm));
+                    }
+                }
+            }
+            currentStep = currentStep.getNextStep();
         }
-        return myTerm;
     }
 
     /**
-     * Adds the new Output Columns that holds the JoinColumns.
+     * Replaces the sample function of the output columns, if any, with a sample of the rows of the table.
+     * The function takes the sampling fraction and an optional seed, and its value is the fraction, so it
+     * can be selected along with aggregations. Samples without a seed use a random one.
+     *
+     * @param query The query of the table.
+     * @throws ExecutionException If the arguments of the function are not valid.
      */
-    private void processJoins(List<InMemorySelector> outputColumns, Project project) throws ExecutionException {
-
-        Join joinStep = extractStep(project, Join.class);
-        if (joinStep != null){
-            String name = joinStep.toString();
-            Selector myTerm = getMyJoinTerm(joinStep, project);
-            Selector otherTerm;
-
-            TableName leftTable = joinStep.getJoinRelations().get(0).getLeftTerm().getTableName();
-            TableName thisTableName = project.getTableName();
-
-            if (leftTable.getQualifiedName().equals(thisTableName.getQualifiedName()) ||
-                    leftTable.getName().equals(thisTableName.getAlias())) {
-                otherTerm = joinStep.getJoinRelations().get(0).getRightTerm();
-            }else{
-                otherTerm =joinStep.getJoinRelations().get(0).getLeftTerm();
+    private void processSample(InMemoryQuery query) throws ExecutionException {
+        List<InMemorySelector> outputColumns = query.getOutputColumns();
+        for(int index = 0; index < outputColumns.size(); index++){
+            InMemorySelector selector = outputColumns.get(index);
+            if(InMemoryFunctionSelector.class.isInstance(selector) && SAMPLE_FUNCTION.equals(selector.getName())){
+                List<InMemorySelector> arguments = InMemoryFunctionSelector.class.cast(selector).getArguments();
+                if(arguments.isEmpty() || arguments.size() > 2){
+                    throw new ExecutionException("Function sample requires a fraction and an optional seed");
+                }
+                double fraction;
+                long seed;
+                try {
+                    fraction = Double.parseDouble(arguments.get(0).getName());
+                    seed = arguments.size() > 1 ? Long.parseLong(arguments.get(1).getName()) : new Random().nextLong();
+                } catch (NumberFormatException e) {
+                    throw new ExecutionException("Invalid arguments of function sample: " + arguments, e);
+                }
+                if(!(fraction > 0 && fraction <= 1)){
+                    throw new ExecutionException("The sampling fraction must be in (0, 1], found " + fraction);
+                }
+                query.getRelations().add(new InMemorySample(fraction, seed));
+                outputColumns.set(index, new InMemoryLiteralSelector(arguments.get(0).getName()));
             }
-
-            outputColumns.add(new InMemoryJoinSelector(name,myTerm,otherTerm));
         }
     }
 
     /**
-     * Adds a "IN" filter for each JoinColumn, using the values from the result List.
+     * Sets the grouping columns and the HAVING relations of the query from the
+     * {@link com.stratio.crossdata.common.logicalplan.GroupBy} step that follows the project, if any.
      *
-     * @param results the results of the other terms that will be used as filter values.
+     * @param query The query of the table.
+     * @param project The {@link com.stratio.crossdata.common.logicalplan.Project} of the table.
+     * @throws ExecutionException If a grouping column or a HAVING relation is not supported.
      */
-    private List<InMemoryRelation>  getJoinFilters(Project project, List<SimpleValue[]> results) throws ExecutionException {
+    private void processGroupBy(InMemoryQuery query, Project project) throws ExecutionException {
+        LogicalStep currentStep = project;
+        while(currentStep != null){
+            if(GroupBy.class.isInstance(currentStep)){
+                GroupBy groupBy = GroupBy.class.cast(currentStep);
+                for(Selector selector : groupBy.getIds()){
+                    if(!ColumnSelector.class.isInstance(selector)){
+                        throw new ExecutionException("Cannot group by " + selector);
+                    }
+                    query.getGroupByColumns().add(ColumnSelector.class.cast(selector).getName().getName());
+                }
+                if(groupBy.getHavingIds() != null){
+                    for(AbstractRelation relation : groupBy.getHavingIds()){
+                        query.getHaving().add(toInMemoryHavingRelation(relation));
+                    }
+                }
+            }
+            currentStep = currentStep.getNextStep();
+        }
+    }
 
+    /**
+     * Transform a crossdata HAVING relationship into an in-memory one.
+     * @param abstractRelation The crossdata relation.
+     * @return An equivalent {@link com.stratio.connector.inmemory.datastore.InMemoryHavingRelation}.
+     * @throws ExecutionException If the relationship cannot be translated.
+     */
+    private InMemoryHavingRelation toInMemoryHavingRelation(AbstractRelation abstractRelation)
+            throws ExecutionException {
+        if(!Relation.class.isInstance(abstractRelation)){
+            throw new ExecutionException("Relation " + abstractRelation + " not supported in HAVING");
+        }
+        Relation relation = Relation.class.cast(abstractRelation);
+        if(!OPERATIONS_TRANFORMATIONS.containsKey(relation.getOperator())){
+            throw new ExecutionException("Operator " + relation.getOperator() + " not supported");
+        }
+        return new InMemoryHavingRelation(transformCrossdataSelector(relation.getLeftTerm()),
+                OPERATIONS_TRANFORMATIONS.get(relation.getOperator()), toValue(relation.getRightTerm()));
+    }
 
-        int columnIndex = 0;
-        Join joinStep = extractStep(project, Join.class);
-        List<InMemoryRelation> relations  = new ArrayList<>();
+    /**
+     * Transform a Crossdata selector into an InMemory one.
+     * @param selector The Crossdata selector.
+     * @return The equivalent InMemory selector.
+     */
+    public InMemorySelector transformCrossdataSelector(Selector selector){
+        InMemorySelector result;
+        if(FunctionSelector.class.isInstance(selector)){
+            FunctionSelector xdFunction = FunctionSelector.class.cast(selector);
+            String name = xdFunction.getFunctionName();
+            List<InMemorySelector> arguments = new ArrayList<>();
+            for(Selector arg : xdFunction.getFunctionColumns()){
+                arguments.add(transformCrossdataSelector(arg));
+            }
+            result = new InMemoryFunctionSelector(name, arguments);
+        }else if(ColumnSelector.class.isInstance(selector)){
+            ColumnSelector cs = ColumnSelector.class.cast(selector);
+            result = new InMemoryColumnSelector(cs.getName().getName());
+        }else{
+            result = new InMemoryLiteralSelector(selector.getStringValue());
+        }
+        return result;
+    }
 
-        for (SimpleValue field: results.get(0)){
-            if (field instanceof JoinValue){
-                String columnName = getMyJoinTerm(joinStep, project).getColumnName().getName();
-                List<Object> joinValues = new ArrayList<>();
-                for (SimpleValue[] row:results){
-                    joinValues.add(row[columnIndex].getValue());
+    /**
+     * Adds a "IN" filter for each JoinColumn, using the values of the matching join column in the results
+     * of the previous tables. Filters are only added when the number of distinct values is small enough
+     * for the IN relation to be cheaper than the hash join alone.
+     *
+     * @param query The query of the table.
+     * @param previousQueries The queries of the previous tables.
+     * @param previousResults The results of the previous tables.
+     * @return A list of IN relations.
+     */
+    private List<InMemoryRelation> getJoinFilters(InMemoryQuery query, List<InMemoryQuery> previousQueries,
+            List<List<SimpleValue[]>> previousResults) {
+        List<InMemoryRelation> relations  = new ArrayList<>();
+        for(InMemorySelector selector : query.getOutputColumns()){
+            if(InMemoryJoinSelector.class.isInstance(selector)){
+                InMemoryJoinSelector join = InMemoryJoinSelector.class.cast(selector);
+                List<Object> joinValues = findJoinValues(join, previousQueries, previousResults);
+                if(joinValues != null && joinValues.size() <= MAX_JOIN_FILTER_VALUES){
+                    String columnName = join.getMyTerm().getColumnName().getName();
+                    relations.add(new InMemoryRelation(columnName, InMemoryOperations.IN, joinValues));
                 }
-                InMemoryRelation joinFilter =  new InMemoryRelation(columnName, OPERATIONS_TRANFORMATIONS.get(Operator.IN), joinValues);
-                relations.add(joinFilter);
             }
-
-            columnIndex++;
         }
-
         return relations;
     }
 
     /**
-     * Parse and transform the {@link Project} until a {@link com.stratio.crossdata.common.logicalplan.Join} to a
-     * InMemory Query representation.
+     * Find the distinct values of the other side of a join relation in the results of the previous tables.
      *
-     * @param project
-     * @throws ExecutionException
+     * @param join The join selector.
+     * @param previousQueries The queries of the previous tables.
+     * @param previousResults The results of the previous tables.
+     * @return A list of distinct values or null if the other side is not found or has too many values.
      */
-    private <T extends LogicalStep> T extractStep(Project project, Class<T> stepWanted) throws ExecutionException{
-        try {
-            LogicalStep currentStep = project;
-            while(currentStep != null){
-                if(stepWanted.isInstance(currentStep)){
-                    return stepWanted.cast(currentStep);
+    private List<Object> findJoinValues(InMemoryJoinSelector join, List<InMemoryQuery> previousQueries,
+            List<List<SimpleValue[]>> previousResults) {
+        for(int queryIndex = 0; queryIndex < previousQueries.size(); queryIndex++){
+            List<InMemorySelector> columns = previousQueries.get(queryIndex).getOutputColumns();
+            for(int columnIndex = 0; columnIndex < columns.size(); columnIndex++){
+                if(InMemoryJoinSelector.class.isInstance(columns.get(columnIndex))
+                        && join.isReverseOf(InMemoryJoinSelector.class.cast(columns.get(columnIndex)))){
+                    Set<Object> values = new LinkedHashSet<>();
+                    for(SimpleValue[] row : previousResults.get(queryIndex)){
+                        Object value = row[columnIndex].getValue();
+                        if(value != null){
+                            values.add(value);
+                        }
+                        if(values.size() > MAX_JOIN_FILTER_VALUES){
+                            return null;
+                        }
+                    }
+                    return new ArrayList<>(values);
                 }
-                currentStep = currentStep.getNextStep();
             }
-        } catch(ClassCastException e) {
-            throw new ExecutionException("Invalid workflow received", e);
         }
-
         return null;
     }
 
@@ -207,6 +336,8 @@ public class InMemoryQueryBuilder {
             while(currentStep != null){
                 if(Filter.class.isInstance(currentStep)){
                     relations.add(toInMemoryRelation(Filter.class.cast(currentStep)));
+                }else if(Disjunction.class.isInstance(currentStep)){
+                    relations.add(toInMemoryDisjunction(Disjunction.class.cast(currentStep)));
                 }
                 currentStep = currentStep.getNextStep();
             }
@@ -218,6 +349,71 @@ public class InMemoryQueryBuilder {
     }
 
 
+    /**
+     * Transform the filters of a DELETE or an UPDATE statement into in-memory relations.
+     * @param filters The {@link com.stratio.crossdata.common.logicalplan.Filter}s, or null.
+     * @return A list of equivalent {@link com.stratio.connector.inmemory.datastore.InMemoryRelation}s.
+     * @throws ExecutionException If a filter cannot be translated.
+     */
+    public List<InMemoryRelation> toInMemoryRelations(Collection<Filter> filters) throws ExecutionException {
+        List<InMemoryRelation> relations = new ArrayList<>();
+        if(filters != null){
+            for(Filter filter : filters){
+                relations.add(toInMemoryRelation(filter));
+            }
+        }
+        return relations;
+    }
+
+    /**
+     * Transform the assignments of an UPDATE statement into the values assigned to each column. Only
+     * literal values and null can be assigned.
+     * @param assignments The assignment {@link com.stratio.crossdata.common.statements.structures.Relation}s.
+     * @return A map associating column names with their new values.
+     * @throws ExecutionException If an assignment is not supported.
+     */
+    public Map<String, Object> toAssignments(Collection<Relation> assignments) throws ExecutionException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for(Relation assignment : assignments){
+            if(!ColumnSelector.class.isInstance(assignment.getLeftTerm())
+                    || !Operator.ASSIGN.equals(assignment.getOperator())){
+                throw new ExecutionException("Assignment " + assignment + " not supported");
+            }
+            Selector right = assignment.getRightTerm();
+            Object value = toValue(right);
+            if(value == null && !SelectorType.NULL.equals(right.getType())){
+                throw new ExecutionException("Only literal values can be assigned, found " + right);
+            }
+            values.put(ColumnSelector.class.cast(assignment.getLeftTerm()).getName().getName(), value);
+        }
+        return values;
+    }
+
+    /**
+     * Transform a crossdata disjunction into an in-memory one. The terms of each conjunction are either
+     * filters or nested disjunctions.
+     * @param disjunction The {@link com.stratio.crossdata.common.logicalplan.Disjunction} logical step.
+     * @return An equivalent {@link com.stratio.connector.inmemory.datastore.InMemoryDisjunction}.
+     * @throws ExecutionException If a term cannot be translated.
+     */
+    private InMemoryDisjunction toInMemoryDisjunction(Disjunction disjunction) throws ExecutionException {
+        List<List<InMemoryRelation>> terms = new ArrayList<>();
+        for(List<ITerm> conjunction : disjunction.getTerms()){
+            List<InMemoryRelation> relations = new ArrayList<>();
+            for(ITerm term : conjunction){
+                if(Filter.class.isInstance(term)){
+                    relations.add(toInMemoryRelation(Filter.class.cast(term)));
+                }else if(Disjunction.class.isInstance(term)){
+                    relations.add(toInMemoryDisjunction(Disjunction.class.cast(term)));
+                }else{
+                    throw new ExecutionException("Term " + term + " not supported in disjunctions");
+                }
+            }
+            terms.add(relations);
+        }
+        return new InMemoryDisjunction(terms);
+    }
+
     /**
      * Transform a crossdata relationship into an in-memory relation.
      * @param f The {@link com.stratio.crossdata.common.logicalplan.Filter} logical step.
@@ -234,7 +430,18 @@ public class InMemoryQueryBuilder {
         }else{
             throw new ExecutionException("Operator " + f.getRelation().getOperator() + " not supported");
         }
-        Selector rightSelector = f.getRelation().getRightTerm();
+        Object rightPart = toValue(f.getRelation().getRightTerm());
+
+        return new InMemoryRelation(columnName, relation, rightPart);
+    }
+
+    /**
+     * Transform the right part of a crossdata relationship into the value used by the datastore. Lists
+     * of values (IN) and ranges (BETWEEN) are transformed into a list of values.
+     * @param rightSelector The right {@link com.stratio.crossdata.common.statements.structures.Selector}.
+     * @return The value or null if the selector type is not supported.
+     */
+    private Object toValue(Selector rightSelector) {
         Object rightPart = null;
 
         if(SelectorType.STRING.equals(rightSelector.getType())){
@@ -245,9 +452,17 @@ public class InMemoryQueryBuilder {
             rightPart = BooleanSelector.class.cast(rightSelector).getValue();
         }else if(SelectorType.FLOATING_POINT.equals(rightSelector.getType())){
             rightPart = FloatingPointSelector.class.cast(rightSelector).getValue();
+        }else if(SelectorType.LIST.equals(rightSelector.getType())){
+            List<Object> values = new ArrayList<>();
+            for(Selector s : ListSelector.class.cast(rightSelector).getSelectorsList()){
+                values.add(toValue(s));
+            }
+            rightPart = values;
+        }else if(SelectorType.GROUP.equals(rightSelector.getType())){
+            GroupSelector group = GroupSelector.class.cast(rightSelector);
+            rightPart = Arrays.asList(toValue(group.getFirstValue()), toValue(group.getLastValue()));
         }
-
-        return new InMemoryRelation(columnName, relation, rightPart);
+        return rightPart;
     }
 
     /**
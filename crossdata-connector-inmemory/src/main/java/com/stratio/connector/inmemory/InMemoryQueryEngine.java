@@ -23,18 +23,30 @@ import static com.codahale.metrics.MetricRegistry.name;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Timer;
 import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
-import com.stratio.connector.inmemory.datastore.InMemoryOperations;
 import com.stratio.connector.inmemory.datastore.InMemoryQuery;
+import com.stratio.connector.inmemory.datastore.changes.ContinuousQuery;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.iterators.LimitIterator;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancellation;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancelledException;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.sort.ParallelSort;
+import com.stratio.connector.inmemory.datastore.sort.RowComparator;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
-import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
-import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
 import com.stratio.crossdata.common.connector.IQueryEngine;
 import com.stratio.crossdata.common.connector.IResultHandler;
@@ -51,17 +63,21 @@ import com.stratio.crossdata.common.logicalplan.LogicalWorkflow;
 import com.stratio.crossdata.common.logicalplan.OrderBy;
 import com.stratio.crossdata.common.logicalplan.Project;
 import com.stratio.crossdata.common.logicalplan.Select;
+import com.stratio.crossdata.common.logicalplan.Window;
 import com.stratio.crossdata.common.metadata.ColumnMetadata;
 import com.stratio.crossdata.common.metadata.ColumnType;
 import com.stratio.crossdata.common.result.QueryResult;
 import com.stratio.crossdata.common.statements.structures.ColumnSelector;
-import com.stratio.crossdata.common.statements.structures.FunctionSelector;
 import com.stratio.crossdata.common.statements.structures.OrderByClause;
 import com.stratio.crossdata.common.statements.structures.OrderDirection;
 import com.stratio.crossdata.common.statements.structures.Selector;
+import com.stratio.crossdata.common.statements.structures.window.WindowType;
 
 /**
- * Class that implements the  {@link com.stratio.crossdata.common.connector.IQueryEngine}.
+ * Class that implements the  {@link com.stratio.crossdata.common.connector.IQueryEngine}. Queries can be
+ * stopped while they run: the operators of each query poll its
+ * {@link com.stratio.connector.inmemory.datastore.scan.QueryCancellation}, which is cancelled by
+ * {@link #stop(String)} or when the deadline set by the QueryTimeout cluster property expires.
  */
 public class InMemoryQueryEngine implements IQueryEngine {
 
@@ -77,6 +93,31 @@ public class InMemoryQueryEngine implements IQueryEngine {
 
     private final Timer executeTimer;
 
+    /**
+     * Number of rows scanned by each query.
+     */
+    private final Histogram scannedRowsHistogram;
+
+    /**
+     * Number of rows of the tables that satisfied the filters of each query.
+     */
+    private final Histogram matchedRowsHistogram;
+
+    /**
+     * Number of queries stopped or timed out.
+     */
+    private final Counter cancelledQueries;
+
+    /**
+     * Cancellation state of the running queries with an identifier.
+     */
+    private final Map<String, QueryCancellation> runningQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Map associating the identifier of each running window query with the query.
+     */
+    private final Map<String, WindowQuery> windowQueries = new ConcurrentHashMap<>();
+
     /**
      * Class constructor.
      * @param connector The linked {@link com.stratio.connector.inmemory.InMemoryConnector}.
@@ -86,20 +127,194 @@ public class InMemoryQueryEngine implements IQueryEngine {
         executeTimer = new Timer();
         String timerName = name(InMemoryQueryEngine.class, "execute");
         connector.registerMetric(timerName, executeTimer);
+        scannedRowsHistogram = new Histogram(new ExponentiallyDecayingReservoir());
+        connector.registerMetric(name(InMemoryQueryEngine.class, "scannedRows"), scannedRowsHistogram);
+        matchedRowsHistogram = new Histogram(new ExponentiallyDecayingReservoir());
+        connector.registerMetric(name(InMemoryQueryEngine.class, "matchedRows"), matchedRowsHistogram);
+        cancelledQueries = new Counter();
+        connector.registerMetric(name(InMemoryQueryEngine.class, "cancelled"), cancelledQueries);
     }
 
     @Override
     public QueryResult execute(LogicalWorkflow workflow) throws ConnectorException {
+        InMemoryDatastore datastore = getDatastore(workflow);
+        return execute(null, workflow, datastore, startQuery(null, datastore));
+    }
+
+    /**
+     * Execute a workflow returning all the results at once.
+     * @param queryId The query identifier, or null if the query cannot be stopped.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param datastore The queried datastore.
+     * @param scanMetrics The metrics of the table scans of the query, which carry its cancellation state.
+     * @return A {@link com.stratio.crossdata.common.result.QueryResult}.
+     * @throws ConnectorException If the workflow cannot be executed or the query is cancelled.
+     */
+    private QueryResult execute(String queryId, LogicalWorkflow workflow, InMemoryDatastore datastore,
+            ScanMetrics scanMetrics) throws ConnectorException {
         //Init Metric
         Timer.Context executeTimerContext = executeTimer.time();
 
+        Select selectStep = Select.class.cast(workflow.getLastStep());
+        List<String> columnAlias = new ArrayList<>();
+        List<ColumnMetadata> columnMetadata = buildColumnMetadata(selectStep, columnAlias);
+
+        QueryCancellation cancellation = scanMetrics.getCancellation();
+        List<Row> crossdataRows = new ArrayList<>();
+        try {
+            Iterator<SimpleValue[]> rows = executeWorkflow(workflow, datastore, scanMetrics);
+            while(rows.hasNext()){
+                cancellation.check(crossdataRows.size());
+                crossdataRows.add(toCrossdataRow(rows.next(), columnAlias));
+            }
+        } catch (QueryCancelledException e) {
+            throw cancelled(queryId, e);
+        }
+        reportScanMetrics(scanMetrics);
+
+        ResultSet crossdataResults = new ResultSet();
+        crossdataResults.setColumnMetadata(columnMetadata);
+        crossdataResults.setRows(crossdataRows);
+        QueryResult finalResult = QueryResult.createQueryResult(crossdataResults, 0, true);
+
+        //End Metric
+        long millis = executeTimerContext.stop();
+        LOG.info("Query took " + millis + " nanoseconds");
+
+        return finalResult;
+    }
+
+    /**
+     * Get the datastore queried by a workflow.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @return The {@link com.stratio.connector.inmemory.datastore.InMemoryDatastore}.
+     * @throws ExecutionException If the cluster of the workflow is not connected.
+     */
+    private InMemoryDatastore getDatastore(LogicalWorkflow workflow) throws ExecutionException {
         Project projectOne =  (Project)workflow.getInitialSteps().get(0);
         InMemoryDatastore datastore = connector.getDatastore(projectOne.getClusterName());
-
         if(datastore == null){
             throw new ExecutionException("No datastore connected to " + projectOne.getClusterName());
         }
+        return datastore;
+    }
+
+    /**
+     * Register a query that starts running. The deadline of the query is set by the time limit of
+     * the datastore.
+     * @param queryId The query identifier, or null if the query cannot be stopped.
+     * @param datastore The queried datastore.
+     * @return The metrics of the table scans of the query, which carry its cancellation state.
+     * @throws ExecutionException If a query with the same identifier is already running.
+     */
+    private ScanMetrics startQuery(String queryId, InMemoryDatastore datastore) throws ExecutionException {
+        QueryCancellation cancellation = new QueryCancellation(datastore.getQueryTimeout());
+        if(queryId != null && runningQueries.putIfAbsent(queryId, cancellation) != null){
+            throw new ExecutionException("Query " + queryId + " is already running");
+        }
+        return new ScanMetrics(cancellation);
+    }
+
+    /**
+     * Unregister a query that has finished, so that nothing references its cancellation state.
+     * @param queryId The query identifier, or null if the query cannot be stopped.
+     */
+    private void finishQuery(String queryId){
+        if(queryId != null){
+            runningQueries.remove(queryId);
+        }
+    }
 
+    /**
+     * Build the exception reported when a query is cancelled. The intermediate results of the query
+     * are no longer referenced once its operators have unwound.
+     * @param queryId The query identifier, or null.
+     * @param e The exception thrown by the operators of the query.
+     * @return An {@link com.stratio.crossdata.common.exceptions.ExecutionException}.
+     */
+    private ExecutionException cancelled(String queryId, QueryCancelledException e){
+        cancelledQueries.inc();
+        LOG.info("Query " + (queryId != null ? queryId + " " : "") + "stopped: " + e.getMessage());
+        return new ExecutionException(e.getMessage(), e);
+    }
+
+    /**
+     * Build the pipeline of operators that produces the rows of a workflow: scan, filter, project,
+     * order and limit. Single table queries are evaluated lazily as the returned iterator advances,
+     * so a limit stops the scan as soon as enough rows have been produced; large tables are scanned
+     * in parallel segments, which are sorted and merged if the query is ordered. Joins read the whole
+     * result of each table before returning, but the rows of the last join are produced lazily, so a
+     * limit also stops a cartesian product early; ordered joins keep only the first rows in a heap.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param datastore The queried datastore.
+     * @param scanMetrics The metrics of the table scans.
+     * @return An iterator over the resulting rows.
+     * @throws ConnectorException If the workflow cannot be executed.
+     * @throws QueryCancelledException If the query is cancelled.
+     */
+    private Iterator<SimpleValue[]> executeWorkflow(LogicalWorkflow workflow, InMemoryDatastore datastore,
+            ScanMetrics scanMetrics) throws ConnectorException {
+        Project projectOne =  (Project)workflow.getInitialSteps().get(0);
+        Select selectStep = Select.class.cast(workflow.getLastStep());
+        int limit = getFinalLimit(workflow);
+        OrderBy orderByStep = findOrderBy(workflow);
+        Iterator<SimpleValue[]> rows;
+        if(workflow.getInitialSteps().size() == 1){
+            InMemoryQuery inMemoryQuery = InMemoryQueryBuilder.instance().build(projectOne);
+            List<InMemorySelector> outputColumns = transformIntoSelectors(selectStep.getColumnMap().keySet());
+            inMemoryQuery.setOutputColumns(outputColumns);
+            RowComparator comparator = null;
+            if(orderByStep != null){
+                comparator = buildRowComparator(orderByStep, getSelectorNames(outputColumns));
+            }
+            try {
+                rows = datastore.scan(inMemoryQuery.getCatalogName(), inMemoryQuery, comparator, limit, scanMetrics);
+            } catch (QueryCancelledException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ExecutionException("Cannot perform execute operation: " + e.getMessage(), e);
+            }
+        }else{
+            rows = executeJoin(workflow, datastore, scanMetrics);
+            if(orderByStep != null){
+                List<String> columnNames = new ArrayList<>();
+                for(Selector selector : selectStep.getOutputSelectorOrder()){
+                    columnNames.add(selector.getColumnName().getName());
+                }
+                RowComparator comparator = buildRowComparator(orderByStep, columnNames);
+                rows = ParallelSort.sort(rows, comparator, limit, connector.getForkJoinPool(),
+                        scanMetrics.getCancellation()).iterator();
+            }
+        }
+
+        if(limit != -1){
+            rows = new LimitIterator<>(rows, limit);
+        }
+        return rows;
+    }
+
+    /**
+     * Report the metrics of the table scans of a query.
+     * @param scanMetrics The metrics of the table scans.
+     */
+    private void reportScanMetrics(ScanMetrics scanMetrics){
+        scannedRowsHistogram.update(scanMetrics.getScannedRows());
+        matchedRowsHistogram.update(scanMetrics.getMatchedRows());
+        LOG.info("Query scan metrics: " + scanMetrics);
+    }
+
+    /**
+     * Execute a workflow that joins several tables.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param datastore The {@link com.stratio.connector.inmemory.datastore.InMemoryDatastore}.
+     * @param scanMetrics The metrics of the table scans.
+     * @return An iterator over the joined rows with the selected columns in order.
+     * @throws ConnectorException If the workflow cannot be executed.
+     * @throws QueryCancelledException If the query is cancelled.
+     */
+    private Iterator<SimpleValue[]> executeJoin(LogicalWorkflow workflow, InMemoryDatastore datastore,
+            ScanMetrics scanMetrics) throws ConnectorException {
+        List<InMemoryQuery> tableQueries = new ArrayList<>();
         List<List<SimpleValue[]>> tableResults = new ArrayList<>();
 
         for (LogicalStep project:workflow.getInitialSteps()){
@@ -108,101 +323,214 @@ public class InMemoryQueryEngine implements IQueryEngine {
             if (tableResults.size()<1){
                 inMemoryQuery = InMemoryQueryBuilder.instance().build((Project) project);
             }else{
-                inMemoryQuery = InMemoryQueryBuilder.instance().build((Project)project, tableResults.get(0));
+                inMemoryQuery = InMemoryQueryBuilder.instance().build((Project)project, tableQueries, tableResults);
+            }
+
+            if(!inMemoryQuery.getGroupByColumns().isEmpty()){
+                throw new UnsupportedException("GROUP BY is not supported in joins");
             }
 
             List<SimpleValue[]> results;
             try {
-                Select selectStep = Select.class.cast(workflow.getLastStep());
-                List<InMemorySelector> outputColumns = transformIntoSelectors(selectStep.getColumnMap().keySet());
-                inMemoryQuery.setOutputColumns(outputColumns);
-                results = datastore.search(inMemoryQuery.getCatalogName(), inMemoryQuery);
+                results = datastore.search(inMemoryQuery.getCatalogName(), inMemoryQuery, scanMetrics);
+            } catch (QueryCancelledException e) {
+                throw e;
             } catch (Exception e) {
                 throw new ExecutionException("Cannot perform execute operation: " + e.getMessage(), e);
             }
 
-            if (results == null || results.size()== 0){
-                break;
-            }
-
+            tableQueries.add(inMemoryQuery);
             tableResults.add(results);
         }
 
-        List<SimpleValue[]> joinResult = datastore.joinResults(tableResults);
+        QueryCancellation cancellation = scanMetrics.getCancellation();
+        Iterator<SimpleValue[]> joinedRows = datastore.joinRows(tableQueries, tableResults, cancellation);
+        return selectJoinColumns(Select.class.cast(workflow.getLastStep()), workflow.getInitialSteps(),
+                tableQueries, joinedRows, cancellation);
+    }
 
-        joinResult = orderResult(joinResult, workflow);
+    /**
+     * Project the columns of the {@link com.stratio.crossdata.common.logicalplan.Select} step from a set
+     * of joined rows. Joined rows contain the output columns of each table query in order, and each row
+     * is projected as the returned iterator advances.
+     * @param selectStep The {@link com.stratio.crossdata.common.logicalplan.Select} step.
+     * @param projects The {@link com.stratio.crossdata.common.logicalplan.Project} step of each table.
+     * @param queries The query executed on each table.
+     * @param joinedRows The joined rows.
+     * @param cancellation The cancellation state of the query.
+     * @return An iterator over the rows with the selected columns in order.
+     * @throws ExecutionException If a selected column cannot be found.
+     */
+    private Iterator<SimpleValue[]> selectJoinColumns(Select selectStep, List<LogicalStep> projects,
+            List<InMemoryQuery> queries, final Iterator<SimpleValue[]> joinedRows,
+            final QueryCancellation cancellation) throws ExecutionException {
+        List<Selector> outputSelectors = selectStep.getOutputSelectorOrder();
+        final int [] positions = new int[outputSelectors.size()];
+        final InMemorySelector [] selectors = new InMemorySelector[outputSelectors.size()];
+        for(int index = 0; index < positions.length; index++){
+            Selector selector = outputSelectors.get(index);
+            if(!ColumnSelector.class.isInstance(selector)){
+                throw new ExecutionException("Selector " + selector + " is not supported in joins");
+            }
+            ColumnName columnName = ColumnSelector.class.cast(selector).getName();
+            positions[index] = findJoinColumn(columnName, projects, queries);
+            selectors[index] = new InMemoryColumnSelector(columnName.getName());
+        }
 
-        QueryResult finalResult = toCrossdataResults((Select) workflow.getLastStep(), getFinalLimit(workflow), joinResult);
+        return new Iterator<SimpleValue[]>() {
 
-        //End Metric
-        long millis = executeTimerContext.stop();
-        LOG.info("Query took " + millis + " nanoseconds");
+            private long produced = 0;
 
-        return finalResult;
+            @Override
+            public boolean hasNext() {
+                return joinedRows.hasNext();
+            }
+
+            @Override
+            public SimpleValue[] next() {
+                cancellation.check(produced++);
+                SimpleValue[] joinedRow = joinedRows.next();
+                SimpleValue[] row = new SimpleValue[positions.length];
+                for(int index = 0; index < positions.length; index++){
+                    row[index] = new SimpleValue(selectors[index], joinedRow[positions[index]].getValue());
+                }
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Find the position of a column in the joined rows.
+     * @param columnName The column name.
+     * @param projects The {@link com.stratio.crossdata.common.logicalplan.Project} step of each table.
+     * @param queries The query executed on each table.
+     * @return The position of the column.
+     * @throws ExecutionException If the column is not found.
+     */
+    private int findJoinColumn(ColumnName columnName, List<LogicalStep> projects, List<InMemoryQuery> queries)
+            throws ExecutionException {
+        int offset = 0;
+        for(int tableIndex = 0; tableIndex < queries.size(); tableIndex++){
+            List<InMemorySelector> columns = queries.get(tableIndex).getOutputColumns();
+            if(InMemoryQueryBuilder.instance().belongsTo(columnName.getTableName(),
+                    Project.class.cast(projects.get(tableIndex)))){
+                for(int index = 0; index < columns.size(); index++){
+                    if(InMemoryColumnSelector.class.isInstance(columns.get(index))
+                            && columns.get(index).getName().equals(columnName.getName())){
+                        return offset + index;
+                    }
+                }
+            }
+            offset += columns.size();
+        }
+        throw new ExecutionException("Column " + columnName + " not found in the joined tables");
     }
 
     /**
      * Order the results using the orderStep.
-     * @param results
-     * @return
-     * @throws ExecutionException
+     * @param results The results to be ordered.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @return The ordered results.
+     * @throws ExecutionException If the results cannot be ordered.
      */
     public List<SimpleValue[]> orderResult(List<SimpleValue[]> results, LogicalWorkflow workflow) throws ExecutionException {
-        OrderBy orderByStep = null;
+        return orderResult(results, workflow, -1);
+    }
+
+    /**
+     * Order the results using the orderStep. If a limit is set, only the first rows are kept using a
+     * bounded heap; otherwise, the whole result is sorted, in parallel for large inputs.
+     * @param results The results to be ordered.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param limit The maximum number of rows to be returned, or -1 for no limit.
+     * @return The ordered results.
+     * @throws ExecutionException If the results cannot be ordered.
+     */
+    public List<SimpleValue[]> orderResult(List<SimpleValue[]> results, LogicalWorkflow workflow, int limit)
+            throws ExecutionException {
+        OrderBy orderByStep = findOrderBy(workflow);
+        if (orderByStep == null || results == null || results.isEmpty()) {
+            return results;
+        }
+        return orderRows(results, orderByStep, limit, null);
+    }
+
+    /**
+     * Find the {@link com.stratio.crossdata.common.logicalplan.OrderBy} step of a workflow.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @return The step or null if the workflow is not ordered.
+     */
+    private OrderBy findOrderBy(LogicalWorkflow workflow){
         LogicalStep current = workflow.getLastStep();
         do {
             if (current instanceof OrderBy){
-                orderByStep = (OrderBy) current;
-                break;
+                return (OrderBy) current;
             }
             current = current.getFirstPrevious ();
         }while(current != null);
+        return null;
+    }
 
+    /**
+     * Order a set of rows. If a limit is set, only the first rows are kept using a bounded heap.
+     * @param rows The rows to be ordered.
+     * @param orderByStep The {@link com.stratio.crossdata.common.logicalplan.OrderBy} step.
+     * @param limit The maximum number of rows to be returned, or -1 for no limit.
+     * @param cancellation The cancellation state of the query, or null.
+     * @return The ordered rows.
+     * @throws ExecutionException If the rows cannot be ordered.
+     */
+    private List<SimpleValue[]> orderRows(List<SimpleValue[]> rows, OrderBy orderByStep, int limit,
+            QueryCancellation cancellation) throws ExecutionException {
+        if(rows.isEmpty()){
+            return new ArrayList<>();
+        }
+        List<String> columnNames = new ArrayList<>();
+        for (SimpleValue value: rows.get(0)){
+            columnNames.add(value.getColumn().getName());
+        }
+        RowComparator comparator = buildRowComparator(orderByStep, columnNames);
+        return ParallelSort.sort(rows.iterator(), comparator, limit, connector.getForkJoinPool(), cancellation);
+    }
 
-        if (orderByStep != null) {
-            List<SimpleValue[]> orderedResult = new ArrayList<>();
-            if ((results != null) && (!results.isEmpty())) {
-
-                List<String> columnNames = new ArrayList<>();
-                for (SimpleValue value: results.get(0)){
-                    columnNames.add(value.getColumn().getName());
-                }
-
-                for (SimpleValue[] row : results) {
-                    if (orderedResult.isEmpty()) {
-                        orderedResult.add(row);
-                    } else {
-                        int order = 0;
-                        for (SimpleValue[] orderedRow : orderedResult) {
-                            if (compareRows(row, orderedRow, orderByStep, columnNames)) {
-                                break;
-                            }
-                            order++;
-                        }
-                        orderedResult.add(order, row);
-                    }
-                }
+    /**
+     * Build the comparator of the rows defined by an {@link com.stratio.crossdata.common.logicalplan.OrderBy} step.
+     * @param orderByStep The {@link com.stratio.crossdata.common.logicalplan.OrderBy} step.
+     * @param columnNames The names of the columns of the rows in order.
+     * @return A {@link com.stratio.connector.inmemory.datastore.sort.RowComparator}.
+     * @throws ExecutionException If a column of the clauses is not found.
+     */
+    private RowComparator buildRowComparator(OrderBy orderByStep, List<String> columnNames)
+            throws ExecutionException {
+        List<OrderByClause> clauses = orderByStep.getIds();
+        int [] positions = new int[clauses.size()];
+        boolean [] ascending = new boolean[clauses.size()];
+        for(int index = 0; index < positions.length; index++){
+            OrderByClause clause = clauses.get(index);
+            String columnName = clause.getSelector().getColumnName().getName();
+            positions[index] = columnNames.indexOf(columnName);
+            if(positions[index] < 0){
+                throw new ExecutionException("Cannot order by column " + columnName);
             }
-
-            return orderedResult;
+            ascending[index] = clause.getDirection() != OrderDirection.DESC;
         }
-        return results;
+        return new RowComparator(positions, ascending);
     }
 
-    private boolean compareRows(
-            SimpleValue[] candidateRow,
-            SimpleValue[] orderedRow,
-            OrderBy orderByStep,
-            List<String> columnNames) {
-        boolean result = false;
-
-        for(OrderByClause clause: orderByStep.getIds()){
-            int index = columnNames.indexOf(clause.getSelector().getColumnName().getName());
-            int comparison = compareCells(candidateRow[index], orderedRow[index], clause.getDirection());
-            if(comparison != 0){
-                result = (comparison > 0);
-                break;
-            }
+    /**
+     * Get the names of a list of selectors.
+     * @param selectors The list of selectors.
+     * @return The list of names in order.
+     */
+    private List<String> getSelectorNames(List<InMemorySelector> selectors){
+        List<String> result = new ArrayList<>(selectors.size());
+        for(InMemorySelector selector : selectors){
+            result.add(selector.getName());
         }
         return result;
     }
@@ -215,51 +543,24 @@ public class InMemoryQueryEngine implements IQueryEngine {
     private List<InMemorySelector> transformIntoSelectors(Set<Selector> selectors) {
         List<InMemorySelector> result = new ArrayList<>();
         for(Selector s: selectors){
-            result.add(transformCrossdataSelector(s));
+            result.add(InMemoryQueryBuilder.instance().transformCrossdataSelector(s));
         }
         return result;
     }
 
     /**
-     * Transform a Crossdata selector into an InMemory one.
-     * @param selector The Crossdata selector.
-     * @return The equivalent InMemory selector.
+     * Compare two cells.
+     * @param toBeOrdered The cell to be placed.
+     * @param alreadyOrdered The cell it is compared to.
+     * @param direction The order direction.
+     * @return 1 if toBeOrdered goes first, 0 if both are equal, -1 otherwise.
      */
-    private InMemorySelector transformCrossdataSelector(Selector selector){
-        InMemorySelector result;
-        if(FunctionSelector.class.isInstance(selector)){
-            FunctionSelector xdFunction = FunctionSelector.class.cast(selector);
-            String name = xdFunction.getFunctionName();
-            List<InMemorySelector> arguments = new ArrayList<>();
-            for(Selector arg : xdFunction.getFunctionColumns()){
-                arguments.add(transformCrossdataSelector(arg));
-            }
-            result = new InMemoryFunctionSelector(name, arguments);
-        }else if(ColumnSelector.class.isInstance(selector)){
-            ColumnSelector cs = ColumnSelector.class.cast(selector);
-            result = new InMemoryColumnSelector(cs.getName().getName());
-        }else{
-            result = new InMemoryLiteralSelector(selector.getStringValue());
-        }
-        return result;
-    }
-
     protected int compareCells(SimpleValue toBeOrdered, SimpleValue alreadyOrdered, OrderDirection direction) {
-        int result = -1;
-        InMemoryOperations.GT.compare(toBeOrdered.getValue(), alreadyOrdered.getValue());
-
-        if(InMemoryOperations.EQ.compare(toBeOrdered.getValue(), alreadyOrdered.getValue())){
-            result = 0;
-        } else if(direction == OrderDirection.ASC){
-            if(InMemoryOperations.LT.compare(toBeOrdered.getValue(), alreadyOrdered.getValue())){
-                result = 1;
-            }
-        } else if(direction == OrderDirection.DESC){
-            if(InMemoryOperations.GT.compare(toBeOrdered.getValue(), alreadyOrdered.getValue())){
-                result = 1;
-            }
+        int comparison = RowComparator.compareValues(toBeOrdered.getValue(), alreadyOrdered.getValue());
+        if(direction == OrderDirection.DESC){
+            comparison = -comparison;
         }
-        return result;
+        return -Integer.signum(comparison);
     }
 
     private Integer getFinalLimit(LogicalWorkflow workflow){
@@ -270,16 +571,12 @@ public class InMemoryQueryEngine implements IQueryEngine {
     }
 
     /**
-     * Transform a set of results into a Crossdata query result.
+     * Build the metadata of the columns of a Crossdata query result.
      * @param selectStep The {@link com.stratio.crossdata.common.logicalplan.Select} step to set the alias.
-     * @param limit The query limit.
-     * @param results The set of results retrieved from the database.
-     * @return A {@link com.stratio.crossdata.common.result.QueryResult}.
+     * @param columnAlias The list to be filled with the alias of each column.
+     * @return The list of {@link com.stratio.crossdata.common.metadata.ColumnMetadata}.
      */
-    private QueryResult toCrossdataResults(Select selectStep, int limit, List<SimpleValue[]> results) {
-        ResultSet crossdataResults = new ResultSet();
-
-        final List<String> columnAlias = new ArrayList<>();
+    private List<ColumnMetadata> buildColumnMetadata(Select selectStep, List<String> columnAlias) {
         final List<ColumnMetadata> columnMetadataList = new ArrayList<>();
         for(Selector outputSelector : selectStep.getOutputSelectorOrder()){
             ColumnName columnName = outputSelector.getColumnName();
@@ -294,32 +591,12 @@ public class InMemoryQueryEngine implements IQueryEngine {
                     columnName, null, columnType);
             columnMetadataList.add(metadata);
         }
-
-        //Store the metadata information
-        crossdataResults.setColumnMetadata(columnMetadataList);
-
-        int resultToAdd = results.size();
-        if(limit != -1){
-            resultToAdd = Math.min(results.size(), limit);
-        }
-
-        //Store the rows.
-        List<Row> crossdataRows = new ArrayList<>();
-        Iterator<SimpleValue[]> rowIterator = results.iterator();
-        while(rowIterator.hasNext() && resultToAdd > 0){
-            crossdataRows.add(toCrossdataRow(rowIterator.next(), columnAlias));
-            resultToAdd--;
-        }
-
-        crossdataResults.setRows(crossdataRows);
-        return QueryResult.createQueryResult(
-                crossdataResults,
-                0,
-                true);
+        return columnMetadataList;
     }
 
     /**
-     * Transform the results into a crossdata row.
+     * Transform the results into a crossdata row. Rows with one value per alias contain the values in
+     * the order of the aliases; otherwise, values are matched by column name.
      * @param row The in-memory row.
      * @param columnAlias The list of column alias.
      * @return A {@link com.stratio.crossdata.common.data.Row}
@@ -327,61 +604,216 @@ public class InMemoryQueryEngine implements IQueryEngine {
     private Row toCrossdataRow(SimpleValue[] row, List<String> columnAlias) {
         Row result = new Row();
 
+        if(row.length == columnAlias.size()){
+            for(int index = 0; index < row.length; index++){
+                result.addCell(columnAlias.get(index), new Cell(row[index].getValue()));
+            }
+            return result;
+        }
+
         for (String alias:columnAlias){
+            SimpleValue selected = null;
             for(SimpleValue field: row){
-                if (alias.contains(field.getColumn().getName())){
-                    result.addCell(alias, new Cell(field.getValue()));
+                if (alias.equals(field.getColumn().getName())){
+                    selected = field;
                     break;
+                }else if (selected == null && alias.contains(field.getColumn().getName())){
+                    selected = field;
                 }
             }
+            if (selected != null){
+                result.addCell(alias, new Cell(selected.getValue()));
+            }
         }
         return result;
     }
 
+    /**
+     * Execute a workflow in the background, sending all the results at once to the handler. The
+     * query is queued in the executor of the connector and this method returns immediately; errors are
+     * reported to the handler. Workflows with a time window run as continuous queries until they are
+     * stopped, see {@link #startWindowQuery(String, LogicalWorkflow, Window, IResultHandler)}.
+     * @param queryId The query identifier.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param resultHandler The {@link com.stratio.crossdata.common.connector.IResultHandler}.
+     * @throws ConnectorException If the query cannot be queued.
+     */
     @Override
-    public void asyncExecute(String queryId, LogicalWorkflow workflow, IResultHandler resultHandler)
+    public void asyncExecute(final String queryId, final LogicalWorkflow workflow, final IResultHandler resultHandler)
             throws ConnectorException {
+        Window window = findWindow(workflow);
+        if(window != null){
+            startWindowQuery(queryId, workflow, window, resultHandler);
+            return;
+        }
+        final InMemoryDatastore datastore = getDatastore(workflow);
+        final ScanMetrics scanMetrics = startQuery(queryId, datastore);
+        submit(new AsyncQuery(queryId, resultHandler) {
+            @Override
+            protected void runQuery() throws ConnectorException {
+                QueryResult queryResult = execute(queryId, workflow, datastore, scanMetrics);
+                queryResult.setLastResultSet();
+                queryResult.setQueryId(queryId);
+                resultHandler.processResult(queryResult);
+            }
+        });
+    }
+
+    /**
+     * Find the {@link com.stratio.crossdata.common.logicalplan.Window} step of a workflow.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @return The step or null if the workflow has no window.
+     */
+    private Window findWindow(LogicalWorkflow workflow){
+        LogicalStep current = workflow.getLastStep();
+        while(current != null){
+            if(Window.class.isInstance(current)){
+                return Window.class.cast(current);
+            }
+            current = current.getFirstPrevious();
+        }
+        return null;
+    }
 
-        QueryResult queryResult = execute(workflow);
-        queryResult.setLastResultSet();
-        queryResult.setQueryId(queryId);
-        resultHandler.processResult(queryResult);
+    /**
+     * Start a continuous query over the rows inserted in a table. On each tick of the window, the rows
+     * inserted since the previous tick are filtered, projected, ordered and limited as in a regular
+     * query, and sent to the handler as a new page, which may be empty. Only the rows appended to the
+     * change log of the table are read, so the table is never scanned again. The query runs until it
+     * is stopped, and a failure is reported to the handler and stops it.
+     * @param queryId The query identifier.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param window The {@link com.stratio.crossdata.common.logicalplan.Window} step.
+     * @param resultHandler The {@link com.stratio.crossdata.common.connector.IResultHandler}.
+     * @throws ConnectorException If the window is not a time window, the workflow joins tables or
+     * aggregates rows, or a query with the same identifier is running.
+     */
+    private void startWindowQuery(String queryId, LogicalWorkflow workflow, Window window,
+            IResultHandler resultHandler) throws ConnectorException {
+        if(!WindowType.TEMPORAL.equals(window.getType()) || window.getDurationInMilliseconds() <= 0){
+            throw new UnsupportedException("Only time windows are supported, found " + window);
+        }
+        if(workflow.getInitialSteps().size() != 1){
+            throw new UnsupportedException("Window queries cannot join tables");
+        }
+        if(runningQueries.containsKey(queryId) || windowQueries.containsKey(queryId)){
+            throw new ExecutionException("Query " + queryId + " is already running");
+        }
+        InMemoryDatastore datastore = getDatastore(workflow);
+        Select selectStep = Select.class.cast(workflow.getLastStep());
+        InMemoryQuery inMemoryQuery = InMemoryQueryBuilder.instance().build(
+                (Project) workflow.getInitialSteps().get(0));
+        List<InMemorySelector> outputColumns = transformIntoSelectors(selectStep.getColumnMap().keySet());
+        inMemoryQuery.setOutputColumns(outputColumns);
+        OrderBy orderByStep = findOrderBy(workflow);
+        RowComparator comparator = null;
+        if(orderByStep != null){
+            comparator = buildRowComparator(orderByStep, getSelectorNames(outputColumns));
+        }
+
+        ContinuousQuery continuousQuery;
+        try {
+            continuousQuery = datastore.subscribe(inMemoryQuery.getCatalogName(), inMemoryQuery);
+        } catch (Exception e) {
+            throw new ExecutionException("Cannot start window query: " + e.getMessage(), e);
+        }
+        WindowQuery query = new WindowQuery(queryId, continuousQuery, selectStep, comparator,
+                getFinalLimit(workflow), resultHandler);
+        if(windowQueries.putIfAbsent(queryId, query) != null){
+            continuousQuery.close();
+            throw new ExecutionException("Query " + queryId + " is already running");
+        }
+        try {
+            query.schedule(window.getDurationInMilliseconds());
+        } catch (RejectedExecutionException e) {
+            throw new ExecutionException("Cannot start window query " + queryId + ": " + e.getMessage(), e);
+        }
+        LOG.info("Window query " + queryId + " started with a window of " + window);
     }
 
+    /**
+     * Execute a workflow in the background sending the results in pages. The query is queued in the
+     * executor of the connector and this method returns immediately. Rows are pulled from the operator
+     * pipeline and each page is sent to the handler as soon as it is complete, so only one page is kept
+     * in memory for queries that do not join or order the rows. No further page is sent once the query
+     * is stopped, and errors are reported to the handler.
+     * @param queryId The query identifier.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param resultHandler The {@link com.stratio.crossdata.common.connector.IResultHandler}.
+     * @param pageSize The maximum number of rows of each page.
+     * @throws ConnectorException If the query cannot be queued.
+     */
     @Override public void pagedExecute(
-            String queryId,
-            LogicalWorkflow workflow,
-            IResultHandler resultHandler,
-            int pageSize) throws ConnectorException {
-        QueryResult queryResult = execute(workflow);
-        ResultSet resultSet = queryResult.getResultSet();
-        List<Row> rows = resultSet.getRows();
-        int counter = 0;
-        int page = 0;
-        List<Row> partialRows = new ArrayList<>();
-        for(Row row: rows){
-            if(counter >= pageSize){
-                QueryResult partialQueryResult = buildPartialResult(
-                        partialRows,
-                        queryResult.getResultSet().getColumnMetadata(),
-                        queryId,
-                        page,
-                        false);
-                resultHandler.processResult(partialQueryResult);
-                counter = 0;
-                page++;
-                partialRows = new ArrayList<>();
+            final String queryId,
+            final LogicalWorkflow workflow,
+            final IResultHandler resultHandler,
+            final int pageSize) throws ConnectorException {
+        final InMemoryDatastore datastore = getDatastore(workflow);
+        final ScanMetrics scanMetrics = startQuery(queryId, datastore);
+        submit(new AsyncQuery(queryId, resultHandler) {
+            @Override
+            protected void runQuery() throws ConnectorException {
+                executePaged(queryId, workflow, datastore, scanMetrics, resultHandler, pageSize);
+            }
+        });
+    }
+
+    /**
+     * Execute a workflow sending the results in pages.
+     * @param queryId The query identifier.
+     * @param workflow The {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     * @param datastore The queried datastore.
+     * @param scanMetrics The metrics of the table scans of the query, which carry its cancellation state.
+     * @param resultHandler The {@link com.stratio.crossdata.common.connector.IResultHandler}.
+     * @param pageSize The maximum number of rows of each page.
+     * @throws ConnectorException If the workflow cannot be executed or the query is cancelled.
+     */
+    private void executePaged(String queryId, LogicalWorkflow workflow, InMemoryDatastore datastore,
+            ScanMetrics scanMetrics, IResultHandler resultHandler, int pageSize) throws ConnectorException {
+        Timer.Context executeTimerContext = executeTimer.time();
+
+        Select selectStep = Select.class.cast(workflow.getLastStep());
+        List<String> columnAlias = new ArrayList<>();
+        List<ColumnMetadata> columnMetadata = buildColumnMetadata(selectStep, columnAlias);
+
+        QueryCancellation cancellation = scanMetrics.getCancellation();
+        try {
+            Iterator<SimpleValue[]> rows = executeWorkflow(workflow, datastore, scanMetrics);
+            int page = 0;
+            List<Row> partialRows = new ArrayList<>();
+            while(rows.hasNext()){
+                cancellation.check(partialRows.size());
+                partialRows.add(toCrossdataRow(rows.next(), columnAlias));
+                if(partialRows.size() >= pageSize && rows.hasNext()){
+                    cancellation.check();
+                    resultHandler.processResult(buildPartialResult(partialRows, columnMetadata, queryId, page, false));
+                    page++;
+                    partialRows = new ArrayList<>();
+                }
             }
-            partialRows.add(row);
-            counter++;
+            cancellation.check();
+            resultHandler.processResult(buildPartialResult(partialRows, columnMetadata, queryId, page, true));
+        } catch (QueryCancelledException e) {
+            throw cancelled(queryId, e);
+        }
+        reportScanMetrics(scanMetrics);
+
+        long millis = executeTimerContext.stop();
+        LOG.info("Paged query took " + millis + " nanoseconds");
+    }
+
+    /**
+     * Queue a query in the executor of the connector.
+     * @param query The query.
+     * @throws ExecutionException If the queue of the executor is full.
+     */
+    private void submit(AsyncQuery query) throws ExecutionException {
+        try {
+            connector.getQueryExecutor().execute(query);
+        } catch (RejectedExecutionException e) {
+            finishQuery(query.queryId);
+            throw new ExecutionException("Cannot run query " + query.queryId + ": too many queries waiting", e);
         }
-        QueryResult partialQueryResult = buildPartialResult(
-                partialRows,
-                queryResult.getResultSet().getColumnMetadata(),
-                queryId,
-                page,
-                true);
-        resultHandler.processResult(partialQueryResult);
     }
 
     QueryResult buildPartialResult(List<Row> partialRows, List<ColumnMetadata> columnsMetadata, String queryId,
@@ -394,9 +826,239 @@ public class InMemoryQueryEngine implements IQueryEngine {
         return partialQueryResult;
     }
 
+    /**
+     * Stop a running query. The query stops as soon as its operators check its cancellation state,
+     * and the caller that started it receives an execution error. Window queries send no further pages.
+     * @param queryId The query identifier.
+     * @throws ConnectorException If the query is not running.
+     */
     @Override
     public void stop(String queryId) throws ConnectorException {
-        throw new UnsupportedException("Stopping running queries is not supported");
+        WindowQuery windowQuery = windowQueries.get(queryId);
+        if(windowQuery != null){
+            windowQuery.stop();
+            LOG.info("Stopping window query " + queryId);
+            return;
+        }
+        QueryCancellation cancellation = runningQueries.get(queryId);
+        if(cancellation == null){
+            throw new ExecutionException("Query " + queryId + " is not running");
+        }
+        cancellation.cancel("stopped on request");
+        LOG.info("Stopping query " + queryId);
+    }
+
+    /**
+     * Stop every running query.
+     * @param reason The reason of the cancellation.
+     */
+    void stopAll(String reason){
+        for(QueryCancellation cancellation : runningQueries.values()){
+            cancellation.cancel(reason);
+        }
+        for(WindowQuery windowQuery : windowQueries.values()){
+            windowQuery.stop();
+        }
+    }
+
+    /**
+     * Query run by the executor of the connector. The query is unregistered when it finishes, and
+     * any error is reported to its result handler.
+     */
+    private abstract class AsyncQuery implements Runnable {
+
+        /**
+         * The query identifier.
+         */
+        private final String queryId;
+
+        /**
+         * The handler of the results.
+         */
+        private final IResultHandler resultHandler;
+
+        /**
+         * Class constructor.
+         * @param queryId The query identifier.
+         * @param resultHandler The handler of the results.
+         */
+        AsyncQuery(String queryId, IResultHandler resultHandler){
+            this.queryId = queryId;
+            this.resultHandler = resultHandler;
+        }
+
+        /**
+         * Execute the query sending its results to the handler.
+         * @throws ConnectorException If the query fails.
+         */
+        protected abstract void runQuery() throws ConnectorException;
+
+        @Override
+        public void run() {
+            try {
+                runQuery();
+            } catch (ExecutionException e) {
+                reportError(e);
+            } catch (ConnectorException | RuntimeException e) {
+                reportError(new ExecutionException("Cannot perform execute operation: " + e.getMessage(), e));
+            } finally {
+                finishQuery(queryId);
+            }
+        }
+
+        /**
+         * Report the failure of the query to its result handler.
+         * @param e The error.
+         */
+        private void reportError(ExecutionException e){
+            LOG.error("Query " + queryId + " failed: " + e.getMessage(), e);
+            resultHandler.processException(queryId, e);
+        }
+    }
+
+    /**
+     * Continuous query whose ticks are scheduled in the window executor of the connector.
+     */
+    private final class WindowQuery implements Runnable {
+
+        /**
+         * The query identifier.
+         */
+        private final String queryId;
+
+        /**
+         * The query over the rows appended to the table.
+         */
+        private final ContinuousQuery continuousQuery;
+
+        /**
+         * The alias of each column.
+         */
+        private final List<String> columnAlias = new ArrayList<>();
+
+        /**
+         * The metadata of the columns.
+         */
+        private final List<ColumnMetadata> columnMetadata;
+
+        /**
+         * The comparator of the rows of each page, or null.
+         */
+        private final RowComparator comparator;
+
+        /**
+         * The maximum number of rows of each page, or -1.
+         */
+        private final int limit;
+
+        /**
+         * The handler of the results.
+         */
+        private final IResultHandler resultHandler;
+
+        /**
+         * Number of the next page.
+         */
+        private int page = 0;
+
+        /**
+         * The scheduled ticks, or null if they are not scheduled yet.
+         */
+        private ScheduledFuture<?> future;
+
+        /**
+         * Whether the query has been stopped. Guarded by the query, like {@link #future}, so a stop that
+         * arrives before the ticks are scheduled prevents their scheduling.
+         */
+        private boolean stopped = false;
+
+        /**
+         * Class constructor.
+         * @param queryId The query identifier.
+         * @param continuousQuery The query over the rows appended to the table.
+         * @param selectStep The {@link com.stratio.crossdata.common.logicalplan.Select} step.
+         * @param comparator The comparator of the rows of each page, or null.
+         * @param limit The maximum number of rows of each page, or -1.
+         * @param resultHandler The handler of the results.
+         */
+        WindowQuery(String queryId, ContinuousQuery continuousQuery, Select selectStep, RowComparator comparator,
+                int limit, IResultHandler resultHandler){
+            this.queryId = queryId;
+            this.continuousQuery = continuousQuery;
+            this.columnMetadata = buildColumnMetadata(selectStep, columnAlias);
+            this.comparator = comparator;
+            this.limit = limit;
+            this.resultHandler = resultHandler;
+        }
+
+        /**
+         * Schedule the ticks of the query in the window executor of the connector. A query that cannot be
+         * scheduled is stopped.
+         * @param period The period of the ticks in milliseconds.
+         * @throws RejectedExecutionException If the executor rejects the ticks.
+         */
+        synchronized void schedule(long period){
+            if(stopped){
+                return;
+            }
+            try {
+                future = connector.getWindowExecutor().scheduleAtFixedRate(this, period, period,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                stop();
+                throw e;
+            }
+        }
+
+        /**
+         * Check whether the query has been stopped.
+         * @return Whether it is stopped.
+         */
+        private synchronized boolean isStopped(){
+            return stopped;
+        }
+
+        @Override
+        public void run() {
+            if(isStopped()){
+                return;
+            }
+            try {
+                ScanMetrics scanMetrics = new ScanMetrics();
+                List<SimpleValue[]> rows = continuousQuery.poll(scanMetrics);
+                if(comparator != null){
+                    rows = ParallelSort.sort(rows.iterator(), comparator, limit, connector.getForkJoinPool(), null);
+                }else if(limit != -1 && rows.size() > limit){
+                    rows = rows.subList(0, limit);
+                }
+                List<Row> crossdataRows = new ArrayList<>(rows.size());
+                for(SimpleValue[] row : rows){
+                    crossdataRows.add(toCrossdataRow(row, columnAlias));
+                }
+                reportScanMetrics(scanMetrics);
+                resultHandler.processResult(buildPartialResult(crossdataRows, columnMetadata, queryId, page++, false));
+            } catch (Exception e) {
+                stop();
+                LOG.error("Window query " + queryId + " failed: " + e.getMessage(), e);
+                resultHandler.processException(queryId,
+                        new ExecutionException("Cannot perform execute operation: " + e.getMessage(), e));
+            }
+        }
+
+        /**
+         * Cancel the next ticks and unsubscribe from the table. Stopping a stopped query has no effect.
+         */
+        synchronized void stop(){
+            if(stopped){
+                return;
+            }
+            stopped = true;
+            windowQueries.remove(queryId, this);
+            if(future != null){
+                future.cancel(false);
+            }
+            continuousQuery.close();
+        }
     }
 
 }
@@ -18,11 +18,17 @@
 
 package com.stratio.connector.inmemory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
 import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
 import com.stratio.crossdata.common.connector.IStorageEngine;
 import com.stratio.crossdata.common.data.Cell;
 import com.stratio.crossdata.common.data.ClusterName;
@@ -30,7 +36,6 @@ import com.stratio.crossdata.common.data.Row;
 import com.stratio.crossdata.common.data.TableName;
 import com.stratio.crossdata.common.exceptions.ConnectorException;
 import com.stratio.crossdata.common.exceptions.ExecutionException;
-import com.stratio.crossdata.common.exceptions.UnsupportedException;
 import com.stratio.crossdata.common.logicalplan.Filter;
 import com.stratio.crossdata.common.metadata.TableMetadata;
 import com.stratio.crossdata.common.statements.structures.Relation;
@@ -78,21 +83,64 @@ public class InMemoryStorageEngine implements IStorageEngine{
     @Override
     public void insert(ClusterName targetCluster, TableMetadata targetTable, Collection<Row> rows, boolean ifNotExists)
             throws ConnectorException {
-        for(Row r : rows){
-            insert(targetCluster, targetTable, r, ifNotExists);
+        InMemoryDatastore datastore = connector.getDatastore(targetCluster);
+        if(datastore == null){
+            throw new ExecutionException("No datastore connected to " + targetCluster);
+        }
+        Set<String> columnNames = new LinkedHashSet<>();
+        for(Row row : rows){
+            columnNames.addAll(row.getCells().keySet());
+        }
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(new ArrayList<>(columnNames), rows.size());
+        Object [] values = new Object[columnNames.size()];
+        for(Row row : rows){
+            int index = 0;
+            for(String columnName : columnNames){
+                Cell cell = row.getCell(columnName);
+                values[index] = cell == null ? null : cell.getValue();
+                index++;
+            }
+            batch.addRow(values);
+        }
+        try {
+            datastore.insert(targetTable.getName().getCatalogName().getQualifiedName(),
+                    targetTable.getName().getName(), batch);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
         }
     }
 
     @Override
     public void delete(ClusterName targetCluster, TableName tableName, Collection<Filter> whereClauses)
             throws ConnectorException {
-        throw new UnsupportedException("Deleting table rows is not supported.");
+        InMemoryDatastore datastore = connector.getDatastore(targetCluster);
+        if(datastore == null){
+            throw new ExecutionException("No datastore connected to " + targetCluster);
+        }
+        List<InMemoryRelation> relations = InMemoryQueryBuilder.instance().toInMemoryRelations(whereClauses);
+        try {
+            datastore.delete(tableName.getCatalogName().getQualifiedName(), tableName.getName(), relations);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
     }
 
     @Override
     public void update(ClusterName targetCluster, TableName tableName, Collection<Relation> assignments,
             Collection<Filter> whereClauses) throws ConnectorException {
-        throw new UnsupportedException("Updating table rows is not supported.");
+        InMemoryDatastore datastore = connector.getDatastore(targetCluster);
+        if(datastore == null){
+            throw new ExecutionException("No datastore connected to " + targetCluster);
+        }
+        InMemoryQueryBuilder builder = InMemoryQueryBuilder.instance();
+        List<InMemoryRelation> relations = builder.toInMemoryRelations(whereClauses);
+        Map<String, Object> values = builder.toAssignments(assignments);
+        try {
+            datastore.update(tableName.getCatalogName().getQualifiedName(), tableName.getName(), relations,
+                    values);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
     }
 
     @Override
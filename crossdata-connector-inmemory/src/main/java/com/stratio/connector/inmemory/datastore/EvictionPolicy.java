@@ -0,0 +1,42 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+/**
+ * Policy applied when an insert exceeds the maximum number of rows of a table.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * The insert fails.
+     */
+    NONE,
+
+    /**
+     * The oldest rows are removed first.
+     */
+    FIFO,
+
+    /**
+     * The rows not read recently are removed first. Recency is approximated with one reference mark per
+     * row, set when a query matches the row and cleared as a clock hand sweeps the rows looking for a
+     * row to evict.
+     */
+    LRU
+}
@@ -18,18 +18,30 @@
 
 package com.stratio.connector.inmemory.datastore;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
 
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.memory.MemoryBudget;
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+import com.stratio.connector.inmemory.datastore.views.MaterializedView;
 
 /**
- * Catalog abstraction containing a set of tables.
+ * Catalog abstraction containing a set of tables. Tables may store materialized views of other tables
+ * of the catalog, which are maintained as their base tables change.
  */
 public class InMemoryCatalog {
 
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = Logger.getLogger(InMemoryCatalog.class);
+
     /**
      * Catalog name.
      */
@@ -38,7 +50,12 @@ public class InMemoryCatalog {
     /**
      * Map of tables contained in a catalog.
      */
-    private final Map<String, InMemoryTable> tables = new HashMap<>();
+    private final Map<String, InMemoryTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Map associating the name of the tables that store materialized views with their view.
+     */
+    private final Map<String, MaterializedView> views = new ConcurrentHashMap<>();
 
     /**
      * Class constructor.
@@ -56,6 +73,10 @@ public class InMemoryCatalog {
         return tables;
     }
 
+    public Map<String, MaterializedView> getViews() {
+        return views;
+    }
+
     /**
      * Create a new table.
      * @param tableName The name of the table.
@@ -66,8 +87,56 @@ public class InMemoryCatalog {
      */
     public void createTable(String tableName, String[] columnNames, Class[] columnTypes, List<String> primaryKey,
             int maxRows) {
-        InMemoryTable table = new InMemoryTable(tableName, columnNames, columnTypes, primaryKey, maxRows);
-        tables.put(tableName, table);
+        createTable(tableName, columnNames, columnTypes, primaryKey, maxRows, MemoryBudget.unlimited(tableName),
+                false, TableOptions.DEFAULT);
+    }
+
+    /**
+     * Create a new table. If the options define a materialized view, the view is computed if its base
+     * table exists; otherwise it remains stale until it is refreshed.
+     * @param tableName The name of the table.
+     * @param columnNames The column names.
+     * @param columnTypes The column types.
+     * @param primaryKey The list of columns in the primary key.
+     * @param maxRows The maximum number of rows per table.
+     * @param memoryBudget The memory budget of the table.
+     * @param offHeap Whether fixed-width columns are stored off-heap.
+     * @param options The table options, which must have been validated for the columns.
+     */
+    public void createTable(String tableName, String[] columnNames, Class[] columnTypes, List<String> primaryKey,
+            int maxRows, MemoryBudget memoryBudget, boolean offHeap, TableOptions options) {
+        InMemoryTable table = new InMemoryTable(tableName, columnNames, columnTypes, primaryKey, maxRows,
+                memoryBudget, offHeap, options);
+        InMemoryTable previous = tables.put(tableName, table);
+        if(previous != null){
+            previous.releaseMemory();
+        }
+        views.remove(tableName);
+        if(options.getView() != null){
+            MaterializedView view = new MaterializedView(tableName, options.getView(), options.getRefreshInterval());
+            views.put(tableName, view);
+            InMemoryTable base = tables.get(options.getView().getBaseTable());
+            if(base != null){
+                refresh(view, base, table);
+            }
+        }
+    }
+
+    /**
+     * Recompute a materialized view, leaving it stale if the query cannot be evaluated.
+     * @param view The view.
+     * @param base The base table.
+     * @param table The table of the view.
+     * @return Whether the view was refreshed.
+     */
+    private boolean refresh(MaterializedView view, InMemoryTable base, InMemoryTable table){
+        try {
+            view.refresh(base, table);
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Cannot refresh materialized view " + view.getName(), e);
+            return false;
+        }
     }
 
     /**
@@ -79,24 +148,42 @@ public class InMemoryCatalog {
     }
 
     /**
-     * Check that a table exists.
+     * Drop a table from the current catalog.
      * @param tableName The name of the table.
      * @throws Exception If the table does not exist.
      */
-    private void tableShouldExists(String tableName) throws Exception{
-        if(!tables.containsKey(tableName)){
+    public void dropTable(String tableName) throws Exception {
+        InMemoryTable table = tables.remove(tableName);
+        if(table == null){
             throw new Exception("Table " + tableName + " does not exist in the selected catalog");
         }
+        views.remove(tableName);
+        table.releaseMemory();
     }
 
     /**
-     * Drop a table from the current catalog.
-     * @param tableName The name of the table.
-     * @throws Exception If the table does not exist.
+     * Get the materialized views computed from a table.
+     * @param tableName The name of the base table.
+     * @return The list of views.
      */
-    public void dropTable(String tableName) throws Exception {
-        tableShouldExists(tableName);
-        tables.remove(tableName);
+    public List<MaterializedView> getDependentViews(String tableName){
+        List<MaterializedView> result = new ArrayList<>();
+        for(MaterializedView view : views.values()){
+            if(view.getDefinition().getBaseTable().equals(tableName)){
+                result.add(view);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mark the materialized views of a table as stale.
+     * @param tableName The name of the base table.
+     */
+    private void invalidateViews(String tableName){
+        for(MaterializedView view : getDependentViews(tableName)){
+            view.markStale();
+        }
     }
 
     /**
@@ -106,8 +193,73 @@ public class InMemoryCatalog {
      * @throws Exception If the insertion fails.
      */
     public void insert(String tableName, Map<String, Object> row) throws Exception {
-        tableShouldExists(tableName);
-        tables.get(tableName).insert(row);
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(new ArrayList<>(row.keySet()), 1);
+        batch.addRow(row.values().toArray());
+        insert(tableName, batch);
+    }
+
+    /**
+     * Insert a batch of rows in a table. The rows appended are applied to the materialized views of the
+     * table before other writes to the table proceed.
+     * @param tableName The name of the table.
+     * @param batch The rows to be inserted.
+     * @throws Exception If the insertion fails.
+     */
+    public void insert(String tableName, InMemoryColumnBatch batch) throws Exception {
+        InMemoryTable table = getTable(tableName);
+        List<MaterializedView> dependents = getDependentViews(tableName);
+        if(dependents.isEmpty()){
+            table.insert(batch);
+            return;
+        }
+        synchronized (table) {
+            TableSnapshot before = table.snapshot();
+            try {
+                table.insert(batch);
+            } catch (Exception e) {
+                invalidateViews(tableName);
+                throw e;
+            }
+            TableSnapshot after = table.snapshot();
+            for(MaterializedView view : dependents){
+                InMemoryTable viewTable = tables.get(view.getName());
+                if(viewTable == null){
+                    view.markStale();
+                }else{
+                    view.applyInsert(before, after, batch.size(), viewTable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the rows of a table with a set of primary keys.
+     * @param tableName The name of the table.
+     * @param keys The primary keys of the rows.
+     * @return The number of rows deleted.
+     * @throws Exception If the deletion fails.
+     */
+    public int delete(String tableName, InMemoryColumnBatch keys) throws Exception {
+        int deleted = getTable(tableName).delete(keys);
+        if(deleted > 0){
+            invalidateViews(tableName);
+        }
+        return deleted;
+    }
+
+    /**
+     * Write new versions of existing rows of a table.
+     * @param tableName The name of the table.
+     * @param rows The new values of the rows.
+     * @return The number of rows updated.
+     * @throws Exception If the update fails.
+     */
+    public int update(String tableName, InMemoryColumnBatch rows) throws Exception {
+        int updated = getTable(tableName).update(rows);
+        if(updated > 0){
+            invalidateViews(tableName);
+        }
+        return updated;
     }
 
     /**
@@ -116,8 +268,8 @@ public class InMemoryCatalog {
      * @throws Exception If the table cannot be truncated.
      */
     public void truncate(String tableName) throws Exception{
-        tableShouldExists(tableName);
-        tables.get(tableName).truncate();
+        getTable(tableName).truncate();
+        invalidateViews(tableName);
     }
 
     /**
@@ -130,8 +282,65 @@ public class InMemoryCatalog {
      */
     public List<SimpleValue[]> search(String tableName, List<InMemoryRelation> relations,
             List<InMemorySelector> columnOrder) throws Exception {
-        tableShouldExists(tableName);
-        return tables.get(tableName).fullScanSearch(relations, columnOrder);
+        return getTable(tableName).search(relations, columnOrder);
+    }
+
+    /**
+     * Refresh the materialized views that are stale, or whose refresh interval has elapsed.
+     * @param now The current time in milliseconds.
+     * @return The number of views refreshed.
+     */
+    public int refreshViews(long now){
+        int refreshed = 0;
+        for(MaterializedView view : views.values()){
+            InMemoryTable base = tables.get(view.getDefinition().getBaseTable());
+            InMemoryTable table = tables.get(view.getName());
+            if(base != null && table != null && view.needsRefresh(now) && refresh(view, base, table)){
+                refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * Rewrite a query to read a fresh materialized view that can answer it.
+     * @param query The query.
+     * @return The query over the view, or the original query if no view can answer it.
+     */
+    public InMemoryQuery rewrite(InMemoryQuery query){
+        for(MaterializedView view : getDependentViews(query.getTableName())){
+            InMemoryTable table = tables.get(view.getName());
+            if(table != null && view.isFresh()){
+                InMemoryQuery rewritten = view.getDefinition().rewrite(query, view.getName(), table.getColumnNames());
+                if(rewritten != null){
+                    return rewritten;
+                }
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Create a secondary index over a column of a table.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param columnName The name of the indexed column.
+     * @param type The type of index.
+     * @throws Exception If the index cannot be created.
+     */
+    public void createIndex(String tableName, String indexName, String columnName, InMemoryIndexType type)
+            throws Exception {
+        getTable(tableName).createIndex(indexName, columnName, type);
+    }
+
+    /**
+     * Drop a secondary index of a table.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @throws Exception If the index cannot be dropped.
+     */
+    public void dropIndex(String tableName, String indexName) throws Exception {
+        getTable(tableName).dropIndex(indexName);
     }
 
     /**
@@ -142,7 +351,10 @@ public class InMemoryCatalog {
      */
     //TODO: Change this method to return InMemoryTableMetadata.
     public InMemoryTable getTable(String tableName) throws Exception {
-        tableShouldExists(tableName);
-        return tables.get(tableName);
+        InMemoryTable table = tables.get(tableName);
+        if(table == null){
+            throw new Exception("Table " + tableName + " does not exist in the selected catalog");
+        }
+        return table;
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of rows to be inserted in a table, stored by column. All the rows of a batch share the same
+ * columns; the columns not included in the batch are inserted as null values.
+ */
+public class InMemoryColumnBatch {
+
+    /**
+     * Name of the columns of the batch.
+     */
+    private final List<String> columnNames;
+
+    /**
+     * Values of each column indexed by column position and row.
+     */
+    private final Object [][] values;
+
+    /**
+     * Number of rows in the batch.
+     */
+    private int numRows = 0;
+
+    /**
+     * Time each row was written in milliseconds, or null if the rows are written when they are inserted.
+     */
+    private long [] writeTimes = null;
+
+    /**
+     * Class constructor.
+     * @param columnNames The name of the columns of the batch.
+     * @param capacity The expected number of rows.
+     */
+    public InMemoryColumnBatch(List<String> columnNames, int capacity){
+        this.columnNames = new ArrayList<>(columnNames);
+        this.values = new Object[columnNames.size()][Math.max(capacity, 1)];
+    }
+
+    /**
+     * Class constructor of a batch whose values are already stored by column.
+     * @param columnNames The name of the columns of the batch.
+     * @param values The values of each column indexed by column position and row.
+     * @param numRows The number of rows in the batch.
+     */
+    public InMemoryColumnBatch(List<String> columnNames, Object[][] values, int numRows){
+        if(values.length != columnNames.size()){
+            throw new IllegalArgumentException("Expecting " + columnNames.size() + " columns, found " + values.length);
+        }
+        this.columnNames = new ArrayList<>(columnNames);
+        this.values = values;
+        this.numRows = numRows;
+    }
+
+    /**
+     * Get the name of the columns of the batch.
+     * @return The list of column names.
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Get the number of rows in the batch.
+     * @return The number of rows.
+     */
+    public int size(){
+        return numRows;
+    }
+
+    /**
+     * Add a row to the batch.
+     * @param rowValues The values of the row in the order of the batch columns.
+     */
+    public void addRow(Object... rowValues){
+        if(rowValues.length != values.length){
+            throw new IllegalArgumentException("Expecting " + values.length + " values, found " + rowValues.length);
+        }
+        for(int column = 0; column < values.length; column++){
+            if(numRows == values[column].length){
+                values[column] = Arrays.copyOf(values[column], numRows + (numRows >> 1) + 1);
+            }
+            values[column][numRows] = rowValues[column];
+        }
+        numRows++;
+    }
+
+    /**
+     * Get the time each row was written, which is kept by the tables whose rows expire.
+     * @return The times in milliseconds, or null if the rows are written when they are inserted.
+     */
+    public long[] getWriteTimes() {
+        return writeTimes;
+    }
+
+    /**
+     * Set the time each row was written, so that recovered rows keep their original time to live.
+     * @param writeTimes The times in milliseconds, or null if the rows are written when they are inserted.
+     */
+    public void setWriteTimes(long[] writeTimes) {
+        this.writeTimes = writeTimes;
+    }
+
+    /**
+     * Get a batch with the rows of this one written at a given time. The values are shared.
+     * @param writeTime The time in milliseconds.
+     * @return A new {@link InMemoryColumnBatch}.
+     */
+    public InMemoryColumnBatch withWriteTime(long writeTime){
+        InMemoryColumnBatch result = new InMemoryColumnBatch(columnNames, values, numRows);
+        result.writeTimes = new long[numRows];
+        Arrays.fill(result.writeTimes, writeTime);
+        return result;
+    }
+
+    /**
+     * Get the values of a column.
+     * @param column The position of the column in the batch.
+     * @return An array whose first {@link #size()} positions contain the column values.
+     */
+    public Object[] getValues(int column){
+        return values[column];
+    }
+}
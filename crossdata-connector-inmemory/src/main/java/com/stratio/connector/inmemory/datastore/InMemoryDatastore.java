@@ -18,18 +18,42 @@
 
 package com.stratio.connector.inmemory.datastore;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.stratio.connector.inmemory.datastore.aggregations.HashAggregation;
+import com.stratio.connector.inmemory.datastore.changes.ContinuousQuery;
+import com.stratio.connector.inmemory.datastore.datatypes.JoinKey;
 import com.stratio.connector.inmemory.datastore.datatypes.JoinValue;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
-import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.indexes.RowList;
+import com.stratio.connector.inmemory.datastore.memory.MemoryBudget;
+import com.stratio.connector.inmemory.datastore.memory.MemorySettings;
+import com.stratio.connector.inmemory.datastore.persistence.DatastorePersistence;
+import com.stratio.connector.inmemory.datastore.persistence.LogRecord;
+import com.stratio.connector.inmemory.datastore.persistence.PersistenceSettings;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancellation;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancelledException;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
+import com.stratio.connector.inmemory.datastore.sort.ParallelSort;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryJoinSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+import com.stratio.connector.inmemory.datastore.views.MaterializedView;
+import com.stratio.crossdata.common.data.JoinType;
 import org.apache.log4j.Logger;
 
-import com.stratio.connector.inmemory.datastore.structures.AbstractInMemoryFunction;
-
 
 /**
  * This class provides a proof-of-concept implementation of an in-memory datastore for
@@ -37,6 +61,11 @@ import com.stratio.connector.inmemory.datastore.structures.AbstractInMemoryFunct
  */
 public class InMemoryDatastore {
 
+    /**
+     * Number of rows examined in each batch of the background expiration of a table.
+     */
+    public static final int EXPIRY_BATCH_SIZE = 4096;
+
     /**
      * Maximum number of rows per table.
      */
@@ -45,46 +74,240 @@ public class InMemoryDatastore {
     /**
      * Map of catalogs in the datastore.
      */
-    private final Map<String, InMemoryCatalog> catalogs = new HashMap<>();
+    private final Map<String, InMemoryCatalog> catalogs = new ConcurrentHashMap<>();
 
     /**
      * Class logger.
      */
     private static final Logger LOG = Logger.getLogger(InMemoryDatastore.class);
 
+    /**
+     * Scanner used to read the tables.
+     */
+    private SegmentScanner scanner = SegmentScanner.sequential();
+
+    /**
+     * Time limit of the queries in milliseconds, or 0 if queries have no deadline.
+     */
+    private volatile long queryTimeout = 0;
+
+    /**
+     * Persistence of the datastore, or null if it is not persisted.
+     */
+    private DatastorePersistence persistence = null;
+
+    /**
+     * Memory settings of the datastore.
+     */
+    private final MemorySettings memorySettings;
+
+    /**
+     * Memory budget shared by the tables of the datastore.
+     */
+    private final MemoryBudget memoryBudget;
+
     /**
      * Class constructor.
      * @param tableRowLimit The maximum number of rows per table.
      */
     public InMemoryDatastore(int tableRowLimit){
+        this(tableRowLimit, MemorySettings.UNLIMITED);
+    }
+
+    /**
+     * Class constructor.
+     * @param tableRowLimit The maximum number of rows per table.
+     * @param memorySettings The memory limits and storage of the datastore.
+     */
+    public InMemoryDatastore(int tableRowLimit, MemorySettings memorySettings){
         this.tableRowLimit = tableRowLimit;
-        LOG.info("InMemoryDatastore created with row limit: " + this.tableRowLimit);
+        this.memorySettings = memorySettings;
+        this.memoryBudget = new MemoryBudget("datastore", memorySettings.getMemoryLimit(), null);
+        LOG.info("InMemoryDatastore created with row limit: " + this.tableRowLimit + ", memory limit: "
+                + memorySettings.getMemoryLimit() + ", table memory limit: " + memorySettings.getTableMemoryLimit()
+                + ", off-heap storage: " + memorySettings.isOffHeap());
     }
 
     public Map<String, InMemoryCatalog> getCatalogs() {
         return catalogs;
     }
 
+    /**
+     * Get the memory budget shared by the tables of the datastore.
+     * @return A {@link MemoryBudget}.
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the number of bytes of the tables stored outside of the Java heap.
+     * @return The number of bytes.
+     */
+    public long getOffHeapUsage(){
+        long usage = 0;
+        for(InMemoryCatalog catalog : catalogs.values()){
+            for(InMemoryTable table : catalog.getTables().values()){
+                usage += table.getOffHeapUsage();
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Get the number of rows removed by the eviction policies of the existing tables.
+     * @return The number of rows.
+     */
+    public long getEvictedRows(){
+        long rows = 0;
+        for(InMemoryCatalog catalog : catalogs.values()){
+            for(InMemoryTable table : catalog.getTables().values()){
+                rows += table.getEvictedRows();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Get the number of expired rows removed from the existing tables.
+     * @return The number of rows.
+     */
+    public long getExpiredRows(){
+        long rows = 0;
+        for(InMemoryCatalog catalog : catalogs.values()){
+            for(InMemoryTable table : catalog.getTables().values()){
+                rows += table.getExpiredRows();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Remove the expired rows of every table. Each table is processed in batches of rows, and the table
+     * is released between batches so that the writers are not blocked.
+     * @param batchSize The number of rows examined in each batch.
+     */
+    public void expireRows(int batchSize){
+        for(InMemoryCatalog catalog : catalogs.values()){
+            for(InMemoryTable table : catalog.getTables().values()){
+                while(table.expire(batchSize) == batchSize){
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * Compact the tables whose replaced and deleted rows exceed {@link InMemoryTable#COMPACTION_DENSITY}
+     * of their storage.
+     * @return The number of tables compacted.
+     */
+    public int compactTables(){
+        int compacted = 0;
+        for(InMemoryCatalog catalog : catalogs.values()){
+            for(InMemoryTable table : catalog.getTables().values()){
+                if(table.compactDeleted()){
+                    compacted++;
+                }
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Refresh the materialized views that are stale, or whose refresh interval has elapsed.
+     * @return The number of views refreshed.
+     */
+    public int refreshViews(){
+        long now = System.currentTimeMillis();
+        int refreshed = 0;
+        for(InMemoryCatalog catalog : catalogs.values()){
+            refreshed += catalog.refreshViews(now);
+        }
+        return refreshed;
+    }
+
+    /**
+     * Set the scanner used to read the tables.
+     * @param scanner The {@link com.stratio.connector.inmemory.datastore.scan.SegmentScanner}.
+     */
+    public void setScanner(SegmentScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Get the time limit of the queries.
+     * @return The time limit in milliseconds, or 0 if queries have no deadline.
+     */
+    public long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Set the time limit of the queries. Queries running longer are cancelled.
+     * @param queryTimeout The time limit in milliseconds, or 0 to disable the deadline.
+     * @throws Exception If the time limit is negative.
+     */
+    public void setQueryTimeout(long queryTimeout) throws Exception {
+        if(queryTimeout < 0){
+            throw new Exception("Invalid query timeout: " + queryTimeout);
+        }
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Recover the datastore from a persistence directory and log every later operation in it.
+     * @param settings The durability settings.
+     * @throws Exception If the datastore cannot be recovered.
+     */
+    public void enablePersistence(PersistenceSettings settings) throws Exception {
+        if(persistence != null){
+            throw new Exception("Persistence is already enabled");
+        }
+        persistence = DatastorePersistence.open(this, settings);
+    }
+
+    /**
+     * Get the persistence of the datastore.
+     * @return The {@link DatastorePersistence}, or null if the datastore is not persisted.
+     */
+    public DatastorePersistence getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Release the resources of the datastore, flushing its log if it is persisted.
+     * @throws Exception If the log cannot be flushed.
+     */
+    public void close() throws Exception {
+        if(persistence != null){
+            persistence.close();
+        }
+    }
+
     /**
      * Create a catalog in the in memory datastore.
      * @param name The name of the catalog.
      * @return The resulting {@link com.stratio.connector.inmemory.datastore.InMemoryCatalog}.
+     * @throws Exception If the operation cannot be logged.
      */
-    public InMemoryCatalog createCatalog(String name){
-        InMemoryCatalog catalog = new InMemoryCatalog(name);
-        catalogs.put(name, catalog);
-        return catalog;
+    public InMemoryCatalog createCatalog(String name) throws Exception {
+        write(LogRecord.createCatalog(name));
+        return catalogs.get(name);
     }
 
     /**
-     * Check that the catalog exists on the system.
+     * Get a catalog that exists on the system.
      * @param catalogName The name of the catalog.
+     * @return The {@link com.stratio.connector.inmemory.datastore.InMemoryCatalog}.
      * @throws Exception If the catalog is not found.
      */
-    private void catalogShouldExist(String catalogName) throws Exception{
-        if(!catalogs.containsKey(catalogName)){
+    private InMemoryCatalog getCatalog(String catalogName) throws Exception{
+        InMemoryCatalog catalog = catalogs.get(catalogName);
+        if(catalog == null){
             throw new Exception("Catalog " + catalogName + " does not exist");
         }
+        return catalog;
     }
 
     /**
@@ -98,8 +321,33 @@ public class InMemoryDatastore {
      */
     public void createTable(String catalogName, String tableName, String[] columnNames, Class[] columnTypes,
             List<String> primaryKey) throws Exception{
-        catalogShouldExist(catalogName);
-        catalogs.get(catalogName).createTable(tableName, columnNames, columnTypes, primaryKey, tableRowLimit);
+        createTable(catalogName, tableName, columnNames, columnTypes, primaryKey, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Create a new table with a set of options, see {@link TableOptions}. Tables that store a materialized
+     * view require their base table to exist in the same catalog.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param columnNames The name of the columns.
+     * @param columnTypes The types of the table columns.
+     * @param primaryKey The list of column names that belong to the primary key.
+     * @param options The table options.
+     * @throws Exception If the options are not valid or the table cannot be created.
+     */
+    public void createTable(String catalogName, String tableName, String[] columnNames, Class[] columnTypes,
+            List<String> primaryKey, Map<String, String> options) throws Exception{
+        TableOptions tableOptions = TableOptions.fromOptions(options);
+        tableOptions.validate(columnNames, columnTypes);
+        if(tableOptions.getView() != null){
+            InMemoryCatalog catalog = getCatalog(catalogName);
+            String baseTable = tableOptions.getView().getBaseTable();
+            if(baseTable.equals(tableName) || catalog.getViews().containsKey(baseTable)){
+                throw new Exception("Materialized view " + tableName + " must read a table that is not a view");
+            }
+            MaterializedView.validate(tableOptions.getView(), catalog.getTable(baseTable), columnNames, primaryKey);
+        }
+        write(LogRecord.createTable(catalogName, tableName, columnNames, columnTypes, primaryKey, options));
     }
 
     /**
@@ -108,21 +356,22 @@ public class InMemoryDatastore {
      * @throws Exception If the catalog does not exist or it still have tables in it.
      */
     public void dropCatalog(String catalogName) throws Exception{
-        catalogShouldExist(catalogName);
-        if(catalogs.get(catalogName).getNumberTables() > 0){
-            throw new Exception("Cannot delete non-empty catalogs.");
-        }
+        write(LogRecord.dropCatalog(catalogName));
     }
 
     /**
      * Drop an existing table.
      * @param catalogName The name of the catalog.
      * @param tableName The name of the table.
-     * @throws Exception If the table does not exist.
+     * @throws Exception If the table does not exist or a materialized view depends on it.
      */
     public void dropTable(String catalogName, String tableName) throws Exception{
-        catalogShouldExist(catalogName);
-        catalogs.get(catalogName).dropTable(tableName);
+        List<MaterializedView> dependents = getCatalog(catalogName).getDependentViews(tableName);
+        if(!dependents.isEmpty()){
+            throw new Exception("Table " + tableName + " cannot be dropped, materialized view "
+                    + dependents.get(0).getName() + " depends on it");
+        }
+        write(LogRecord.dropTable(catalogName, tableName));
     }
 
     /**
@@ -133,8 +382,60 @@ public class InMemoryDatastore {
      * @throws Exception If the insertion fails.
      */
     public void insert(String catalogName, String tableName, Map<String, Object> toAdd) throws Exception{
-        catalogShouldExist(catalogName);
-        catalogs.get(catalogName).insert(tableName, toAdd);
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(new ArrayList<>(toAdd.keySet()), 1);
+        batch.addRow(toAdd.values().toArray());
+        insert(catalogName, tableName, batch);
+    }
+
+    /**
+     * Insert a batch of rows in a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param batch The rows to be inserted.
+     * @throws Exception If the insertion fails.
+     */
+    public void insert(String catalogName, String tableName, InMemoryColumnBatch batch) throws Exception{
+        checkWritable(catalogName, tableName);
+        write(LogRecord.insert(catalogName, tableName, stampWriteTime(catalogName, tableName, batch)));
+    }
+
+    /**
+     * Delete the rows of a table that satisfy a set of relations. The rows are found as in a query, and
+     * their primary keys are deleted, so the rows written after they are found are not deleted.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param relations The list of relationships.
+     * @return The number of rows that satisfied the relations.
+     * @throws Exception If the table does not exist or the relations cannot be evaluated.
+     */
+    public int delete(String catalogName, String tableName, List<InMemoryRelation> relations) throws Exception{
+        checkWritable(catalogName, tableName);
+        InMemoryColumnBatch keys = getCatalog(catalogName).getTable(tableName).findKeys(relations);
+        if(keys.size() > 0){
+            write(LogRecord.delete(catalogName, tableName, keys));
+        }
+        return keys.size();
+    }
+
+    /**
+     * Assign new values to the columns of the rows of a table that satisfy a set of relations. The rows
+     * are found as in a query, and written as new versions of the rows that still exist.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param relations The list of relationships.
+     * @param assignments The values assigned to each column.
+     * @return The number of rows that satisfied the relations.
+     * @throws Exception If the table does not exist, the relations cannot be evaluated or a column cannot
+     * be assigned.
+     */
+    public int update(String catalogName, String tableName, List<InMemoryRelation> relations,
+            Map<String, Object> assignments) throws Exception{
+        checkWritable(catalogName, tableName);
+        InMemoryColumnBatch rows = getCatalog(catalogName).getTable(tableName).findUpdates(relations, assignments);
+        if(rows.size() > 0){
+            write(LogRecord.update(catalogName, tableName, stampWriteTime(catalogName, tableName, rows)));
+        }
+        return rows.size();
     }
 
     /**
@@ -144,8 +445,142 @@ public class InMemoryDatastore {
      * @throws Exception If the table cannot be truncated.
      */
     public void truncateTable(String catalogName, String tableName) throws Exception{
-        catalogShouldExist(catalogName);
-        catalogs.get(catalogName).truncate(tableName);
+        checkWritable(catalogName, tableName);
+        write(LogRecord.truncate(catalogName, tableName));
+    }
+
+    /**
+     * Create a secondary index over a column of a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param columnName The name of the indexed column.
+     * @param type The type of index.
+     * @throws Exception If the index cannot be created.
+     */
+    public void createIndex(String catalogName, String tableName, String indexName, String columnName,
+            InMemoryIndexType type) throws Exception{
+        write(LogRecord.createIndex(catalogName, tableName, indexName, columnName, type));
+    }
+
+    /**
+     * Drop a secondary index of a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @throws Exception If the index cannot be dropped.
+     */
+    public void dropIndex(String catalogName, String tableName, String indexName) throws Exception{
+        write(LogRecord.dropIndex(catalogName, tableName, indexName));
+    }
+
+    /**
+     * Check that the rows of a table can be modified: materialized views are only written when their
+     * base table changes.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @throws Exception If the catalog does not exist or the table stores a materialized view.
+     */
+    private void checkWritable(String catalogName, String tableName) throws Exception {
+        if(getCatalog(catalogName).getViews().containsKey(tableName)){
+            throw new Exception("Table " + tableName + " is a materialized view and cannot be modified");
+        }
+    }
+
+    /**
+     * Set the write time of the rows to be logged for a table whose rows expire, so that recovery keeps
+     * their time to live instead of measuring it from the replay.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param batch The rows to be written.
+     * @return The batch with the current write time, or the same batch if the time need not be logged.
+     * @throws Exception If the table does not exist.
+     */
+    private InMemoryColumnBatch stampWriteTime(String catalogName, String tableName, InMemoryColumnBatch batch)
+            throws Exception {
+        if(persistence == null || getCatalog(catalogName).getTable(tableName).getOptions().getTtl() <= 0){
+            return batch;
+        }
+        return batch.withWriteTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Apply an operation and, if the datastore is persisted, log it. The operation is appended to the
+     * log and applied under the monitor of the datastore, so the log keeps the order in which
+     * operations are applied; waiting for the log to be flushed happens outside of it, so concurrent
+     * writers can share a flush. Operations that cannot be logged are not applied, and operations that
+     * fail are removed from the log.
+     * @param record The operation.
+     * @throws Exception If the operation cannot be applied or logged.
+     */
+    private void write(LogRecord record) throws Exception {
+        if(persistence == null){
+            replay(record);
+            return;
+        }
+        long position;
+        synchronized(this){
+            long start = persistence.getPosition();
+            position = persistence.append(record);
+            try {
+                replay(record);
+            }catch(Exception e){
+                try {
+                    persistence.discard(start);
+                }catch(IOException discardError){
+                    e.addSuppressed(discardError);
+                }
+                throw e;
+            }
+        }
+        persistence.sync(position);
+    }
+
+    /**
+     * Apply an operation without logging it. Used to recover the datastore from its log and snapshots.
+     * @param record The operation.
+     * @throws Exception If the operation cannot be applied.
+     */
+    public void replay(LogRecord record) throws Exception {
+        switch(record.getOperation()){
+        case CREATE_CATALOG:
+            catalogs.put(record.getCatalogName(), new InMemoryCatalog(record.getCatalogName()));
+            break;
+        case DROP_CATALOG:
+            if(getCatalog(record.getCatalogName()).getNumberTables() > 0){
+                throw new Exception("Cannot delete non-empty catalogs.");
+            }
+            break;
+        case CREATE_TABLE:
+            MemoryBudget tableBudget = new MemoryBudget(record.getCatalogName() + "." + record.getTableName(),
+                    memorySettings.getTableMemoryLimit(), memoryBudget);
+            getCatalog(record.getCatalogName()).createTable(record.getTableName(), record.getColumnNames(),
+                    record.getColumnTypes(), record.getPrimaryKey(), tableRowLimit, tableBudget,
+                    memorySettings.isOffHeap(), TableOptions.fromOptions(record.getOptions()));
+            break;
+        case DROP_TABLE:
+            getCatalog(record.getCatalogName()).dropTable(record.getTableName());
+            break;
+        case INSERT:
+            getCatalog(record.getCatalogName()).insert(record.getTableName(), record.getBatch());
+            break;
+        case DELETE:
+            getCatalog(record.getCatalogName()).delete(record.getTableName(), record.getBatch());
+            break;
+        case UPDATE:
+            getCatalog(record.getCatalogName()).update(record.getTableName(), record.getBatch());
+            break;
+        case TRUNCATE:
+            getCatalog(record.getCatalogName()).truncate(record.getTableName());
+            break;
+        case CREATE_INDEX:
+            getCatalog(record.getCatalogName()).createIndex(record.getTableName(), record.getIndexName(),
+                    record.getColumnName(), record.getIndexType());
+            break;
+        default:
+            getCatalog(record.getCatalogName()).dropIndex(record.getTableName(), record.getIndexName());
+            break;
+        }
     }
 
     /**
@@ -156,108 +591,433 @@ public class InMemoryDatastore {
      * @throws Exception If search cannot be performed.
      */
     public List<SimpleValue[]> search(String catalogName, InMemoryQuery inMemoryQuery) throws Exception {
-        catalogShouldExist(catalogName);
-        List<SimpleValue[]> result;
+        return search(catalogName, inMemoryQuery, new ScanMetrics());
+    }
+
+    /**
+     * Search the elements of a table. Queries that a fresh materialized view of the table can answer
+     * read the view instead.
+     * @param catalogName The name of the catalog.
+     * @param inMemoryQuery The query to be executed.
+     * @param metrics The metrics of the query.
+     * @return A list of rows.
+     * @throws Exception If search cannot be performed.
+     */
+    public List<SimpleValue[]> search(String catalogName, InMemoryQuery inMemoryQuery, ScanMetrics metrics)
+            throws Exception {
+        InMemoryQuery query = getCatalog(catalogName).rewrite(inMemoryQuery);
+        TableSnapshot table = getCatalog(catalogName).getTable(query.getTableName()).snapshot();
+        List<SimpleValue[]> result = new ArrayList<>();
+        Iterator<SimpleValue[]> rows;
+        if(isAggregated(query)){
+            rows = aggregate(table, query, metrics).iterator();
+        }else{
+            rows = scanner.scan(table, query.getRelations(), query.getOutputColumns(), null, -1, metrics);
+        }
+        while(rows.hasNext()){
+            result.add(relabel(rows.next(), inMemoryQuery, query));
+        }
+        return result;
+    }
 
-        result = catalogs.get(catalogName).search(inMemoryQuery.getTableName(),inMemoryQuery.getRelations(), inMemoryQuery.getOutputColumns());
+    /**
+     * Lazily scan the elements of a table. Rows are filtered and projected as the returned iterator
+     * advances, and large tables are scanned in parallel segments. Queries that a fresh materialized
+     * view of the table can answer read the view instead. Aggregated queries are evaluated
+     * eagerly, in a single pass over the table.
+     * @param catalogName The name of the catalog.
+     * @param inMemoryQuery The query to be executed.
+     * @param order The comparator of the resulting rows, or null if they need not be ordered.
+     * @param limit The maximum number of ordered rows to be returned, or -1 for no limit.
+     * @param metrics The metrics of the query.
+     * @return An iterator over the resulting rows.
+     * @throws Exception If the scan cannot be performed.
+     */
+    public Iterator<SimpleValue[]> scan(String catalogName, final InMemoryQuery inMemoryQuery,
+            Comparator<SimpleValue[]> order, int limit, ScanMetrics metrics) throws Exception {
+        final InMemoryQuery query = getCatalog(catalogName).rewrite(inMemoryQuery);
+        if(query != inMemoryQuery){
+            final Iterator<SimpleValue[]> rows = scan(catalogName, query, null, -1, metrics);
+            Iterator<SimpleValue[]> relabeled = new Iterator<SimpleValue[]>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
 
-        //Execute the required aggregation functions.
+                @Override
+                public SimpleValue[] next() {
+                    return relabel(rows.next(), inMemoryQuery, query);
+                }
 
-        for(int index = 0; index < inMemoryQuery.getOutputColumns().size(); index++){
-            if(InMemoryFunctionSelector.class.isInstance(inMemoryQuery.getOutputColumns().get(index))){
-                AbstractInMemoryFunction f = InMemoryFunctionSelector.class
-                        .cast(inMemoryQuery.getOutputColumns().get(index))
-                        .getFunction();
-                if(!f.isRowFunction()){
-                    InMemoryTable table = catalogs.get(catalogName).getTable(inMemoryQuery.getTableName());
-                    result = f.apply(table.getColumnIndex(), result);
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
                 }
+            };
+            if(order == null){
+                return relabeled;
+            }
+            return ParallelSort.sort(relabeled, order, limit, null, metrics.getCancellation()).iterator();
+        }
+        TableSnapshot table = getCatalog(catalogName).getTable(inMemoryQuery.getTableName()).snapshot();
+        if(isAggregated(inMemoryQuery)){
+            List<SimpleValue[]> rows = aggregate(table, inMemoryQuery, metrics);
+            if(order != null){
+                rows = ParallelSort.sort(rows.iterator(), order, limit, null, metrics.getCancellation());
             }
+            return rows.iterator();
         }
+        return scanner.scan(table, inMemoryQuery.getRelations(), inMemoryQuery.getOutputColumns(),
+                order, limit, metrics);
+    }
 
-        return result;
+    /**
+     * Label the values of a row produced by a rewritten query with the output columns of the original
+     * query, so that the rows of a materialized view are indistinguishable from the rows of its base table.
+     * @param row The row.
+     * @param original The original query.
+     * @param rewritten The query that produced the row.
+     * @return The labeled row.
+     */
+    private static SimpleValue[] relabel(SimpleValue[] row, InMemoryQuery original, InMemoryQuery rewritten){
+        if(original != rewritten){
+            List<InMemorySelector> outputColumns = original.getOutputColumns();
+            for(int index = 0; index < row.length && index < outputColumns.size(); index++){
+                row[index].setColumn(outputColumns.get(index));
+            }
+        }
+        return row;
     }
 
     /**
-     * Joins the results of N queries.
-     * @param joinTables the list of resuls of each table query.
-     *
-     * @return The join Result
+     * Start a continuous query over the rows inserted in a table from now on, see {@link ContinuousQuery}.
+     * @param catalogName The name of the catalog.
+     * @param inMemoryQuery The query, which must not group the rows or compute aggregation functions.
+     * @return The {@link ContinuousQuery}, which must be closed when it is no longer polled.
+     * @throws Exception If the table does not exist or the query is aggregated.
      */
-    public List<SimpleValue[]> joinResults(List<List<SimpleValue[]>> joinTables) {
+    public ContinuousQuery subscribe(String catalogName, InMemoryQuery inMemoryQuery) throws Exception {
+        if(isAggregated(inMemoryQuery)){
+            throw new Exception("Continuous queries cannot group rows or compute aggregation functions");
+        }
+        return new ContinuousQuery(getCatalog(catalogName).getTable(inMemoryQuery.getTableName()), inMemoryQuery);
+    }
 
-        List<SimpleValue[]> finalResult = new ArrayList<SimpleValue[]>();
-        if (joinTables.size() > 1) {
-            for (SimpleValue[] row : joinTables.get(0)){
-                SimpleValue[] joinedRow = joinRow(row, joinTables.subList(1, joinTables.size()));
-                if (joinedRow != null) {
-                    finalResult.add(joinedRow);
-                }
+    /**
+     * Determine whether a query groups the rows or computes aggregation functions.
+     * @param inMemoryQuery The query.
+     * @return Whether the query requires an aggregation.
+     * @throws Exception If a function cannot be instantiated.
+     */
+    private boolean isAggregated(InMemoryQuery inMemoryQuery) throws Exception {
+        if(!inMemoryQuery.getGroupByColumns().isEmpty() || !inMemoryQuery.getHaving().isEmpty()){
+            return true;
+        }
+        for(InMemorySelector selector : inMemoryQuery.getOutputColumns()){
+            if(HashAggregation.isAggregation(selector)){
+                return true;
             }
+        }
+        return false;
+    }
+
+    /**
+     * Group the matching rows of a table and compute the aggregation functions of a query.
+     * @param table The snapshot of the table.
+     * @param inMemoryQuery The query.
+     * @param metrics The metrics of the query.
+     * @return The aggregated rows.
+     * @throws Exception If the aggregation cannot be performed.
+     */
+    private List<SimpleValue[]> aggregate(TableSnapshot table, InMemoryQuery inMemoryQuery, ScanMetrics metrics)
+            throws Exception {
+        HashAggregation aggregation = new HashAggregation(table, inMemoryQuery.getGroupByColumns(),
+                inMemoryQuery.getOutputColumns(), inMemoryQuery.getHaving());
+        return scanner.aggregate(table, inMemoryQuery.getRelations(), aggregation, metrics);
+    }
+
+    /**
+     * Join the results of N queries. Tables are joined from left to right: the result of each step is
+     * joined with the next table using the join type of its query.
+     * @param queries The list of queries, one per table.
+     * @param joinTables The list of results of each table query.
+     * @return The joined rows. Each row contains the values of every table in order, including the join values.
+     */
+    public List<SimpleValue[]> joinResults(List<InMemoryQuery> queries, List<List<SimpleValue[]>> joinTables) {
+        return joinResults(queries, joinTables, new QueryCancellation());
+    }
+
+    /**
+     * Join the results of N queries, stopping if the query is cancelled.
+     * @param queries The list of queries, one per table.
+     * @param joinTables The list of results of each table query.
+     * @param cancellation The cancellation state of the query.
+     * @return The joined rows. Each row contains the values of every table in order, including the join values.
+     * @throws QueryCancelledException If the query is cancelled.
+     */
+    public List<SimpleValue[]> joinResults(List<InMemoryQuery> queries, List<List<SimpleValue[]>> joinTables,
+            QueryCancellation cancellation) {
+        return toList(joinRows(queries, joinTables, cancellation));
+    }
 
-        }else if (joinTables.size()>0){
-            for (SimpleValue[] row : joinTables.get(0)) {
-                finalResult.add(getRowValues(row).toArray(new SimpleValue[]{}));
+    /**
+     * Join the results of N queries lazily. Tables are joined from left to right, and the rows of the
+     * last join are produced as the returned iterator advances, so a limit on the joined rows stops a
+     * cartesian product as soon as enough rows have been produced.
+     * @param queries The list of queries, one per table.
+     * @param joinTables The list of results of each table query.
+     * @param cancellation The cancellation state of the query.
+     * @return An iterator over the joined rows. Each row contains the values of every table in order,
+     * including the join values.
+     * @throws QueryCancelledException If the query is cancelled.
+     */
+    public Iterator<SimpleValue[]> joinRows(List<InMemoryQuery> queries, List<List<SimpleValue[]>> joinTables,
+            QueryCancellation cancellation) {
+        if(joinTables.isEmpty()){
+            return Collections.<SimpleValue[]>emptyList().iterator();
+        }
+        List<SimpleValue[]> left = joinTables.get(0);
+        Iterator<SimpleValue[]> result = left.iterator();
+        List<InMemorySelector> leftColumns = new ArrayList<>(queries.get(0).getOutputColumns());
+        for(int index = 1; index < joinTables.size(); index++){
+            InMemoryQuery rightQuery = queries.get(index);
+            if(index > 1){
+                left = toList(result);
             }
+            result = join(left, leftColumns, joinTables.get(index), rightQuery.getOutputColumns(),
+                    rightQuery.getJoinType(), cancellation);
+            leftColumns.addAll(rightQuery.getOutputColumns());
         }
+        return result;
+    }
 
-        return finalResult;
+    /**
+     * Collect the rows returned by an iterator.
+     * @param rows The rows.
+     * @return The list of rows.
+     */
+    private static List<SimpleValue[]> toList(Iterator<SimpleValue[]> rows){
+        List<SimpleValue[]> result = new ArrayList<>();
+        while(rows.hasNext()){
+            result.add(rows.next());
+        }
+        return result;
     }
 
-    private List<SimpleValue> getRowValues(SimpleValue[] row) {
-        List<SimpleValue> finalRow = new ArrayList();
-        for(SimpleValue field:row){
-            if (!(field instanceof JoinValue)){
-                finalRow.add(field);
-            }
+    /**
+     * Join two sets of rows. CROSS joins, and joins without join columns, produce the cartesian product
+     * lazily; other joins are evaluated with {@link #hashJoin}.
+     * @param left The rows of the left side.
+     * @param leftColumns The selectors of the left rows.
+     * @param right The rows of the right side.
+     * @param rightColumns The selectors of the right rows.
+     * @param type The type of join.
+     * @param cancellation The cancellation state of the query.
+     * @return An iterator over the joined rows.
+     */
+    private Iterator<SimpleValue[]> join(List<SimpleValue[]> left, List<InMemorySelector> leftColumns,
+            List<SimpleValue[]> right, List<InMemorySelector> rightColumns, JoinType type,
+            QueryCancellation cancellation){
+        List<Integer> leftKeys = new ArrayList<>();
+        List<Integer> rightKeys = new ArrayList<>();
+        if(!JoinType.CROSS.equals(type)){
+            findJoinColumns(leftColumns, rightColumns, leftKeys, rightKeys);
         }
-        return finalRow;
+        if(leftKeys.isEmpty()){
+            return crossJoin(left, right, cancellation);
+        }
+        return hashJoin(left, leftColumns, leftKeys, right, rightColumns, rightKeys, type, cancellation).iterator();
     }
 
-    private SimpleValue[] joinRow(SimpleValue[] mainRow,  List<List<SimpleValue[]>> otherTables){
-        List<SimpleValue> finalJoinRow = new ArrayList<>();
+    /**
+     * Join two sets of rows using a hash join. The rows of one side are stored in a hash table keyed by
+     * their join values, and the rows of the other side probe that table. Inner joins build on the
+     * smaller side; outer joins build on the side whose unmatched rows are not preserved, except for
+     * full outer joins, which track the matched rows of the build side.
+     * @param left The rows of the left side.
+     * @param leftColumns The selectors of the left rows.
+     * @param leftKeys The positions of the join values of the left rows.
+     * @param right The rows of the right side.
+     * @param rightColumns The selectors of the right rows.
+     * @param rightKeys The positions of the join values of the right rows.
+     * @param type The type of join.
+     * @param cancellation The cancellation state of the query.
+     * @return The joined rows.
+     */
+    private List<SimpleValue[]> hashJoin(List<SimpleValue[]> left, List<InMemorySelector> leftColumns,
+            List<Integer> leftKeys, List<SimpleValue[]> right, List<InMemorySelector> rightColumns,
+            List<Integer> rightKeys, JoinType type, QueryCancellation cancellation){
+        boolean buildLeft;
+        if(JoinType.LEFT_OUTER.equals(type) || JoinType.FULL_OUTER.equals(type)){
+            buildLeft = false;
+        }else if(JoinType.RIGHT_OUTER.equals(type)){
+            buildLeft = true;
+        }else{
+            buildLeft = left.size() < right.size();
+        }
+        boolean preserveProbe = !JoinType.INNER.equals(type);
+        boolean preserveBuild = JoinType.FULL_OUTER.equals(type);
+
+        List<SimpleValue[]> build = buildLeft ? left : right;
+        List<SimpleValue[]> probe = buildLeft ? right : left;
+        List<Integer> buildKeys = buildLeft ? leftKeys : rightKeys;
+        List<Integer> probeKeys = buildLeft ? rightKeys : leftKeys;
 
-        //Search JoinRows
-        for(SimpleValue field:mainRow){
-            if(field instanceof JoinValue){
-                List<SimpleValue> joinResult = calculeJoin((JoinValue) field, otherTables);
-                if (joinResult != null && joinResult.size()>0){
-                    finalJoinRow.addAll(joinResult);
-                }else{
-                    return null;
+        Map<JoinKey, RowList> hashTable = new HashMap<>();
+        for(int index = 0; index < build.size(); index++){
+            cancellation.check(index);
+            JoinKey key = getJoinKey(build.get(index), buildKeys);
+            if(!key.hasNulls()){
+                RowList rows = hashTable.get(key);
+                if(rows == null){
+                    rows = new RowList();
+                    hashTable.put(key, rows);
                 }
-            }else{
-                finalJoinRow.add(field);
+                rows.add(index);
             }
         }
 
-        return finalJoinRow.toArray(new SimpleValue[]{});
-    }
+        List<SimpleValue[]> result = new ArrayList<>();
+        BitSet matched = new BitSet(build.size());
+        SimpleValue[] nullBuildRow = nullRow(buildLeft ? leftColumns : rightColumns);
+        long produced = 0;
+        for(SimpleValue[] probeRow : probe){
+            cancellation.check(produced++);
+            JoinKey key = getJoinKey(probeRow, probeKeys);
+            RowList rows = key.hasNulls() ? null : hashTable.get(key);
+            if(rows != null){
+                for(int index = 0; index < rows.size(); index++){
+                    cancellation.check(produced++);
+                    int buildRow = rows.get(index);
+                    matched.set(buildRow);
+                    result.add(buildLeft ? concat(build.get(buildRow), probeRow) : concat(probeRow, build.get(buildRow)));
+                }
+            }else if(preserveProbe){
+                result.add(buildLeft ? concat(nullBuildRow, probeRow) : concat(probeRow, nullBuildRow));
+            }
+        }
 
-    private List<SimpleValue> calculeJoin(JoinValue join, List<List<SimpleValue[]>> otherTables){
-        List<SimpleValue> joinResult = new ArrayList<>();
-        boolean matched = false;
+        if(preserveBuild){
+            SimpleValue[] nullProbeRow = nullRow(leftColumns);
+            for(int index = matched.nextClearBit(0); index < build.size(); index = matched.nextClearBit(index + 1)){
+                cancellation.check(result.size());
+                result.add(concat(nullProbeRow, build.get(index)));
+            }
+        }
+        return result;
+    }
 
-        for(List<SimpleValue[]> table: otherTables){
-            rows: for(SimpleValue[] row: table){
-                for(SimpleValue field:row){
-                    if (field instanceof JoinValue){
-                        JoinValue tableJoin = (JoinValue) field;
-                        if (join.joinMatch(tableJoin)){
-                            matched = true;
-                            joinResult.addAll(getRowValues(row));
-                            continue rows;
-                        }
+    /**
+     * Find the positions of the join values that relate two sets of rows. A join selector of the left
+     * side matches a join selector of the right side if both come from the same join relation.
+     * @param leftColumns The selectors of the left rows.
+     * @param rightColumns The selectors of the right rows.
+     * @param leftKeys The list where the positions of the left join values are added.
+     * @param rightKeys The list where the positions of the right join values are added.
+     */
+    private void findJoinColumns(List<InMemorySelector> leftColumns, List<InMemorySelector> rightColumns,
+            List<Integer> leftKeys, List<Integer> rightKeys){
+        for(int rightIndex = 0; rightIndex < rightColumns.size(); rightIndex++){
+            if(InMemoryJoinSelector.class.isInstance(rightColumns.get(rightIndex))){
+                InMemoryJoinSelector rightJoin = InMemoryJoinSelector.class.cast(rightColumns.get(rightIndex));
+                for(int leftIndex = 0; leftIndex < leftColumns.size(); leftIndex++){
+                    if(InMemoryJoinSelector.class.isInstance(leftColumns.get(leftIndex))
+                            && rightJoin.isReverseOf(InMemoryJoinSelector.class.cast(leftColumns.get(leftIndex)))){
+                        leftKeys.add(leftIndex);
+                        rightKeys.add(rightIndex);
+                        break;
                     }
                 }
             }
         }
+    }
 
-        if (matched){
-            return joinResult;
-        }else{
-            return null;
+    /**
+     * Build the join key of a row.
+     * @param row The row.
+     * @param keyPositions The positions of the join values.
+     * @return A {@link JoinKey}.
+     */
+    private JoinKey getJoinKey(SimpleValue[] row, List<Integer> keyPositions){
+        Object[] values = new Object[keyPositions.size()];
+        for(int index = 0; index < values.length; index++){
+            values[index] = row[keyPositions.get(index)].getValue();
         }
+        return new JoinKey(values);
+    }
+
+    /**
+     * Compute the cartesian product of two sets of rows. Each joined row is built when the returned
+     * iterator advances, so nothing is allocated for the rows that are never read.
+     * @param left The rows of the left side.
+     * @param right The rows of the right side.
+     * @param cancellation The cancellation state of the query.
+     * @return An iterator over the joined rows.
+     */
+    private Iterator<SimpleValue[]> crossJoin(final List<SimpleValue[]> left, final List<SimpleValue[]> right,
+            final QueryCancellation cancellation){
+        return new Iterator<SimpleValue[]>() {
+
+            private int leftIndex = 0;
+
+            private int rightIndex = 0;
+
+            private long produced = 0;
+
+            @Override
+            public boolean hasNext() {
+                return leftIndex < left.size() && !right.isEmpty();
+            }
+
+            @Override
+            public SimpleValue[] next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                cancellation.check(produced++);
+                SimpleValue[] row = concat(left.get(leftIndex), right.get(rightIndex));
+                if(++rightIndex == right.size()){
+                    rightIndex = 0;
+                    leftIndex++;
+                }
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Build a row of null values used to complete the rows without a match in outer joins.
+     * @param columns The selectors of the row.
+     * @return A row of null values.
+     */
+    private SimpleValue[] nullRow(List<InMemorySelector> columns){
+        SimpleValue[] result = new SimpleValue[columns.size()];
+        for(int index = 0; index < result.length; index++){
+            InMemorySelector selector = columns.get(index);
+            if(InMemoryJoinSelector.class.isInstance(selector)){
+                result[index] = new JoinValue(InMemoryJoinSelector.class.cast(selector), null);
+            }else{
+                result[index] = new SimpleValue(selector, null);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Concatenate two rows.
+     * @param first The first row.
+     * @param second The second row.
+     * @return The joined row.
+     */
+    private SimpleValue[] concat(SimpleValue[] first, SimpleValue[] second){
+        SimpleValue[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
     }
 
     /**
@@ -0,0 +1,51 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.List;
+
+/**
+ * Disjunction of conjunctions of relations. A row satisfies the disjunction if it satisfies every
+ * relation of any of its terms. Disjunctions do not refer to a single column, so they have no column
+ * name, operation or right part.
+ */
+public class InMemoryDisjunction extends InMemoryRelation {
+
+    /**
+     * The terms of the disjunction, each one a conjunction of relations.
+     */
+    private final List<List<InMemoryRelation>> terms;
+
+    /**
+     * Class constructor.
+     * @param terms The terms of the disjunction.
+     */
+    public InMemoryDisjunction(List<List<InMemoryRelation>> terms){
+        super(null, null, null);
+        this.terms = terms;
+    }
+
+    /**
+     * Get the terms of the disjunction.
+     * @return A list of conjunctions of relations.
+     */
+    public List<List<InMemoryRelation>> getTerms() {
+        return terms;
+    }
+}
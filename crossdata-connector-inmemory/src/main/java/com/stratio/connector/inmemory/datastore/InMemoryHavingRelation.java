@@ -0,0 +1,88 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Relation evaluated over the groups of an aggregated query (HAVING clause). The left part is a
+ * grouping column or an aggregation function.
+ */
+public class InMemoryHavingRelation {
+
+    /**
+     * Left part of the relation.
+     */
+    private final InMemorySelector selector;
+
+    /**
+     * Relationship.
+     */
+    private final InMemoryOperations relation;
+
+    /**
+     * Right part of the relation.
+     */
+    private final Object rightPart;
+
+    /**
+     * Class constructor.
+     * @param selector The left part of the relation.
+     * @param relation The relationship.
+     * @param rightPart The right part of the relation.
+     */
+    public InMemoryHavingRelation(InMemorySelector selector, InMemoryOperations relation, Object rightPart){
+        this.selector = selector;
+        this.relation = relation;
+        this.rightPart = rightPart;
+    }
+
+    /**
+     * Get the left part.
+     * @return The {@link InMemorySelector}.
+     */
+    public InMemorySelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Get the relation.
+     * @return The relationship.
+     */
+    public InMemoryOperations getRelation() {
+        return relation;
+    }
+
+    /**
+     * Get the right part.
+     * @return The right part of the relationship.
+     */
+    public Object getRightPart() {
+        return rightPart;
+    }
+
+    /**
+     * Check whether a value satisfies the relation. Null values do not satisfy any relation.
+     * @param value The value of the left part.
+     * @return Whether the relation is satisfied.
+     */
+    public boolean matches(Object value){
+        return value != null && rightPart != null && relation.compare(value, rightPart);
+    }
+}
@@ -22,6 +22,8 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.List;
 
+import com.stratio.connector.inmemory.datastore.indexes.TextQuery;
+
 /**
  * Enumeration of the different operations that can be applied.
  */
@@ -83,7 +85,7 @@ public enum InMemoryOperations {
             if(Number.class.isInstance(o1) && Number.class.isInstance(o2)) {
                 return compareNumbers(Number.class.cast(o1), Number.class.cast(o2)) >= 0;
             } else if (Boolean.class.isInstance(o1) && Boolean.class.isInstance(o2)){
-                return compareTo(Boolean.class.cast(o1), Boolean.class.cast(o2)) > 0;
+                return compareTo(Boolean.class.cast(o1), Boolean.class.cast(o2)) >= 0;
             } else if(o1.getClass().equals(o2.getClass()) && String.class.equals(o1.getClass())){
                 return compareTo(String.class.cast(o1), String.class.cast(o2)) >= 0;
             }
@@ -100,7 +102,7 @@ public enum InMemoryOperations {
             if(Number.class.isInstance(o1) && Number.class.isInstance(o2)) {
                 return compareNumbers(Number.class.cast(o1), Number.class.cast(o2)) <= 0;
             } else if (Boolean.class.isInstance(o1) && Boolean.class.isInstance(o2)){
-                return compareTo(Boolean.class.cast(o1), Boolean.class.cast(o2)) > 0;
+                return compareTo(Boolean.class.cast(o1), Boolean.class.cast(o2)) <= 0;
             } else if(o1.getClass().equals(o2.getClass()) && String.class.equals(o1.getClass())){
                 return compareTo(String.class.cast(o1), String.class.cast(o2)) <= 0;
             }
@@ -127,6 +129,28 @@ public enum InMemoryOperations {
 
             return false;
         }
+    },
+
+    /**
+     * BETWEEN operator. The right part contains the lower and upper bounds, both inclusive.
+     */
+    BETWEEN{
+        @Override
+        public boolean compare(Object o1, Object o2) {
+            List<Object> bounds = (List<Object>) o2;
+            return GET.compare(o1, bounds.get(0)) && LET.compare(o1, bounds.get(1));
+        }
+    },
+
+    /**
+     * MATCH operator. The right part is a full-text query evaluated on the tokens of the value, as
+     * described in {@link TextQuery}.
+     */
+    MATCH{
+        @Override
+        public boolean compare(Object o1, Object o2) {
+            return TextQuery.parse(String.valueOf(o2)).matches(String.valueOf(o1));
+        }
     };
 
     /**
@@ -138,15 +162,32 @@ public enum InMemoryOperations {
     public abstract boolean compare(Object o1, Object o2);
 
     /**
-     * Return the comparison between two values.
+     * Return the comparison between two values. Values of the same primitive family are compared
+     * directly; otherwise they are converted to {@link BigDecimal}.
      * @param n1 First number.
      * @param n2 Second number.
      * @return Distance according to the {@link java.lang.Comparable} semantics.
      */
     private static int compareNumbers(Number n1, Number n2){
+        if(isIntegral(n1) && isIntegral(n2)){
+            return Long.compare(n1.longValue(), n2.longValue());
+        }else if(Double.class.isInstance(n1) && Double.class.isInstance(n2)){
+            return Double.compare(n1.doubleValue(), n2.doubleValue());
+        }else if(Float.class.isInstance(n1) && Float.class.isInstance(n2)){
+            return Float.compare(n1.floatValue(), n2.floatValue());
+        }
         return toBigDecimal(n1).compareTo(toBigDecimal(n2));
     }
 
+    /**
+     * Determine whether a number is an integer or a long.
+     * @param n The number.
+     * @return Whether it can be compared as a long.
+     */
+    private static boolean isIntegral(Number n){
+        return Integer.class.isInstance(n) || Long.class.isInstance(n);
+    }
+
     /**
      * Compare two elements of the same class that implement the {@link java.lang.Comparable} interface.
      * @param c1 The first element.
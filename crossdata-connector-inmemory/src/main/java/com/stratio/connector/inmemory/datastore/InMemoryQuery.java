@@ -19,6 +19,7 @@
 package com.stratio.connector.inmemory.datastore;
 
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+import com.stratio.crossdata.common.data.JoinType;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +33,9 @@ public class InMemoryQuery {
     private List<InMemoryRelation> relations = new ArrayList<>();
     private List<InMemorySelector> outputColumns = new ArrayList<>();
     private String catalogName;
+    private JoinType joinType = JoinType.INNER;
+    private List<String> groupByColumns = new ArrayList<>();
+    private List<InMemoryHavingRelation> having = new ArrayList<>();
 
     /**
      * Build a InMemoryQuery
@@ -84,4 +88,44 @@ public class InMemoryQuery {
         this.catalogName = catalogName;
     }
 
+    /**
+     * Get the type of join used to combine the results of this query with the results of the
+     * previous tables.
+     *
+     * @return A {@link com.stratio.crossdata.common.data.JoinType}.
+     */
+    public JoinType getJoinType() {
+        return joinType;
+    }
+
+    public void setJoinType(JoinType joinType) {
+        this.joinType = joinType;
+    }
+
+    /**
+     * Get the names of the columns used to group the rows.
+     *
+     * @return A list of column names, empty if the rows are not grouped.
+     */
+    public List<String> getGroupByColumns() {
+        return groupByColumns;
+    }
+
+    public void setGroupByColumns(List<String> groupByColumns) {
+        this.groupByColumns = groupByColumns;
+    }
+
+    /**
+     * Get the relations that the groups must satisfy.
+     *
+     * @return A list of {@link InMemoryHavingRelation}.
+     */
+    public List<InMemoryHavingRelation> getHaving() {
+        return having;
+    }
+
+    public void setHaving(List<InMemoryHavingRelation> having) {
+        this.having = having;
+    }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+/**
+ * Random sample of the rows of a table. Rows are sampled in blocks of
+ * {@link com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn#ZONE_SIZE} consecutive
+ * rows, each one chosen with the probability of the sampling fraction, so scans skip the blocks that
+ * are not sampled without reading them. The choice only depends on the block position and the seed,
+ * so samples with the same seed are repeatable. Samples do not refer to a single column, so they have
+ * no column name, operation or right part.
+ */
+public class InMemorySample extends InMemoryRelation {
+
+    /**
+     * The fraction of the blocks to be sampled, between 0 and 1.
+     */
+    private final double fraction;
+
+    /**
+     * The seed of the sample.
+     */
+    private final long seed;
+
+    /**
+     * Class constructor.
+     * @param fraction The fraction of the blocks to be sampled, between 0 and 1.
+     * @param seed The seed of the sample.
+     */
+    public InMemorySample(double fraction, long seed){
+        super(null, null, null);
+        this.fraction = fraction;
+        this.seed = seed;
+    }
+
+    /**
+     * Get the fraction of the blocks to be sampled.
+     * @return The fraction, between 0 and 1.
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    /**
+     * Get the seed of the sample.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -20,16 +20,59 @@ package com.stratio.connector.inmemory.datastore;
 
 import java.util.*;
 
+import com.stratio.connector.inmemory.datastore.changes.ChangeLog;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
 import com.stratio.connector.inmemory.datastore.datatypes.AbstractInMemoryDataType;
-import com.stratio.connector.inmemory.datastore.datatypes.JoinValue;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.AbstractInMemoryIndex;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.indexes.PrimaryKey;
+import com.stratio.connector.inmemory.datastore.indexes.PrimaryKeyIndex;
+import com.stratio.connector.inmemory.datastore.memory.MemoryBudget;
 import com.stratio.connector.inmemory.datastore.structures.*;
 
 /**
- * This class provides a basic abstraction of a database-like table stored in memory.
+ * This class provides a basic abstraction of a database-like table stored in memory. Rows are stored
+ * in a columnar layout with one {@link AbstractInMemoryColumn} per table column.
+ *
+ * Writers are serialized on the table, and rows are only appended: writing an existing primary key
+ * appends a new version of the row (see {@link RowVersions}). After each write the table publishes a new
+ * {@link TableSnapshot}, and readers evaluate their queries against the snapshot taken when they start,
+ * so they never lock the table nor observe a partial write. Truncating the table, or compacting the
+ * replaced versions, builds a new storage and leaves the previous one to the readers that still use it.
+ *
+ * Tables created with a time partition column (see {@link TableOptions}) keep a directory of
+ * {@link TimePartitions}, so that queries restricted to recent timestamps skip the older rows.
+ *
+ * Tables created with a time to live stop returning the rows once they expire, and remove the expired
+ * rows in small steps: each insert removes up to as many expired rows as it inserts, and
+ * {@link #expire(int)} is called in the background. Tables created with an {@link EvictionPolicy} remove
+ * the rows chosen by the policy when an insert exceeds the maximum number of rows, instead of failing.
+ * Removed rows are deleted in the version chains and discarded when the storage is compacted.
+ *
+ * Filtered deletes and updates find the matching rows with the same evaluation as queries. Deleted rows
+ * are marked as deleted in the version chains, and updated rows are written as new versions, so both
+ * are discarded when the storage is compacted in the background (see {@link #compactDeleted()}).
  */
 public class InMemoryTable {
 
+    /**
+     * Minimum number of replaced rows before the storage is compacted.
+     */
+    public static final int COMPACTION_THRESHOLD = 1024;
+
+    /**
+     * Fraction of the row positions that must be replaced or deleted before the background compaction
+     * rewrites the storage.
+     */
+    public static final double COMPACTION_DENSITY = 0.2;
+
+    /**
+     * Estimated number of bytes of each row in the primary key index and in each secondary index.
+     */
+    public static final int ESTIMATED_INDEX_ENTRY_SIZE = 64;
+
     /**
      * Table name.
      */
@@ -56,15 +99,121 @@ public class InMemoryTable {
     private final List<String> primaryKey = new ArrayList<>();
 
     /**
-     * Map of rows indexed by primary key.
+     * Columns of the table indexed by column position.
+     */
+    private AbstractInMemoryColumn [] columns;
+
+    /**
+     * Positions of the primary key columns.
+     */
+    private final int [] primaryKeyColumns;
+
+    /**
+     * Types of the primary key columns.
+     */
+    private final Class [] primaryKeyTypes;
+
+    /**
+     * Sorted index associating the primary key of each row with its position in the columns.
      */
-    private final Map<String, Object[]> rows = new LinkedHashMap<>();
+    private PrimaryKeyIndex primaryKeyIndex;
+
+    /**
+     * Number of rows stored in the table, including the replaced versions.
+     */
+    private int numRows = 0;
+
+    /**
+     * Version chains of the stored rows.
+     */
+    private RowVersions versions;
+
+    /**
+     * Map of secondary indexes indexed by index name. The map is replaced when indexes are created or
+     * dropped, as published snapshots share it.
+     */
+    private Map<String, AbstractInMemoryIndex> indexes = Collections.emptyMap();
+
+    /**
+     * Conversion of the values of each column, or null if values are stored as they are.
+     */
+    private final AbstractInMemoryDataType [] dataTypes;
+
+    /**
+     * Whether the conversion of each column has been resolved.
+     */
+    private final boolean [] dataTypesResolved;
+
+    /**
+     * Last published snapshot of the table.
+     */
+    private volatile TableSnapshot snapshot;
 
     /**
      * Maximum number of rows in the table.
      */
     private final int maxRows;
 
+    /**
+     * Memory budget of the table.
+     */
+    private final MemoryBudget memoryBudget;
+
+    /**
+     * Whether fixed-width columns are stored off-heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Number of bytes of the current storage accounted in the memory budget.
+     */
+    private long accountedMemory = 0;
+
+    /**
+     * Options of the table.
+     */
+    private final TableOptions options;
+
+    /**
+     * Time partitions of the current storage, or null if the table is not partitioned.
+     */
+    private TimePartitions partitions;
+
+    /**
+     * Position of the next row examined by the eviction policy.
+     */
+    private int evictionHand = 0;
+
+    /**
+     * Position of the next row examined for expiration.
+     */
+    private int expiryHand = 0;
+
+    /**
+     * Position of the first row appended by the last insert.
+     */
+    private int insertStart = 0;
+
+    /**
+     * Storage generation, which changes whenever the rows are moved to other positions.
+     */
+    private int generation = 0;
+
+    /**
+     * Log of the rows appended, read by the continuous queries over the table.
+     */
+    private final ChangeLog changeLog = new ChangeLog();
+
+    /**
+     * Number of rows evicted since the table was created.
+     */
+    private volatile long evictedRows = 0;
+
+    /**
+     * Number of rows expired since the table was created.
+     */
+    private volatile long expiredRows = 0;
+
     /**
      * Class constructor.
      * @param tableName The name of the table.
@@ -75,6 +224,37 @@ public class InMemoryTable {
      */
     public InMemoryTable(String tableName, String[] columnNames, Class[] columnTypes, List<String> primaryKey,
             int maxRows) {
+        this(tableName, columnNames, columnTypes, primaryKey, maxRows, MemoryBudget.unlimited(tableName), false);
+    }
+
+    /**
+     * Class constructor.
+     * @param tableName The name of the table.
+     * @param columnNames The name of the columns.
+     * @param columnTypes The types of the columns.
+     * @param primaryKey The list of columns in the primary key.
+     * @param maxRows The maximum number of rows per table.
+     * @param memoryBudget The memory budget of the table.
+     * @param offHeap Whether fixed-width columns are stored off-heap.
+     */
+    public InMemoryTable(String tableName, String[] columnNames, Class[] columnTypes, List<String> primaryKey,
+            int maxRows, MemoryBudget memoryBudget, boolean offHeap) {
+        this(tableName, columnNames, columnTypes, primaryKey, maxRows, memoryBudget, offHeap, TableOptions.DEFAULT);
+    }
+
+    /**
+     * Class constructor.
+     * @param tableName The name of the table.
+     * @param columnNames The name of the columns.
+     * @param columnTypes The types of the columns.
+     * @param primaryKey The list of columns in the primary key.
+     * @param maxRows The maximum number of rows per table.
+     * @param memoryBudget The memory budget of the table.
+     * @param offHeap Whether fixed-width columns are stored off-heap.
+     * @param options The table options, which must have been validated for the columns.
+     */
+    public InMemoryTable(String tableName, String[] columnNames, Class[] columnTypes, List<String> primaryKey,
+            int maxRows, MemoryBudget memoryBudget, boolean offHeap, TableOptions options) {
         this.tableName = tableName;
         this.columnNames = columnNames.clone();
         this.columnTypes = columnTypes.clone();
@@ -84,7 +264,24 @@ public class InMemoryTable {
             columnIndex.put(col, index);
             index++;
         }
+        this.primaryKeyColumns = new int[primaryKey.size()];
+        this.primaryKeyTypes = new Class[primaryKey.size()];
+        for(int pkIndex = 0; pkIndex < primaryKeyColumns.length; pkIndex++){
+            primaryKeyColumns[pkIndex] = columnIndex.get(primaryKey.get(pkIndex));
+            primaryKeyTypes[pkIndex] = columnTypes[primaryKeyColumns[pkIndex]];
+        }
+        this.dataTypes = new AbstractInMemoryDataType[columnNames.length];
+        this.dataTypesResolved = new boolean[columnNames.length];
+        this.memoryBudget = memoryBudget;
+        this.offHeap = offHeap;
+        this.options = options;
+        this.columns = createColumns();
+        this.versions = createVersions();
+        this.partitions = createPartitions();
+        this.primaryKeyIndex = createPrimaryKeyIndex();
         this.maxRows = maxRows;
+        reconcileMemory();
+        publish();
     }
 
     public String getTableName() {
@@ -107,6 +304,14 @@ public class InMemoryTable {
         return columnNames.clone();
     }
 
+    /**
+     * Get the columns of the primary key.
+     * @return The list of column names in the primary key.
+     */
+    public List<String> getPrimaryKey() {
+        return Collections.unmodifiableList(primaryKey);
+    }
+
     /**
      * Get the column mapping indexes.
      * @return A map associating column names with columns indexes.
@@ -115,142 +320,830 @@ public class InMemoryTable {
         return columnIndex;
     }
 
+    public TableOptions getOptions() {
+        return options;
+    }
+
     /**
-     * Insert a new row in the table.
+     * Get a consistent view of the table. Rows written after the snapshot is taken are not visible
+     * through it.
+     * @return The last published {@link TableSnapshot}.
+     */
+    public TableSnapshot snapshot(){
+        return snapshot;
+    }
+
+    /**
+     * Insert a new row in the table. If a row with the same primary key exists, a new version of the
+     * row replaces it.
      * @param row The map associating column name with cell value.
      */
     public void insert(Map<String, Object> row) throws Exception {
-        checkTableSpace();
-        Object [] rowObjects = new Object[columnNames.length];
-        for(Map.Entry<String, Object> cols: row.entrySet()){
-            rowObjects[columnIndex.get(cols.getKey())] = cols.getValue();
-            // Check if it's a native data type
-            Class clazz = getColumnTypes()[columnIndex.get(cols.getKey())];
-            AbstractInMemoryDataType inMemoryDataType =
-                    AbstractInMemoryDataType.castToNativeDataType(clazz.getSimpleName());
-            if(inMemoryDataType != null){
-                rowObjects[columnIndex.get(cols.getKey())] =
-                        inMemoryDataType.convertStringToInMemoryDataType(String.valueOf(cols.getValue()));
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(new ArrayList<>(row.keySet()), 1);
+        batch.addRow(row.values().toArray());
+        insert(batch);
+    }
+
+    /**
+     * Insert a batch of rows in the table. The values of each column are converted at once and appended
+     * as a block, and the rows become visible in a single snapshot. Rows whose primary key already
+     * exists, in the table or earlier in the batch, replace the previous version. If the table capacity
+     * would be exceeded, the expired rows and then the rows chosen by the eviction policy are removed.
+     * The appended rows are logged in the {@link ChangeLog} if any continuous query is subscribed. Rows
+     * are written at the current time unless the batch carries their write times.
+     * @param batch The rows to be inserted.
+     * @throws Exception If a column does not exist, the batch does not contain the primary key, a value
+     * cannot be converted, or the table capacity or its memory budget would be exceeded.
+     */
+    public synchronized void insert(InMemoryColumnBatch batch) throws Exception {
+        int count = batch.size();
+        List<String> batchColumns = batch.getColumnNames();
+        for(String keyColumn : primaryKey){
+            if(!batchColumns.contains(keyColumn)){
+                throw new Exception("Key column " + keyColumn + " not found in the row to be inserted.");
+            }
+        }
+        Object [][] values = new Object[columns.length][];
+        for(int index = 0; index < batchColumns.size(); index++){
+            int position = getColumnPosition(batchColumns.get(index));
+            values[position] = convert(position, batch.getValues(index), count);
+        }
+
+        PrimaryKey [] keys = new PrimaryKey[count];
+        int [] previous = new int[count];
+        Map<PrimaryKey, Integer> written = new TreeMap<>();
+        for(int row = 0; row < count; row++){
+            Object [] keyValues = new Object[primaryKeyColumns.length];
+            for(int index = 0; index < primaryKeyColumns.length; index++){
+                keyValues[index] = values[primaryKeyColumns[index]][row];
+            }
+            keys[row] = primaryKeyIndex.createKey(keyValues);
+            Integer last = written.get(keys[row]);
+            if(last == null){
+                last = primaryKeyIndex.get(keys[row]);
             }
+            previous[row] = last == null ? RowVersions.NONE : last;
+            written.put(keys[row], numRows + row);
+        }
+        makeSpace(previous, written.size());
+        long estimate = (long) count * ESTIMATED_INDEX_ENTRY_SIZE * (1 + indexes.size());
+        for(int index = 0; index < columns.length; index++){
+            estimate += columns[index].estimateAppend(values[index], count);
+        }
+        memoryBudget.reserve(estimate);
+        accountedMemory += estimate;
+
+        insertStart = numRows;
+        for(int index = 0; index < columns.length; index++){
+            columns[index].appendAll(values[index], count);
+        }
+        addToPartitions(numRows, count);
+        long [] writeTimes = batch.getWriteTimes();
+        long now = System.currentTimeMillis();
+        for(int row = 0; row < count; row++){
+            int position = numRows + row;
+            versions.append(position, previous[row], writeTimes == null ? now : writeTimes[row]);
+            primaryKeyIndex.put(keys[row], position);
+            addToIndexes(indexes.values(), position);
+        }
+        numRows += count;
+        compactIfNeeded();
+        reconcileMemory();
+        publish();
+        if(changeLog.hasSubscribers()){
+            changeLog.append(snapshot(), insertStart, numRows, generation);
         }
-        String key = generatePrimaryKey(row);
-        rows.put(key, rowObjects);
     }
 
     /**
-     * Check that the table size have not reached the maximum.
-     * @throws Exception If the maximum capacity have been reached.
+     * Count the rows of a batch that do not replace a visible row.
+     * @param previous The position of the version replaced by each row of the batch.
+     * @return The number of rows added to the table.
      */
-    private void checkTableSpace() throws Exception {
-        if(rows.size() >= maxRows){
+    private int countAdded(int [] previous){
+        int added = 0;
+        for(int last : previous){
+            if(last == RowVersions.NONE || last < numRows && versions.isDeleted(last)){
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Make room for the rows of a batch. Expired rows are removed first, up to the size of the batch, and
+     * the eviction policy removes the rows that still exceed the table capacity. Removed rows are
+     * published at once, as they no longer depend on the batch.
+     * @param previous The position of the version replaced by each row of the batch.
+     * @param distinct The number of distinct primary keys in the batch.
+     * @throws Exception If the maximum capacity would be exceeded.
+     */
+    private void makeSpace(int [] previous, int distinct) throws Exception {
+        if(distinct > maxRows){
             throw new Exception("Table maximum capacity reached: " + maxRows);
         }
+        int removed = removeExpired(previous.length);
+        int added = countAdded(previous);
+        if(!EvictionPolicy.NONE.equals(options.getEvictionPolicy())){
+            int excess = getLiveRows() + added - maxRows;
+            while(added > 0 && excess > 0){
+                int evicted = evict(excess);
+                if(evicted == 0){
+                    break;
+                }
+                removed += evicted;
+                added = countAdded(previous);
+                excess = getLiveRows() + added - maxRows;
+            }
+        }
+        if(removed > 0){
+            publish();
+        }
+        checkTableSpace(added);
     }
 
     /**
-     * Generate the primary key for a given row.
-     * @param row The map associating column name with cell value.
-     * @return A String representation of the key.
-     * @throws Exception If the row does not contains all required values.
+     * Get the number of rows that have not been replaced nor deleted.
+     * @return The number of rows.
      */
-    private String generatePrimaryKey(Map<String, Object> row) throws Exception {
-        StringBuilder sb = new StringBuilder();
-        for(String keyColumn: primaryKey){
-            if(!row.containsKey(keyColumn)){
-                throw new Exception("Key column " + keyColumn + " not found in the row to be inserted.");
-            }else{
-                sb.append(row.get(keyColumn)).append("$");
+    private int getLiveRows(){
+        return numRows - versions.getReplaced() - versions.getDeleted();
+    }
+
+    /**
+     * Determine whether a row has not been replaced nor deleted.
+     * @param row The row position.
+     * @return Whether the row is visible in the current storage.
+     */
+    private boolean isLive(int row){
+        return versions.isVisible(row, numRows, versions.getDeleted());
+    }
+
+    /**
+     * Delete the rows chosen by the eviction policy. FIFO deletes the oldest rows; LRU sweeps the rows
+     * with a clock hand, clearing the reference mark of the marked rows and deleting the first row found
+     * without a mark.
+     * @param needed The number of rows to be deleted.
+     * @return The number of rows deleted.
+     */
+    private int evict(int needed){
+        int evicted = 0;
+        if(EvictionPolicy.FIFO.equals(options.getEvictionPolicy())){
+            while(evicted < needed && evictionHand < numRows){
+                if(isLive(evictionHand)){
+                    versions.delete(evictionHand);
+                    evicted++;
+                }
+                evictionHand++;
+            }
+        }else if(EvictionPolicy.LRU.equals(options.getEvictionPolicy())){
+            long steps = 2L * numRows;
+            while(evicted < needed && steps > 0){
+                if(evictionHand >= numRows){
+                    evictionHand = 0;
+                }
+                if(isLive(evictionHand) && !versions.clearReference(evictionHand)){
+                    versions.delete(evictionHand);
+                    evicted++;
+                }
+                evictionHand++;
+                steps--;
+            }
+        }
+        evictedRows += evicted;
+        return evicted;
+    }
+
+    /**
+     * Remove the rows that have expired, examining at most a given number of rows. The rows expire in
+     * the order they were written, so the examination stops at the first row that has not expired.
+     * @param maxRows The maximum number of rows examined.
+     * @return The number of rows examined, which is lower than the maximum if no row is left to expire.
+     */
+    public synchronized int expire(int maxRows){
+        int examined = expiryHand;
+        int removed = removeExpired(maxRows);
+        examined = expiryHand - examined;
+        if(removed > 0){
+            compactIfNeeded();
+            reconcileMemory();
+            publish();
+        }
+        return examined;
+    }
+
+    /**
+     * Delete the rows that have expired, examining at most a given number of rows.
+     * @param maxRows The maximum number of rows examined.
+     * @return The number of rows deleted.
+     */
+    private int removeExpired(int maxRows){
+        if(options.getTtl() <= 0){
+            return 0;
+        }
+        long expired = System.currentTimeMillis() - options.getTtl();
+        int removed = 0;
+        int last = (int) Math.min(numRows, (long) expiryHand + maxRows);
+        while(expiryHand < last && versions.getWriteTime(expiryHand) <= expired){
+            if(isLive(expiryHand)){
+                versions.delete(expiryHand);
+                removed++;
             }
+            expiryHand++;
         }
-        return sb.toString();
+        expiredRows += removed;
+        return removed;
     }
 
     /**
-     * Truncate the contents of a table.
+     * Get the number of rows removed by the eviction policy since the table was created.
+     * @return The number of rows.
+     */
+    public long getEvictedRows() {
+        return evictedRows;
+    }
+
+    /**
+     * Get the number of expired rows removed since the table was created.
+     * @return The number of rows.
      */
-    public void truncate() {
-        rows.clear();
+    public long getExpiredRows() {
+        return expiredRows;
     }
 
     /**
-     * Perform a full scan search.
+     * Find the primary key of the rows that satisfy a set of relations.
      * @param relations The list of relationships.
-     * @param outputColumns The output columns in order.
-     * @return A list with the matching columns.
+     * @return A batch with the primary key columns of the matching rows.
+     * @throws Exception If the relations cannot be evaluated.
      */
-    public List<SimpleValue[]> fullScanSearch(
-            List<InMemoryRelation> relations,
-            List<InMemorySelector> outputColumns)
-    throws Exception{
+    public InMemoryColumnBatch findKeys(List<InMemoryRelation> relations) throws Exception {
+        return findRows(relations, primaryKey, Collections.<String, Object>emptyMap());
+    }
 
-        List<SimpleValue[]> results = new ArrayList<>();
-        boolean toAdd;
-        for(Object [] row : rows.values()){
-            toAdd = true;
-            for(InMemoryRelation relation : relations){
-                Object o = row[columnIndex.get(relation.getColumnName())];
-                toAdd &= relation.getRelation().compare(o, relation.getRightPart());
+    /**
+     * Find the new values of the rows that satisfy a set of relations once a set of columns is assigned.
+     * @param relations The list of relationships.
+     * @param assignments The values assigned to the columns.
+     * @return A batch with every column of the matching rows.
+     * @throws Exception If the relations cannot be evaluated, a column does not exist or it belongs to the
+     * primary key.
+     */
+    public InMemoryColumnBatch findUpdates(List<InMemoryRelation> relations, Map<String, Object> assignments)
+            throws Exception {
+        for(String column : assignments.keySet()){
+            getColumnPosition(column);
+            if(primaryKey.contains(column)){
+                throw new Exception("Primary key column " + column + " cannot be updated");
             }
+        }
+        return findRows(relations, Arrays.asList(columnNames), assignments);
+    }
 
-            if(toAdd){
-                results.add(projectColumns(row, outputColumns));
+    /**
+     * Read a set of columns of the rows that satisfy a set of relations.
+     * @param relations The list of relationships.
+     * @param outputColumns The names of the columns read.
+     * @param assignments The values that replace the values read.
+     * @return A batch with the columns of the matching rows.
+     * @throws Exception If the relations cannot be evaluated.
+     */
+    private InMemoryColumnBatch findRows(List<InMemoryRelation> relations, List<String> outputColumns,
+            Map<String, Object> assignments) throws Exception {
+        List<InMemorySelector> selectors = new ArrayList<>();
+        for(String column : outputColumns){
+            selectors.add(new InMemoryColumnSelector(column));
+        }
+        List<SimpleValue[]> rows = snapshot().search(relations, selectors);
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(outputColumns, rows.size());
+        Object [] values = new Object[outputColumns.size()];
+        for(SimpleValue[] row : rows){
+            for(int index = 0; index < values.length; index++){
+                String column = outputColumns.get(index);
+                values[index] = assignments.containsKey(column) ? assignments.get(column) : row[index].getValue();
             }
+            batch.addRow(values);
         }
-        return results;
+        return batch;
     }
 
+    /**
+     * Delete the rows with a set of primary keys. Keys without a visible row are ignored. The deleted
+     * rows remain in the storage until it is compacted.
+     * @param keys A batch with the primary key columns of the rows.
+     * @return The number of rows deleted.
+     * @throws Exception If the batch does not contain the primary key or a value cannot be converted.
+     */
+    public synchronized int delete(InMemoryColumnBatch keys) throws Exception {
+        int deleted = 0;
+        for(int row : findLatest(keys)){
+            if(row != RowVersions.NONE && isLive(row)){
+                versions.delete(row);
+                deleted++;
+            }
+        }
+        if(deleted > 0){
+            publish();
+        }
+        return deleted;
+    }
 
+    /**
+     * Write new versions of existing rows. Rows whose primary key has no visible row are ignored, so
+     * updates never insert rows.
+     * @param rows A batch with the new values of the rows, including their primary key.
+     * @return The number of rows updated.
+     * @throws Exception If the batch does not contain the primary key, a value cannot be converted, or
+     * the memory budget would be exceeded.
+     */
+    public synchronized int update(InMemoryColumnBatch rows) throws Exception {
+        int [] latest = findLatest(rows);
+        List<String> batchColumns = rows.getColumnNames();
+        InMemoryColumnBatch existing = new InMemoryColumnBatch(batchColumns, rows.size());
+        Object [] values = new Object[batchColumns.size()];
+        long [] writeTimes = rows.getWriteTimes() == null ? null : new long[rows.size()];
+        for(int row = 0; row < latest.length; row++){
+            if(latest[row] != RowVersions.NONE && isLive(latest[row])){
+                for(int column = 0; column < values.length; column++){
+                    values[column] = rows.getValues(column)[row];
+                }
+                if(writeTimes != null){
+                    writeTimes[existing.size()] = rows.getWriteTimes()[row];
+                }
+                existing.addRow(values);
+            }
+        }
+        existing.setWriteTimes(writeTimes);
+        if(existing.size() > 0){
+            insert(existing);
+        }
+        return existing.size();
+    }
 
     /**
-     * Project a set of columns given a complete row.
-     * @param row The source row.
-     * @param outputColumns The set of output columns.
-     * @return A row with the projected columns.
+     * Find the latest version of the rows of a batch.
+     * @param batch A batch containing the primary key columns.
+     * @return The position of the latest version of each row, or {@link RowVersions#NONE}.
+     * @throws Exception If the batch does not contain the primary key or a value cannot be converted.
      */
-    private SimpleValue[] projectColumns(final Object[] row, final List<InMemorySelector> outputColumns) throws Exception{
-        SimpleValue [] result = new SimpleValue[outputColumns.size()];
-        int index = 0;
-        for(InMemorySelector selector : outputColumns){
-            if(InMemoryFunctionSelector.class.isInstance(selector)){
-               //Process function.
-                AbstractInMemoryFunction f = InMemoryFunctionSelector.class.cast(selector).getFunction();
-                if(f.isRowFunction()) {
-                    result[index] = new SimpleValue(selector, f.apply(columnIndex, convertToSimpleValueRow(selector, row)));
+    private int[] findLatest(InMemoryColumnBatch batch) throws Exception {
+        int count = batch.size();
+        Object [][] keyValues = new Object[primaryKeyColumns.length][];
+        for(int index = 0; index < primaryKeyColumns.length; index++){
+            int column = batch.getColumnNames().indexOf(primaryKey.get(index));
+            if(column < 0){
+                throw new Exception("Key column " + primaryKey.get(index) + " not found in the rows.");
+            }
+            keyValues[index] = convert(primaryKeyColumns[index], batch.getValues(column), count);
+        }
+        int [] latest = new int[count];
+        for(int row = 0; row < count; row++){
+            Object [] key = new Object[primaryKeyColumns.length];
+            for(int index = 0; index < key.length; index++){
+                key[index] = keyValues[index][row];
+            }
+            Integer position = primaryKeyIndex.get(primaryKeyIndex.createKey(key));
+            latest[row] = position == null ? RowVersions.NONE : position;
+        }
+        return latest;
+    }
+
+    /**
+     * Compact the storage in the background if the replaced and deleted rows exceed
+     * {@link #COMPACTION_DENSITY} of the row positions, so that scans stop evaluating them.
+     * @return Whether the storage has been compacted.
+     */
+    public synchronized boolean compactDeleted(){
+        int removed = versions.getReplaced() + versions.getDeleted();
+        if(removed == 0 || removed < numRows * COMPACTION_DENSITY){
+            return false;
+        }
+        compact();
+        reconcileMemory();
+        publish();
+        return true;
+    }
+
+    /**
+     * Compact the storage if enough rows have been replaced or deleted.
+     */
+    private void compactIfNeeded(){
+        int removed = versions.getReplaced() + versions.getDeleted();
+        if(removed >= COMPACTION_THRESHOLD && removed > numRows / 2){
+            compact();
+        }
+    }
+
+    /**
+     * Convert the values of a column to the type stored by the table.
+     * @param column The column position.
+     * @param values The values.
+     * @param count The number of values.
+     * @return The converted values.
+     * @throws Exception If the column type is not supported or a value cannot be converted.
+     */
+    private Object[] convert(int column, Object [] values, int count) throws Exception {
+        if(!dataTypesResolved[column]){
+            dataTypes[column] = AbstractInMemoryDataType.castToNativeDataType(columnTypes[column].getSimpleName());
+            dataTypesResolved[column] = true;
+        }
+        AbstractInMemoryDataType dataType = dataTypes[column];
+        if(dataType == null){
+            return values;
+        }
+        Object [] converted = new Object[count];
+        for(int row = 0; row < count; row++){
+            Object value = values[row];
+            if(value == null || columnTypes[column].isInstance(value)){
+                converted[row] = value;
+            }else{
+                converted[row] = dataType.convertStringToInMemoryDataType(String.valueOf(value));
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Publish the current state of the storage as a new snapshot.
+     */
+    private void publish(){
+        snapshot = new TableSnapshot(this, columns, primaryKeyIndex, indexes, versions, partitions, numRows,
+                versions.getReplaced(), versions.getDeleted());
+    }
+
+    /**
+     * Compute the number of bytes of the current storage: the exact size of the columns, and an estimate
+     * of the indexes.
+     * @return The number of bytes.
+     */
+    private long computeMemoryUsage(){
+        long usage = (long) numRows * ESTIMATED_INDEX_ENTRY_SIZE * (1 + indexes.size());
+        for(AbstractInMemoryColumn column : columns){
+            usage += column.getMemoryUsage();
+        }
+        return usage;
+    }
+
+    /**
+     * Replace the bytes accounted in the memory budget with the size of the current storage. The storage
+     * replaced by a truncation or a compaction is released from the budget, even if open snapshots still
+     * reference it.
+     */
+    private void reconcileMemory(){
+        long usage = computeMemoryUsage();
+        memoryBudget.adjust(usage - accountedMemory);
+        accountedMemory = usage;
+    }
+
+    /**
+     * Release the memory accounted by the table. Called when the table is dropped.
+     */
+    public synchronized void releaseMemory(){
+        memoryBudget.adjust(-accountedMemory);
+        accountedMemory = 0;
+    }
+
+    /**
+     * Get the memory budget of the table.
+     * @return A {@link MemoryBudget}.
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the number of bytes of the table stored outside of the Java heap.
+     * @return The number of bytes.
+     */
+    public long getOffHeapUsage(){
+        return snapshot().getOffHeapUsage();
+    }
+
+    /**
+     * Add the values of a row to a set of secondary indexes.
+     * @param targets The indexes.
+     * @param row The row position.
+     */
+    private void addToIndexes(Collection<AbstractInMemoryIndex> targets, int row){
+        for(AbstractInMemoryIndex index : targets){
+            Object value = columns[columnIndex.get(index.getColumnName())].get(row);
+            if(value != null){
+                index.insert(value, row);
+            }
+        }
+    }
+
+    /**
+     * Copy the visible rows into a new storage, discarding the replaced and deleted versions. The write
+     * times and reference marks of the rows are kept. The previous storage is left untouched for the
+     * snapshots that still use it.
+     */
+    private void compact(){
+        int [] moved = new int[numRows];
+        AbstractInMemoryColumn [] compacted = createColumns();
+        RowVersions compactedVersions = createVersions();
+        boolean writeTimes = options.getTtl() > 0;
+        boolean references = EvictionPolicy.LRU.equals(options.getEvictionPolicy());
+        int compactedEvictionHand = 0;
+        int compactedExpiryHand = 0;
+        int compactedInsertStart = 0;
+        int position = 0;
+        for(int row = 0; row < numRows; row++){
+            moved[row] = RowVersions.NONE;
+            if(isLive(row)){
+                for(int index = 0; index < columns.length; index++){
+                    compacted[index].append(columns[index].get(row));
                 }
-            }else if(InMemoryColumnSelector.class.isInstance(selector)){
-                Integer pos = columnIndex.get(selector.getName());
-                result[index] = new SimpleValue(selector,row[pos]);
-            }else if(InMemoryLiteralSelector.class.isInstance(selector)){
-                result[index] = new SimpleValue(selector,selector.getName());
-            }else if (InMemoryJoinSelector.class.isInstance(selector)){
-                InMemoryJoinSelector join = InMemoryJoinSelector.class.cast(selector);
-                String column = join.getMyTerm().getColumnName().getName();
-                Integer pos = columnIndex.get(column);
-                result[index] = new JoinValue(join, row[pos]);
-            } else{
-                throw new Exception("Cannot recognize selector class " + selector.getClass());
+                compactedVersions.append(position, RowVersions.NONE,
+                        writeTimes ? versions.getWriteTime(row) : 0);
+                if(references && versions.clearReference(row)){
+                    compactedVersions.reference(position);
+                }
+                moved[row] = position;
+                position++;
             }
-            index++;
+            compactedEvictionHand = row < evictionHand ? position : compactedEvictionHand;
+            compactedExpiryHand = row < expiryHand ? position : compactedExpiryHand;
+            compactedInsertStart = row < insertStart ? position : compactedInsertStart;
+        }
+        PrimaryKeyIndex compactedKeys = createPrimaryKeyIndex();
+        for(Map.Entry<PrimaryKey, Integer> entry : primaryKeyIndex.entries()){
+            if(moved[entry.getValue()] != RowVersions.NONE){
+                compactedKeys.put(entry.getKey(), moved[entry.getValue()]);
+            }
+        }
+        evictionHand = compactedEvictionHand;
+        expiryHand = compactedExpiryHand;
+        insertStart = compactedInsertStart;
+        generation++;
+        columns = compacted;
+        primaryKeyIndex = compactedKeys;
+        versions = compactedVersions;
+        numRows = position;
+        indexes = createIndexes(indexes.values());
+        for(int row = 0; row < numRows; row++){
+            addToIndexes(indexes.values(), row);
         }
-        return result;
+        partitions = createPartitions();
+        addToPartitions(0, numRows);
     }
 
     /**
-     * Get the size of the table in number of rows.
-     * @return The number of rows.
+     * Create empty version chains, keeping the write times of the rows if they expire and their reference
+     * marks if the least recently used rows are evicted.
+     * @return A {@link RowVersions}.
      */
-    public int size(){
-        return rows.size();
+    private RowVersions createVersions(){
+        return new RowVersions(options.getTtl() > 0, EvictionPolicy.LRU.equals(options.getEvictionPolicy()));
+    }
+
+    /**
+     * Create an empty directory of time partitions.
+     * @return The {@link TimePartitions}, or null if the table is not partitioned.
+     */
+    private TimePartitions createPartitions(){
+        if(options.getTimePartitionColumn() == null){
+            return null;
+        }
+        return new TimePartitions(columnIndex.get(options.getTimePartitionColumn()),
+                options.getTimePartitionInterval());
+    }
+
+    /**
+     * Add a block of appended rows to the time partitions.
+     * @param first The position of the first row.
+     * @param count The number of rows.
+     */
+    private void addToPartitions(int first, int count){
+        if(partitions != null){
+            partitions.add(AbstractNumericColumn.class.cast(columns[partitions.getColumn()]), first, count);
+        }
+    }
+
+    /**
+     * Create an empty column per table column.
+     * @return The columns indexed by column position.
+     */
+    private AbstractInMemoryColumn[] createColumns(){
+        AbstractInMemoryColumn [] created = new AbstractInMemoryColumn[columnNames.length];
+        for(int index = 0; index < created.length; index++){
+            created[index] = AbstractInMemoryColumn.create(columnTypes[index], offHeap);
+        }
+        return created;
+    }
+
+    /**
+     * Create an empty primary key index.
+     * @return A {@link PrimaryKeyIndex}.
+     */
+    private PrimaryKeyIndex createPrimaryKeyIndex(){
+        return new PrimaryKeyIndex(primaryKey.toArray(new String[primaryKey.size()]), primaryKeyTypes);
+    }
+
+    /**
+     * Create an empty copy of a set of secondary indexes.
+     * @param existing The indexes.
+     * @return An unmodifiable map associating index names with the new indexes.
+     */
+    private static Map<String, AbstractInMemoryIndex> createIndexes(Collection<AbstractInMemoryIndex> existing){
+        Map<String, AbstractInMemoryIndex> created = new HashMap<>();
+        for(AbstractInMemoryIndex index : existing){
+            created.put(index.getName(), AbstractInMemoryIndex.create(index.getType(), index.getName(),
+                    index.getColumnName()));
+        }
+        return Collections.unmodifiableMap(created);
+    }
+
+    /**
+     * Create a secondary index over a column. Existing rows are added to the index.
+     * @param indexName The name of the index.
+     * @param columnName The name of the indexed column.
+     * @param type The type of index.
+     * @throws Exception If the index already exists, the column is not found or a full-text index is
+     * requested over a non-text column.
+     */
+    public synchronized void createIndex(String indexName, String columnName, InMemoryIndexType type)
+            throws Exception {
+        if(indexes.containsKey(indexName)){
+            throw new Exception("Index " + indexName + " already exists in table " + tableName);
+        }
+        int position = getColumnPosition(columnName);
+        if(InMemoryIndexType.FULL_TEXT.equals(type) && !String.class.equals(columnTypes[position])){
+            throw new Exception("Full-text index " + indexName + " requires a text column, found "
+                    + columnTypes[position].getSimpleName());
+        }
+        long estimate = (long) numRows * ESTIMATED_INDEX_ENTRY_SIZE;
+        memoryBudget.reserve(estimate);
+        accountedMemory += estimate;
+        AbstractInMemoryIndex index = AbstractInMemoryIndex.create(type, indexName, columnName);
+        for(int row = 0; row < numRows; row++){
+            addToIndexes(Collections.singletonList(index), row);
+        }
+        Map<String, AbstractInMemoryIndex> updated = new HashMap<>(indexes);
+        updated.put(indexName, index);
+        indexes = Collections.unmodifiableMap(updated);
+        reconcileMemory();
+        publish();
+    }
+
+    /**
+     * Drop a secondary index.
+     * @param indexName The name of the index.
+     * @throws Exception If the index does not exist.
+     */
+    public synchronized void dropIndex(String indexName) throws Exception {
+        if(!indexes.containsKey(indexName)){
+            throw new Exception("Index " + indexName + " does not exist in table " + tableName);
+        }
+        Map<String, AbstractInMemoryIndex> updated = new HashMap<>(indexes);
+        updated.remove(indexName);
+        indexes = Collections.unmodifiableMap(updated);
+        reconcileMemory();
+        publish();
+    }
+
+    /**
+     * Get the log of the rows appended to the table.
+     * @return The {@link ChangeLog}.
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Get the secondary indexes of the table.
+     * @return A map associating index names with indexes.
+     */
+    public Map<String, AbstractInMemoryIndex> getIndexes() {
+        return snapshot().getIndexes();
+    }
+
+    /**
+     * Check that the table size will not exceed the maximum.
+     * @param added The number of rows to be added.
+     * @throws Exception If the maximum capacity would be exceeded.
+     */
+    private void checkTableSpace(int added) throws Exception {
+        if(added > 0 && getLiveRows() + added > maxRows){
+            throw new Exception("Table maximum capacity reached: " + maxRows);
+        }
+    }
+
+    /**
+     * Truncate the contents of a table. The rows remain visible to the snapshots taken before.
+     */
+    public synchronized void truncate() {
+        clearStorage();
+        publish();
+    }
+
+    /**
+     * Replace the contents of a table with a batch of rows. The previous rows remain visible to the
+     * snapshots taken before, and readers never observe the table between both states.
+     * @param batch The new rows.
+     * @throws Exception If the rows cannot be inserted, in which case the table is left empty.
+     */
+    public synchronized void reload(InMemoryColumnBatch batch) throws Exception {
+        clearStorage();
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            publish();
+            throw e;
+        }
+    }
+
+    /**
+     * Discard the rows of the table without publishing a new snapshot.
+     */
+    private void clearStorage() {
+        columns = createColumns();
+        primaryKeyIndex = createPrimaryKeyIndex();
+        versions = createVersions();
+        indexes = createIndexes(indexes.values());
+        partitions = createPartitions();
+        numRows = 0;
+        evictionHand = 0;
+        expiryHand = 0;
+        insertStart = 0;
+        generation++;
+        reconcileMemory();
+    }
+
+    /**
+     * Search the rows of the table that satisfy a set of relations.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return A list with the matching columns.
+     * @throws Exception If the search cannot be performed.
+     * @see TableSnapshot#search(List, List)
+     */
+    public List<SimpleValue[]> search(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return snapshot().search(relations, outputColumns);
+    }
+
+    /**
+     * Lazily scan the rows of the table that satisfy a set of relations. Rows inserted after the scan
+     * starts are not returned.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return An iterator over the matching rows.
+     * @throws Exception If the scan cannot be performed.
+     * @see TableSnapshot#scan(List, List)
+     */
+    public Iterator<SimpleValue[]> scan(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return snapshot().scan(relations, outputColumns);
     }
 
+    /**
+     * Perform a full scan search. Only the columns referenced by the relations and the output columns
+     * are read.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return A list with the matching columns.
+     */
+    public List<SimpleValue[]> fullScanSearch(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return snapshot().fullScanSearch(relations, outputColumns);
+    }
 
-    private SimpleValue[] convertToSimpleValueRow(InMemorySelector selector, Object[] row){
-        SimpleValue[] result = new SimpleValue[row.length];
+    /**
+     * Get the storage of a column in the last snapshot.
+     * @param columnName The name of the column.
+     * @return The {@link AbstractInMemoryColumn}.
+     * @throws Exception If the column does not exist.
+     */
+    public AbstractInMemoryColumn getColumn(String columnName) throws Exception {
+        return snapshot().getColumn(columnName);
+    }
 
-        int i = 0;
-        for (Object field:row){
-            result[i++]=new SimpleValue(selector, field);
+    /**
+     * Get the position of a column.
+     * @param columnName The name of the column.
+     * @return The column position.
+     * @throws Exception If the column does not exist.
+     */
+    int getColumnPosition(String columnName) throws Exception {
+        Integer pos = columnIndex.get(columnName);
+        if(pos == null){
+            throw new Exception("Column " + columnName + " not found in table " + tableName);
         }
-        return result;
+        return pos;
+    }
+
+    /**
+     * Get the size of the table in number of rows.
+     * @return The number of rows.
+     */
+    public int size(){
+        return snapshot().size();
     }
 }
@@ -0,0 +1,257 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.Arrays;
+
+/**
+ * Version chains of the rows of a table. Rows are never modified once they are visible: writing a
+ * row whose primary key already exists appends a new version of the row and links both versions. As
+ * rows are appended in order, the position of a row also identifies the moment it was written, so a
+ * snapshot that contains the first N rows sees a row if it is one of them and it has not been replaced
+ * by another of them.
+ *
+ * Removing a row, because it expired or was evicted, marks it as deleted with the sequence number of
+ * the deletion instead of a successor, so a snapshot taken after D deletions sees a row if it has not
+ * been deleted by one of them. Tables whose rows expire also keep the time each row was written, and
+ * tables evicting the least recently used rows keep a reference mark per row.
+ */
+public class RowVersions {
+
+    /**
+     * Position used when a row has no predecessor or successor.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Initial number of rows allocated.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Position of the version that replaced each row, {@link #NONE}, or the encoded sequence number of
+     * the deletion of the row.
+     */
+    private volatile int [] successors = new int[INITIAL_CAPACITY];
+
+    /**
+     * Position of the version replaced by each row.
+     */
+    private volatile int [] predecessors = new int[INITIAL_CAPACITY];
+
+    /**
+     * Time in milliseconds each row was written, or null if the times are not kept.
+     */
+    private volatile long [] writeTimes;
+
+    /**
+     * Reference mark of each row, or null if the marks are not kept. Marks are set by the readers
+     * without synchronization, so a mark set while the array grows may be lost.
+     */
+    private volatile byte [] references;
+
+    /**
+     * Number of rows that have been replaced.
+     */
+    private volatile int replaced = 0;
+
+    /**
+     * Number of rows that have been deleted.
+     */
+    private volatile int deleted = 0;
+
+    /**
+     * Class constructor for version chains without write times nor reference marks.
+     */
+    public RowVersions(){
+        this(false, false);
+    }
+
+    /**
+     * Class constructor.
+     * @param keepWriteTimes Whether the time each row was written is kept.
+     * @param keepReferences Whether a reference mark is kept for each row.
+     */
+    public RowVersions(boolean keepWriteTimes, boolean keepReferences){
+        this.writeTimes = keepWriteTimes ? new long[INITIAL_CAPACITY] : null;
+        this.references = keepReferences ? new byte[INITIAL_CAPACITY] : null;
+    }
+
+    /**
+     * Register a new row written at the current time.
+     * @param row The row position.
+     * @param predecessor The position of the version replaced by the row, or {@link #NONE}.
+     */
+    public void append(int row, int predecessor){
+        append(row, predecessor, System.currentTimeMillis());
+    }
+
+    /**
+     * Register a new row. If the version it replaces has been deleted, the row is a new row and the
+     * previous version remains deleted. Write times never decrease, so that the rows expire in order.
+     * @param row The row position.
+     * @param predecessor The position of the version replaced by the row, or {@link #NONE}.
+     * @param writeTime The time the row was written in milliseconds.
+     */
+    public void append(int row, int predecessor, long writeTime){
+        if(row >= successors.length){
+            int capacity = Math.max(successors.length + (successors.length >> 1), row + 1);
+            if(writeTimes != null){
+                writeTimes = Arrays.copyOf(writeTimes, capacity);
+            }
+            if(references != null){
+                references = Arrays.copyOf(references, capacity);
+            }
+            predecessors = Arrays.copyOf(predecessors, capacity);
+            successors = Arrays.copyOf(successors, capacity);
+        }
+        if(writeTimes != null){
+            writeTimes[row] = row > 0 ? Math.max(writeTime, writeTimes[row - 1]) : writeTime;
+        }
+        successors[row] = NONE;
+        predecessors[row] = predecessor;
+        if(predecessor != NONE && !isDeleted(predecessor)){
+            successors[predecessor] = row;
+            replaced++;
+        }
+    }
+
+    /**
+     * Delete a row that has not been replaced nor deleted.
+     * @param row The row position.
+     */
+    public void delete(int row){
+        successors[row] = -2 - deleted;
+        deleted++;
+    }
+
+    /**
+     * Get the number of rows that have been replaced by a newer version.
+     * @return The number of rows.
+     */
+    public int getReplaced() {
+        return replaced;
+    }
+
+    /**
+     * Get the number of rows that have been deleted.
+     * @return The number of rows.
+     */
+    public int getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Determine whether a row has been deleted.
+     * @param row The row position.
+     * @return Whether the row has been deleted.
+     */
+    public boolean isDeleted(int row){
+        return successors[row] < NONE;
+    }
+
+    /**
+     * Determine whether a row is visible in a snapshot.
+     * @param row The row position.
+     * @param numRows The number of rows in the snapshot.
+     * @param deletions The number of deletions in the snapshot.
+     * @return Whether the row belongs to the snapshot and has not been replaced nor deleted in it.
+     */
+    public boolean isVisible(int row, int numRows, int deletions){
+        if(row >= numRows){
+            return false;
+        }
+        int successor = successors[row];
+        if(successor == NONE){
+            return true;
+        }
+        return successor >= 0 ? successor >= numRows : -2 - successor >= deletions;
+    }
+
+    /**
+     * Find the version of a row that is visible in a snapshot, following the chain of predecessors of
+     * a newer version.
+     * @param row The position of a version of the row.
+     * @param numRows The number of rows in the snapshot.
+     * @return The position of the version contained in the snapshot, which may have been deleted in it,
+     * or {@link #NONE} if the row did not exist.
+     */
+    public int resolve(int row, int numRows){
+        int version = row;
+        while(version != NONE && version >= numRows){
+            version = predecessors[version];
+        }
+        return version;
+    }
+
+    /**
+     * Get the time a row was written.
+     * @param row The row position.
+     * @return The time in milliseconds.
+     */
+    public long getWriteTime(int row){
+        return writeTimes[row];
+    }
+
+    /**
+     * Find the first row written after a given time.
+     * @param time The time in milliseconds.
+     * @param numRows The number of rows in the snapshot.
+     * @return The position of the first row written after the time, or numRows if there is none.
+     */
+    public int findFirstAfter(long time, int numRows){
+        long [] times = writeTimes;
+        int low = 0;
+        int high = numRows;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(times[middle] <= time){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Mark a row as referenced.
+     * @param row The row position.
+     */
+    public void reference(int row){
+        byte [] marks = references;
+        if(row < marks.length && marks[row] == 0){
+            marks[row] = 1;
+        }
+    }
+
+    /**
+     * Clear the reference mark of a row.
+     * @param row The row position.
+     * @return Whether the row was marked.
+     */
+    public boolean clearReference(int row){
+        byte [] marks = references;
+        if(marks[row] == 0){
+            return false;
+        }
+        marks[row] = 0;
+        return true;
+    }
+}
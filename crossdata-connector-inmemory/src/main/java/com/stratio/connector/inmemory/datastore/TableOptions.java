@@ -0,0 +1,295 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.stratio.connector.inmemory.datastore.views.ViewDefinition;
+
+/**
+ * Options of a table, read from the options of its CREATE TABLE statement. Option names are not case
+ * sensitive, and the options are kept as they were given so that they can be persisted with the table.
+ */
+public class TableOptions {
+
+    /**
+     * Table option with the name of an integral column holding a timestamp, such as the epoch
+     * milliseconds of an event. Rows are grouped in time partitions of that column.
+     */
+    public static final String TIME_PARTITION_COLUMN_OPTION = "TimePartitionColumn";
+
+    /**
+     * Table option with the width of each time partition in the units of the partition column, such as
+     * 60000 or 1m for partitions of one minute over epoch milliseconds.
+     */
+    public static final String TIME_PARTITION_INTERVAL_OPTION = "TimePartitionInterval";
+
+    /**
+     * Table option with the time to live of the rows in milliseconds, such as 3600000 or 1h. Rows
+     * are no longer returned once they are older, and they are removed in the background.
+     */
+    public static final String TTL_OPTION = "TTL";
+
+    /**
+     * Table option with the {@link EvictionPolicy} applied when an insert exceeds the maximum number of
+     * rows of the table.
+     */
+    public static final String EVICTION_POLICY_OPTION = "EvictionPolicy";
+
+    /**
+     * Table option with the query of a materialized view, such as
+     * SELECT category, count(*), sum(amount) FROM sales GROUP BY category. The table stores the result of
+     * the query, see {@link ViewDefinition} for the supported queries.
+     */
+    public static final String MATERIALIZED_VIEW_OPTION = "MaterializedView";
+
+    /**
+     * Table option with the interval between the refreshes of a materialized view that cannot be
+     * maintained incrementally, in milliseconds or with the suffixes s, m, h and d.
+     */
+    public static final String REFRESH_INTERVAL_OPTION = "RefreshInterval";
+
+    /**
+     * Default width of each time partition: one minute in milliseconds.
+     */
+    public static final long DEFAULT_TIME_PARTITION_INTERVAL = 60000;
+
+    /**
+     * Default interval between the refreshes of a materialized view: one minute.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 60000;
+
+    /**
+     * Options of a table created without options.
+     */
+    public static final TableOptions DEFAULT = new TableOptions(Collections.<String, String>emptyMap(), null,
+            DEFAULT_TIME_PARTITION_INTERVAL, 0, EvictionPolicy.NONE, null, DEFAULT_REFRESH_INTERVAL);
+
+    /**
+     * The options as they were given.
+     */
+    private final Map<String, String> options;
+
+    /**
+     * Name of the time partition column, or null.
+     */
+    private final String timePartitionColumn;
+
+    /**
+     * Width of each time partition.
+     */
+    private final long timePartitionInterval;
+
+    /**
+     * Time to live of the rows in milliseconds, or 0 if rows do not expire.
+     */
+    private final long ttl;
+
+    /**
+     * Policy applied when the table is full.
+     */
+    private final EvictionPolicy evictionPolicy;
+
+    /**
+     * Definition of the materialized view stored in the table, or null.
+     */
+    private final ViewDefinition view;
+
+    /**
+     * Interval between the refreshes of the materialized view.
+     */
+    private final long refreshInterval;
+
+    /**
+     * Class constructor.
+     * @param options The options as they were given.
+     * @param timePartitionColumn The name of the time partition column, or null.
+     * @param timePartitionInterval The width of each time partition.
+     * @param ttl The time to live of the rows in milliseconds, or 0.
+     * @param evictionPolicy The policy applied when the table is full.
+     * @param view The definition of the materialized view, or null.
+     * @param refreshInterval The interval between the refreshes of the materialized view.
+     */
+    private TableOptions(Map<String, String> options, String timePartitionColumn, long timePartitionInterval,
+            long ttl, EvictionPolicy evictionPolicy, ViewDefinition view, long refreshInterval){
+        this.options = options;
+        this.timePartitionColumn = timePartitionColumn;
+        this.timePartitionInterval = timePartitionInterval;
+        this.ttl = ttl;
+        this.evictionPolicy = evictionPolicy;
+        this.view = view;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Read the options of a table.
+     * @param options The table options.
+     * @return The {@link TableOptions}.
+     * @throws Exception If an option has an invalid value.
+     */
+    public static TableOptions fromOptions(Map<String, String> options) throws Exception {
+        if(options == null || options.isEmpty()){
+            return DEFAULT;
+        }
+        Map<String, String> normalized = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        normalized.putAll(options);
+        String column = normalized.get(TIME_PARTITION_COLUMN_OPTION);
+        if(column != null){
+            column = column.trim().isEmpty() ? null : column.trim();
+        }
+        long interval = DEFAULT_TIME_PARTITION_INTERVAL;
+        String value = normalized.get(TIME_PARTITION_INTERVAL_OPTION);
+        if(value != null && !value.trim().isEmpty()){
+            interval = parseInterval(TIME_PARTITION_INTERVAL_OPTION, value);
+        }
+        long ttl = 0;
+        value = normalized.get(TTL_OPTION);
+        if(value != null && !value.trim().isEmpty()){
+            ttl = parseInterval(TTL_OPTION, value);
+        }
+        EvictionPolicy policy = EvictionPolicy.NONE;
+        value = normalized.get(EVICTION_POLICY_OPTION);
+        if(value != null && !value.trim().isEmpty()){
+            try {
+                policy = EvictionPolicy.valueOf(value.trim().toUpperCase());
+            }catch(IllegalArgumentException e){
+                throw new Exception("Invalid " + EVICTION_POLICY_OPTION + " " + value + ", expecting one of "
+                        + Arrays.toString(EvictionPolicy.values()), e);
+            }
+        }
+        ViewDefinition view = null;
+        value = normalized.get(MATERIALIZED_VIEW_OPTION);
+        if(value != null && !value.trim().isEmpty()){
+            view = ViewDefinition.parse(value);
+        }
+        long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+        value = normalized.get(REFRESH_INTERVAL_OPTION);
+        if(value != null && !value.trim().isEmpty()){
+            refreshInterval = parseInterval(REFRESH_INTERVAL_OPTION, value);
+        }
+        return new TableOptions(Collections.unmodifiableMap(new TreeMap<>(options)), column, interval, ttl, policy,
+                view, refreshInterval);
+    }
+
+    /**
+     * Parse an interval given as a number, or as a number of seconds, minutes, hours or days in
+     * milliseconds with the suffixes s, m, h and d.
+     * @param option The name of the option, for the error messages.
+     * @param value The interval.
+     * @return The interval as a number.
+     * @throws Exception If the value is not a positive interval.
+     */
+    private static long parseInterval(String option, String value) throws Exception {
+        String trimmed = value.trim().toLowerCase();
+        long multiplier = 1;
+        char unit = trimmed.charAt(trimmed.length() - 1);
+        if(unit == 's'){
+            multiplier = 1000;
+        }else if(unit == 'm'){
+            multiplier = 60 * 1000;
+        }else if(unit == 'h'){
+            multiplier = 60 * 60 * 1000;
+        }else if(unit == 'd'){
+            multiplier = 24 * 60 * 60 * 1000;
+        }
+        if(multiplier > 1){
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+        long interval;
+        try {
+            interval = Long.parseLong(trimmed) * multiplier;
+        }catch(NumberFormatException e){
+            throw new Exception("Invalid " + option + " " + value
+                    + ", expecting an interval such as 60000 or 1m", e);
+        }
+        if(interval <= 0){
+            throw new Exception("Invalid " + option + " " + value
+                    + ", the interval must be positive");
+        }
+        return interval;
+    }
+
+    /**
+     * Check that the options refer to existing columns of the right type.
+     * @param columnNames The name of the table columns.
+     * @param columnTypes The types of the table columns.
+     * @throws Exception If an option is not valid for the table.
+     */
+    public void validate(String[] columnNames, Class[] columnTypes) throws Exception {
+        if(timePartitionColumn == null){
+            return;
+        }
+        for(int index = 0; index < columnNames.length; index++){
+            if(columnNames[index].equals(timePartitionColumn)){
+                if(!Long.class.equals(columnTypes[index]) && !Integer.class.equals(columnTypes[index])){
+                    throw new Exception("Time partition column " + timePartitionColumn + " must be integral");
+                }
+                return;
+            }
+        }
+        throw new Exception("Time partition column " + timePartitionColumn + " not found");
+    }
+
+    /**
+     * Get the options as they were given.
+     * @return An unmodifiable map associating option names with values.
+     */
+    public Map<String, String> asMap() {
+        return options;
+    }
+
+    /**
+     * Get the name of the time partition column.
+     * @return The column name, or null if the table is not partitioned.
+     */
+    public String getTimePartitionColumn() {
+        return timePartitionColumn;
+    }
+
+    public long getTimePartitionInterval() {
+        return timePartitionInterval;
+    }
+
+    /**
+     * Get the time to live of the rows.
+     * @return The number of milliseconds, or 0 if rows do not expire.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Get the definition of the materialized view stored in the table.
+     * @return The {@link ViewDefinition}, or null if the table is not a materialized view.
+     */
+    public ViewDefinition getView() {
+        return view;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+}
@@ -0,0 +1,784 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.evaluators.AndPredicate;
+import com.stratio.connector.inmemory.datastore.evaluators.ExpressionCompiler;
+import com.stratio.connector.inmemory.datastore.evaluators.RowPredicate;
+import com.stratio.connector.inmemory.datastore.evaluators.RowProjector;
+import com.stratio.connector.inmemory.datastore.indexes.AbstractInMemoryIndex;
+import com.stratio.connector.inmemory.datastore.indexes.BitmapIndex;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.indexes.PrimaryKeyIndex;
+import com.stratio.connector.inmemory.datastore.indexes.RoaringBitmap;
+import com.stratio.connector.inmemory.datastore.indexes.RowList;
+import com.stratio.connector.inmemory.datastore.scan.MatchCursor;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Consistent view of an {@link InMemoryTable} at the moment it was taken. A snapshot contains the
+ * first rows of the table storage; the rows appended afterwards, and the newer versions of the rows
+ * it contains, are not visible through it. Snapshots are immutable and are read without locking, so
+ * every step of a query is evaluated against the same snapshot while writers keep inserting rows.
+ */
+public class TableSnapshot {
+
+    /**
+     * The table.
+     */
+    private final InMemoryTable table;
+
+    /**
+     * Columns of the table indexed by column position.
+     */
+    private final AbstractInMemoryColumn [] columns;
+
+    /**
+     * Primary key index of the table storage.
+     */
+    private final PrimaryKeyIndex primaryKeyIndex;
+
+    /**
+     * Map of secondary indexes indexed by index name.
+     */
+    private final Map<String, AbstractInMemoryIndex> indexes;
+
+    /**
+     * Version chains of the table storage.
+     */
+    private final RowVersions versions;
+
+    /**
+     * Time partitions of the table storage, or null if the table is not partitioned.
+     */
+    private final TimePartitions partitions;
+
+    /**
+     * Number of rows of the storage contained in the snapshot.
+     */
+    private final int numRows;
+
+    /**
+     * Number of rows of the snapshot replaced by a newer version of the snapshot.
+     */
+    private final int replaced;
+
+    /**
+     * Number of rows of the snapshot deleted in the snapshot.
+     */
+    private final int deleted;
+
+    /**
+     * Class constructor.
+     * @param table The table.
+     * @param columns The columns of the table.
+     * @param primaryKeyIndex The primary key index.
+     * @param indexes The secondary indexes, which must not be modified afterwards.
+     * @param versions The version chains.
+     * @param partitions The time partitions, or null.
+     * @param numRows The number of rows contained in the snapshot.
+     * @param replaced The number of rows replaced by a newer version.
+     * @param deleted The number of rows deleted.
+     */
+    TableSnapshot(InMemoryTable table, AbstractInMemoryColumn [] columns, PrimaryKeyIndex primaryKeyIndex,
+            Map<String, AbstractInMemoryIndex> indexes, RowVersions versions, TimePartitions partitions,
+            int numRows, int replaced, int deleted){
+        this.table = table;
+        this.columns = columns;
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.indexes = indexes;
+        this.versions = versions;
+        this.partitions = partitions;
+        this.numRows = numRows;
+        this.replaced = replaced;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Get the table.
+     * @return The {@link InMemoryTable}.
+     */
+    public InMemoryTable getTable() {
+        return table;
+    }
+
+    /**
+     * Get the column names.
+     * @return An array of column names.
+     */
+    public String[] getColumnNames() {
+        return table.getColumnNames();
+    }
+
+    /**
+     * Get the column mapping indexes.
+     * @return A map associating column names with columns indexes.
+     */
+    public Map<String, Integer> getColumnIndex() {
+        return table.getColumnIndex();
+    }
+
+    /**
+     * Get the secondary indexes of the snapshot.
+     * @return A map associating index names with indexes.
+     */
+    public Map<String, AbstractInMemoryIndex> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Get the number of bytes of the columns stored outside of the Java heap.
+     * @return The number of bytes.
+     */
+    public long getOffHeapUsage(){
+        long usage = 0;
+        for(AbstractInMemoryColumn column : columns){
+            usage += column.getOffHeapUsage();
+        }
+        return usage;
+    }
+
+    /**
+     * Get the size of the snapshot in number of rows. Rows that have expired are counted until they are
+     * removed from the table.
+     * @return The number of visible rows.
+     */
+    public int size(){
+        return numRows - replaced - deleted;
+    }
+
+    /**
+     * Get the number of row positions of the snapshot, including the positions of the rows replaced by
+     * a newer version or deleted. Full scans evaluate every position.
+     * @return The number of row positions.
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Determine whether a row position is visible in the snapshot.
+     * @param row The row position.
+     * @return Whether the row is visible.
+     */
+    public boolean isVisible(int row){
+        return versions.isVisible(row, numRows, deleted);
+    }
+
+    /**
+     * Get the time a row was written. Write times are only kept by the tables whose rows expire.
+     * @param row The row position.
+     * @return The time in milliseconds.
+     */
+    public long getWriteTime(int row){
+        return versions.getWriteTime(row);
+    }
+
+    /**
+     * Get the storage of a column.
+     * @param columnName The name of the column.
+     * @return The {@link AbstractInMemoryColumn}.
+     * @throws Exception If the column does not exist.
+     */
+    public AbstractInMemoryColumn getColumn(String columnName) throws Exception {
+        return columns[table.getColumnPosition(columnName)];
+    }
+
+    /**
+     * Search the rows of the snapshot that satisfy a set of relations. If the relations restrict the
+     * primary key, or any of them can be answered by a secondary index, only the candidate rows
+     * returned by the primary key and the secondary indexes are evaluated; otherwise, a full scan
+     * is performed.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return A list with the matching columns.
+     * @throws Exception If the search cannot be performed.
+     */
+    public List<SimpleValue[]> search(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return toList(scan(relations, outputColumns));
+    }
+
+    /**
+     * Lazily scan the rows of the snapshot that satisfy a set of relations. Candidate rows are found as
+     * in {@link #search(List, List)}, but rows are only evaluated and projected as the iterator
+     * advances, so the consumer may stop the scan at any time.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return An iterator over the matching rows.
+     * @throws Exception If the scan cannot be performed.
+     */
+    public Iterator<SimpleValue[]> scan(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return scan(compilePredicate(relations), outputColumns, findCandidates(relations), null);
+    }
+
+    /**
+     * Perform a full scan search. Only the columns referenced by the relations and the output columns
+     * are read.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @return A list with the matching columns.
+     * @throws Exception If the search cannot be performed.
+     */
+    public List<SimpleValue[]> fullScanSearch(
+            List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns)
+    throws Exception{
+        return toList(scan(compilePredicate(relations), outputColumns, null, null));
+    }
+
+    /**
+     * Lazily scan a set of candidate rows.
+     * @param predicate The compiled relations, see {@link #compilePredicate(List)}.
+     * @param outputColumns The output columns in order.
+     * @param candidates The sorted candidate row positions, or null to scan every row.
+     * @param counter The counter of the rows scanned, or null.
+     * @return An iterator over the matching rows.
+     * @throws Exception If the scan cannot be performed.
+     */
+    public Iterator<SimpleValue[]> scan(
+            RowPredicate predicate,
+            List<InMemorySelector> outputColumns,
+            int [] candidates,
+            ScanMetrics.SegmentCounter counter)
+    throws Exception{
+        return new ScanIterator(match(predicate, candidates, counter),
+                ExpressionCompiler.compileProjection(this, outputColumns));
+    }
+
+    /**
+     * Lazily scan a range of rows of the snapshot. Each range can be scanned by a different thread,
+     * sharing the same predicate.
+     * @param predicate The compiled relations, see {@link #compilePredicate(List)}.
+     * @param outputColumns The output columns in order.
+     * @param start The first row position (inclusive).
+     * @param end The last row position (exclusive).
+     * @param counter The counter of the rows scanned, or null.
+     * @return An iterator over the matching rows.
+     * @throws Exception If the scan cannot be performed.
+     */
+    public Iterator<SimpleValue[]> scanRange(
+            RowPredicate predicate,
+            List<InMemorySelector> outputColumns,
+            int start,
+            int end,
+            ScanMetrics.SegmentCounter counter)
+    throws Exception{
+        return new ScanIterator(matchRange(predicate, start, end, counter),
+                ExpressionCompiler.compileProjection(this, outputColumns));
+    }
+
+    /**
+     * Find the positions of the candidate rows that satisfy a predicate.
+     * @param predicate The compiled relations, see {@link #compilePredicate(List)}.
+     * @param candidates The sorted candidate row positions, see {@link #findCandidates(List)}, or null
+     *                   to scan every row.
+     * @param counter The counter of the rows scanned, or null.
+     * @return A {@link MatchCursor}.
+     */
+    public MatchCursor match(RowPredicate predicate, int [] candidates, ScanMetrics.SegmentCounter counter){
+        int end = candidates == null ? numRows : candidates.length;
+        return new MatchCursor(predicate, candidates, 0, end, counter);
+    }
+
+    /**
+     * Find the positions of the rows of a range that satisfy a predicate.
+     * @param predicate The compiled relations, see {@link #compilePredicate(List)}.
+     * @param start The first row position (inclusive).
+     * @param end The last row position (exclusive).
+     * @param counter The counter of the rows scanned, or null.
+     * @return A {@link MatchCursor}.
+     */
+    public MatchCursor matchRange(RowPredicate predicate, int start, int end, ScanMetrics.SegmentCounter counter){
+        return new MatchCursor(predicate, null, start, Math.min(end, numRows), counter);
+    }
+
+    /**
+     * Compile a set of relations into a predicate specialized for the types of the table columns. If
+     * any row of the snapshot has been replaced or deleted, the predicate also discards those versions.
+     * If the relations set a lower bound on the time partition column, scans start at the first row of
+     * the partitions that follow the bound. If the rows of the table expire, scans start at the first
+     * row that has not expired when the predicate is compiled, as rows expire in order. If the table
+     * evicts the least recently used rows, the matching rows are marked as referenced.
+     * @param relations The list of relationships.
+     * @return A {@link RowPredicate}.
+     * @throws Exception If a column does not exist.
+     */
+    public RowPredicate compilePredicate(List<InMemoryRelation> relations) throws Exception {
+        RowPredicate predicate = ExpressionCompiler.compilePredicate(this, relations);
+        if(replaced > 0 || deleted > 0){
+            predicate = new AndPredicate(new RowPredicate[]{new VisibilityPredicate(), predicate});
+        }
+        Long lowerBound = findPartitionBound(relations);
+        if(lowerBound != null){
+            predicate = new AndPredicate(new RowPredicate[]{
+                    predicate, new PartitionPredicate(partitions.getFirstRow(lowerBound))});
+        }
+        TableOptions options = table.getOptions();
+        if(options.getTtl() > 0){
+            long expired = System.currentTimeMillis() - options.getTtl();
+            predicate = new AndPredicate(new RowPredicate[]{
+                    predicate, new ExpiryPredicate(versions.findFirstAfter(expired, numRows))});
+        }
+        if(EvictionPolicy.LRU.equals(options.getEvictionPolicy())){
+            predicate = new AndPredicate(new RowPredicate[]{predicate, new ReferencePredicate()});
+        }
+        return predicate;
+    }
+
+    /**
+     * Find the greatest lower bound that the relations set on the time partition column.
+     * @param relations The list of relationships.
+     * @return The lower bound, or null if the table is not partitioned or the relations do not bound
+     * the partition column.
+     */
+    private Long findPartitionBound(List<InMemoryRelation> relations){
+        if(partitions == null){
+            return null;
+        }
+        String partitionColumn = table.getColumnNames()[partitions.getColumn()];
+        Long result = null;
+        for(InMemoryRelation relation : relations){
+            if(partitionColumn.equals(relation.getColumnName())){
+                Long bound = getLowerBound(relation.getRelation(), relation.getRightPart());
+                if(bound != null && (result == null || bound > result)){
+                    result = bound;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the lower bound that a relation sets on the values of a column.
+     * @param operation The operation.
+     * @param rightPart The right part of the relation.
+     * @return The lower bound, or null if the relation does not bound the column with integral operands.
+     */
+    private static Long getLowerBound(InMemoryOperations operation, Object rightPart){
+        switch(operation){
+        case EQ:
+        case GT:
+        case GET:
+            return toIntegral(rightPart);
+        case BETWEEN:
+            return List.class.isInstance(rightPart) && List.class.cast(rightPart).size() == 2
+                    ? toIntegral(List.class.cast(rightPart).get(0)) : null;
+        case IN:
+            Long result = null;
+            if(List.class.isInstance(rightPart)){
+                for(Object operand : List.class.cast(rightPart)){
+                    Long value = toIntegral(operand);
+                    if(value == null){
+                        return null;
+                    }
+                    result = result == null ? value : Math.min(result, value);
+                }
+            }
+            return result;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Convert an integral operand to a long.
+     * @param operand The operand.
+     * @return The value, or null if the operand is not an integer or a long.
+     */
+    private static Long toIntegral(Object operand){
+        if(Long.class.isInstance(operand) || Integer.class.isInstance(operand)){
+            return Number.class.cast(operand).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Find the candidate rows of a set of relations using the primary key and the secondary indexes.
+     * Only the row versions visible in the snapshot are returned.
+     * @param relations The list of relationships.
+     * @return A sorted array of row positions or null if a full scan is required.
+     * @throws Exception If an index lookup fails.
+     */
+    public int[] findCandidates(List<InMemoryRelation> relations) throws Exception {
+        int [] candidates = primaryKeyIndex.search(relations);
+        if(candidates != null){
+            candidates = resolveVersions(candidates);
+        }
+        int [] indexCandidates = findIndexCandidates(relations);
+        if(candidates == null){
+            candidates = indexCandidates;
+        }else if(indexCandidates != null){
+            candidates = RowList.intersect(candidates, indexCandidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * Replace the latest versions returned by the primary key index with the versions visible in the
+     * snapshot.
+     * @param latest The sorted positions of the latest versions.
+     * @return A sorted array of visible row positions.
+     */
+    private int[] resolveVersions(int [] latest){
+        int [] rows = new int[latest.length];
+        int size = 0;
+        boolean sorted = true;
+        for(int row : latest){
+            int visible = versions.resolve(row, numRows);
+            if(visible != RowVersions.NONE && versions.isVisible(visible, numRows, deleted)){
+                sorted &= size == 0 || rows[size - 1] < visible;
+                rows[size] = visible;
+                size++;
+            }
+        }
+        return sorted ? Arrays.copyOf(rows, size) : RowList.sortDistinct(rows, size);
+    }
+
+    /**
+     * Find the candidate rows of a set of relations using the secondary indexes. The candidates of
+     * each indexed relation are combined as bitmaps, intersecting the relations and joining the terms
+     * of disjunctions. Indexes contain every version of the rows, so the versions not visible in the
+     * snapshot are discarded.
+     * @param relations The list of relationships.
+     * @return A sorted array of row positions or null if no relation can be answered by an index.
+     * @throws Exception If an index lookup fails.
+     */
+    private int[] findIndexCandidates(List<InMemoryRelation> relations) throws Exception {
+        RoaringBitmap rows = searchIndexes(relations, false);
+        if(rows == null){
+            return null;
+        }
+        return filterVisible(rows.toArray());
+    }
+
+    /**
+     * Count the rows of the snapshot that satisfy a set of relations without reading the columns. The
+     * number of rows is known if there are no relations, or if every relation is answered by bitmap
+     * indexes, in which case it is the cardinality of the combined bitmap. The rows of tables whose
+     * rows expire are always scanned.
+     * @param relations The list of relationships.
+     * @return The number of rows, or -1 if the rows must be scanned.
+     * @throws Exception If an index lookup fails.
+     */
+    public int countRows(List<InMemoryRelation> relations) throws Exception {
+        if(table.getOptions().getTtl() > 0){
+            return -1;
+        }
+        if(relations.isEmpty()){
+            return size();
+        }
+        RoaringBitmap rows = searchIndexes(relations, true);
+        if(rows == null){
+            return -1;
+        }
+        if(replaced == 0 && deleted == 0){
+            return rows.rank(numRows);
+        }
+        int count = 0;
+        for(int row : rows.toArray()){
+            if(versions.isVisible(row, numRows, deleted)){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersect the rows of the relations of a conjunction that can be answered by an index.
+     * @param relations The list of relationships.
+     * @param exact Whether every relation must be answered by a bitmap index, so that the result
+     *              contains exactly the rows that satisfy the relations.
+     * @return A bitmap of row positions, or null if no relation can be answered by an index or, when
+     * exact, if any relation cannot.
+     * @throws Exception If an index lookup fails.
+     */
+    private RoaringBitmap searchIndexes(List<InMemoryRelation> relations, boolean exact) throws Exception {
+        RoaringBitmap result = null;
+        for(InMemoryRelation relation : relations){
+            RoaringBitmap rows = searchIndex(relation, exact);
+            if(rows != null){
+                result = result == null ? rows : result.and(rows);
+                if(result.isEmpty()){
+                    break;
+                }
+            }else if(exact){
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the rows of a relation using the secondary indexes. Bitmap indexes are used directly, and
+     * the rows found by other indexes are converted to bitmaps. Disjunctions join the rows of their
+     * terms, so all of them must be answered by an index.
+     * @param relation The {@link InMemoryRelation}.
+     * @param exact Whether only bitmap indexes may be used.
+     * @return A bitmap of row positions, which must not be modified, or null if the relation cannot be
+     * answered.
+     * @throws Exception If an index lookup fails.
+     */
+    private RoaringBitmap searchIndex(InMemoryRelation relation, boolean exact) throws Exception {
+        if(InMemoryDisjunction.class.isInstance(relation)){
+            RoaringBitmap result = new RoaringBitmap();
+            for(List<InMemoryRelation> term : InMemoryDisjunction.class.cast(relation).getTerms()){
+                RoaringBitmap rows = searchIndexes(term, exact);
+                if(rows == null){
+                    return null;
+                }
+                result = result.or(rows);
+            }
+            return result;
+        }
+        if(relation.getRightPart() == null){
+            return null;
+        }
+        AbstractInMemoryIndex index = findIndex(relation);
+        if(BitmapIndex.class.isInstance(index)){
+            return BitmapIndex.class.cast(index).searchBitmap(relation.getRelation(), relation.getRightPart());
+        }else if(index != null && !exact){
+            return RoaringBitmap.of(index.search(relation.getRelation(), relation.getRightPart()));
+        }
+        return null;
+    }
+
+    /**
+     * Discard the row positions not visible in the snapshot.
+     * @param rows The sorted row positions.
+     * @return A sorted array of visible row positions.
+     */
+    private int[] filterVisible(int [] rows){
+        int size = 0;
+        for(int row : rows){
+            if(versions.isVisible(row, numRows, deleted)){
+                rows[size] = row;
+                size++;
+            }
+        }
+        return size == rows.length ? rows : Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Find the best index to answer a relation. Bitmap indexes, and then hash indexes, are preferred
+     * for the operations they support.
+     * @param relation The {@link InMemoryRelation}.
+     * @return An index or null if no index can answer the relation.
+     */
+    private AbstractInMemoryIndex findIndex(InMemoryRelation relation){
+        AbstractInMemoryIndex found = null;
+        for(AbstractInMemoryIndex index : indexes.values()){
+            if(index.getColumnName().equals(relation.getColumnName())
+                    && index.supports(relation.getRelation())
+                    && (found == null || getPriority(index) > getPriority(found))){
+                found = index;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the preference of an index when several indexes can answer a relation.
+     * @param index The index.
+     * @return The priority, higher for preferred indexes.
+     */
+    private static int getPriority(AbstractInMemoryIndex index){
+        if(InMemoryIndexType.BITMAP.equals(index.getType())){
+            return 2;
+        }
+        return InMemoryIndexType.HASH.equals(index.getType()) ? 1 : 0;
+    }
+
+    /**
+     * Consume a scan.
+     * @param rows The scanned rows.
+     * @return A list with the rows.
+     */
+    private static List<SimpleValue[]> toList(Iterator<SimpleValue[]> rows){
+        List<SimpleValue[]> results = new ArrayList<>();
+        while(rows.hasNext()){
+            results.add(rows.next());
+        }
+        return results;
+    }
+
+    /**
+     * Predicate satisfied by the row versions visible in the snapshot.
+     */
+    private final class VisibilityPredicate extends RowPredicate {
+
+        @Override
+        public boolean test(int row) {
+            return versions.isVisible(row, numRows, deleted);
+        }
+    }
+
+    /**
+     * Predicate satisfied by the rows that had not expired when it was built. Rows expire in the order
+     * they were written, so they are those that follow the first row not expired.
+     */
+    private static final class ExpiryPredicate extends RowPredicate {
+
+        /**
+         * Position of the first row not expired.
+         */
+        private final int firstRow;
+
+        /**
+         * Class constructor.
+         * @param firstRow The position of the first row not expired.
+         */
+        ExpiryPredicate(int firstRow){
+            this.firstRow = firstRow;
+        }
+
+        @Override
+        public boolean test(int row) {
+            return row >= firstRow;
+        }
+
+        @Override
+        public int nextCandidate(int row) {
+            return Math.max(row, firstRow);
+        }
+    }
+
+    /**
+     * Predicate that marks the rows it evaluates as referenced. It must be evaluated after the other
+     * predicates, so that only the matching rows are marked.
+     */
+    private final class ReferencePredicate extends RowPredicate {
+
+        @Override
+        public boolean test(int row) {
+            versions.reference(row);
+            return true;
+        }
+    }
+
+    /**
+     * Predicate whose candidates start at the first row of a set of time partitions. It does not
+     * evaluate the rows, which are still evaluated by the relations on the partition column.
+     */
+    private static final class PartitionPredicate extends RowPredicate {
+
+        /**
+         * Position of the first candidate row.
+         */
+        private final int firstRow;
+
+        /**
+         * Class constructor.
+         * @param firstRow The position of the first candidate row.
+         */
+        PartitionPredicate(int firstRow){
+            this.firstRow = firstRow;
+        }
+
+        @Override
+        public boolean test(int row) {
+            return true;
+        }
+
+        @Override
+        public int nextCandidate(int row) {
+            return Math.max(row, firstRow);
+        }
+    }
+
+    /**
+     * Iterator that projects the output columns of one matching row at a time.
+     */
+    private class ScanIterator implements Iterator<SimpleValue[]> {
+
+        /**
+         * Cursor over the matching rows.
+         */
+        private final MatchCursor cursor;
+
+        /**
+         * The compiled output columns.
+         */
+        private final RowProjector projector;
+
+        /**
+         * Next matching row, or -1 if it has not been found yet.
+         */
+        private int nextRow = -1;
+
+        /**
+         * Whether the cursor has been exhausted.
+         */
+        private boolean finished = false;
+
+        /**
+         * Class constructor.
+         * @param cursor The cursor over the matching rows.
+         * @param projector The compiled output columns.
+         */
+        ScanIterator(MatchCursor cursor, RowProjector projector){
+            this.cursor = cursor;
+            this.projector = projector;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(nextRow < 0 && !finished){
+                nextRow = cursor.next();
+                finished = nextRow == MatchCursor.END;
+            }
+            return nextRow >= 0;
+        }
+
+        @Override
+        public SimpleValue[] next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            int row = nextRow;
+            nextRow = -1;
+            try {
+                return projector.project(row);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot project row " + row + " of table "
+                        + table.getTableName(), e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Rows cannot be removed from a scan");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+
+/**
+ * Directory of the time partitions of a table. Rows are grouped by the value of an integral timestamp
+ * column in partitions of a fixed width, and the directory keeps the position of the first row of each
+ * partition. As rows are only appended, the rows newer than a given time are found after the first row
+ * of the partitions that follow it, so a query over the last minutes of an append-only table only scans
+ * its newest rows. Rows that arrive out of order are still found, at the cost of scanning from the
+ * first row of their partition. The directory has a single writer, the table, and is read without
+ * locking by its snapshots.
+ */
+public class TimePartitions {
+
+    /**
+     * Position of the partition column.
+     */
+    private final int column;
+
+    /**
+     * Width of each partition.
+     */
+    private final long interval;
+
+    /**
+     * Position of the first row of each partition, indexed by partition number.
+     */
+    private final ConcurrentSkipListMap<Long, Integer> firstRows = new ConcurrentSkipListMap<>();
+
+    /**
+     * Partition of the last row added, to avoid looking up consecutive rows of the same partition.
+     */
+    private long lastPartition = Long.MIN_VALUE;
+
+    /**
+     * Class constructor.
+     * @param column The position of the partition column.
+     * @param interval The width of each partition.
+     */
+    public TimePartitions(int column, long interval){
+        this.column = column;
+        this.interval = interval;
+    }
+
+    /**
+     * Get the position of the partition column.
+     * @return The column position.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Add a block of rows appended to the table.
+     * @param timestamps The partition column.
+     * @param first The position of the first row.
+     * @param count The number of rows.
+     */
+    public void add(AbstractNumericColumn timestamps, int first, int count){
+        for(int row = first; row < first + count; row++){
+            if(!timestamps.isNull(row)){
+                long partition = getPartition(timestamps.getAsLong(row));
+                if(partition != lastPartition){
+                    if(!firstRows.containsKey(partition)){
+                        firstRows.put(partition, row);
+                    }
+                    lastPartition = partition;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the first row that may have a timestamp greater than or equal to a given value.
+     * @param timestamp The lowest timestamp.
+     * @return The row position, or {@link Integer#MAX_VALUE} if no row has such timestamp.
+     */
+    public int getFirstRow(long timestamp){
+        int result = Integer.MAX_VALUE;
+        ConcurrentNavigableMap<Long, Integer> newer = firstRows.tailMap(getPartition(timestamp), true);
+        for(Integer row : newer.values()){
+            result = Math.min(result, row);
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of partitions with rows.
+     * @return The number of partitions.
+     */
+    public int getNumPartitions(){
+        return firstRows.size();
+    }
+
+    /**
+     * Compute the partition of a timestamp, rounding negative timestamps down.
+     * @param timestamp The timestamp.
+     * @return The partition number.
+     */
+    private long getPartition(long timestamp){
+        long partition = timestamp / interval;
+        if(timestamp % interval < 0){
+            partition--;
+        }
+        return partition;
+    }
+}
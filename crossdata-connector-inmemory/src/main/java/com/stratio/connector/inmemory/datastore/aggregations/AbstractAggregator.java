@@ -0,0 +1,74 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+/**
+ * Definition of the state of an aggregation function. The state of every group is kept in primitive
+ * arrays indexed by group number, so that updating a group does not allocate. Aggregators of the
+ * same function computed over different segments of a table can be merged.
+ */
+public abstract class AbstractAggregator {
+
+    /**
+     * Initial number of groups allocated for an aggregator.
+     */
+    protected static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Compute the new capacity of an array so that it holds at least the required number of groups.
+     * @param current The current capacity.
+     * @param required The required capacity.
+     * @return The new capacity.
+     */
+    protected static int grow(int current, int required){
+        int capacity = Math.max(current, INITIAL_CAPACITY);
+        while(capacity < required){
+            capacity = capacity + (capacity >> 1);
+        }
+        return capacity;
+    }
+
+    /**
+     * Make sure the aggregator can hold a number of groups.
+     * @param groups The number of groups.
+     */
+    public abstract void ensureCapacity(int groups);
+
+    /**
+     * Add a row to the state of a group.
+     * @param group The group number.
+     * @param row The row position in the table.
+     */
+    public abstract void update(int group, int row);
+
+    /**
+     * Add the state of a group of another aggregator of the same function to the state of a group.
+     * @param group The group number.
+     * @param other The other aggregator.
+     * @param otherGroup The group number in the other aggregator.
+     */
+    public abstract void merge(int group, AbstractAggregator other, int otherGroup);
+
+    /**
+     * Get the result of the aggregation for a group.
+     * @param group The group number.
+     * @return The value, or null.
+     */
+    public abstract Object getValue(int group);
+}
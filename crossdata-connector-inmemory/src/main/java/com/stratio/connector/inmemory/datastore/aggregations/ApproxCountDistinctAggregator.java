@@ -0,0 +1,85 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Aggregator that estimates the number of distinct non-null values of a column with a
+ * {@link HyperLogLog} sketch per group. Values are hashed with {@link AbstractInMemoryColumn#hashRow(int)},
+ * so strings are hashed by their dictionary code and no value is decoded. Unlike
+ * {@link CountDistinctAggregator}, the memory of each group is fixed regardless of the number of
+ * distinct values.
+ */
+public class ApproxCountDistinctAggregator extends AbstractAggregator {
+
+    /**
+     * The aggregated column.
+     */
+    private final AbstractInMemoryColumn column;
+
+    /**
+     * Sketch of each group.
+     */
+    private HyperLogLog [] sketches = new HyperLogLog[INITIAL_CAPACITY];
+
+    /**
+     * Class constructor.
+     * @param column The aggregated column.
+     */
+    public ApproxCountDistinctAggregator(AbstractInMemoryColumn column){
+        this.column = column;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > sketches.length){
+            sketches = Arrays.copyOf(sketches, grow(sketches.length, groups));
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(column.isNull(row)){
+            return;
+        }
+        if(sketches[group] == null){
+            sketches[group] = new HyperLogLog();
+        }
+        sketches[group].add(HyperLogLog.hash(column.hashRow(row)));
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        HyperLogLog sketch = ApproxCountDistinctAggregator.class.cast(other).sketches[otherGroup];
+        if(sketch != null){
+            if(sketches[group] == null){
+                sketches[group] = new HyperLogLog();
+            }
+            sketches[group].merge(sketch);
+        }
+    }
+
+    @Override
+    public Object getValue(int group) {
+        return sketches[group] == null ? 0 : (int) sketches[group].estimate();
+    }
+}
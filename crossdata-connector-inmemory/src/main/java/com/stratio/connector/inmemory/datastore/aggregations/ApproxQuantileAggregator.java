@@ -0,0 +1,89 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+
+/**
+ * Aggregator that estimates a quantile of the non-null values of a numeric column with a
+ * {@link QuantileSketch} per group. Groups without values have a null result.
+ */
+public class ApproxQuantileAggregator extends AbstractAggregator {
+
+    /**
+     * The aggregated column.
+     */
+    private final AbstractNumericColumn column;
+
+    /**
+     * The quantile, between 0 and 1.
+     */
+    private final double quantile;
+
+    /**
+     * Sketch of each group.
+     */
+    private QuantileSketch [] sketches = new QuantileSketch[INITIAL_CAPACITY];
+
+    /**
+     * Class constructor.
+     * @param column The aggregated column.
+     * @param quantile The quantile, between 0 and 1.
+     */
+    public ApproxQuantileAggregator(AbstractNumericColumn column, double quantile){
+        this.column = column;
+        this.quantile = quantile;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > sketches.length){
+            sketches = Arrays.copyOf(sketches, grow(sketches.length, groups));
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(column.isNull(row)){
+            return;
+        }
+        if(sketches[group] == null){
+            sketches[group] = new QuantileSketch();
+        }
+        sketches[group].add(column.getAsDouble(row));
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        QuantileSketch sketch = ApproxQuantileAggregator.class.cast(other).sketches[otherGroup];
+        if(sketch != null){
+            if(sketches[group] == null){
+                sketches[group] = new QuantileSketch();
+            }
+            sketches[group].merge(sketch);
+        }
+    }
+
+    @Override
+    public Object getValue(int group) {
+        return sketches[group] == null ? null : sketches[group].getQuantile(quantile);
+    }
+}
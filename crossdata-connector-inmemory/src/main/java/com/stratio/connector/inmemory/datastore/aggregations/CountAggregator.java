@@ -0,0 +1,89 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Aggregator that counts the rows of each group. If a column is set, rows with a null value are
+ * not counted.
+ */
+public class CountAggregator extends AbstractAggregator {
+
+    /**
+     * The counted column, or null to count every row.
+     */
+    private final AbstractInMemoryColumn column;
+
+    /**
+     * Number of rows of each group.
+     */
+    private int [] counts = new int[INITIAL_CAPACITY];
+
+    /**
+     * Class constructor.
+     * @param column The counted column, or null to count every row.
+     */
+    public CountAggregator(AbstractInMemoryColumn column){
+        this.column = column;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > counts.length){
+            counts = Arrays.copyOf(counts, grow(counts.length, groups));
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(column == null || !column.isNull(row)){
+            counts[group]++;
+        }
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        counts[group] += CountAggregator.class.cast(other).counts[otherGroup];
+    }
+
+    /**
+     * Determine whether the aggregator counts every row, regardless of the column values.
+     * @return Whether no column is counted.
+     */
+    public boolean countsRows(){
+        return column == null;
+    }
+
+    /**
+     * Add a number of rows to a group without evaluating them.
+     * @param group The group number.
+     * @param rows The number of rows.
+     */
+    public void add(int group, int rows){
+        counts[group] += rows;
+    }
+
+    @Override
+    public Object getValue(int group) {
+        return counts[group];
+    }
+}
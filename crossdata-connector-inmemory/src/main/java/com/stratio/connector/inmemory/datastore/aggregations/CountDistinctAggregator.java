@@ -0,0 +1,167 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+import com.stratio.connector.inmemory.datastore.columns.BooleanColumn;
+import com.stratio.connector.inmemory.datastore.columns.StringColumn;
+import com.stratio.connector.inmemory.datastore.indexes.KeyComparator;
+
+/**
+ * Aggregator that counts the distinct non-null values of a column. Numbers, booleans and the
+ * dictionary codes of strings are stored in sets of primitive longs; other values are stored in
+ * sets of objects.
+ */
+public class CountDistinctAggregator extends AbstractAggregator {
+
+    /**
+     * The aggregated column.
+     */
+    private final AbstractInMemoryColumn column;
+
+    /**
+     * The aggregated column if it is a string column, or null.
+     */
+    private final StringColumn stringColumn;
+
+    /**
+     * The aggregated column if it is a boolean column, or null.
+     */
+    private final BooleanColumn booleanColumn;
+
+    /**
+     * The aggregated column if it is a numeric column, or null.
+     */
+    private final AbstractNumericColumn numericColumn;
+
+    /**
+     * Whether the values of the column can be represented as longs.
+     */
+    private final boolean primitive;
+
+    /**
+     * Distinct values of each group, for primitive columns.
+     */
+    private LongHashSet [] longSets = new LongHashSet[INITIAL_CAPACITY];
+
+    /**
+     * Distinct values of each group, for other columns.
+     */
+    private Set<Object> [] objectSets;
+
+    /**
+     * Class constructor.
+     * @param column The aggregated column.
+     */
+    @SuppressWarnings("unchecked")
+    public CountDistinctAggregator(AbstractInMemoryColumn column){
+        this.column = column;
+        this.stringColumn = StringColumn.class.isInstance(column) ? StringColumn.class.cast(column) : null;
+        this.booleanColumn = BooleanColumn.class.isInstance(column) ? BooleanColumn.class.cast(column) : null;
+        this.numericColumn = AbstractNumericColumn.class.isInstance(column)
+                ? AbstractNumericColumn.class.cast(column) : null;
+        this.primitive = stringColumn != null || booleanColumn != null || numericColumn != null;
+        if(!primitive){
+            objectSets = new Set[INITIAL_CAPACITY];
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > longSets.length){
+            int capacity = grow(longSets.length, groups);
+            longSets = Arrays.copyOf(longSets, capacity);
+            if(!primitive){
+                objectSets = Arrays.copyOf(objectSets, capacity);
+            }
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(column.isNull(row)){
+            return;
+        }
+        if(primitive){
+            if(longSets[group] == null){
+                longSets[group] = new LongHashSet();
+            }
+            longSets[group].add(toLong(row));
+        }else{
+            if(objectSets[group] == null){
+                objectSets[group] = new HashSet<>();
+            }
+            objectSets[group].add(KeyComparator.normalize(column.get(row)));
+        }
+    }
+
+    /**
+     * Represent the value of a row as a long. Equal values share the same representation.
+     * @param row The non-null row.
+     * @return The long representation.
+     */
+    private long toLong(int row){
+        long result;
+        if(stringColumn != null){
+            result = stringColumn.getCode(row);
+        }else if(booleanColumn != null){
+            result = booleanColumn.getBoolean(row) ? 1 : 0;
+        }else if(numericColumn.isIntegral()){
+            result = numericColumn.getAsLong(row);
+        }else{
+            result = Double.doubleToLongBits(numericColumn.getAsDouble(row));
+        }
+        return result;
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        CountDistinctAggregator distinct = CountDistinctAggregator.class.cast(other);
+        if(primitive){
+            LongHashSet values = distinct.longSets[otherGroup];
+            if(values != null){
+                if(longSets[group] == null){
+                    longSets[group] = new LongHashSet();
+                }
+                longSets[group].addAll(values);
+            }
+        }else{
+            Set<Object> values = distinct.objectSets[otherGroup];
+            if(values != null){
+                if(objectSets[group] == null){
+                    objectSets[group] = new HashSet<>();
+                }
+                objectSets[group].addAll(values);
+            }
+        }
+    }
+
+    @Override
+    public Object getValue(int group) {
+        if(primitive){
+            return longSets[group] == null ? 0 : longSets[group].size();
+        }
+        return objectSets[group] == null ? 0 : objectSets[group].size();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Hash table that assigns a group number to each distinct combination of values of the grouping
+ * columns. Each group is represented by the position of its first row, and rows are compared with
+ * the representative row of a group column by column, so building the table does not allocate
+ * keys. Groups are numbered in order of appearance. Tables without grouping columns have a single
+ * group, which exists even if no row is added; in that case the group has no representative row.
+ */
+public class GroupTable {
+
+    /**
+     * Initial number of slots of the hash table.
+     */
+    private static final int INITIAL_SLOTS = 16;
+
+    /**
+     * Row of the group that does not correspond to any row of the table.
+     */
+    public static final int NO_ROW = -1;
+
+    /**
+     * The grouping columns.
+     */
+    private final AbstractInMemoryColumn [] keyColumns;
+
+    /**
+     * The aggregators of the group values.
+     */
+    private final AbstractAggregator [] aggregators;
+
+    /**
+     * Group number plus one stored in each slot, or zero for empty slots.
+     */
+    private int [] slots = new int[INITIAL_SLOTS];
+
+    /**
+     * Representative row of each group.
+     */
+    private int [] groupRows = new int[INITIAL_SLOTS];
+
+    /**
+     * Hash code of each group.
+     */
+    private int [] groupHashes = new int[INITIAL_SLOTS];
+
+    /**
+     * Number of groups.
+     */
+    private int numGroups = 0;
+
+    /**
+     * Class constructor.
+     * @param keyColumns The grouping columns.
+     * @param aggregators The aggregators of the group values.
+     */
+    public GroupTable(AbstractInMemoryColumn [] keyColumns, AbstractAggregator [] aggregators){
+        this.keyColumns = keyColumns;
+        this.aggregators = aggregators;
+        if(keyColumns.length == 0){
+            addGroup(NO_ROW, 0);
+        }
+    }
+
+    /**
+     * Add a row to its group.
+     * @param row The row position.
+     */
+    public void add(int row){
+        int group = 0;
+        if(keyColumns.length > 0){
+            group = findOrAdd(row, hash(row));
+        }else if(groupRows[0] == NO_ROW){
+            groupRows[0] = row;
+        }
+        for(AbstractAggregator aggregator : aggregators){
+            aggregator.update(group, row);
+        }
+    }
+
+    /**
+     * Add the groups of a table built over a different set of rows of the same table. Groups of the
+     * other table that are not found are appended in order.
+     * @param other The other table.
+     */
+    public void merge(GroupTable other){
+        for(int otherGroup = 0; otherGroup < other.numGroups; otherGroup++){
+            int group = 0;
+            if(keyColumns.length > 0){
+                group = findOrAdd(other.groupRows[otherGroup], other.groupHashes[otherGroup]);
+            }else if(groupRows[0] == NO_ROW){
+                groupRows[0] = other.groupRows[otherGroup];
+            }
+            for(int index = 0; index < aggregators.length; index++){
+                aggregators[index].merge(group, other.aggregators[index], otherGroup);
+            }
+        }
+    }
+
+    /**
+     * Get the number of groups.
+     * @return The number of groups.
+     */
+    public int size(){
+        return numGroups;
+    }
+
+    /**
+     * Get the representative row of a group.
+     * @param group The group number.
+     * @return The row position or {@link #NO_ROW}.
+     */
+    public int getGroupRow(int group){
+        return groupRows[group];
+    }
+
+    /**
+     * Get the aggregators of the group values.
+     * @return An array of {@link AbstractAggregator} in order.
+     */
+    public AbstractAggregator[] getAggregators() {
+        return aggregators;
+    }
+
+    /**
+     * Find the group of a row, adding a new group if required.
+     * @param row The row position.
+     * @param hash The hash code of the row.
+     * @return The group number.
+     */
+    private int findOrAdd(int row, int hash){
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while(slots[slot] != 0){
+            int group = slots[slot] - 1;
+            if(groupHashes[group] == hash && sameKey(groupRows[group], row)){
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int group = addGroup(row, hash);
+        slots[slot] = group + 1;
+        if(numGroups * 2 > slots.length){
+            rehash(slots.length * 2);
+        }
+        return group;
+    }
+
+    /**
+     * Append a new group.
+     * @param row The representative row.
+     * @param hash The hash code of the row.
+     * @return The group number.
+     */
+    private int addGroup(int row, int hash){
+        if(numGroups == groupRows.length){
+            groupRows = Arrays.copyOf(groupRows, groupRows.length * 2);
+            groupHashes = Arrays.copyOf(groupHashes, groupHashes.length * 2);
+        }
+        groupRows[numGroups] = row;
+        groupHashes[numGroups] = hash;
+        for(AbstractAggregator aggregator : aggregators){
+            aggregator.ensureCapacity(numGroups + 1);
+        }
+        return numGroups++;
+    }
+
+    /**
+     * Resize the slots of the hash table.
+     * @param size The new number of slots, a power of two.
+     */
+    private void rehash(int size){
+        slots = new int[size];
+        int mask = size - 1;
+        for(int group = 0; group < numGroups; group++){
+            int slot = groupHashes[group] & mask;
+            while(slots[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+
+    /**
+     * Compute the hash code of the grouping values of a row.
+     * @param row The row position.
+     * @return The hash code.
+     */
+    private int hash(int row){
+        int result = 1;
+        for(AbstractInMemoryColumn column : keyColumns){
+            result = 31 * result + column.hashRow(row);
+        }
+        return result ^ (result >>> 16);
+    }
+
+    /**
+     * Determine whether two rows have the same grouping values. Null values are equal to each other.
+     * @param row1 The first row position.
+     * @param row2 The second row position.
+     * @return Whether they belong to the same group.
+     */
+    private boolean sameKey(int row1, int row2){
+        for(AbstractInMemoryColumn column : keyColumns){
+            if(column.compareRows(row1, row2) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.evaluators.ExpressionCompiler;
+import com.stratio.connector.inmemory.datastore.evaluators.RowProjector;
+import com.stratio.connector.inmemory.datastore.structures.AbstractInMemoryFunction;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Hash aggregation of the rows of a table. Matching rows are added to a {@link GroupTable} as they are
+ * scanned, updating the state of every aggregation function in a single pass; each segment of a
+ * table can be aggregated into its own table, and the tables are merged before producing the result.
+ * The output rows contain the grouping columns and row functions evaluated on the representative row
+ * of each group, and the result of the aggregation functions. Groups that do not satisfy the HAVING
+ * relations are discarded.
+ */
+public class HashAggregation {
+
+    /**
+     * The snapshot of the aggregated table.
+     */
+    private final TableSnapshot table;
+
+    /**
+     * The grouping columns.
+     */
+    private final AbstractInMemoryColumn [] keyColumns;
+
+    /**
+     * The output columns followed by the left part of the HAVING relations.
+     */
+    private final List<InMemorySelector> selectors = new ArrayList<>();
+
+    /**
+     * Number of output columns.
+     */
+    private final int outputSize;
+
+    /**
+     * The HAVING relations.
+     */
+    private final List<InMemoryHavingRelation> having;
+
+    /**
+     * The aggregation functions of the selectors.
+     */
+    private final List<InMemoryFunctionSelector> aggregates = new ArrayList<>();
+
+    /**
+     * Position in {@link #selectors} of each aggregation function.
+     */
+    private final int [] aggregatePositions;
+
+    /**
+     * Class constructor.
+     * @param table The snapshot of the aggregated table.
+     * @param groupColumns The names of the grouping columns.
+     * @param outputColumns The output columns in order.
+     * @param having The HAVING relations.
+     * @throws Exception If a column does not exist.
+     */
+    public HashAggregation(TableSnapshot table, List<String> groupColumns, List<InMemorySelector> outputColumns,
+            List<InMemoryHavingRelation> having) throws Exception {
+        this.table = table;
+        this.keyColumns = new AbstractInMemoryColumn[groupColumns.size()];
+        for(int index = 0; index < keyColumns.length; index++){
+            keyColumns[index] = table.getColumn(groupColumns.get(index));
+        }
+        this.having = having;
+        this.outputSize = outputColumns.size();
+        selectors.addAll(outputColumns);
+        for(InMemoryHavingRelation relation : having){
+            selectors.add(relation.getSelector());
+        }
+        List<Integer> positions = new ArrayList<>();
+        for(int index = 0; index < selectors.size(); index++){
+            if(isAggregation(selectors.get(index))){
+                aggregates.add(InMemoryFunctionSelector.class.cast(selectors.get(index)));
+                positions.add(index);
+            }
+        }
+        aggregatePositions = new int[positions.size()];
+        for(int index = 0; index < aggregatePositions.length; index++){
+            aggregatePositions[index] = positions.get(index);
+        }
+    }
+
+    /**
+     * Determine whether a selector is an aggregation function.
+     * @param selector The selector.
+     * @return Whether it must be aggregated.
+     * @throws Exception If the function cannot be instantiated.
+     */
+    public static boolean isAggregation(InMemorySelector selector) throws Exception {
+        return InMemoryFunctionSelector.class.isInstance(selector)
+                && !InMemoryFunctionSelector.class.cast(selector).getFunction().isRowFunction();
+    }
+
+    /**
+     * Create an empty group table. Each segment of a scan uses its own table.
+     * @return A {@link GroupTable}.
+     * @throws Exception If an aggregation function cannot be applied to its arguments.
+     */
+    public GroupTable newGroupTable() throws Exception {
+        AbstractAggregator [] aggregators = new AbstractAggregator[aggregates.size()];
+        for(int index = 0; index < aggregators.length; index++){
+            AbstractInMemoryFunction function = aggregates.get(index).getFunction();
+            aggregators[index] = function.createAggregator(table);
+        }
+        return new GroupTable(keyColumns, aggregators);
+    }
+
+    /**
+     * Determine whether the aggregation only counts rows, so that its result only depends on the number
+     * of matching rows: there are no grouping columns, and every selector is either a literal or a
+     * count of every row.
+     * @return Whether the rows need not be read.
+     * @throws Exception If an aggregation function cannot be applied to its arguments.
+     */
+    public boolean isRowCount() throws Exception {
+        if(keyColumns.length > 0){
+            return false;
+        }
+        for(InMemorySelector selector : selectors){
+            if(!isAggregation(selector) && !InMemoryLiteralSelector.class.isInstance(selector)){
+                return false;
+            }
+        }
+        for(AbstractAggregator aggregator : newGroupTable().getAggregators()){
+            if(!CountAggregator.class.isInstance(aggregator) || !CountAggregator.class.cast(aggregator).countsRows()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Produce the output rows of an aggregation that only counts rows.
+     * @param rows The number of matching rows.
+     * @return The output rows.
+     * @throws Exception If an aggregation function cannot be applied to its arguments.
+     * @see #isRowCount()
+     */
+    public List<SimpleValue[]> finishCount(int rows) throws Exception {
+        GroupTable groups = newGroupTable();
+        for(AbstractAggregator aggregator : groups.getAggregators()){
+            CountAggregator.class.cast(aggregator).add(0, rows);
+        }
+        return finish(groups);
+    }
+
+    /**
+     * Produce the output rows of the groups of a table.
+     * @param groups The {@link GroupTable} with every matching row.
+     * @return The rows of the groups that satisfy the HAVING relations, in order of appearance.
+     * @throws Exception If a row function cannot be evaluated.
+     */
+    public List<SimpleValue[]> finish(GroupTable groups) throws Exception {
+        RowProjector projector = ExpressionCompiler.compileProjection(table, selectors);
+        AbstractAggregator [] aggregators = groups.getAggregators();
+        List<SimpleValue[]> result = new ArrayList<>(groups.size());
+        for(int group = 0; group < groups.size(); group++){
+            int row = groups.getGroupRow(group);
+            SimpleValue [] values;
+            if(row == GroupTable.NO_ROW){
+                values = emptyGroupValues();
+            }else{
+                values = projector.project(row);
+            }
+            for(int index = 0; index < aggregatePositions.length; index++){
+                int position = aggregatePositions[index];
+                values[position] = new SimpleValue(selectors.get(position), aggregators[index].getValue(group));
+            }
+            if(satisfiesHaving(values)){
+                if(values.length > outputSize){
+                    values = Arrays.copyOf(values, outputSize);
+                }
+                result.add(values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build the values of a group without rows. Only literals have a value.
+     * @return The values of the selectors.
+     */
+    private SimpleValue[] emptyGroupValues(){
+        SimpleValue [] values = new SimpleValue[selectors.size()];
+        for(int index = 0; index < values.length; index++){
+            InMemorySelector selector = selectors.get(index);
+            Object value = null;
+            if(InMemoryLiteralSelector.class.isInstance(selector)){
+                value = selector.getName();
+            }
+            values[index] = new SimpleValue(selector, value);
+        }
+        return values;
+    }
+
+    /**
+     * Check whether the values of a group satisfy the HAVING relations.
+     * @param values The values of the group, followed by the left part of each relation.
+     * @return Whether all the relations are satisfied.
+     */
+    private boolean satisfiesHaving(SimpleValue [] values){
+        for(int index = 0; index < having.size(); index++){
+            SimpleValue value = values[outputSize + index];
+            if(value == null || !having.get(index).matches(value.getValue())){
+                return false;
+            }
+        }
+        return true;
+    }
+}
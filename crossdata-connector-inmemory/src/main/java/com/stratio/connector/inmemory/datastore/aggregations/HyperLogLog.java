@@ -0,0 +1,111 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+/**
+ * HyperLogLog sketch that estimates the number of distinct values added to it. Each value is hashed
+ * to 64 bits; the first bits select a register, which keeps the maximum number of leading zeros of
+ * the remaining bits. Small cardinalities are estimated by linear counting of the empty registers.
+ * Sketches are merged by keeping the maximum of each register, so the estimate of a merged sketch
+ * does not depend on how the values were split.
+ */
+public class HyperLogLog {
+
+    /**
+     * Number of bits of the hash that select the register.
+     */
+    public static final int PRECISION = 12;
+
+    /**
+     * Number of registers. The standard error of the estimate is about 1.04 / sqrt(NUM_REGISTERS),
+     * 1.6% with the default precision.
+     */
+    public static final int NUM_REGISTERS = 1 << PRECISION;
+
+    /**
+     * Bias correction constant for the number of registers.
+     */
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+    /**
+     * Maximum number of leading zeros, plus one, of the hash bits after the register of each register.
+     */
+    private final byte [] registers = new byte[NUM_REGISTERS];
+
+    /**
+     * Spread the bits of a hash code over 64 bits, using the finalizer of MurmurHash3.
+     * @param hash The hash code of a value.
+     * @return The 64 bit hash.
+     */
+    public static long hash(long hash){
+        long result = hash;
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    /**
+     * Add a value to the sketch.
+     * @param hash The 64 bit hash of the value, see {@link #hash(long)}.
+     */
+    public void add(long hash){
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        //The sentinel bit bounds the rank when every remaining bit is zero.
+        long remaining = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if(rank > registers[register]){
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Add the values of another sketch to this one.
+     * @param other The other sketch.
+     */
+    public void merge(HyperLogLog other){
+        for(int register = 0; register < NUM_REGISTERS; register++){
+            if(other.registers[register] > registers[register]){
+                registers[register] = other.registers[register];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct values added to the sketch.
+     * @return The estimated number of distinct values.
+     */
+    public long estimate(){
+        double sum = 0;
+        int empty = 0;
+        for(byte rank : registers){
+            sum += 1.0 / (1L << rank);
+            if(rank == 0){
+                empty++;
+            }
+        }
+        double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+        if(estimate <= 2.5 * NUM_REGISTERS && empty > 0){
+            estimate = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+}
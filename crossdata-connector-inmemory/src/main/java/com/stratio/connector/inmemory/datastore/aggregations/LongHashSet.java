@@ -0,0 +1,120 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+/**
+ * Set of primitive longs using open addressing with linear probing.
+ */
+public class LongHashSet {
+
+    /**
+     * Initial number of slots.
+     */
+    private static final int INITIAL_SLOTS = 8;
+
+    /**
+     * Values stored in each slot.
+     */
+    private long [] values = new long[INITIAL_SLOTS];
+
+    /**
+     * Whether each slot is used.
+     */
+    private boolean [] used = new boolean[INITIAL_SLOTS];
+
+    /**
+     * Number of values in the set.
+     */
+    private int size = 0;
+
+    /**
+     * Add a value to the set.
+     * @param value The value.
+     * @return Whether the value was not in the set.
+     */
+    public boolean add(long value){
+        if((size + 1) * 2 > values.length){
+            rehash(values.length * 2);
+        }
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while(used[slot]){
+            if(values[slot] == value){
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add all the values of another set.
+     * @param other The other set.
+     */
+    public void addAll(LongHashSet other){
+        for(int slot = 0; slot < other.values.length; slot++){
+            if(other.used[slot]){
+                add(other.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Get the number of values in the set.
+     * @return The number of values.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Resize the slots of the set.
+     * @param slots The new number of slots, a power of two.
+     */
+    private void rehash(int slots){
+        long [] oldValues = values;
+        boolean [] oldUsed = used;
+        values = new long[slots];
+        used = new boolean[slots];
+        size = 0;
+        for(int slot = 0; slot < oldValues.length; slot++){
+            if(oldUsed[slot]){
+                add(oldValues[slot]);
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of a value.
+     * @param value The value.
+     * @return The hash code.
+     */
+    private static int hash(long value){
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LongHashSet{size=" + size + ", slots=" + values.length + "}";
+    }
+}
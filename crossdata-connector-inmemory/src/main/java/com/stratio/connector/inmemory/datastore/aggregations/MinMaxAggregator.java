@@ -0,0 +1,108 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Aggregator that finds the minimum or the maximum value of a column. The state of each group is the
+ * position of the row that holds the current extreme, so values are compared in the native type of
+ * the column and the result keeps the type of the column. Null values are ignored.
+ */
+public class MinMaxAggregator extends AbstractAggregator {
+
+    /**
+     * Row position of the groups without values.
+     */
+    private static final int NO_ROW = -1;
+
+    /**
+     * The aggregated column.
+     */
+    private final AbstractInMemoryColumn column;
+
+    /**
+     * Whether the maximum is computed instead of the minimum.
+     */
+    private final boolean max;
+
+    /**
+     * Row holding the extreme value of each group.
+     */
+    private int [] rows = new int[0];
+
+    /**
+     * Class constructor.
+     * @param column The aggregated column.
+     * @param max Whether the maximum is computed instead of the minimum.
+     */
+    public MinMaxAggregator(AbstractInMemoryColumn column, boolean max){
+        this.column = column;
+        this.max = max;
+        ensureCapacity(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > rows.length){
+            int previous = rows.length;
+            rows = Arrays.copyOf(rows, grow(rows.length, groups));
+            Arrays.fill(rows, previous, rows.length, NO_ROW);
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(!column.isNull(row) && isBetter(row, rows[group])){
+            rows[group] = row;
+        }
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        int row = MinMaxAggregator.class.cast(other).rows[otherGroup];
+        if(row != NO_ROW && isBetter(row, rows[group])){
+            rows[group] = row;
+        }
+    }
+
+    /**
+     * Determine whether the value of a row replaces the current extreme.
+     * @param row The non-null row.
+     * @param current The row of the current extreme, or {@link #NO_ROW}.
+     * @return Whether the row holds the new extreme.
+     */
+    private boolean isBetter(int row, int current){
+        if(current == NO_ROW){
+            return true;
+        }
+        int comparison = column.compareRows(row, current);
+        return max ? comparison > 0 : comparison < 0;
+    }
+
+    @Override
+    public Object getValue(int group) {
+        if(rows[group] == NO_ROW){
+            return null;
+        }
+        return column.get(rows[group]);
+    }
+}
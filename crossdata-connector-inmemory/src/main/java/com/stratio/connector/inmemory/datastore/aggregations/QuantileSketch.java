@@ -0,0 +1,262 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+/**
+ * KLL sketch that estimates the quantiles of the values added to it. Values are kept in a hierarchy
+ * of compactors where each value of level h stands for 2^h values. When a level reaches its
+ * capacity, it is sorted and every other value, starting at a pseudo-random offset, is promoted to
+ * the next level. Capacities decrease geometrically from the top level, so the sketch keeps about
+ * 3k values regardless of the number of values added, and the rank error is about 1.7% with the
+ * default k. The minimum and the maximum are kept exactly. Sketches are merged by joining their levels
+ * and compacting the result.
+ */
+public class QuantileSketch {
+
+    /**
+     * Default capacity of the top level.
+     */
+    public static final int DEFAULT_K = 200;
+
+    /**
+     * Minimum capacity of a level.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Ratio between the capacities of consecutive levels.
+     */
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    /**
+     * Capacity of the top level.
+     */
+    private final int k;
+
+    /**
+     * Values of each level.
+     */
+    private double [][] levels = new double[1][];
+
+    /**
+     * Number of values of each level.
+     */
+    private int [] sizes = new int[1];
+
+    /**
+     * Number of levels.
+     */
+    private int numLevels = 1;
+
+    /**
+     * Number of values added to the sketch.
+     */
+    private long count = 0;
+
+    /**
+     * Minimum value added to the sketch.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * Maximum value added to the sketch.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * State of the generator of compaction offsets, so that the results are repeatable.
+     */
+    private long random = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Class constructor.
+     * @param k The capacity of the top level.
+     */
+    public QuantileSketch(int k){
+        this.k = k;
+        levels[0] = new double[MIN_CAPACITY];
+    }
+
+    /**
+     * Class constructor with the default capacity.
+     */
+    public QuantileSketch(){
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Get the number of values added to the sketch.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Add a value to the sketch.
+     * @param value The value.
+     */
+    public void add(double value){
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if(sizes[0] >= capacity(0)){
+            compress();
+        }
+    }
+
+    /**
+     * Add the values of another sketch to this one.
+     * @param other The other sketch.
+     */
+    public void merge(QuantileSketch other){
+        for(int level = 0; level < other.numLevels; level++){
+            for(int index = 0; index < other.sizes[level]; index++){
+                append(level, other.levels[level][index]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    /**
+     * Estimate a quantile of the values added to the sketch.
+     * @param quantile The quantile, between 0 and 1.
+     * @return The value whose rank is closest to the quantile, or null if the sketch is empty.
+     */
+    public Double getQuantile(double quantile){
+        if(count == 0){
+            return null;
+        }
+        if(quantile <= 0){
+            return min;
+        }
+        if(quantile >= 1){
+            return max;
+        }
+        long total = 0;
+        for(int level = 0; level < numLevels; level++){
+            Arrays.sort(levels[level], 0, sizes[level]);
+            total += (long) sizes[level] << level;
+        }
+        double target = quantile * total;
+        //Merge the sorted levels, accumulating the weight of each value.
+        int [] positions = new int[numLevels];
+        long weight = 0;
+        double value = Double.NaN;
+        while(weight < total){
+            int next = -1;
+            for(int level = 0; level < numLevels; level++){
+                if(positions[level] < sizes[level]
+                        && (next < 0 || levels[level][positions[level]] < levels[next][positions[next]])){
+                    next = level;
+                }
+            }
+            value = levels[next][positions[next]++];
+            weight += 1L << next;
+            if(weight >= target){
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Compute the capacity of a level.
+     * @param level The level.
+     * @return The maximum number of values of the level.
+     */
+    private int capacity(int level){
+        int depth = numLevels - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    /**
+     * Append a value to a level, adding the level if needed.
+     * @param level The level.
+     * @param value The value.
+     */
+    private void append(int level, double value){
+        if(level >= numLevels){
+            addLevels(level + 1);
+        }
+        if(sizes[level] == levels[level].length){
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Add empty levels to the sketch.
+     * @param required The required number of levels.
+     */
+    private void addLevels(int required){
+        if(required > levels.length){
+            levels = Arrays.copyOf(levels, required);
+            sizes = Arrays.copyOf(sizes, required);
+        }
+        for(int level = numLevels; level < required; level++){
+            levels[level] = new double[MIN_CAPACITY];
+        }
+        numLevels = required;
+    }
+
+    /**
+     * Compact every level that exceeds its capacity, from the bottom.
+     */
+    private void compress(){
+        for(int level = 0; level < numLevels; level++){
+            if(sizes[level] >= capacity(level)){
+                compact(level);
+            }
+        }
+    }
+
+    /**
+     * Promote every other value of a sorted level to the next level. If the level has an odd number
+     * of values, its smallest value is kept.
+     * @param level The level.
+     */
+    private void compact(int level){
+        double [] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int kept = size & 1;
+        for(int index = kept + nextOffset(); index < size; index += 2){
+            append(level + 1, values[index]);
+        }
+        sizes[level] = kept;
+    }
+
+    /**
+     * Generate the next pseudo-random compaction offset.
+     * @return Zero or one.
+     */
+    private int nextOffset(){
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+
+/**
+ * Aggregator that computes the sum or the average of a numeric column. Integral columns are added
+ * as longs and floating point columns as doubles. Null values are ignored, and groups without
+ * values have a null result.
+ */
+public class SumAggregator extends AbstractAggregator {
+
+    /**
+     * The aggregated column.
+     */
+    private final AbstractNumericColumn column;
+
+    /**
+     * Whether the values are added as longs.
+     */
+    private final boolean integral;
+
+    /**
+     * Whether the average is computed instead of the sum.
+     */
+    private final boolean average;
+
+    /**
+     * Sum of each group of an integral column.
+     */
+    private long [] longSums;
+
+    /**
+     * Sum of each group of a floating point column.
+     */
+    private double [] doubleSums;
+
+    /**
+     * Number of non-null values of each group.
+     */
+    private int [] counts = new int[INITIAL_CAPACITY];
+
+    /**
+     * Class constructor.
+     * @param column The aggregated column.
+     * @param average Whether the average is computed instead of the sum.
+     */
+    public SumAggregator(AbstractNumericColumn column, boolean average){
+        this.column = column;
+        this.integral = column.isIntegral();
+        this.average = average;
+        if(integral){
+            longSums = new long[INITIAL_CAPACITY];
+        }else{
+            doubleSums = new double[INITIAL_CAPACITY];
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if(groups > counts.length){
+            int capacity = grow(counts.length, groups);
+            counts = Arrays.copyOf(counts, capacity);
+            if(integral){
+                longSums = Arrays.copyOf(longSums, capacity);
+            }else{
+                doubleSums = Arrays.copyOf(doubleSums, capacity);
+            }
+        }
+    }
+
+    @Override
+    public void update(int group, int row) {
+        if(column.isNull(row)){
+            return;
+        }
+        if(integral){
+            longSums[group] += column.getAsLong(row);
+        }else{
+            doubleSums[group] += column.getAsDouble(row);
+        }
+        counts[group]++;
+    }
+
+    @Override
+    public void merge(int group, AbstractAggregator other, int otherGroup) {
+        SumAggregator sum = SumAggregator.class.cast(other);
+        if(integral){
+            longSums[group] += sum.longSums[otherGroup];
+        }else{
+            doubleSums[group] += sum.doubleSums[otherGroup];
+        }
+        counts[group] += sum.counts[otherGroup];
+    }
+
+    @Override
+    public Object getValue(int group) {
+        if(counts[group] == 0){
+            return null;
+        }
+        if(average){
+            double sum = integral ? longSums[group] : doubleSums[group];
+            return sum / counts[group];
+        }
+        if(integral){
+            return longSums[group];
+        }
+        return doubleSums[group];
+    }
+}
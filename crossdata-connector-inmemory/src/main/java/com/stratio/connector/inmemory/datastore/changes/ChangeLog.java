@@ -0,0 +1,206 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.changes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+
+/**
+ * Log of the rows appended to a table, read by the continuous queries subscribed to the table. Each
+ * insert is logged as the range of row positions it appended, together with the snapshot it
+ * published, so logging does not copy the rows. Inserts are only logged while there are subscribers,
+ * and each change is discarded once every subscriber has read it.
+ */
+public class ChangeLog {
+
+    /**
+     * Changes not yet read by every subscriber, in order.
+     */
+    private final LinkedList<Change> changes = new LinkedList<>();
+
+    /**
+     * Map associating each subscriber with the sequence number of the last change it has read.
+     */
+    private final Map<Object, Long> cursors = new HashMap<>();
+
+    /**
+     * Sequence number of the last change.
+     */
+    private long sequence = 0;
+
+    /**
+     * Whether there are subscribers.
+     */
+    private volatile boolean subscribed = false;
+
+    /**
+     * Determine whether the inserts must be logged.
+     * @return Whether there are subscribers.
+     */
+    public boolean hasSubscribers() {
+        return subscribed;
+    }
+
+    /**
+     * Log the rows appended by an insert.
+     * @param snapshot The snapshot published by the insert.
+     * @param start The position of the first appended row.
+     * @param end The position following the last appended row.
+     * @param generation The storage generation of the table, which changes when the rows are moved.
+     */
+    public synchronized void append(TableSnapshot snapshot, int start, int end, int generation) {
+        if(subscribed && start < end){
+            changes.add(new Change(++sequence, snapshot, start, end, generation));
+        }
+    }
+
+    /**
+     * Subscribe to the rows appended from now on.
+     * @param subscriber The subscriber.
+     */
+    public synchronized void subscribe(Object subscriber) {
+        cursors.put(subscriber, sequence);
+        subscribed = true;
+    }
+
+    /**
+     * Stop logging the rows appended for a subscriber.
+     * @param subscriber The subscriber.
+     */
+    public synchronized void unsubscribe(Object subscriber) {
+        cursors.remove(subscriber);
+        subscribed = !cursors.isEmpty();
+        trim();
+    }
+
+    /**
+     * Read the changes logged since the last read of a subscriber.
+     * @param subscriber The subscriber.
+     * @return The changes in order.
+     * @throws Exception If the subscriber is not subscribed.
+     */
+    public synchronized List<Change> read(Object subscriber) throws Exception {
+        Long cursor = cursors.get(subscriber);
+        if(cursor == null){
+            throw new Exception("Not subscribed to the change log");
+        }
+        List<Change> result = new ArrayList<>();
+        for(Change change : changes){
+            if(change.getSequence() > cursor){
+                result.add(change);
+            }
+        }
+        cursors.put(subscriber, sequence);
+        trim();
+        return result;
+    }
+
+    /**
+     * Discard the changes read by every subscriber.
+     */
+    private void trim() {
+        long minimum = sequence;
+        for(long cursor : cursors.values()){
+            minimum = Math.min(minimum, cursor);
+        }
+        while(!changes.isEmpty() && changes.getFirst().getSequence() <= minimum){
+            changes.removeFirst();
+        }
+    }
+
+    /**
+     * Get the number of changes not yet read by every subscriber.
+     * @return The number of changes.
+     */
+    public synchronized int size() {
+        return changes.size();
+    }
+
+    /**
+     * Range of rows appended by an insert.
+     */
+    public static class Change {
+
+        /**
+         * Sequence number of the change.
+         */
+        private final long sequence;
+
+        /**
+         * The snapshot published by the insert.
+         */
+        private final TableSnapshot snapshot;
+
+        /**
+         * The position of the first appended row.
+         */
+        private final int start;
+
+        /**
+         * The position following the last appended row.
+         */
+        private final int end;
+
+        /**
+         * The storage generation of the table.
+         */
+        private final int generation;
+
+        /**
+         * Class constructor.
+         * @param sequence The sequence number of the change.
+         * @param snapshot The snapshot published by the insert.
+         * @param start The position of the first appended row.
+         * @param end The position following the last appended row.
+         * @param generation The storage generation of the table.
+         */
+        Change(long sequence, TableSnapshot snapshot, int start, int end, int generation) {
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.start = start;
+            this.end = end;
+            this.generation = generation;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public TableSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.changes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.stratio.connector.inmemory.datastore.InMemoryQuery;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+
+/**
+ * Query evaluated over the rows appended to a table since it was last polled. The query subscribes to
+ * the {@link ChangeLog} of the table when it is created, and each poll filters and projects only the
+ * rows logged since the previous poll. Consecutive inserts that did not move the rows of the table are
+ * read from the snapshot of the last one, so rows replaced or deleted before the poll are not returned.
+ */
+public class ContinuousQuery {
+
+    /**
+     * The queried table.
+     */
+    private final InMemoryTable table;
+
+    /**
+     * The query.
+     */
+    private final InMemoryQuery query;
+
+    /**
+     * Class constructor. Only the rows appended from now on are returned.
+     * @param table The queried table.
+     * @param query The query, which must not group the rows.
+     */
+    public ContinuousQuery(InMemoryTable table, InMemoryQuery query) {
+        this.table = table;
+        this.query = query;
+        table.getChangeLog().subscribe(this);
+    }
+
+    public InMemoryQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Evaluate the query over the rows appended since the previous poll.
+     * @param metrics The metrics of the query.
+     * @return The resulting rows in order of insertion.
+     * @throws Exception If the query cannot be evaluated or it has been closed.
+     */
+    public List<SimpleValue[]> poll(ScanMetrics metrics) throws Exception {
+        List<ChangeLog.Change> changes = table.getChangeLog().read(this);
+        List<SimpleValue[]> result = new ArrayList<>();
+        int index = 0;
+        while(index < changes.size()){
+            ChangeLog.Change first = changes.get(index++);
+            ChangeLog.Change last = first;
+            while(index < changes.size() && changes.get(index).getGeneration() == last.getGeneration()
+                    && changes.get(index).getStart() == last.getEnd()){
+                last = changes.get(index++);
+            }
+            TableSnapshot snapshot = last.getSnapshot();
+            Iterator<SimpleValue[]> rows = snapshot.scanRange(snapshot.compilePredicate(query.getRelations()),
+                    query.getOutputColumns(), first.getStart(), last.getEnd(), metrics.newSegment());
+            while(rows.hasNext()){
+                result.add(rows.next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unsubscribe from the change log of the table.
+     */
+    public void close() {
+        table.getChangeLog().unsubscribe(this);
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import com.stratio.connector.inmemory.datastore.columns.encoding.SegmentedValues;
+import com.stratio.connector.inmemory.datastore.indexes.KeyComparator;
+
+/**
+ * Definition of a column of an in-memory table. Values are stored by row position in a type specific
+ * storage, and null values are tracked in a separate bitmap. Columns have a single writer; arrays are
+ * replaced, not resized in place, and published through volatile fields, so rows appended before the
+ * last snapshot of the table can be read concurrently with new appends. Primitive columns keep their
+ * values in {@link SegmentedValues}, which encode each full segment of rows, and track the bounds of
+ * each segment in a {@link ZoneMap} so that scans can skip the segments that cannot match.
+ */
+public abstract class AbstractInMemoryColumn {
+
+    /**
+     * Initial number of rows allocated for a column.
+     */
+    protected static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Base 2 logarithm of the number of rows of each zone, see {@link ZoneMap}.
+     */
+    public static final int ZONE_SHIFT = SegmentedValues.SEGMENT_SHIFT;
+
+    /**
+     * Number of rows of each zone, equal to the number of rows of each encoded segment.
+     */
+    public static final int ZONE_SIZE = 1 << ZONE_SHIFT;
+
+    /**
+     * Bitmap with the rows that contain a null value.
+     */
+    private final BitVector nulls = new BitVector();
+
+    /**
+     * Number of rows stored in the column.
+     */
+    private int size = 0;
+
+    /**
+     * Create the column that best fits a given Java type.
+     * @param type The Java class of the column.
+     * @return An {@link AbstractInMemoryColumn}.
+     */
+    public static AbstractInMemoryColumn create(Class<?> type){
+        return create(type, false);
+    }
+
+    /**
+     * Create the column that best fits a given Java type.
+     * @param type The Java class of the column.
+     * @param offHeap Whether fixed-width values are stored in direct buffers.
+     * @return An {@link AbstractInMemoryColumn}.
+     */
+    public static AbstractInMemoryColumn create(Class<?> type, boolean offHeap){
+        AbstractInMemoryColumn column;
+        if(Integer.class.equals(type)){
+            column = offHeap ? new OffHeapIntegerColumn() : new IntegerColumn();
+        }else if(Long.class.equals(type)){
+            column = offHeap ? new OffHeapLongColumn() : new LongColumn();
+        }else if(Double.class.equals(type)){
+            column = offHeap ? new OffHeapDoubleColumn() : new DoubleColumn();
+        }else if(Float.class.equals(type)){
+            column = offHeap ? new OffHeapFloatColumn() : new FloatColumn();
+        }else if(Boolean.class.equals(type)){
+            column = new BooleanColumn();
+        }else if(String.class.equals(type)){
+            column = new StringColumn();
+        }else{
+            column = new ObjectColumn();
+        }
+        return column;
+    }
+
+    /**
+     * Get the number of rows in the column.
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a new value at the end of the column.
+     * @param value The value, or null.
+     */
+    public void append(Object value){
+        ensureCapacity(size + 1);
+        size++;
+        set(size - 1, value);
+    }
+
+    /**
+     * Append a block of values at the end of the column.
+     * @param values The values, or null to append null values.
+     * @param count The number of values to be appended.
+     */
+    public void appendAll(Object [] values, int count){
+        ensureCapacity(size + count);
+        int first = size;
+        size += count;
+        for(int index = 0; index < count; index++){
+            set(first + index, values == null ? null : values[index]);
+        }
+    }
+
+    /**
+     * Replace the value of an existing row.
+     * @param row The row position.
+     * @param value The value, or null.
+     */
+    public void set(int row, Object value){
+        if(value == null){
+            nulls.set(row, true);
+            setNull(row);
+        }else{
+            nulls.set(row, false);
+            setValue(row, value);
+        }
+    }
+
+    /**
+     * Get the value of a row.
+     * @param row The row position.
+     * @return The boxed value, or null.
+     */
+    public Object get(int row){
+        if(nulls.get(row)){
+            return null;
+        }
+        return getValue(row);
+    }
+
+    /**
+     * Determine whether a row contains a null value.
+     * @param row The row position.
+     * @return Whether the value is null.
+     */
+    public boolean isNull(int row){
+        return nulls.get(row);
+    }
+
+    /**
+     * Count the null values of a zone.
+     * @param zone The zone position.
+     * @return The number of null values.
+     */
+    public int getNullCount(int zone){
+        int first = zone << ZONE_SHIFT;
+        return nulls.count(first, Math.min(first + ZONE_SIZE, size));
+    }
+
+    /**
+     * Get the bounds of the values of each zone.
+     * @return The {@link ZoneMap}, or null if the column does not track them.
+     */
+    public ZoneMap getZoneMap(){
+        return null;
+    }
+
+    /**
+     * Compare the values of two rows. Null values are sorted first.
+     * @param row1 The first row position.
+     * @param row2 The second row position.
+     * @return The comparison value.
+     */
+    public int compareRows(int row1, int row2){
+        boolean null1 = nulls.get(row1);
+        boolean null2 = nulls.get(row2);
+        if(null1 || null2){
+            return null1 ? (null2 ? 0 : -1) : 1;
+        }
+        return compareValues(row1, row2);
+    }
+
+    /**
+     * Compute the hash code of the value of a row. Rows whose values are equal according to
+     * {@link #compareRows(int, int)} share the same hash code.
+     * @param row The row position.
+     * @return The hash code.
+     */
+    public int hashRow(int row){
+        if(nulls.get(row)){
+            return 0;
+        }
+        return hashValue(row);
+    }
+
+    /**
+     * Store a null value. Columns whose storage holds every row can fill the row with a value that
+     * keeps it compressible.
+     * @param row The row position.
+     */
+    protected void setNull(int row){
+        //Null values are only tracked in the bitmap.
+    }
+
+    /**
+     * Compare the non-null values of two rows.
+     * @param row1 The first row position.
+     * @param row2 The second row position.
+     * @return The comparison value.
+     */
+    protected int compareValues(int row1, int row2){
+        return KeyComparator.INSTANCE.compare(getValue(row1), getValue(row2));
+    }
+
+    /**
+     * Compute the hash code of the non-null value of a row.
+     * @param row The row position.
+     * @return The hash code.
+     */
+    protected int hashValue(int row){
+        return getValue(row).hashCode();
+    }
+
+    /**
+     * Remove all the values in the column.
+     */
+    public void clear(){
+        nulls.clear();
+        size = 0;
+        clearValues();
+    }
+
+    /**
+     * Get the number of bytes allocated by the column, including the null bitmap and the zone map.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        ZoneMap zones = getZoneMap();
+        return nulls.getMemoryUsage() + getValuesMemoryUsage() + (zones != null ? zones.getMemoryUsage() : 0);
+    }
+
+    /**
+     * Get the number of bytes allocated by the column outside of the Java heap.
+     * @return The number of bytes.
+     */
+    public long getOffHeapUsage(){
+        return 0;
+    }
+
+    /**
+     * Estimate the number of bytes the column will allocate to append a block of values.
+     * @param values The values, or null for null values.
+     * @param count The number of values.
+     * @return The number of bytes.
+     */
+    public long estimateAppend(Object [] values, int count){
+        long estimate = estimateGrowth(size + count);
+        if(values != null){
+            estimate += estimateValues(values, count);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimate the number of bytes stored outside of the column arrays for a block of values, such as
+     * the values themselves for columns that store references.
+     * @param values The values.
+     * @param count The number of values.
+     * @return The number of bytes.
+     */
+    protected long estimateValues(Object [] values, int count){
+        return 0;
+    }
+
+    /**
+     * Compute the new capacity of an array so that it holds at least the required number of elements.
+     * @param current The current capacity.
+     * @param required The required capacity.
+     * @return The new capacity.
+     */
+    protected static int grow(int current, int required){
+        int capacity = Math.max(current, INITIAL_CAPACITY);
+        while(capacity < required){
+            capacity = capacity + (capacity >> 1);
+        }
+        return capacity;
+    }
+
+    /**
+     * Get the Java type of the values returned by the column.
+     * @return A Java class.
+     */
+    public abstract Class<?> getType();
+
+    /**
+     * Get the number of bytes allocated to store the values.
+     * @return The number of bytes.
+     */
+    protected abstract long getValuesMemoryUsage();
+
+    /**
+     * Compute the number of bytes the column arrays would grow to hold a number of rows.
+     * @param capacity The number of rows.
+     * @return The number of bytes, or 0 if the column already holds them.
+     */
+    protected abstract long estimateGrowth(int capacity);
+
+    /**
+     * Make sure the column can hold a number of rows.
+     * @param capacity The number of rows.
+     */
+    protected abstract void ensureCapacity(int capacity);
+
+    /**
+     * Store a non-null value.
+     * @param row The row position.
+     * @param value The value.
+     */
+    protected abstract void setValue(int row, Object value);
+
+    /**
+     * Read a non-null value.
+     * @param row The row position.
+     * @return The boxed value.
+     */
+    protected abstract Object getValue(int row);
+
+    /**
+     * Release the values stored in the column.
+     */
+    protected abstract void clearValues();
+}
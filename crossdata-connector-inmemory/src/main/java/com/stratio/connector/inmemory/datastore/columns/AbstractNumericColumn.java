@@ -0,0 +1,82 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+/**
+ * Column of numeric values that can be read as primitive longs and doubles without boxing. The bounds
+ * of each zone are tracked as longs for integral columns, and as {@link ZoneMap#toKey(double)} keys for
+ * floating point columns.
+ */
+public abstract class AbstractNumericColumn extends AbstractInMemoryColumn {
+
+    /**
+     * Bounds of the values of each zone.
+     */
+    private volatile ZoneMap zones = new ZoneMap();
+
+    @Override
+    public ZoneMap getZoneMap() {
+        return zones;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        zones = new ZoneMap();
+    }
+
+    /**
+     * Whether the values of the column are integral numbers.
+     * @return True for integral columns, false for floating point columns.
+     */
+    public abstract boolean isIntegral();
+
+    /**
+     * Get the value of a non-null row as a long.
+     * @param row The row position.
+     * @return The value.
+     */
+    public abstract long getAsLong(int row);
+
+    /**
+     * Get the value of a non-null row as a double.
+     * @param row The row position.
+     * @return The value.
+     */
+    public abstract double getAsDouble(int row);
+
+    @Override
+    protected int compareValues(int row1, int row2) {
+        if(isIntegral()){
+            return Long.compare(getAsLong(row1), getAsLong(row2));
+        }
+        return Double.compare(getAsDouble(row1), getAsDouble(row2));
+    }
+
+    @Override
+    protected int hashValue(int row) {
+        long bits;
+        if(isIntegral()){
+            bits = getAsLong(row);
+        }else{
+            bits = Double.doubleToLongBits(getAsDouble(row));
+        }
+        return (int) (bits ^ (bits >>> 32));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import java.util.Arrays;
+
+/**
+ * Growable vector of bits with a single writer. Words are published through a volatile array, so
+ * readers may access the bits written before the last publication of the table without locking while
+ * new bits are appended.
+ */
+public class BitVector {
+
+    /**
+     * Initial number of words allocated.
+     */
+    private static final int INITIAL_WORDS = 1;
+
+    /**
+     * Number of bits stored in each word.
+     */
+    private static final int WORD_SHIFT = 5;
+
+    /**
+     * Words of the vector.
+     */
+    private volatile int [] words = new int[INITIAL_WORDS];
+
+    /**
+     * Get the value of a bit.
+     * @param index The bit index.
+     * @return Whether the bit is set.
+     */
+    public boolean get(int index){
+        int [] current = words;
+        int word = index >>> WORD_SHIFT;
+        return word < current.length && (current[word] & (1 << index)) != 0;
+    }
+
+    /**
+     * Set the value of a bit.
+     * @param index The bit index.
+     * @param value The value.
+     */
+    public void set(int index, boolean value){
+        int word = index >>> WORD_SHIFT;
+        int [] current = words;
+        if(word >= current.length){
+            if(!value){
+                return;
+            }
+            current = Arrays.copyOf(current, Math.max(word + 1, current.length * 2));
+            words = current;
+        }
+        if(value){
+            current[word] |= 1 << index;
+        }else{
+            current[word] &= ~(1 << index);
+        }
+    }
+
+    /**
+     * Count the bits set within a range.
+     * @param from The first bit index (inclusive).
+     * @param to The last bit index (exclusive).
+     * @return The number of bits set.
+     */
+    public int count(int from, int to){
+        int [] current = words;
+        int result = 0;
+        int index = from;
+        while(index < to && (index >>> WORD_SHIFT) < current.length){
+            int word = current[index >>> WORD_SHIFT];
+            if((index & (Integer.SIZE - 1)) == 0 && to - index >= Integer.SIZE){
+                result += Integer.bitCount(word);
+                index += Integer.SIZE;
+            }else{
+                result += (word >>> index) & 1;
+                index++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of bytes allocated by the vector.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        return (long) words.length * Integer.SIZE / Byte.SIZE;
+    }
+
+    /**
+     * Clear all the bits.
+     */
+    public void clear(){
+        words = new int[INITIAL_WORDS];
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+/**
+ * Column of boolean values stored as a bitmap.
+ */
+public class BooleanColumn extends AbstractInMemoryColumn {
+
+    /**
+     * Column values.
+     */
+    private volatile BitVector values = new BitVector();
+
+    /**
+     * Get the primitive value of a row.
+     * @param row The row position.
+     * @return The value.
+     */
+    public boolean getBoolean(int row){
+        return values.get(row);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return Boolean.class;
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        return Math.max(0, capacity - values.getMemoryUsage() * Byte.SIZE) / Byte.SIZE;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        //The bitmap grows on demand.
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        if(Boolean.class.isInstance(value)){
+            values.set(row, Boolean.class.cast(value));
+        }else{
+            values.set(row, Boolean.parseBoolean(String.valueOf(value)));
+        }
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values.get(row);
+    }
+
+    @Override
+    protected int compareValues(int row1, int row2) {
+        return Boolean.compare(values.get(row1), values.get(row2));
+    }
+
+    @Override
+    protected int hashValue(int row) {
+        return values.get(row) ? 1 : 0;
+    }
+
+    @Override
+    protected void clearValues() {
+        values = new BitVector();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import com.stratio.connector.inmemory.datastore.columns.encoding.SegmentedValues;
+
+/**
+ * Column of long values stored in {@link SegmentedValues}, so that full segments are encoded.
+ */
+public class LongColumn extends AbstractNumericColumn {
+
+    /**
+     * Number of bytes of each value.
+     */
+    protected static final int VALUE_SIZE = 8;
+
+    /**
+     * Column values.
+     */
+    private volatile SegmentedValues values = new SegmentedValues();
+
+    /**
+     * Get the primitive value of a row.
+     * @param row The row position.
+     * @return The value.
+     */
+    public long getLong(int row){
+        return values.get(row);
+    }
+
+    @Override
+    public boolean isIntegral() {
+        return true;
+    }
+
+    @Override
+    public long getAsLong(int row) {
+        return getLong(row);
+    }
+
+    @Override
+    public double getAsDouble(int row) {
+        return getLong(row);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return Long.class;
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        return values.estimateGrowth(capacity);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        //Segments grow on demand.
+    }
+
+    @Override
+    protected void setNull(int row) {
+        values.fill(row);
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        long converted = toLong(value);
+        values.set(row, converted);
+        getZoneMap().add(row, converted);
+    }
+
+    /**
+     * Convert a non-null value to the primitive type of the column.
+     * @param value The value.
+     * @return The primitive value.
+     */
+    protected static long toLong(Object value){
+        if(Number.class.isInstance(value)){
+            return Number.class.cast(value).longValue();
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return getLong(row);
+    }
+
+    @Override
+    protected void clearValues() {
+        values = new SegmentedValues();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import java.util.Arrays;
+
+/**
+ * Column of values without a primitive representation, such as dates.
+ */
+public class ObjectColumn extends AbstractInMemoryColumn {
+
+    /**
+     * Estimated number of bytes of each value, such as a date, in addition to its reference.
+     */
+    public static final int ESTIMATED_VALUE_SIZE = 24;
+
+    /**
+     * Number of bytes of each reference.
+     */
+    private static final int REFERENCE_SIZE = 8;
+
+    /**
+     * Column values.
+     */
+    private volatile Object[] values = new Object[INITIAL_CAPACITY];
+
+    @Override
+    public Class<?> getType() {
+        return Object.class;
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return (long) values.length * REFERENCE_SIZE + (long) size() * ESTIMATED_VALUE_SIZE;
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        int length = values.length;
+        return capacity > length ? (long) (grow(length, capacity) - length) * REFERENCE_SIZE : 0;
+    }
+
+    @Override
+    protected long estimateValues(Object[] values, int count) {
+        return (long) count * ESTIMATED_VALUE_SIZE;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if(capacity > values.length){
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        values[row] = value;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected void clearValues() {
+        values = new Object[INITIAL_CAPACITY];
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+/**
+ * Column of double values stored off-heap in a {@link SlabBuffer}.
+ */
+public class OffHeapDoubleColumn extends DoubleColumn {
+
+    /**
+     * Column values.
+     */
+    private final SlabBuffer values = new SlabBuffer(VALUE_SIZE);
+
+    @Override
+    public double getDouble(int row){
+        return values.getDouble(row);
+    }
+
+    @Override
+    public long getAsLong(int row) {
+        return (long) values.getDouble(row);
+    }
+
+    @Override
+    public double getAsDouble(int row) {
+        return values.getDouble(row);
+    }
+
+    @Override
+    public long getOffHeapUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        return values.estimateGrowth(capacity);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        values.ensureCapacity(capacity);
+    }
+
+    @Override
+    protected void setNull(int row) {
+        //Direct buffers are not encoded.
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        double converted = toDouble(value);
+        values.putDouble(row, converted);
+        getZoneMap().add(row, converted);
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values.getDouble(row);
+    }
+
+    @Override
+    protected void clearValues() {
+        values.clear();
+    }
+}
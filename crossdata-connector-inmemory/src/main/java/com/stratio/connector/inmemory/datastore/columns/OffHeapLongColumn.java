@@ -0,0 +1,87 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+/**
+ * Column of long values stored off-heap in a {@link SlabBuffer}.
+ */
+public class OffHeapLongColumn extends LongColumn {
+
+    /**
+     * Column values.
+     */
+    private final SlabBuffer values = new SlabBuffer(VALUE_SIZE);
+
+    @Override
+    public long getLong(int row){
+        return values.getLong(row);
+    }
+
+    @Override
+    public long getAsLong(int row) {
+        return values.getLong(row);
+    }
+
+    @Override
+    public double getAsDouble(int row) {
+        return values.getLong(row);
+    }
+
+    @Override
+    public long getOffHeapUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return values.getMemoryUsage();
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        return values.estimateGrowth(capacity);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        values.ensureCapacity(capacity);
+    }
+
+    @Override
+    protected void setNull(int row) {
+        //Direct buffers are not encoded.
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        long converted = toLong(value);
+        values.putLong(row, converted);
+        getZoneMap().add(row, converted);
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return values.getLong(row);
+    }
+
+    @Override
+    protected void clearValues() {
+        values.clear();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable array of fixed-width values stored outside of the Java heap, in direct buffers of
+ * {@link #SLAB_SIZE} bytes. The buffer grows by adding slabs, so existing values are never copied,
+ * and slabs are published through a volatile array as the arrays of the on-heap columns. Values are
+ * read and written with absolute positions, so concurrent readers do not interfere. The memory of a
+ * slab is released when the buffer is no longer referenced, so the JVM must allow enough direct
+ * memory with -XX:MaxDirectMemorySize.
+ */
+public class SlabBuffer {
+
+    /**
+     * Number of bytes of each slab.
+     */
+    public static final int SLAB_SIZE = 1 << 20;
+
+    /**
+     * Base 2 logarithm of the number of bytes of each value.
+     */
+    private final int widthShift;
+
+    /**
+     * Base 2 logarithm of the number of values per slab.
+     */
+    private final int slabShift;
+
+    /**
+     * Mask of the position of a value within its slab.
+     */
+    private final int slabMask;
+
+    /**
+     * Allocated slabs.
+     */
+    private volatile ByteBuffer [] slabs = new ByteBuffer[0];
+
+    /**
+     * Class constructor.
+     * @param width The number of bytes of each value, which must be a power of two.
+     */
+    public SlabBuffer(int width){
+        this.widthShift = Integer.numberOfTrailingZeros(width);
+        this.slabShift = Integer.numberOfTrailingZeros(SLAB_SIZE) - widthShift;
+        this.slabMask = (1 << slabShift) - 1;
+    }
+
+    /**
+     * Compute the number of slabs needed to hold a number of values.
+     * @param capacity The number of values.
+     * @return The number of slabs.
+     */
+    private int slabsFor(int capacity){
+        return (int) (((long) capacity + slabMask) >>> slabShift);
+    }
+
+    /**
+     * Make sure the buffer can hold a number of values.
+     * @param capacity The number of values.
+     */
+    public void ensureCapacity(int capacity){
+        ByteBuffer [] current = slabs;
+        int required = slabsFor(capacity);
+        if(required > current.length){
+            ByteBuffer [] grown = Arrays.copyOf(current, required);
+            for(int slab = current.length; slab < required; slab++){
+                grown[slab] = ByteBuffer.allocateDirect(SLAB_SIZE).order(ByteOrder.nativeOrder());
+            }
+            slabs = grown;
+        }
+    }
+
+    /**
+     * Compute the number of bytes the buffer would grow to hold a number of values.
+     * @param capacity The number of values.
+     * @return The number of bytes, or 0 if the buffer already holds them.
+     */
+    public long estimateGrowth(int capacity){
+        return Math.max(0, slabsFor(capacity) - slabs.length) * (long) SLAB_SIZE;
+    }
+
+    /**
+     * Get the number of bytes allocated by the buffer.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        return slabs.length * (long) SLAB_SIZE;
+    }
+
+    /**
+     * Get the slab that stores a value.
+     * @param index The value index.
+     * @return The slab.
+     */
+    private ByteBuffer slab(int index){
+        return slabs[index >>> slabShift];
+    }
+
+    /**
+     * Get the position of a value within its slab.
+     * @param index The value index.
+     * @return The position in bytes.
+     */
+    private int offset(int index){
+        return (index & slabMask) << widthShift;
+    }
+
+    public int getInt(int index){
+        return slab(index).getInt(offset(index));
+    }
+
+    public void putInt(int index, int value){
+        slab(index).putInt(offset(index), value);
+    }
+
+    public long getLong(int index){
+        return slab(index).getLong(offset(index));
+    }
+
+    public void putLong(int index, long value){
+        slab(index).putLong(offset(index), value);
+    }
+
+    public float getFloat(int index){
+        return slab(index).getFloat(offset(index));
+    }
+
+    public void putFloat(int index, float value){
+        slab(index).putFloat(offset(index), value);
+    }
+
+    public double getDouble(int index){
+        return slab(index).getDouble(offset(index));
+    }
+
+    public void putDouble(int index, double value){
+        slab(index).putDouble(offset(index), value);
+    }
+
+    /**
+     * Remove all the values. Slabs still referenced by other readers remain valid.
+     */
+    public void clear(){
+        slabs = new ByteBuffer[0];
+    }
+}
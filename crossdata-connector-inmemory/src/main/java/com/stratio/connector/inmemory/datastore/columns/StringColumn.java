@@ -0,0 +1,220 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import com.stratio.connector.inmemory.datastore.columns.encoding.SegmentedValues;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column of string values using dictionary encoding. Each distinct string is stored once, and rows
+ * keep the integer code of their value. Codes are stored in {@link SegmentedValues}, so full segments
+ * of repetitive or low cardinality values are further run-length encoded or bit-packed.
+ */
+public class StringColumn extends AbstractInMemoryColumn {
+
+    /**
+     * Code assigned to the rows whose value is not in the dictionary.
+     */
+    public static final int NO_CODE = -1;
+
+    /**
+     * Estimated number of bytes of each dictionary entry, in addition to its characters: the string
+     * and its character array, its reference in the dictionary and its entry in the map of codes.
+     */
+    public static final int ESTIMATED_ENTRY_SIZE = 96;
+
+    /**
+     * Dictionary code of each row.
+     */
+    private volatile SegmentedValues codes = new SegmentedValues();
+
+    /**
+     * Distinct values indexed by code.
+     */
+    private volatile String[] dictionary = new String[INITIAL_CAPACITY];
+
+    /**
+     * Number of distinct values in the dictionary.
+     */
+    private volatile int dictionarySize = 0;
+
+    /**
+     * Estimated number of bytes of the dictionary entries.
+     */
+    private volatile long dictionaryMemory = 0;
+
+    /**
+     * Map associating each distinct value with its code.
+     */
+    private volatile Map<String, Integer> dictionaryCodes = new ConcurrentHashMap<>();
+
+    /**
+     * Bounds of the dictionary codes of each zone.
+     */
+    private volatile ZoneMap zones = new ZoneMap();
+
+    /**
+     * Get the dictionary code of a row.
+     * @param row The row position.
+     * @return The code.
+     */
+    public int getCode(int row){
+        return (int) codes.get(row);
+    }
+
+    /**
+     * Get the code assigned to a value.
+     * @param value The value.
+     * @return The code or {@link #NO_CODE} if the value is not in the dictionary.
+     */
+    public int lookupCode(String value){
+        Integer code = dictionaryCodes.get(value);
+        if(code == null){
+            return NO_CODE;
+        }
+        return code;
+    }
+
+    /**
+     * Get the value associated with a code.
+     * @param code The dictionary code.
+     * @return The string value.
+     */
+    public String decode(int code){
+        return dictionary[code];
+    }
+
+    /**
+     * Get the number of distinct values in the dictionary.
+     * @return The dictionary size.
+     */
+    public int getDictionarySize(){
+        return dictionarySize;
+    }
+
+    @Override
+    public Class<?> getType() {
+        return String.class;
+    }
+
+    /**
+     * Get the bounds of the dictionary codes of each zone. Codes are assigned in order of appearance, so
+     * zones only bound the codes, not the order of the strings.
+     * @return The {@link ZoneMap}.
+     */
+    @Override
+    public ZoneMap getZoneMap() {
+        return zones;
+    }
+
+    @Override
+    protected long getValuesMemoryUsage() {
+        return codes.getMemoryUsage() + dictionaryMemory;
+    }
+
+    @Override
+    protected long estimateGrowth(int capacity) {
+        return codes.estimateGrowth(capacity);
+    }
+
+    @Override
+    protected long estimateValues(Object[] values, int count) {
+        long estimate = 0;
+        for(int row = 0; row < count; row++){
+            if(values[row] != null){
+                String value = String.valueOf(values[row]);
+                if(!dictionaryCodes.containsKey(value)){
+                    estimate += estimateEntry(value);
+                }
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimate the number of bytes of a dictionary entry.
+     * @param value The value of the entry.
+     * @return The number of bytes.
+     */
+    private static long estimateEntry(String value){
+        return ESTIMATED_ENTRY_SIZE + 2L * value.length();
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        //Segments grow on demand.
+    }
+
+    @Override
+    protected void setNull(int row) {
+        codes.fill(row);
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        String s = String.valueOf(value);
+        Integer code = dictionaryCodes.get(s);
+        if(code == null){
+            code = dictionarySize;
+            if(code == dictionary.length){
+                dictionary = Arrays.copyOf(dictionary, grow(code, code + 1));
+            }
+            dictionary[code] = s;
+            dictionaryCodes.put(s, code);
+            dictionaryMemory += estimateEntry(s);
+            dictionarySize = code + 1;
+        }
+        codes.set(row, code);
+        zones.add(row, (long) code);
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return dictionary[getCode(row)];
+    }
+
+    @Override
+    protected int compareValues(int row1, int row2) {
+        int code1 = getCode(row1);
+        int code2 = getCode(row2);
+        if(code1 == code2){
+            return 0;
+        }
+        return decode(code1).compareTo(decode(code2));
+    }
+
+    @Override
+    protected int hashValue(int row) {
+        //Each distinct value has a single code.
+        return getCode(row);
+    }
+
+    @Override
+    protected void clearValues() {
+        codes = new SegmentedValues();
+        dictionary = new String[INITIAL_CAPACITY];
+        dictionarySize = 0;
+        dictionaryMemory = 0;
+        dictionaryCodes = new ConcurrentHashMap<>();
+        zones = new ZoneMap();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import java.util.Arrays;
+
+/**
+ * Minimum and maximum value of each zone of a column. A zone is a block of
+ * {@link AbstractInMemoryColumn#ZONE_SIZE} consecutive rows, aligned with the encoded segments of the
+ * column. Values are stored as long keys that preserve the order of the column values, and null values
+ * are not included, so a zone whose rows are all null has no bounds. Replacing a value only widens the
+ * bounds, so they may be wider than the values of the zone, but never narrower. Zone maps have a single
+ * writer, and readers see at least the bounds of the rows published before their snapshot.
+ */
+public class ZoneMap {
+
+    /**
+     * Number of bytes of the bounds of each zone.
+     */
+    private static final int ZONE_BYTES = 2 * Long.SIZE / Byte.SIZE;
+
+    /**
+     * Minimum and maximum key of each zone, interleaved.
+     */
+    private volatile long [] bounds = new long[0];
+
+    /**
+     * Add a value to the zone of a row.
+     * @param row The row position.
+     * @param key The key of the value.
+     */
+    public void add(int row, long key){
+        int zone = row >>> AbstractInMemoryColumn.ZONE_SHIFT;
+        long [] current = bounds;
+        if(2 * zone >= current.length){
+            int length = current.length;
+            current = Arrays.copyOf(current, Math.max(2 * zone + 2, length * 2));
+            for(int index = length; index < current.length; index += 2){
+                current[index] = Long.MAX_VALUE;
+                current[index + 1] = Long.MIN_VALUE;
+            }
+            bounds = current;
+        }
+        if(key < current[2 * zone]){
+            current[2 * zone] = key;
+        }
+        if(key > current[2 * zone + 1]){
+            current[2 * zone + 1] = key;
+        }
+    }
+
+    /**
+     * Add a floating point value to the zone of a row. NaN values are not included, as they do not
+     * satisfy any range comparison.
+     * @param row The row position.
+     * @param value The value.
+     */
+    public void add(int row, double value){
+        if(!Double.isNaN(value)){
+            add(row, toKey(value));
+        }
+    }
+
+    /**
+     * Determine whether a zone may contain a value within a range of keys.
+     * @param zone The zone position.
+     * @param low The lowest key (inclusive).
+     * @param high The highest key (inclusive).
+     * @return False only if no value of the zone is within the range.
+     */
+    public boolean mayContain(int zone, long low, long high){
+        long [] current = bounds;
+        if(2 * zone >= current.length){
+            return true;
+        }
+        return low <= high && current[2 * zone] <= high && current[2 * zone + 1] >= low;
+    }
+
+    /**
+     * Get the number of zones with bounds.
+     * @return The number of zones.
+     */
+    public int getNumZones(){
+        return bounds.length / 2;
+    }
+
+    /**
+     * Get the minimum key of a zone.
+     * @param zone The zone position.
+     * @return The key, or {@link Long#MAX_VALUE} if the zone has no values.
+     */
+    public long getMinimum(int zone){
+        return bounds[2 * zone];
+    }
+
+    /**
+     * Get the maximum key of a zone.
+     * @param zone The zone position.
+     * @return The key, or {@link Long#MIN_VALUE} if the zone has no values.
+     */
+    public long getMaximum(int zone){
+        return bounds[2 * zone + 1];
+    }
+
+    /**
+     * Get the number of bytes allocated by the zone map.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        return (long) bounds.length / 2 * ZONE_BYTES;
+    }
+
+    /**
+     * Compute the key of a floating point value. Keys preserve the order of the primitive comparisons,
+     * so negative zero has the same key as positive zero.
+     * @param value The value, which must not be NaN.
+     * @return The key.
+     */
+    public static long toKey(double value){
+        long bits = Double.doubleToLongBits(value + 0.0);
+        return bits >= 0 ? bits : bits ^ Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+/**
+ * Segment whose values are stored as the difference with a linear progression, packed with the minimum
+ * number of bits. With a zero slope the progression is the segment minimum, which suits values in a
+ * narrow range; with the slope of the segment, it suits sorted values such as increasing identifiers
+ * or timestamps. Any value can be read without decoding the previous ones.
+ */
+public class BitPackedSegment extends EncodedSegment {
+
+    /**
+     * Value of the progression at offset 0, plus the minimum difference.
+     */
+    private final long base;
+
+    /**
+     * Slope of the progression.
+     */
+    private final long slope;
+
+    /**
+     * Number of bits of each difference.
+     */
+    private final int width;
+
+    /**
+     * Mask of the bits of a difference.
+     */
+    private final long mask;
+
+    /**
+     * Packed differences.
+     */
+    private final long [] words;
+
+    /**
+     * Class constructor.
+     * @param values The values.
+     * @param count The number of values.
+     * @param slope The slope of the progression.
+     * @param minimum The minimum difference with the progression.
+     * @param width The number of bits of the largest difference.
+     */
+    BitPackedSegment(long [] values, int count, long slope, long minimum, int width){
+        this.base = values[0] + minimum;
+        this.slope = slope;
+        this.width = width;
+        this.mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        this.words = new long[(int) (((long) count * width + Long.SIZE - 1) / Long.SIZE)];
+        long origin = values[0];
+        for(int offset = 0; offset < count && width > 0; offset++){
+            long bits = values[offset] - (origin + slope * offset) - minimum;
+            long position = (long) offset * width;
+            int word = (int) (position >>> 6);
+            int shift = (int) (position & 63);
+            words[word] |= bits << shift;
+            if(shift + width > Long.SIZE){
+                words[word + 1] |= bits >>> (Long.SIZE - shift);
+            }
+        }
+    }
+
+    @Override
+    public long get(int offset) {
+        long value = base + slope * offset;
+        if(width == 0){
+            return value;
+        }
+        long position = (long) offset * width;
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        long bits = words[word] >>> shift;
+        if(shift + width > Long.SIZE){
+            bits |= words[word + 1] << (Long.SIZE - shift);
+        }
+        return value + (bits & mask);
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return OVERHEAD + (long) words.length * Long.SIZE / Byte.SIZE;
+    }
+
+    @Override
+    public Encoding getEncoding() {
+        return slope == 0 ? Encoding.BIT_PACKED : Encoding.DELTA;
+    }
+
+    /**
+     * Get the number of bits of each value.
+     * @return The number of bits.
+     */
+    public int getWidth() {
+        return width;
+    }
+}
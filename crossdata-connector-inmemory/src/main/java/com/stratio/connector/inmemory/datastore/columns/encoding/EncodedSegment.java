@@ -0,0 +1,50 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+/**
+ * Immutable block of encoded values of a column. Values are stored as longs: integral values as is,
+ * floating point values as their raw bits, and strings as their dictionary codes.
+ */
+public abstract class EncodedSegment {
+
+    /**
+     * Approximate number of bytes of the segment object and its arrays headers.
+     */
+    protected static final int OVERHEAD = 64;
+
+    /**
+     * Get the value at an offset of the segment.
+     * @param offset The offset within the segment.
+     * @return The value.
+     */
+    public abstract long get(int offset);
+
+    /**
+     * Get the number of bytes of the segment.
+     * @return The number of bytes.
+     */
+    public abstract long getMemoryUsage();
+
+    /**
+     * Get the encoding of the segment.
+     * @return The {@link Encoding}.
+     */
+    public abstract Encoding getEncoding();
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+/**
+ * Encodings of the column segments.
+ */
+public enum Encoding {
+
+    /**
+     * Values stored uncompressed, used for the segment being appended.
+     */
+    PLAIN,
+
+    /**
+     * Values stored as the difference with the segment minimum, using the bits needed by the largest one.
+     */
+    BIT_PACKED,
+
+    /**
+     * Values stored as the difference with a linear progression, such as increasing identifiers or
+     * timestamps, using the bits needed by the largest difference.
+     */
+    DELTA,
+
+    /**
+     * Runs of repeated values stored once with the offset where they end.
+     */
+    RUN_LENGTH
+}
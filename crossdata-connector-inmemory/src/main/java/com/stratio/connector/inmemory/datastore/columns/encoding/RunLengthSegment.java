@@ -0,0 +1,88 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+/**
+ * Segment that stores each run of repeated values once, with the offset where the run ends. Values are
+ * found with a binary search over the runs.
+ */
+public class RunLengthSegment extends EncodedSegment {
+
+    /**
+     * Offset after the last value of each run.
+     */
+    private final int [] ends;
+
+    /**
+     * Value of each run.
+     */
+    private final long [] values;
+
+    /**
+     * Class constructor.
+     * @param source The values.
+     * @param count The number of values.
+     * @param runs The number of runs.
+     */
+    RunLengthSegment(long [] source, int count, int runs){
+        this.ends = new int[runs];
+        this.values = new long[runs];
+        int run = 0;
+        for(int offset = 1; offset <= count; offset++){
+            if(offset == count || source[offset] != source[offset - 1]){
+                ends[run] = offset;
+                values[run] = source[offset - 1];
+                run++;
+            }
+        }
+    }
+
+    @Override
+    public long get(int offset) {
+        int low = 0;
+        int high = ends.length - 1;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(ends[middle] <= offset){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return values[low];
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return OVERHEAD + (long) ends.length * (Integer.SIZE + Long.SIZE) / Byte.SIZE;
+    }
+
+    @Override
+    public Encoding getEncoding() {
+        return Encoding.RUN_LENGTH;
+    }
+
+    /**
+     * Get the number of runs.
+     * @return The number of runs.
+     */
+    public int getRuns() {
+        return ends.length;
+    }
+}
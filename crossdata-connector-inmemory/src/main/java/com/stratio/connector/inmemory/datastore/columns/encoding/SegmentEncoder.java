@@ -0,0 +1,87 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+/**
+ * Chooses the smallest encoding of a block of values.
+ */
+public final class SegmentEncoder {
+
+    /**
+     * Private constructor of the utility class.
+     */
+    private SegmentEncoder(){
+    }
+
+    /**
+     * Encode a block of values with the smallest of run-length, bit-packed and delta encodings.
+     * @param values The values.
+     * @param count The number of values, at least one.
+     * @return The {@link EncodedSegment}.
+     */
+    public static EncodedSegment encode(long [] values, int count){
+        int runs = 1;
+        long minimum = values[0];
+        long maximum = values[0];
+        for(int offset = 1; offset < count; offset++){
+            long value = values[offset];
+            if(value != values[offset - 1]){
+                runs++;
+            }
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+        }
+        int packedWidth = width(maximum - minimum);
+
+        long slope = count > 1 ? (values[count - 1] - values[0]) / (count - 1) : 0;
+        int deltaWidth = Long.SIZE;
+        long deltaMinimum = 0;
+        if(slope != 0){
+            long low = 0;
+            long high = 0;
+            for(int offset = 0; offset < count; offset++){
+                long difference = values[offset] - (values[0] + slope * offset);
+                low = Math.min(low, difference);
+                high = Math.max(high, difference);
+            }
+            deltaWidth = width(high - low);
+            deltaMinimum = low;
+        }
+
+        long runLengthSize = (long) runs * (Integer.SIZE + Long.SIZE);
+        long packedSize = (long) count * packedWidth;
+        long deltaSize = (long) count * deltaWidth;
+        if(runLengthSize < packedSize && runLengthSize < deltaSize){
+            return new RunLengthSegment(values, count, runs);
+        }
+        if(deltaSize < packedSize){
+            return new BitPackedSegment(values, count, slope, deltaMinimum, deltaWidth);
+        }
+        return new BitPackedSegment(values, count, 0, minimum - values[0], packedWidth);
+    }
+
+    /**
+     * Get the number of bits needed by an unsigned range of values.
+     * @param range The difference between the largest and the smallest value, as an unsigned number.
+     * @return The number of bits.
+     */
+    private static int width(long range){
+        return Long.SIZE - Long.numberOfLeadingZeros(range);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+import java.util.Arrays;
+
+/**
+ * Values of a column stored in segments of {@link #SEGMENT_SIZE} rows. Rows are appended to a plain
+ * tail segment; when a row of the next segment is written, the tail is sealed with the smallest
+ * encoding for its values and becomes immutable. Sealed segments are published before the tail that
+ * replaces them, so readers that find a row outside the current tail always find its sealed segment.
+ * Columns have a single writer, and only the rows of the tail can be modified.
+ */
+public class SegmentedValues {
+
+    /**
+     * Base 2 logarithm of the number of rows per segment.
+     */
+    public static final int SEGMENT_SHIFT = 12;
+
+    /**
+     * Number of rows per segment.
+     */
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /**
+     * Mask of the offset of a row within its segment.
+     */
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * Initial number of rows allocated for the tail.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of bytes of each plain value.
+     */
+    private static final int VALUE_SIZE = Long.SIZE / Byte.SIZE;
+
+    /**
+     * Segment being appended.
+     */
+    private static final class Tail {
+
+        /**
+         * Position of the segment.
+         */
+        private final int segment;
+
+        /**
+         * Plain values of the segment.
+         */
+        private final long [] values;
+
+        /**
+         * Class constructor.
+         * @param segment The position of the segment.
+         * @param values The plain values.
+         */
+        private Tail(int segment, long [] values){
+            this.segment = segment;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Sealed segments indexed by position.
+     */
+    private volatile EncodedSegment [] sealed = new EncodedSegment[0];
+
+    /**
+     * Number of bytes of the sealed segments.
+     */
+    private volatile long sealedMemory = 0;
+
+    /**
+     * Segment being appended.
+     */
+    private volatile Tail tail = new Tail(0, new long[INITIAL_CAPACITY]);
+
+    /**
+     * Get the value of a row.
+     * @param row The row position.
+     * @return The value, or 0 if the row has not been written.
+     */
+    public long get(int row){
+        int segment = row >>> SEGMENT_SHIFT;
+        Tail current = tail;
+        if(segment == current.segment){
+            int offset = row & SEGMENT_MASK;
+            return offset < current.values.length ? current.values[offset] : 0;
+        }
+        EncodedSegment [] segments = sealed;
+        return segment < segments.length ? segments[segment].get(row & SEGMENT_MASK) : 0;
+    }
+
+    /**
+     * Set the value of a row.
+     * @param row The row position, which must belong to the tail or to a later segment.
+     * @param value The value.
+     */
+    public void set(int row, long value){
+        advance(row).values[row & SEGMENT_MASK] = value;
+    }
+
+    /**
+     * Fill the value of a null row with the value of the previous row, so that null values do not
+     * break the runs or widen the range of the segment.
+     * @param row The row position, which must belong to the tail or to a later segment.
+     */
+    public void fill(int row){
+        Tail current = advance(row);
+        int offset = row & SEGMENT_MASK;
+        current.values[offset] = offset > 0 ? current.values[offset - 1] : 0;
+    }
+
+    /**
+     * Make sure the tail holds a row, sealing the tail if the row belongs to a later segment.
+     * @param row The row position.
+     * @return The tail.
+     */
+    private Tail advance(int row){
+        int segment = row >>> SEGMENT_SHIFT;
+        Tail current = tail;
+        if(segment < current.segment){
+            throw new IllegalStateException("Row " + row + " belongs to an immutable segment");
+        }
+        if(segment > current.segment){
+            seal(current, segment);
+            current = new Tail(segment, new long[INITIAL_CAPACITY]);
+            tail = current;
+        }
+        int offset = row & SEGMENT_MASK;
+        if(offset >= current.values.length){
+            int capacity = current.values.length;
+            while(capacity <= offset){
+                capacity = capacity + (capacity >> 1);
+            }
+            current = new Tail(segment, Arrays.copyOf(current.values, Math.min(capacity, SEGMENT_SIZE)));
+            tail = current;
+        }
+        return current;
+    }
+
+    /**
+     * Encode the tail and the segments skipped until a new segment.
+     * @param current The tail.
+     * @param next The position of the new segment.
+     */
+    private void seal(Tail current, int next){
+        EncodedSegment [] segments = Arrays.copyOf(sealed, next);
+        long memory = sealedMemory;
+        for(int segment = current.segment; segment < next; segment++){
+            long [] values = segment == current.segment ? current.values : new long[1];
+            if(values.length < SEGMENT_SIZE){
+                values = Arrays.copyOf(values, SEGMENT_SIZE);
+            }
+            segments[segment] = SegmentEncoder.encode(values, SEGMENT_SIZE);
+            memory += segments[segment].getMemoryUsage();
+        }
+        sealedMemory = memory;
+        sealed = segments;
+    }
+
+    /**
+     * Get the encoding of a segment.
+     * @param segment The position of the segment.
+     * @return The {@link Encoding}.
+     */
+    public Encoding getEncoding(int segment){
+        EncodedSegment [] segments = sealed;
+        return segment < segments.length ? segments[segment].getEncoding() : Encoding.PLAIN;
+    }
+
+    /**
+     * Get the number of bytes allocated by the values.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        return sealedMemory + (long) tail.values.length * VALUE_SIZE;
+    }
+
+    /**
+     * Estimate the number of bytes needed to hold a number of rows, assuming they are not compressed.
+     * @param capacity The number of rows.
+     * @return The number of bytes.
+     */
+    public long estimateGrowth(int capacity){
+        Tail current = tail;
+        long allocated = ((long) current.segment << SEGMENT_SHIFT) + current.values.length;
+        return capacity > allocated ? (capacity - allocated) * VALUE_SIZE : 0;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.datatypes;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.indexes.KeyComparator;
+
+/**
+ * Composite key built from the join values of a row. Numeric values are normalized so that equal
+ * numbers of different classes produce the same key.
+ */
+public final class JoinKey {
+
+    /**
+     * Normalized join values.
+     */
+    private final Object[] values;
+
+    /**
+     * Class constructor.
+     * @param values The join values.
+     */
+    public JoinKey(Object[] values){
+        this.values = new Object[values.length];
+        for(int index = 0; index < values.length; index++){
+            this.values[index] = KeyComparator.normalize(values[index]);
+        }
+    }
+
+    /**
+     * Determine whether any of the join values is null. Null values never match in a join.
+     * @return Whether the key contains a null value.
+     */
+    public boolean hasNulls(){
+        for(Object value : values){
+            if(value == null){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(o == null || getClass() != o.getClass()){
+            return false;
+        }
+        return Arrays.equals(values, JoinKey.class.cast(o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
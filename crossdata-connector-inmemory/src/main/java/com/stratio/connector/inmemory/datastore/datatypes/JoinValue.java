@@ -29,7 +29,7 @@ public class JoinValue extends SimpleValue{
 
 
     public JoinValue(InMemoryJoinSelector join, Object value){
-        super(null, value);
+        super(join, value);
         this.columnName = join.getMyTerm().getColumnName().getName();
         this.otherColumnName =  join.getOtherTerm().getColumnName().getName();
     }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+/**
+ * Conjunction of a set of predicates. Predicates are evaluated in order until one of them fails. A row
+ * is only a candidate when it is a candidate of every predicate.
+ */
+public class AndPredicate extends RowPredicate {
+
+    /**
+     * The predicates.
+     */
+    private final RowPredicate [] predicates;
+
+    /**
+     * Class constructor.
+     * @param predicates The predicates.
+     */
+    public AndPredicate(RowPredicate [] predicates){
+        this.predicates = predicates;
+    }
+
+    @Override
+    public boolean test(int row) {
+        for(RowPredicate predicate : predicates){
+            if(!predicate.test(row)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean mayMatch(int zone) {
+        for(RowPredicate predicate : predicates){
+            if(!predicate.mayMatch(zone)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int nextCandidate(int row) {
+        int candidate = row;
+        boolean moved = true;
+        while(moved){
+            moved = false;
+            for(RowPredicate predicate : predicates){
+                int next = predicate.nextCandidate(candidate);
+                if(next != candidate){
+                    candidate = next;
+                    moved = true;
+                }
+            }
+        }
+        return candidate;
+    }
+}
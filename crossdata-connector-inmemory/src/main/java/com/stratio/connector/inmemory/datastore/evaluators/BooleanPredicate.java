@@ -0,0 +1,78 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.columns.BooleanColumn;
+
+/**
+ * Predicate that compares the values of a boolean column with a boolean operand. Null values do not
+ * satisfy the predicate.
+ */
+public class BooleanPredicate extends RowPredicate {
+
+    /**
+     * The column.
+     */
+    private final BooleanColumn column;
+
+    /**
+     * The operation.
+     */
+    private final InMemoryOperations operation;
+
+    /**
+     * The operand.
+     */
+    private final boolean operand;
+
+    /**
+     * Class constructor.
+     * @param column The column.
+     * @param operation The operation, one of EQ, GT, LT, GET or LET.
+     * @param operand The operand.
+     */
+    public BooleanPredicate(BooleanColumn column, InMemoryOperations operation, boolean operand){
+        this.column = column;
+        this.operation = operation;
+        this.operand = operand;
+    }
+
+    @Override
+    public boolean test(int row) {
+        if(column.isNull(row)){
+            return false;
+        }
+        int comparison = Boolean.compare(column.getBoolean(row), operand);
+        switch (operation){
+        case EQ:
+            return comparison == 0;
+        case GT:
+            return comparison > 0;
+        case LT:
+            return comparison < 0;
+        case GET:
+            return comparison >= 0;
+        case LET:
+            return comparison <= 0;
+        default:
+            return false;
+        }
+    }
+}
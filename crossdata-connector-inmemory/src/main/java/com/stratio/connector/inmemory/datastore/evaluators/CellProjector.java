@@ -0,0 +1,187 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import java.util.Map;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.datatypes.JoinValue;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.structures.AbstractInMemoryFunction;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryJoinSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Evaluator of an output column of a query compiled for a given set of columns.
+ */
+public abstract class CellProjector {
+
+    /**
+     * The output selector.
+     */
+    protected final InMemorySelector selector;
+
+    /**
+     * Class constructor.
+     * @param selector The output selector.
+     */
+    protected CellProjector(InMemorySelector selector){
+        this.selector = selector;
+    }
+
+    /**
+     * Evaluate the output column on a row.
+     * @param row The row position.
+     * @return The resulting cell.
+     * @throws Exception If the cell cannot be evaluated.
+     */
+    public abstract SimpleValue project(int row) throws Exception;
+
+    /**
+     * Projector that reads the value of a column.
+     */
+    static class ColumnProjector extends CellProjector {
+
+        /**
+         * The column.
+         */
+        private final AbstractInMemoryColumn column;
+
+        /**
+         * Class constructor.
+         * @param selector The output selector.
+         * @param column The column.
+         */
+        ColumnProjector(InMemorySelector selector, AbstractInMemoryColumn column){
+            super(selector);
+            this.column = column;
+        }
+
+        @Override
+        public SimpleValue project(int row) {
+            return new SimpleValue(selector, column.get(row));
+        }
+    }
+
+    /**
+     * Projector that returns the value of a join column.
+     */
+    static class JoinProjector extends CellProjector {
+
+        /**
+         * The column.
+         */
+        private final AbstractInMemoryColumn column;
+
+        /**
+         * Class constructor.
+         * @param selector The join selector.
+         * @param column The column of the table involved in the join.
+         */
+        JoinProjector(InMemoryJoinSelector selector, AbstractInMemoryColumn column){
+            super(selector);
+            this.column = column;
+        }
+
+        @Override
+        public SimpleValue project(int row) {
+            return new JoinValue(InMemoryJoinSelector.class.cast(selector), column.get(row));
+        }
+    }
+
+    /**
+     * Projector that returns a literal.
+     */
+    static class LiteralProjector extends CellProjector {
+
+        /**
+         * Class constructor.
+         * @param selector The literal selector.
+         */
+        LiteralProjector(InMemorySelector selector){
+            super(selector);
+        }
+
+        @Override
+        public SimpleValue project(int row) {
+            return new SimpleValue(selector, selector.getName());
+        }
+    }
+
+    /**
+     * Projector that applies a row function. The function is instantiated once, and its input row is
+     * reused across rows: only the cells of the columns referenced by the function are filled. As a
+     * consequence, a function projector must not be shared by several threads.
+     */
+    static class FunctionProjector extends CellProjector {
+
+        /**
+         * The function.
+         */
+        private final AbstractInMemoryFunction function;
+
+        /**
+         * Map associating column names with their position in the input row.
+         */
+        private final Map<String, Integer> columnIndex;
+
+        /**
+         * The input row of the function.
+         */
+        private final SimpleValue [] input;
+
+        /**
+         * Cells of the input row that are filled.
+         */
+        private final SimpleValue [] arguments;
+
+        /**
+         * Column of each filled cell.
+         */
+        private final AbstractInMemoryColumn [] argumentColumns;
+
+        /**
+         * Class constructor.
+         * @param selector The function selector.
+         * @param function The function.
+         * @param columnIndex The map associating column names with their position.
+         * @param input The input row with the cells of the referenced columns.
+         * @param arguments The cells of the input row that are filled.
+         * @param argumentColumns The column of each filled cell.
+         */
+        FunctionProjector(InMemorySelector selector, AbstractInMemoryFunction function,
+                Map<String, Integer> columnIndex, SimpleValue [] input, SimpleValue [] arguments,
+                AbstractInMemoryColumn [] argumentColumns){
+            super(selector);
+            this.function = function;
+            this.columnIndex = columnIndex;
+            this.input = input;
+            this.arguments = arguments;
+            this.argumentColumns = argumentColumns;
+        }
+
+        @Override
+        public SimpleValue project(int row) throws Exception {
+            for(int index = 0; index < arguments.length; index++){
+                arguments[index].setValue(argumentColumns[index].get(row));
+            }
+            return new SimpleValue(selector, function.apply(columnIndex, input));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+import com.stratio.connector.inmemory.datastore.columns.ZoneMap;
+
+/**
+ * Predicate that compares the values of a numeric column with floating point operands using primitive
+ * doubles. Null values do not satisfy the predicate. On floating point columns, the operands are
+ * compared with the bounds of each zone, so scans skip the zones where no row can match.
+ */
+public class DoublePredicate extends RowPredicate {
+
+    /**
+     * The column.
+     */
+    private final AbstractNumericColumn column;
+
+    /**
+     * The operation.
+     */
+    private final InMemoryOperations operation;
+
+    /**
+     * The operands: a single value, the sorted values of an IN, or the bounds of a BETWEEN.
+     */
+    private final double [] operands;
+
+    /**
+     * Zone map keys of the operands, or null if the zones cannot be used.
+     */
+    private final long [] keys;
+
+    /**
+     * Class constructor.
+     * @param column The column.
+     * @param operation The operation.
+     * @param operands The operands.
+     */
+    public DoublePredicate(AbstractNumericColumn column, InMemoryOperations operation, double [] operands){
+        this.column = column;
+        this.operation = operation;
+        this.operands = operands;
+        if(InMemoryOperations.IN.equals(operation)){
+            Arrays.sort(this.operands);
+        }
+        this.keys = column.isIntegral() ? null : toKeys(operands);
+    }
+
+    /**
+     * Compute the zone map keys of the operands.
+     * @param operands The operands.
+     * @return The keys, or null if an operand is NaN.
+     */
+    private static long [] toKeys(double [] operands){
+        long [] result = new long[operands.length];
+        for(int index = 0; index < operands.length; index++){
+            if(Double.isNaN(operands[index])){
+                return null;
+            }
+            result[index] = ZoneMap.toKey(operands[index]);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean test(int row) {
+        if(column.isNull(row)){
+            return false;
+        }
+        double value = column.getAsDouble(row);
+        switch (operation){
+        case EQ:
+            return value == operands[0];
+        case GT:
+            return value > operands[0];
+        case LT:
+            return value < operands[0];
+        case GET:
+            return value >= operands[0];
+        case LET:
+            return value <= operands[0];
+        case IN:
+            return Arrays.binarySearch(operands, value) >= 0;
+        case BETWEEN:
+            return value >= operands[0] && value <= operands[1];
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public boolean mayMatch(int zone) {
+        return keys == null || mayContain(column.getZoneMap(), zone, operation, keys);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.stratio.connector.inmemory.datastore.InMemoryDisjunction;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemorySample;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+import com.stratio.connector.inmemory.datastore.columns.BooleanColumn;
+import com.stratio.connector.inmemory.datastore.columns.StringColumn;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.structures.AbstractInMemoryFunction;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryJoinSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Compiler that transforms the relations and output columns of a query into evaluators specialized for
+ * the column types of a table. Literal operands are converted to the native type of the column once,
+ * so that evaluating a row requires neither reflection nor boxing. Relations whose operands do not
+ * match the type of the column are evaluated with the generic {@link InMemoryOperations} semantics.
+ */
+public final class ExpressionCompiler {
+
+    /**
+     * Private constructor as all methods are static.
+     */
+    private ExpressionCompiler(){
+    }
+
+    /**
+     * Compile the conjunction of a set of relations.
+     * @param table The snapshot of the table.
+     * @param relations The list of relationships.
+     * @return A {@link RowPredicate}.
+     * @throws Exception If a column does not exist.
+     */
+    public static RowPredicate compilePredicate(TableSnapshot table, List<InMemoryRelation> relations)
+            throws Exception {
+        if(relations.isEmpty()){
+            return RowPredicate.TRUE;
+        }
+        RowPredicate [] predicates = new RowPredicate[relations.size()];
+        for(int index = 0; index < predicates.length; index++){
+            InMemoryRelation relation = relations.get(index);
+            if(InMemoryDisjunction.class.isInstance(relation)){
+                predicates[index] = compileDisjunction(table, InMemoryDisjunction.class.cast(relation));
+            }else if(InMemorySample.class.isInstance(relation)){
+                predicates[index] = new SamplePredicate(InMemorySample.class.cast(relation));
+            }else{
+                predicates[index] = compileRelation(table.getColumn(relation.getColumnName()), relation);
+            }
+        }
+        if(predicates.length == 1){
+            return predicates[0];
+        }
+        return new AndPredicate(predicates);
+    }
+
+    /**
+     * Compile a disjunction of conjunctions of relations.
+     * @param table The snapshot of the table.
+     * @param disjunction The disjunction.
+     * @return A {@link RowPredicate}.
+     * @throws Exception If a column does not exist.
+     */
+    private static RowPredicate compileDisjunction(TableSnapshot table, InMemoryDisjunction disjunction)
+            throws Exception {
+        List<List<InMemoryRelation>> terms = disjunction.getTerms();
+        RowPredicate [] predicates = new RowPredicate[terms.size()];
+        for(int index = 0; index < predicates.length; index++){
+            predicates[index] = compilePredicate(table, terms.get(index));
+        }
+        return new OrPredicate(predicates);
+    }
+
+    /**
+     * Compile a single relation.
+     * @param column The column of the relation.
+     * @param relation The relation.
+     * @return A {@link RowPredicate}.
+     */
+    private static RowPredicate compileRelation(AbstractInMemoryColumn column, InMemoryRelation relation){
+        InMemoryOperations operation = relation.getRelation();
+        Object rightPart = relation.getRightPart();
+        List<Object> operands = getOperands(operation, rightPart);
+        RowPredicate result = null;
+        //Only text columns evaluate MATCH on their dictionary; other columns match their string form.
+        if(operands != null && (!InMemoryOperations.MATCH.equals(operation) || StringColumn.class.isInstance(column))){
+            if(AbstractNumericColumn.class.isInstance(column)){
+                result = compileNumeric(AbstractNumericColumn.class.cast(column), operation, operands);
+            }else if(StringColumn.class.isInstance(column) && allInstances(String.class, operands)){
+                result = new StringPredicate(StringColumn.class.cast(column), operation,
+                        operands.toArray(new String[operands.size()]));
+            }else if(BooleanColumn.class.isInstance(column) && operands.size() == 1
+                    && !InMemoryOperations.IN.equals(operation) && Boolean.class.isInstance(operands.get(0))){
+                result = new BooleanPredicate(BooleanColumn.class.cast(column), operation,
+                        Boolean.class.cast(operands.get(0)));
+            }
+        }
+        if(result == null){
+            result = new GenericPredicate(column, operation, rightPart);
+        }
+        return result;
+    }
+
+    /**
+     * Get the operands of a relation.
+     * @param operation The operation.
+     * @param rightPart The right part of the relation.
+     * @return The list of operands, or null if the right part is not valid for the operation.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> getOperands(InMemoryOperations operation, Object rightPart){
+        List<Object> result = null;
+        if(InMemoryOperations.IN.equals(operation) || InMemoryOperations.BETWEEN.equals(operation)){
+            if(List.class.isInstance(rightPart)){
+                result = new ArrayList<>((List<Object>) rightPart);
+                if(InMemoryOperations.BETWEEN.equals(operation) && result.size() != 2){
+                    result = null;
+                }
+            }
+        }else if(rightPart != null){
+            result = Arrays.asList(rightPart);
+        }
+        if(result != null && result.contains(null)){
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Compile a relation over a numeric column.
+     * @param column The column.
+     * @param operation The operation.
+     * @param operands The operands.
+     * @return A {@link RowPredicate} or null if the operands are not numbers.
+     */
+    private static RowPredicate compileNumeric(AbstractNumericColumn column, InMemoryOperations operation,
+            List<Object> operands){
+        List<Number> numbers = new ArrayList<>();
+        for(Object operand : operands){
+            if(Number.class.isInstance(operand)){
+                numbers.add(Number.class.cast(operand));
+            }else if(!InMemoryOperations.IN.equals(operation)){
+                //Only the numeric entries of an IN may match a numeric column.
+                return null;
+            }
+        }
+
+        boolean integral = column.isIntegral();
+        for(Number number : numbers){
+            integral = integral && isIntegral(number);
+        }
+
+        if(integral){
+            long [] values = new long[numbers.size()];
+            for(int index = 0; index < values.length; index++){
+                values[index] = numbers.get(index).longValue();
+            }
+            return new LongPredicate(column, operation, values);
+        }
+        boolean floatColumn = Float.class.equals(column.getType());
+        double [] values = new double[numbers.size()];
+        for(int index = 0; index < values.length; index++){
+            Number number = numbers.get(index);
+            if(floatColumn){
+                //Float values are compared with the operands rounded to float precision.
+                values[index] = number.floatValue();
+            }else if(Float.class.isInstance(number)){
+                //Float literals keep their decimal representation, as in InMemoryOperations.
+                values[index] = Double.parseDouble(number.toString());
+            }else{
+                values[index] = number.doubleValue();
+            }
+        }
+        return new DoublePredicate(column, operation, values);
+    }
+
+    /**
+     * Determine whether a number has an exact long representation.
+     * @param number The number.
+     * @return Whether it is integral.
+     */
+    private static boolean isIntegral(Number number){
+        boolean result;
+        if(Integer.class.isInstance(number) || Long.class.isInstance(number)
+                || Short.class.isInstance(number) || Byte.class.isInstance(number)){
+            result = true;
+        }else if(BigInteger.class.isInstance(number)){
+            result = BigInteger.class.cast(number).bitLength() < Long.SIZE;
+        }else if(BigDecimal.class.isInstance(number)){
+            BigDecimal decimal = BigDecimal.class.cast(number);
+            result = decimal.signum() == 0 || (decimal.stripTrailingZeros().scale() <= 0
+                    && decimal.toBigInteger().bitLength() < Long.SIZE);
+        }else{
+            double value = number.doubleValue();
+            result = value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * Determine whether all the elements of a list are instances of a class.
+     * @param type The class.
+     * @param elements The elements.
+     * @return Whether all of them are instances.
+     */
+    private static boolean allInstances(Class<?> type, List<Object> elements){
+        for(Object element : elements){
+            if(!type.isInstance(element)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compile the projection of a set of output columns. Aggregation functions are not evaluated on
+     * each row, so their cells are left empty.
+     * @param table The snapshot of the table.
+     * @param outputColumns The output columns in order.
+     * @return A {@link RowProjector} that must be used by a single thread.
+     * @throws Exception If a column does not exist or a selector is not supported.
+     */
+    public static RowProjector compileProjection(TableSnapshot table, List<InMemorySelector> outputColumns)
+            throws Exception {
+        CellProjector [] cells = new CellProjector[outputColumns.size()];
+        for(int index = 0; index < cells.length; index++){
+            InMemorySelector selector = outputColumns.get(index);
+            if(InMemoryFunctionSelector.class.isInstance(selector)){
+                cells[index] = compileFunction(table, InMemoryFunctionSelector.class.cast(selector));
+            }else if(InMemoryColumnSelector.class.isInstance(selector)){
+                cells[index] = new CellProjector.ColumnProjector(selector, table.getColumn(selector.getName()));
+            }else if(InMemoryLiteralSelector.class.isInstance(selector)){
+                cells[index] = new CellProjector.LiteralProjector(selector);
+            }else if(InMemoryJoinSelector.class.isInstance(selector)){
+                InMemoryJoinSelector join = InMemoryJoinSelector.class.cast(selector);
+                cells[index] = new CellProjector.JoinProjector(join,
+                        table.getColumn(join.getMyTerm().getColumnName().getName()));
+            }else{
+                throw new Exception("Cannot recognize selector class " + selector.getClass());
+            }
+        }
+        return new RowProjector(cells);
+    }
+
+    /**
+     * Compile a function selector.
+     * @param table The snapshot of the table.
+     * @param selector The function selector.
+     * @return A {@link CellProjector} or null if the function is an aggregation.
+     * @throws Exception If the function cannot be instantiated.
+     */
+    private static CellProjector compileFunction(TableSnapshot table, InMemoryFunctionSelector selector)
+            throws Exception {
+        AbstractInMemoryFunction function = selector.getFunction();
+        if(!function.isRowFunction()){
+            return null;
+        }
+        SimpleValue [] input = new SimpleValue[table.getColumnNames().length];
+        List<SimpleValue> arguments = new ArrayList<>();
+        List<AbstractInMemoryColumn> argumentColumns = new ArrayList<>();
+        addFunctionArguments(table, selector, selector, input, arguments, argumentColumns);
+        return new CellProjector.FunctionProjector(selector, function, table.getColumnIndex(), input,
+                arguments.toArray(new SimpleValue[arguments.size()]),
+                argumentColumns.toArray(new AbstractInMemoryColumn[argumentColumns.size()]));
+    }
+
+    /**
+     * Add the cells of the columns referenced by a function to its input row.
+     * @param table The snapshot of the table.
+     * @param owner The selector of the outermost function.
+     * @param selector The function selector whose arguments are processed.
+     * @param input The input row of the function.
+     * @param arguments The cells of the input row that are filled.
+     * @param argumentColumns The column of each filled cell.
+     */
+    private static void addFunctionArguments(TableSnapshot table, InMemorySelector owner,
+            InMemoryFunctionSelector selector, SimpleValue [] input, List<SimpleValue> arguments,
+            List<AbstractInMemoryColumn> argumentColumns) throws Exception {
+        for(InMemorySelector argument : selector.getArguments()){
+            if(InMemoryFunctionSelector.class.isInstance(argument)){
+                addFunctionArguments(table, owner, InMemoryFunctionSelector.class.cast(argument), input,
+                        arguments, argumentColumns);
+            }else{
+                Integer pos = table.getColumnIndex().get(argument.getName());
+                if(pos != null && input[pos] == null){
+                    input[pos] = new SimpleValue(owner, null);
+                    arguments.add(input[pos]);
+                    argumentColumns.add(table.getColumn(argument.getName()));
+                }
+            }
+        }
+    }
+}
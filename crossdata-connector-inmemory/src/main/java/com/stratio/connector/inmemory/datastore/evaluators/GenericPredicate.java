@@ -0,0 +1,62 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Predicate that evaluates an operation on the boxed values of a column. It is used for the columns
+ * and operands that have no specialized predicate. Null values do not satisfy the predicate.
+ */
+public class GenericPredicate extends RowPredicate {
+
+    /**
+     * The column.
+     */
+    private final AbstractInMemoryColumn column;
+
+    /**
+     * The operation.
+     */
+    private final InMemoryOperations operation;
+
+    /**
+     * The right part of the operation.
+     */
+    private final Object rightPart;
+
+    /**
+     * Class constructor.
+     * @param column The column.
+     * @param operation The operation.
+     * @param rightPart The right part of the operation.
+     */
+    public GenericPredicate(AbstractInMemoryColumn column, InMemoryOperations operation, Object rightPart){
+        this.column = column;
+        this.operation = operation;
+        this.rightPart = rightPart;
+    }
+
+    @Override
+    public boolean test(int row) {
+        Object value = column.get(row);
+        return value != null && operation.compare(value, rightPart);
+    }
+}
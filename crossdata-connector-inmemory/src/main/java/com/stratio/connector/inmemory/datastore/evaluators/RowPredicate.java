@@ -0,0 +1,112 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.columns.ZoneMap;
+
+/**
+ * Predicate over the rows of a table compiled for a given set of columns. Implementations read the
+ * column storage directly, so evaluating a row does not allocate objects. Predicates that can use the
+ * zone maps of their columns let full scans skip the zones where no row can match.
+ */
+public abstract class RowPredicate {
+
+    /**
+     * Predicate satisfied by every row.
+     */
+    public static final RowPredicate TRUE = new RowPredicate() {
+        @Override
+        public boolean test(int row) {
+            return true;
+        }
+    };
+
+    /**
+     * Evaluate the predicate on a row.
+     * @param row The row position.
+     * @return Whether the row satisfies the predicate.
+     */
+    public abstract boolean test(int row);
+
+    /**
+     * Determine whether any row of a zone may satisfy the predicate.
+     * @param zone The zone position, see {@link AbstractInMemoryColumn#ZONE_SIZE}.
+     * @return False only if no row of the zone satisfies the predicate.
+     */
+    public boolean mayMatch(int zone){
+        return true;
+    }
+
+    /**
+     * Find the first row, at or after a given row, that may satisfy the predicate. Rows before the
+     * returned position are guaranteed not to satisfy it.
+     * @param row The row position.
+     * @return The row position of the first candidate.
+     */
+    public int nextCandidate(int row){
+        int zone = row >>> AbstractInMemoryColumn.ZONE_SHIFT;
+        int next = zone;
+        while(!mayMatch(next)){
+            next++;
+        }
+        return next == zone ? row : next << AbstractInMemoryColumn.ZONE_SHIFT;
+    }
+
+    /**
+     * Determine whether a zone may contain a value that satisfies a comparison, using the keys of the
+     * zone map.
+     * @param zones The zone map of the column.
+     * @param zone The zone position.
+     * @param operation The operation.
+     * @param keys The keys of the operands: a single value, the values of an IN, or the bounds of a
+     *             BETWEEN.
+     * @return False only if no value of the zone satisfies the comparison. Zones without bounds, such as
+     * those of rows not written yet, may always match.
+     */
+    protected static boolean mayContain(ZoneMap zones, int zone, InMemoryOperations operation, long [] keys){
+        if(zone >= zones.getNumZones()){
+            return true;
+        }
+        switch (operation){
+        case EQ:
+            return zones.mayContain(zone, keys[0], keys[0]);
+        case GT:
+            return keys[0] != Long.MAX_VALUE && zones.mayContain(zone, keys[0] + 1, Long.MAX_VALUE);
+        case LT:
+            return keys[0] != Long.MIN_VALUE && zones.mayContain(zone, Long.MIN_VALUE, keys[0] - 1);
+        case GET:
+            return zones.mayContain(zone, keys[0], Long.MAX_VALUE);
+        case LET:
+            return zones.mayContain(zone, Long.MIN_VALUE, keys[0]);
+        case IN:
+            for(long key : keys){
+                if(zones.mayContain(zone, key, key)){
+                    return true;
+                }
+            }
+            return false;
+        case BETWEEN:
+            return zones.mayContain(zone, keys[0], keys[1]);
+        default:
+            return true;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+
+/**
+ * Evaluator of the output columns of a query compiled for a given set of columns.
+ */
+public class RowProjector {
+
+    /**
+     * Projector of each output column, or null for the columns computed after the scan.
+     */
+    private final CellProjector [] cells;
+
+    /**
+     * Class constructor.
+     * @param cells The projector of each output column, or null for the columns computed after the scan.
+     */
+    public RowProjector(CellProjector [] cells){
+        this.cells = cells;
+    }
+
+    /**
+     * Project the output columns of a row.
+     * @param row The row position.
+     * @return The resulting row.
+     * @throws Exception If a cell cannot be evaluated.
+     */
+    public SimpleValue[] project(int row) throws Exception {
+        SimpleValue [] result = new SimpleValue[cells.length];
+        for(int index = 0; index < cells.length; index++){
+            if(cells[index] != null){
+                result[index] = cells[index].project(row);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import com.stratio.connector.inmemory.datastore.InMemorySample;
+import com.stratio.connector.inmemory.datastore.aggregations.HyperLogLog;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+
+/**
+ * Predicate satisfied by the rows of the zones chosen by an {@link InMemorySample}. Each zone is chosen
+ * by comparing a hash of its position and the seed with the sampling fraction, so full scans skip the
+ * zones that are not sampled.
+ */
+public class SamplePredicate extends RowPredicate {
+
+    /**
+     * Hash values below this threshold are sampled.
+     */
+    private final long threshold;
+
+    /**
+     * The seed of the sample.
+     */
+    private final long seed;
+
+    /**
+     * Class constructor.
+     * @param sample The sample.
+     */
+    public SamplePredicate(InMemorySample sample){
+        //Hashes are compared as unsigned 63 bit values.
+        this.threshold = (long) (sample.getFraction() * Long.MAX_VALUE);
+        this.seed = sample.getSeed();
+    }
+
+    @Override
+    public boolean test(int row) {
+        return mayMatch(row >>> AbstractInMemoryColumn.ZONE_SHIFT);
+    }
+
+    @Override
+    public boolean mayMatch(int zone) {
+        return (HyperLogLog.hash(seed + zone) >>> 1) < threshold;
+    }
+}
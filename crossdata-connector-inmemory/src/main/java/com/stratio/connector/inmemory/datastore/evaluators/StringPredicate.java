@@ -0,0 +1,196 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import java.util.Arrays;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.columns.StringColumn;
+import com.stratio.connector.inmemory.datastore.indexes.TextQuery;
+
+/**
+ * Predicate that compares the values of a dictionary encoded string column. Equality is evaluated on
+ * the dictionary codes of the operands, which are resolved when the predicate is built; operands not
+ * found in the dictionary at that time are compared with the decoded values. Range comparisons are
+ * evaluated once per dictionary entry when the predicate is built, so rows only look up the result of
+ * their code; codes added to the dictionary later are compared with the decoded values. Equality is
+ * also checked against the bounds of the codes of each zone, so scans skip the zones where no row can
+ * match. MATCH parses its full-text query once and evaluates it on each dictionary entry like range
+ * comparisons. Null values do not satisfy the predicate.
+ */
+public class StringPredicate extends RowPredicate {
+
+    /**
+     * The column.
+     */
+    private final StringColumn column;
+
+    /**
+     * The operation.
+     */
+    private final InMemoryOperations operation;
+
+    /**
+     * The operands: a single value, the values of an IN, or the bounds of a BETWEEN.
+     */
+    private final String [] operands;
+
+    /**
+     * Dictionary code of each operand, or {@link StringColumn#NO_CODE}.
+     */
+    private final int [] codes;
+
+    /**
+     * Maximum number of dictionary entries evaluated when the predicate is built.
+     */
+    private static final int MAX_MATCH_TABLE = 65536;
+
+    /**
+     * Result of the predicate for each dictionary code known when the predicate was built, or null.
+     */
+    private final boolean [] matches;
+
+    /**
+     * Codes of the operands found in the dictionary, or null if the zones are not used.
+     */
+    private final long [] zoneKeys;
+
+    /**
+     * Parsed query of a MATCH, or null.
+     */
+    private final TextQuery query;
+
+    /**
+     * Class constructor.
+     * @param column The column.
+     * @param operation The operation.
+     * @param operands The operands.
+     */
+    public StringPredicate(StringColumn column, InMemoryOperations operation, String [] operands){
+        this.column = column;
+        this.operation = operation;
+        this.operands = operands;
+        this.query = InMemoryOperations.MATCH.equals(operation) ? TextQuery.parse(operands[0]) : null;
+        this.codes = new int[operands.length];
+        for(int index = 0; index < operands.length; index++){
+            codes[index] = column.lookupCode(operands[index]);
+        }
+        this.matches = buildMatches();
+        this.zoneKeys = buildZoneKeys();
+    }
+
+    /**
+     * Collect the codes of the equality operands. Operands not found in the dictionary are not stored
+     * in any row of the snapshot being scanned, so they are discarded.
+     * @return The codes, or null for range comparisons.
+     */
+    private long [] buildZoneKeys(){
+        if(operation != InMemoryOperations.EQ && operation != InMemoryOperations.IN){
+            return null;
+        }
+        long [] keys = new long[codes.length];
+        int size = 0;
+        for(int code : codes){
+            if(code != StringColumn.NO_CODE){
+                keys[size++] = code;
+            }
+        }
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Evaluate the range comparisons on the dictionary.
+     * @return The result for each dictionary code, or null if codes are compared as they are found.
+     */
+    private boolean [] buildMatches(){
+        int size = column.getDictionarySize();
+        if(operation == InMemoryOperations.EQ || operation == InMemoryOperations.IN || size > MAX_MATCH_TABLE){
+            return null;
+        }
+        boolean [] result = new boolean[size];
+        for(int code = 0; code < size; code++){
+            result[code] = matches(code);
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a row is equal to an operand.
+     * @param code The dictionary code of the row.
+     * @param operand The operand position.
+     * @return Whether both are equal.
+     */
+    private boolean isEqual(int code, int operand){
+        if(codes[operand] != StringColumn.NO_CODE){
+            return code == codes[operand];
+        }
+        return operands[operand].equals(column.decode(code));
+    }
+
+    @Override
+    public boolean test(int row) {
+        if(column.isNull(row)){
+            return false;
+        }
+        int code = column.getCode(row);
+        if(matches != null && code < matches.length){
+            return matches[code];
+        }
+        return matches(code);
+    }
+
+    /**
+     * Evaluate the predicate on a dictionary code.
+     * @param code The dictionary code of the row.
+     * @return Whether the value satisfies the predicate.
+     */
+    private boolean matches(int code){
+        switch (operation){
+        case EQ:
+            return isEqual(code, 0);
+        case IN:
+            for(int index = 0; index < operands.length; index++){
+                if(isEqual(code, index)){
+                    return true;
+                }
+            }
+            return false;
+        case GT:
+            return column.decode(code).compareTo(operands[0]) > 0;
+        case LT:
+            return column.decode(code).compareTo(operands[0]) < 0;
+        case GET:
+            return column.decode(code).compareTo(operands[0]) >= 0;
+        case LET:
+            return column.decode(code).compareTo(operands[0]) <= 0;
+        case BETWEEN:
+            String value = column.decode(code);
+            return value.compareTo(operands[0]) >= 0 && value.compareTo(operands[1]) <= 0;
+        case MATCH:
+            return query.matches(column.decode(code));
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public boolean mayMatch(int zone) {
+        return zoneKeys == null || mayContain(column.getZoneMap(), zone, InMemoryOperations.IN, zoneKeys);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+
+/**
+ * Definition of a secondary index over a column of an in-memory table. Indexes associate the values
+ * of the column with the positions of the rows that contain them.
+ */
+public abstract class AbstractInMemoryIndex {
+
+    /**
+     * Index name.
+     */
+    private final String name;
+
+    /**
+     * Name of the indexed column.
+     */
+    private final String columnName;
+
+    /**
+     * Class constructor.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     */
+    protected AbstractInMemoryIndex(String name, String columnName){
+        this.name = name;
+        this.columnName = columnName;
+    }
+
+    /**
+     * Create a new index.
+     * @param type The type of index.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     * @return An {@link AbstractInMemoryIndex}.
+     */
+    public static AbstractInMemoryIndex create(InMemoryIndexType type, String name, String columnName){
+        AbstractInMemoryIndex index;
+        if(InMemoryIndexType.HASH.equals(type)){
+            index = new HashIndex(name, columnName);
+        }else if(InMemoryIndexType.FULL_TEXT.equals(type)){
+            index = new FullTextIndex(name, columnName);
+        }else if(InMemoryIndexType.BITMAP.equals(type)){
+            index = new BitmapIndex(name, columnName);
+        }else{
+            index = new OrderedIndex(name, columnName);
+        }
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Gather the rows of a set of posting lists.
+     * @param lists The row lists.
+     * @return A sorted array of row positions without duplicates.
+     */
+    protected static int[] collect(Collection<RowList> lists){
+        List<int[]> copies = new ArrayList<>();
+        int total = 0;
+        for(RowList list : lists){
+            int[] copy = list.toArray();
+            copies.add(copy);
+            total += copy.length;
+        }
+        int[] rows = new int[total];
+        int offset = 0;
+        for(int[] copy : copies){
+            System.arraycopy(copy, 0, rows, offset, copy.length);
+            offset += copy.length;
+        }
+        return RowList.sortDistinct(rows, total);
+    }
+
+    /**
+     * Get the type of the index.
+     * @return A {@link InMemoryIndexType}.
+     */
+    public abstract InMemoryIndexType getType();
+
+    /**
+     * Add a value to the index.
+     * @param value The column value.
+     * @param row The row position.
+     */
+    public abstract void insert(Object value, int row);
+
+    /**
+     * Remove a value from the index.
+     * @param value The column value.
+     * @param row The row position.
+     */
+    public abstract void remove(Object value, int row);
+
+    /**
+     * Remove all the entries of the index.
+     */
+    public abstract void clear();
+
+    /**
+     * Determine whether the index can answer a given operation.
+     * @param operation The {@link InMemoryOperations}.
+     * @return Whether the operation is supported.
+     */
+    public abstract boolean supports(InMemoryOperations operation);
+
+    /**
+     * Find the rows that satisfy an operation.
+     * @param operation The {@link InMemoryOperations}.
+     * @param value The right part of the relation.
+     * @return A sorted array of row positions.
+     * @throws Exception If the operation is not supported.
+     */
+    public abstract int[] search(InMemoryOperations operation, Object value) throws Exception;
+
+    /**
+     * Get the values of an IN or BETWEEN right part.
+     * @param value The right part of the relation.
+     * @return A list of values.
+     */
+    @SuppressWarnings("unchecked")
+    protected static List<Object> toList(Object value){
+        return (List<Object>) value;
+    }
+}
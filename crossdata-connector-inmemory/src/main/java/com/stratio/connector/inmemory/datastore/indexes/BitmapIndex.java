@@ -0,0 +1,116 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+
+/**
+ * Index that associates each distinct value of a low cardinality column with a {@link RoaringBitmap} of
+ * the rows that contain it. It answers equality and IN lookups, and the bitmaps of several relations
+ * are combined with bitmap intersections and unions before the rows are materialized.
+ */
+public class BitmapIndex extends AbstractInMemoryIndex {
+
+    /**
+     * Map associating the column values with the bitmap of the rows that contain them.
+     */
+    private final Map<Object, RoaringBitmap> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     */
+    public BitmapIndex(String name, String columnName) {
+        super(name, columnName);
+    }
+
+    @Override
+    public InMemoryIndexType getType() {
+        return InMemoryIndexType.BITMAP;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RoaringBitmap rows = entries.get(key);
+        if(rows == null){
+            rows = new RoaringBitmap();
+            entries.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    @Override
+    public void remove(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RoaringBitmap rows = entries.get(key);
+        if(rows != null){
+            rows.remove(row);
+            if(rows.isEmpty()){
+                entries.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean supports(InMemoryOperations operation) {
+        return InMemoryOperations.EQ.equals(operation) || InMemoryOperations.IN.equals(operation);
+    }
+
+    @Override
+    public int[] search(InMemoryOperations operation, Object value) throws Exception {
+        return searchBitmap(operation, value).toArray();
+    }
+
+    /**
+     * Find the rows that satisfy an operation.
+     * @param operation The {@link InMemoryOperations}.
+     * @param value The right part of the relation.
+     * @return A bitmap of row positions, which must not be modified.
+     * @throws Exception If the operation is not supported.
+     */
+    public RoaringBitmap searchBitmap(InMemoryOperations operation, Object value) throws Exception {
+        RoaringBitmap result = new RoaringBitmap();
+        if(InMemoryOperations.EQ.equals(operation)){
+            RoaringBitmap rows = entries.get(KeyComparator.normalize(value));
+            if(rows != null){
+                result = rows;
+            }
+        }else if(InMemoryOperations.IN.equals(operation)){
+            for(Object inValue : toList(value)){
+                RoaringBitmap rows = entries.get(KeyComparator.normalize(inValue));
+                if(rows != null){
+                    result = result.or(rows);
+                }
+            }
+        }else{
+            throw new Exception("Operation " + operation + " not supported by bitmap index " + getName());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+
+/**
+ * Inverted index over the tokens of a text column that answers MATCH lookups. Each token is associated
+ * with a {@link PostingList} holding the rows and positions where it appears, so conjunctions intersect
+ * the rows of their tokens and phrases are verified on the positions. Queries are parsed with
+ * {@link TextQuery}.
+ */
+public class FullTextIndex extends AbstractInMemoryIndex {
+
+    /**
+     * Map associating each token with its occurrences.
+     */
+    private final Map<String, PostingList> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     */
+    public FullTextIndex(String name, String columnName) {
+        super(name, columnName);
+    }
+
+    @Override
+    public InMemoryIndexType getType() {
+        return InMemoryIndexType.FULL_TEXT;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        List<String> tokens = Tokenizer.tokenize(String.valueOf(value));
+        for(int position = 0; position < tokens.size(); position++){
+            PostingList postings = entries.get(tokens.get(position));
+            if(postings == null){
+                postings = new PostingList();
+                entries.put(tokens.get(position), postings);
+            }
+            postings.add(row, position);
+        }
+    }
+
+    @Override
+    public void remove(Object value, int row) {
+        for(String token : new HashSet<>(Tokenizer.tokenize(String.valueOf(value)))){
+            PostingList postings = entries.get(token);
+            if(postings != null){
+                postings.remove(row);
+                if(postings.size() == 0){
+                    entries.remove(token);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean supports(InMemoryOperations operation) {
+        return InMemoryOperations.MATCH.equals(operation);
+    }
+
+    @Override
+    public int[] search(InMemoryOperations operation, Object value) throws Exception {
+        if(!InMemoryOperations.MATCH.equals(operation)){
+            throw new Exception("Operation " + operation + " not supported by full-text index " + getName());
+        }
+        int[] result = new int[0];
+        for(List<String[]> conjunction : TextQuery.parse(String.valueOf(value)).getConjunctions()){
+            int[] rows = null;
+            for(int index = 0; index < conjunction.size() && (rows == null || rows.length > 0); index++){
+                int[] phraseRows = searchPhrase(conjunction.get(index));
+                rows = rows == null ? phraseRows : RowList.intersect(rows, phraseRows);
+            }
+            result = RowList.union(result, rows);
+        }
+        return result;
+    }
+
+    /**
+     * Find the rows that contain a phrase.
+     * @param phrase The tokens of the phrase.
+     * @return A sorted array of row positions.
+     */
+    private int[] searchPhrase(String [] phrase){
+        PostingList [] postings = new PostingList[phrase.length];
+        int[] rows = null;
+        for(int index = 0; index < phrase.length; index++){
+            postings[index] = entries.get(phrase[index]);
+            if(postings[index] == null){
+                return new int[0];
+            }
+            rows = rows == null ? postings[index].getRows() : RowList.intersect(rows, postings[index].getRows());
+        }
+        if(phrase.length == 1){
+            return rows;
+        }
+        int size = 0;
+        for(int row : rows){
+            if(containsPhrase(postings, row)){
+                rows[size++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Determine whether the tokens of a phrase appear consecutively in a row.
+     * @param postings The occurrences of each token of the phrase.
+     * @param row The row position.
+     * @return Whether the row contains the phrase.
+     */
+    private static boolean containsPhrase(PostingList [] postings, int row){
+        for(int start : postings[0].getPositions(row)){
+            int matched = 1;
+            while(matched < postings.length && postings[matched].contains(row, start + matched)){
+                matched++;
+            }
+            if(matched == postings.length){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+
+/**
+ * Index that uses a hash map to answer equality and IN lookups.
+ */
+public class HashIndex extends AbstractInMemoryIndex {
+
+    /**
+     * Map associating the column values with the rows that contain them.
+     */
+    private final Map<Object, RowList> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     */
+    public HashIndex(String name, String columnName) {
+        super(name, columnName);
+    }
+
+    @Override
+    public InMemoryIndexType getType() {
+        return InMemoryIndexType.HASH;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RowList rows = entries.get(key);
+        if(rows == null){
+            rows = new RowList();
+            entries.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    @Override
+    public void remove(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RowList rows = entries.get(key);
+        if(rows != null){
+            rows.remove(row);
+            if(rows.size() == 0){
+                entries.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean supports(InMemoryOperations operation) {
+        return InMemoryOperations.EQ.equals(operation) || InMemoryOperations.IN.equals(operation);
+    }
+
+    @Override
+    public int[] search(InMemoryOperations operation, Object value) throws Exception {
+        List<RowList> found = new ArrayList<>();
+        if(InMemoryOperations.EQ.equals(operation)){
+            addEntry(found, value);
+        }else if(InMemoryOperations.IN.equals(operation)){
+            for(Object inValue : toList(value)){
+                addEntry(found, inValue);
+            }
+        }else{
+            throw new Exception("Operation " + operation + " not supported by hash index " + getName());
+        }
+        return collect(found);
+    }
+
+    /**
+     * Add the rows associated with a value to a list of results.
+     * @param found The list of results.
+     * @param value The value to look for.
+     */
+    private void addEntry(List<RowList> found, Object value){
+        RowList rows = entries.get(KeyComparator.normalize(value));
+        if(rows != null){
+            found.add(rows);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Comparator;
+
+/**
+ * Comparator that defines a total order between the values stored in the index structures. Numbers
+ * of different classes are compared by value, values of unrelated classes are ordered by class name, and
+ * null values are sorted first.
+ */
+public class KeyComparator implements Comparator<Object> {
+
+    /**
+     * Shared comparator instance.
+     */
+    public static final KeyComparator INSTANCE = new KeyComparator();
+
+    @Override
+    public int compare(Object o1, Object o2) {
+        if(o1 == null || o2 == null){
+            return o1 == null ? (o2 == null ? 0 : -1) : 1;
+        }
+        if(Long.class.isInstance(o1) && Long.class.isInstance(o2)){
+            return Long.class.cast(o1).compareTo(Long.class.cast(o2));
+        }
+        if(Number.class.isInstance(o1) && Number.class.isInstance(o2)){
+            return Double.compare(Number.class.cast(o1).doubleValue(), Number.class.cast(o2).doubleValue());
+        }
+        if(o1.getClass().equals(o2.getClass()) && Comparable.class.isInstance(o1)){
+            return compareComparable(o1, o2);
+        }
+        return o1.getClass().getName().compareTo(o2.getClass().getName());
+    }
+
+    /**
+     * Compare two values of the same class that implement the {@link java.lang.Comparable} interface.
+     * @param o1 The first value.
+     * @param o2 The second value.
+     * @return The comparison value.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareComparable(Object o1, Object o2){
+        return Comparable.class.cast(o1).compareTo(o2);
+    }
+
+    /**
+     * Transform a value into its index key. Integral numbers are represented as longs, and floating
+     * point numbers without decimals are represented as their integral value, so that equal numbers
+     * of different classes share the same key.
+     * @param value The value.
+     * @return The index key.
+     */
+    public static Object normalize(Object value){
+        Object result = value;
+        if(Integer.class.isInstance(value) || Short.class.isInstance(value) || Byte.class.isInstance(value)){
+            result = Number.class.cast(value).longValue();
+        }else if(Float.class.isInstance(value) || Double.class.isInstance(value)){
+            double d = Double.parseDouble(value.toString());
+            if(d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < Long.MAX_VALUE){
+                result = (long) d;
+            }else{
+                result = d;
+            }
+        }
+        return result;
+    }
+}
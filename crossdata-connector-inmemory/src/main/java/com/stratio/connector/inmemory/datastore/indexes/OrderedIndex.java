@@ -0,0 +1,139 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+
+/**
+ * Index that keeps the column values sorted to answer equality, IN and range lookups.
+ */
+public class OrderedIndex extends AbstractInMemoryIndex {
+
+    /**
+     * Sorted map associating the column values with the rows that contain them.
+     */
+    private final NavigableMap<Object, RowList> entries = new ConcurrentSkipListMap<>(KeyComparator.INSTANCE);
+
+    /**
+     * Class constructor.
+     * @param name The index name.
+     * @param columnName The name of the indexed column.
+     */
+    public OrderedIndex(String name, String columnName) {
+        super(name, columnName);
+    }
+
+    @Override
+    public InMemoryIndexType getType() {
+        return InMemoryIndexType.ORDERED;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RowList rows = entries.get(key);
+        if(rows == null){
+            rows = new RowList();
+            entries.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    @Override
+    public void remove(Object value, int row) {
+        Object key = KeyComparator.normalize(value);
+        RowList rows = entries.get(key);
+        if(rows != null){
+            rows.remove(row);
+            if(rows.size() == 0){
+                entries.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean supports(InMemoryOperations operation) {
+        return true;
+    }
+
+    @Override
+    public int[] search(InMemoryOperations operation, Object value) throws Exception {
+        Collection<RowList> found;
+        switch(operation){
+        case EQ:
+            found = new ArrayList<>();
+            addEntry(found, value);
+            break;
+        case IN:
+            found = new ArrayList<>();
+            for(Object inValue : toList(value)){
+                addEntry(found, inValue);
+            }
+            break;
+        case GT:
+            found = entries.tailMap(KeyComparator.normalize(value), false).values();
+            break;
+        case GET:
+            found = entries.tailMap(KeyComparator.normalize(value), true).values();
+            break;
+        case LT:
+            found = entries.headMap(KeyComparator.normalize(value), false).values();
+            break;
+        case LET:
+            found = entries.headMap(KeyComparator.normalize(value), true).values();
+            break;
+        case BETWEEN:
+            List<Object> bounds = toList(value);
+            Object low = KeyComparator.normalize(bounds.get(0));
+            Object high = KeyComparator.normalize(bounds.get(1));
+            if(KeyComparator.INSTANCE.compare(low, high) > 0){
+                found = new ArrayList<>();
+            }else{
+                found = entries.subMap(low, true, high, true).values();
+            }
+            break;
+        default:
+            throw new Exception("Operation " + operation + " not supported by ordered index " + getName());
+        }
+        return collect(found);
+    }
+
+    /**
+     * Add the rows associated with a value to a list of results.
+     * @param found The list of results.
+     * @param value The value to look for.
+     */
+    private void addEntry(Collection<RowList> found, Object value){
+        RowList rows = entries.get(KeyComparator.normalize(value));
+        if(rows != null){
+            found.add(rows);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Arrays;
+
+/**
+ * Postings of a token in a full-text index: the positions of the rows that contain the token and the
+ * position of each occurrence in the tokens of the row. Occurrences are stored as interleaved pairs
+ * ordered by row and position, because rows are indexed in increasing order. As {@link RowList}, lists
+ * have a single writer, and occurrences are stored before the size is published.
+ */
+public class PostingList {
+
+    /**
+     * Initial number of occurrences of the list.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Row and token position of each occurrence.
+     */
+    private volatile int[] entries = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Number of occurrences in the list.
+     */
+    private volatile int size = 0;
+
+    /**
+     * Add an occurrence. Occurrences must be added in order of row and position.
+     * @param row The row position.
+     * @param position The position of the token in the row.
+     */
+    public void add(int row, int position){
+        int count = size;
+        int[] current = entries;
+        if(2 * count == current.length){
+            current = Arrays.copyOf(current, 2 * (count + (count >> 1) + 1));
+            entries = current;
+        }
+        current[2 * count] = row;
+        current[2 * count + 1] = position;
+        size = count + 1;
+    }
+
+    /**
+     * Remove the occurrences of a row. Occurrences are shifted in place, so lists must not be read
+     * while rows are removed.
+     * @param row The row position.
+     */
+    public void remove(int row){
+        int count = size;
+        int first = find(row, 0, count);
+        int last = first;
+        while(last < count && entries[2 * last] == row){
+            last++;
+        }
+        if(last > first){
+            System.arraycopy(entries, 2 * last, entries, 2 * first, 2 * (count - last));
+            size = count - (last - first);
+        }
+    }
+
+    /**
+     * Get the number of occurrences.
+     * @return The number of occurrences.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Get the rows that contain the token.
+     * @return A sorted array of row positions without duplicates.
+     */
+    public int[] getRows(){
+        int count = size;
+        int[] current = entries;
+        int[] rows = new int[count];
+        int distinct = 0;
+        for(int index = 0; index < count; index++){
+            int row = current[2 * index];
+            if(distinct == 0 || rows[distinct - 1] != row){
+                rows[distinct++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, distinct);
+    }
+
+    /**
+     * Get the positions of the token in a row.
+     * @param row The row position.
+     * @return The token positions in increasing order.
+     */
+    public int[] getPositions(int row){
+        int count = size;
+        int[] current = entries;
+        int first = find(current, row, 0, count);
+        int last = first;
+        while(last < count && current[2 * last] == row){
+            last++;
+        }
+        int[] positions = new int[last - first];
+        for(int index = first; index < last; index++){
+            positions[index - first] = current[2 * index + 1];
+        }
+        return positions;
+    }
+
+    /**
+     * Determine whether the token appears in a row at a given position.
+     * @param row The row position.
+     * @param position The token position.
+     * @return Whether the occurrence exists.
+     */
+    public boolean contains(int row, int position){
+        int count = size;
+        int[] current = entries;
+        int low = 0;
+        int high = count - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            int comparison = compare(current[2 * middle], current[2 * middle + 1], row, position);
+            if(comparison < 0){
+                low = middle + 1;
+            }else if(comparison > 0){
+                high = middle - 1;
+            }else{
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the first occurrence of a row.
+     * @param row The row position.
+     * @param from The first occurrence to search.
+     * @param to The last occurrence to search (exclusive).
+     * @return The index of the first occurrence whose row is not lower than the given one.
+     */
+    private int find(int row, int from, int to){
+        return find(entries, row, from, to);
+    }
+
+    /**
+     * Find the first occurrence of a row in an array of occurrences.
+     * @param current The occurrences.
+     * @param row The row position.
+     * @param from The first occurrence to search.
+     * @param to The last occurrence to search (exclusive).
+     * @return The index of the first occurrence whose row is not lower than the given one.
+     */
+    private static int find(int[] current, int row, int from, int to){
+        int low = from;
+        int high = to;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(current[2 * middle] < row){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare two occurrences by row and position.
+     * @param row1 The row of the first occurrence.
+     * @param position1 The position of the first occurrence.
+     * @param row2 The row of the second occurrence.
+     * @param position2 The position of the second occurrence.
+     * @return A negative number, zero or a positive number as the first occurrence goes first, is equal or
+     * goes after the second one.
+     */
+    private static int compare(int row1, int position1, int row2, int position2){
+        if(row1 != row2){
+            return Integer.compare(row1, row2);
+        }
+        return Integer.compare(position1, position2);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Typed primary key of a row. Keys are compared component by component, so that the keys sharing a
+ * prefix are stored next to each other in a sorted structure.
+ */
+public final class PrimaryKey implements Comparable<PrimaryKey> {
+
+    /**
+     * Normalized values of the key columns.
+     */
+    private final Object[] values;
+
+    /**
+     * Class constructor.
+     * @param values The values of the key columns, or of a prefix of them.
+     */
+    public PrimaryKey(Object... values){
+        this.values = new Object[values.length];
+        for(int index = 0; index < values.length; index++){
+            this.values[index] = KeyComparator.normalize(values[index]);
+        }
+    }
+
+    /**
+     * Class constructor.
+     * @param values The values of the key columns, or of a prefix of them.
+     */
+    public PrimaryKey(List<Object> values){
+        this(values.toArray());
+    }
+
+    /**
+     * Get the number of components of the key.
+     * @return The number of components.
+     */
+    public int size(){
+        return values.length;
+    }
+
+    /**
+     * Get a component of the key.
+     * @param index The component position.
+     * @return The normalized value.
+     */
+    public Object get(int index){
+        return values[index];
+    }
+
+    /**
+     * Determine whether the key starts with a given prefix.
+     * @param prefix The prefix values.
+     * @return Whether the first components of the key are equal to the prefix.
+     */
+    public boolean startsWith(List<Object> prefix){
+        if(prefix.size() > values.length){
+            return false;
+        }
+        for(int index = 0; index < prefix.size(); index++){
+            if(KeyComparator.INSTANCE.compare(values[index], KeyComparator.normalize(prefix.get(index))) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compareTo(PrimaryKey other) {
+        int length = Math.min(values.length, other.values.length);
+        for(int index = 0; index < length; index++){
+            int result = KeyComparator.INSTANCE.compare(values[index], other.values[index]);
+            if(result != 0){
+                return result;
+            }
+        }
+        return values.length - other.values.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(o == null || getClass() != o.getClass()){
+            return false;
+        }
+        return compareTo(PrimaryKey.class.cast(o)) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
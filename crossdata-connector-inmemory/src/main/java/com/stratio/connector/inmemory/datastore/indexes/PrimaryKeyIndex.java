@@ -0,0 +1,309 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+
+/**
+ * Sorted index associating the primary key of each row with the position of its latest version. Older
+ * versions are reached through the version chains of the table. Relations over the primary
+ * key columns are answered by direct lookups when the whole key is known, and by range scans over the
+ * keys that share a prefix otherwise.
+ */
+public class PrimaryKeyIndex {
+
+    /**
+     * Maximum number of key prefixes generated by the combination of IN relations.
+     */
+    public static final int MAX_LOOKUPS = 4096;
+
+    /**
+     * Names of the primary key columns.
+     */
+    private final String[] columnNames;
+
+    /**
+     * Java types of the primary key columns.
+     */
+    private final Class[] columnTypes;
+
+    /**
+     * Sorted map associating the primary keys with the row positions.
+     */
+    private final ConcurrentNavigableMap<PrimaryKey, Integer> keys = new ConcurrentSkipListMap<>();
+
+    /**
+     * Class constructor.
+     * @param columnNames The names of the primary key columns.
+     * @param columnTypes The Java types of the primary key columns.
+     */
+    public PrimaryKeyIndex(String[] columnNames, Class[] columnTypes){
+        this.columnNames = columnNames.clone();
+        this.columnTypes = columnTypes.clone();
+    }
+
+    /**
+     * Build the primary key of a row.
+     * @param values The values of the primary key columns.
+     * @return A {@link PrimaryKey}.
+     */
+    public PrimaryKey createKey(Object[] values){
+        Object[] converted = new Object[values.length];
+        for(int index = 0; index < values.length; index++){
+            converted[index] = toKeyValue(index, values[index]);
+        }
+        return new PrimaryKey(converted);
+    }
+
+    /**
+     * Convert a value to the type of a primary key column, so that the same key can be found using
+     * literals of a different type.
+     * @param column The position of the column in the primary key.
+     * @param value The value.
+     * @return The converted value.
+     */
+    private Object toKeyValue(int column, Object value){
+        Object result = value;
+        if(value != null){
+            if(String.class.equals(columnTypes[column])){
+                result = String.valueOf(value);
+            }else if(Number.class.isAssignableFrom(columnTypes[column]) && String.class.isInstance(value)){
+                try {
+                    result = Double.parseDouble(String.class.cast(value));
+                } catch (NumberFormatException e) {
+                    result = value;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the row associated with a key.
+     * @param key The primary key.
+     * @return The row position or null if the key is not found.
+     */
+    public Integer get(PrimaryKey key){
+        return keys.get(key);
+    }
+
+    /**
+     * Associate a key with a row.
+     * @param key The primary key.
+     * @param row The row position.
+     */
+    public void put(PrimaryKey key, int row){
+        keys.put(key, row);
+    }
+
+    /**
+     * Get the entries of the index in key order.
+     * @return The entries associating each key with the position of its latest version.
+     */
+    public Set<Map.Entry<PrimaryKey, Integer>> entries(){
+        return keys.entrySet();
+    }
+
+    /**
+     * Remove all the keys.
+     */
+    public void clear(){
+        keys.clear();
+    }
+
+    /**
+     * Find the rows whose primary key may satisfy a set of relations. Leading key columns restricted by
+     * EQ or IN relations define a set of key prefixes; complete keys are looked up directly, and partial
+     * ones are resolved with a range scan optionally bounded by the relations on the next key column.
+     * @param relations The list of relationships.
+     * @return A sorted array of row positions or null if the relations do not restrict the first key column.
+     */
+    public int[] search(List<InMemoryRelation> relations){
+        List<List<Object>> prefixes = new ArrayList<>();
+        prefixes.add(Collections.emptyList());
+        int column = 0;
+        while(column < columnNames.length){
+            List<Object> values = getLookupValues(column, relations);
+            if(values == null || prefixes.size() * values.size() > MAX_LOOKUPS){
+                break;
+            }
+            prefixes = combine(prefixes, values);
+            column++;
+        }
+
+        List<InMemoryRelation> ranges = new ArrayList<>();
+        if(column < columnNames.length){
+            for(InMemoryRelation relation : relations){
+                if(columnNames[column].equals(relation.getColumnName()) && relation.getRightPart() != null
+                        && isRange(relation.getRelation())){
+                    ranges.add(relation);
+                }
+            }
+        }
+        if(column == 0 && ranges.isEmpty()){
+            return null;
+        }
+
+        RowList rows = new RowList();
+        for(List<Object> prefix : prefixes){
+            if(prefix.size() == columnNames.length){
+                Integer row = keys.get(new PrimaryKey(prefix));
+                if(row != null){
+                    rows.add(row);
+                }
+            }else{
+                scan(prefix, ranges, rows);
+            }
+        }
+        return rows.toSortedArray();
+    }
+
+    /**
+     * Get the values that a key column may take according to the EQ and IN relations.
+     * @param column The position of the column in the primary key.
+     * @param relations The list of relationships.
+     * @return A list of values or null if the column is not restricted by an EQ or IN relation.
+     */
+    private List<Object> getLookupValues(int column, List<InMemoryRelation> relations){
+        for(InMemoryRelation relation : relations){
+            if(columnNames[column].equals(relation.getColumnName()) && relation.getRightPart() != null){
+                if(InMemoryOperations.EQ.equals(relation.getRelation())){
+                    return Collections.singletonList(toKeyValue(column, relation.getRightPart()));
+                }else if(InMemoryOperations.IN.equals(relation.getRelation())){
+                    List<Object> values = new ArrayList<>();
+                    for(Object value : List.class.cast(relation.getRightPart())){
+                        values.add(toKeyValue(column, value));
+                    }
+                    return values;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extend a set of key prefixes with the values of the next key column.
+     * @param prefixes The current prefixes.
+     * @param values The values of the next column.
+     * @return The combined prefixes.
+     */
+    private List<List<Object>> combine(List<List<Object>> prefixes, List<Object> values){
+        List<List<Object>> result = new ArrayList<>(prefixes.size() * values.size());
+        for(List<Object> prefix : prefixes){
+            for(Object value : values){
+                List<Object> extended = new ArrayList<>(prefix);
+                extended.add(value);
+                result.add(extended);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determine whether an operation defines a range of values.
+     * @param operation The {@link InMemoryOperations}.
+     * @return Whether it is a range operation.
+     */
+    private boolean isRange(InMemoryOperations operation){
+        return InMemoryOperations.GT.equals(operation) || InMemoryOperations.GET.equals(operation)
+                || InMemoryOperations.LT.equals(operation) || InMemoryOperations.LET.equals(operation)
+                || InMemoryOperations.BETWEEN.equals(operation);
+    }
+
+    /**
+     * Scan the keys that start with a prefix, bounding the next key column with a set of range relations.
+     * @param prefix The key prefix.
+     * @param ranges The range relations over the column that follows the prefix.
+     * @param rows The list where the matching rows are added.
+     */
+    private void scan(List<Object> prefix, List<InMemoryRelation> ranges, RowList rows){
+        int column = prefix.size();
+        Object low = null;
+        boolean lowInclusive = true;
+        Object high = null;
+        boolean highInclusive = true;
+        for(InMemoryRelation relation : ranges){
+            Object value = relation.getRightPart();
+            if(InMemoryOperations.BETWEEN.equals(relation.getRelation())){
+                List bounds = List.class.cast(value);
+                value = bounds.get(0);
+                Object upper = KeyComparator.normalize(toKeyValue(column, bounds.get(1)));
+                if(high == null || KeyComparator.INSTANCE.compare(upper, high) < 0){
+                    high = upper;
+                    highInclusive = true;
+                }
+            }
+            Object bound = KeyComparator.normalize(toKeyValue(column, value));
+            switch(relation.getRelation()){
+            case GT:
+            case GET:
+            case BETWEEN:
+                boolean inclusive = !InMemoryOperations.GT.equals(relation.getRelation());
+                int lowCompare = low == null ? 1 : KeyComparator.INSTANCE.compare(bound, low);
+                if(lowCompare > 0 || (lowCompare == 0 && !inclusive)){
+                    low = bound;
+                    lowInclusive = inclusive;
+                }
+                break;
+            case LT:
+            case LET:
+                boolean highIncl = InMemoryOperations.LET.equals(relation.getRelation());
+                int highCompare = high == null ? -1 : KeyComparator.INSTANCE.compare(bound, high);
+                if(highCompare < 0 || (highCompare == 0 && !highIncl)){
+                    high = bound;
+                    highInclusive = highIncl;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        List<Object> start = new ArrayList<>(prefix);
+        if(low != null){
+            start.add(low);
+        }
+        for(Map.Entry<PrimaryKey, Integer> entry : keys.tailMap(new PrimaryKey(start), true).entrySet()){
+            PrimaryKey key = entry.getKey();
+            if(!key.startsWith(prefix)){
+                break;
+            }
+            Object value = key.get(column);
+            if(high != null){
+                int compare = KeyComparator.INSTANCE.compare(value, high);
+                if(compare > 0 || (compare == 0 && !highInclusive)){
+                    break;
+                }
+            }
+            if(low != null && !lowInclusive && KeyComparator.INSTANCE.compare(value, low) == 0){
+                continue;
+            }
+            rows.add(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,688 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of row positions following the Roaring layout. Positions are split by their
+ * upper 16 bits into containers, and each container stores the lower 16 bits either as a sorted array,
+ * while it holds at most {@link #MAX_ARRAY_SIZE} values, or as a fixed bitmap of 65536 bits. Sparse
+ * sets use two bytes per value and dense sets one bit per value, and intersections and unions are
+ * computed container by container without materializing the positions.
+ *
+ * As {@link RowList}, bitmaps have a single writer. Positions are expected to be added in increasing
+ * order, which appends them to the last container; values and containers are stored before the
+ * cardinalities and sizes are published, so readers can operate on a bitmap while it grows. Other
+ * modifications must not be concurrent with readers.
+ */
+public class RoaringBitmap {
+
+    /**
+     * Maximum number of values of an array container.
+     */
+    public static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * Number of 64-bit words of a bitmap container.
+     */
+    private static final int BITMAP_WORDS = 1024;
+
+    /**
+     * Initial number of containers allocated.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Containers sorted by key.
+     */
+    private volatile Container [] containers = new Container[INITIAL_CAPACITY];
+
+    /**
+     * Number of containers.
+     */
+    private volatile int size = 0;
+
+    /**
+     * Create a bitmap with a set of positions.
+     * @param rows The sorted row positions.
+     * @return A {@link RoaringBitmap}.
+     */
+    public static RoaringBitmap of(int [] rows){
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for(int row : rows){
+            bitmap.add(row);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Add a position.
+     * @param row The row position.
+     */
+    public void add(int row){
+        char key = (char) (row >>> 16);
+        int count = size;
+        int index = count > 0 && containers[count - 1].key == key ? count - 1 : find(key);
+        if(index >= 0){
+            Container current = containers[index];
+            Container updated = current.add((char) row);
+            if(updated != current){
+                Container [] array = containers;
+                array[index] = updated;
+                //Publish the converted container.
+                containers = array;
+            }
+        }else{
+            insert(-index - 1, new ArrayContainer(key).add((char) row));
+        }
+    }
+
+    /**
+     * Remove a position.
+     * @param row The row position.
+     */
+    public void remove(int row){
+        int index = find((char) (row >>> 16));
+        if(index >= 0 && containers[index].remove((char) row) && containers[index].getCardinality() == 0){
+            Container [] array = Arrays.copyOf(containers, containers.length);
+            System.arraycopy(array, index + 1, array, index, size - index - 1);
+            array[size - 1] = null;
+            containers = array;
+            size--;
+        }
+    }
+
+    /**
+     * Determine whether the bitmap contains a position.
+     * @param row The row position.
+     * @return Whether the position is contained.
+     */
+    public boolean contains(int row){
+        int index = find((char) (row >>> 16));
+        return index >= 0 && containers[index].contains((char) row);
+    }
+
+    /**
+     * Get the number of positions of the bitmap.
+     * @return The cardinality.
+     */
+    public int getCardinality(){
+        int count = size;
+        Container [] array = containers;
+        int cardinality = 0;
+        for(int index = 0; index < count; index++){
+            cardinality += array[index].getCardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Count the positions lower than a given one.
+     * @param row The row position.
+     * @return The number of positions lower than the row.
+     */
+    public int rank(int row){
+        int count = size;
+        Container [] array = containers;
+        char key = (char) (row >>> 16);
+        int rank = 0;
+        for(int index = 0; index < count && array[index].key <= key; index++){
+            if(array[index].key < key){
+                rank += array[index].getCardinality();
+            }else{
+                rank += array[index].rank((char) row);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Determine whether the bitmap is empty.
+     * @return Whether no position is contained.
+     */
+    public boolean isEmpty(){
+        return getCardinality() == 0;
+    }
+
+    /**
+     * Compute the intersection with another bitmap.
+     * @param other The other bitmap.
+     * @return A new bitmap with the common positions.
+     */
+    public RoaringBitmap and(RoaringBitmap other){
+        RoaringBitmap result = new RoaringBitmap();
+        int count = size;
+        int otherCount = other.size;
+        Container [] array = containers;
+        Container [] otherArray = other.containers;
+        int i = 0;
+        int j = 0;
+        while(i < count && j < otherCount){
+            if(array[i].key < otherArray[j].key){
+                i++;
+            }else if(array[i].key > otherArray[j].key){
+                j++;
+            }else{
+                Container container = array[i].and(otherArray[j]);
+                if(container.getCardinality() > 0){
+                    result.insert(result.size, container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the union with another bitmap.
+     * @param other The other bitmap.
+     * @return A new bitmap with the positions of both bitmaps.
+     */
+    public RoaringBitmap or(RoaringBitmap other){
+        RoaringBitmap result = new RoaringBitmap();
+        int count = size;
+        int otherCount = other.size;
+        Container [] array = containers;
+        Container [] otherArray = other.containers;
+        int i = 0;
+        int j = 0;
+        while(i < count || j < otherCount){
+            Container container;
+            if(j == otherCount || (i < count && array[i].key < otherArray[j].key)){
+                container = array[i].copy();
+                i++;
+            }else if(i == count || array[i].key > otherArray[j].key){
+                container = otherArray[j].copy();
+                j++;
+            }else{
+                container = array[i].or(otherArray[j]);
+                i++;
+                j++;
+            }
+            result.insert(result.size, container);
+        }
+        return result;
+    }
+
+    /**
+     * Get the positions of the bitmap.
+     * @return A sorted array of row positions.
+     */
+    public int[] toArray(){
+        int count = size;
+        Container [] array = containers;
+        int [] rows = new int[getCardinality()];
+        int offset = 0;
+        for(int index = 0; index < count; index++){
+            offset = array[index].toArray(rows, offset);
+        }
+        return offset == rows.length ? rows : Arrays.copyOf(rows, offset);
+    }
+
+    /**
+     * Get the estimated number of bytes of the bitmap.
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage(){
+        int count = size;
+        Container [] array = containers;
+        long usage = 8L * array.length;
+        for(int index = 0; index < count; index++){
+            usage += array[index].getMemoryUsage();
+        }
+        return usage;
+    }
+
+    /**
+     * Find the container of a key.
+     * @param key The upper 16 bits of the positions.
+     * @return The index of the container, or (-(insertion point) - 1) if not found.
+     */
+    private int find(char key){
+        int low = 0;
+        int high = size - 1;
+        Container [] array = containers;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            if(array[middle].key < key){
+                low = middle + 1;
+            }else if(array[middle].key > key){
+                high = middle - 1;
+            }else{
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Insert a container. Containers are copied unless the new one is appended.
+     * @param index The position of the new container.
+     * @param container The container.
+     */
+    private void insert(int index, Container container){
+        int count = size;
+        Container [] array = containers;
+        if(index < count || count == array.length){
+            Container [] copy = new Container[count == array.length ? count + (count >> 1) + 1 : array.length];
+            System.arraycopy(array, 0, copy, 0, index);
+            System.arraycopy(array, index, copy, index + 1, count - index);
+            copy[index] = container;
+            containers = copy;
+        }else{
+            array[index] = container;
+        }
+        size = count + 1;
+    }
+
+    /**
+     * Set of positions sharing their upper 16 bits.
+     */
+    private abstract static class Container {
+
+        /**
+         * Upper 16 bits of the positions.
+         */
+        protected final char key;
+
+        /**
+         * Class constructor.
+         * @param key The upper 16 bits of the positions.
+         */
+        protected Container(char key){
+            this.key = key;
+        }
+
+        /**
+         * Get the number of values of the container.
+         * @return The cardinality.
+         */
+        public abstract int getCardinality();
+
+        /**
+         * Add a value.
+         * @param value The lower 16 bits of the position.
+         * @return This container, or a new one if the container had to be converted.
+         */
+        public abstract Container add(char value);
+
+        /**
+         * Remove a value.
+         * @param value The lower 16 bits of the position.
+         * @return Whether the value was found.
+         */
+        public abstract boolean remove(char value);
+
+        /**
+         * Determine whether the container holds a value.
+         * @param value The lower 16 bits of the position.
+         * @return Whether the value is contained.
+         */
+        public abstract boolean contains(char value);
+
+        /**
+         * Count the values lower than a given one.
+         * @param value The lower 16 bits of the position.
+         * @return The number of lower values.
+         */
+        public abstract int rank(char value);
+
+        /**
+         * Copy the positions of the container.
+         * @param rows The array of positions.
+         * @param offset The first position to be written.
+         * @return The position that follows the last position written.
+         */
+        public abstract int toArray(int [] rows, int offset);
+
+        /**
+         * Get the estimated number of bytes of the container.
+         * @return The number of bytes.
+         */
+        public abstract long getMemoryUsage();
+
+        /**
+         * Copy the container.
+         * @return A new container with the same values.
+         */
+        public abstract Container copy();
+
+        /**
+         * Compute the intersection with another container with the same key.
+         * @param other The other container.
+         * @return A new container.
+         */
+        public abstract Container and(Container other);
+
+        /**
+         * Compute the union with another container with the same key.
+         * @param other The other container.
+         * @return A new container.
+         */
+        public Container or(Container other){
+            BitmapContainer result = new BitmapContainer(key);
+            result.addAll(this);
+            result.addAll(other);
+            return result.getCardinality() <= MAX_ARRAY_SIZE ? result.toArrayContainer() : result;
+        }
+    }
+
+    /**
+     * Container that stores the sorted values of a sparse set.
+     */
+    private static final class ArrayContainer extends Container {
+
+        /**
+         * Sorted values.
+         */
+        private volatile char [] values = new char[INITIAL_CAPACITY];
+
+        /**
+         * Number of values.
+         */
+        private volatile int cardinality = 0;
+
+        /**
+         * Class constructor.
+         * @param key The upper 16 bits of the positions.
+         */
+        private ArrayContainer(char key){
+            super(key);
+        }
+
+        @Override
+        public int getCardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            int count = cardinality;
+            int index = -(count + 1);
+            if(count > 0 && values[count - 1] >= value){
+                index = Arrays.binarySearch(values, 0, count, value);
+            }
+            if(index >= 0){
+                return this;
+            }
+            if(count == MAX_ARRAY_SIZE){
+                BitmapContainer bitmap = new BitmapContainer(key);
+                bitmap.addAll(this);
+                return bitmap.add(value);
+            }
+            index = -index - 1;
+            char [] array = values;
+            if(count == array.length){
+                array = Arrays.copyOf(array, Math.min(MAX_ARRAY_SIZE, count + (count >> 1) + 1));
+            }
+            System.arraycopy(array, index, array, index + 1, count - index);
+            array[index] = value;
+            values = array;
+            cardinality = count + 1;
+            return this;
+        }
+
+        @Override
+        public boolean remove(char value) {
+            int count = cardinality;
+            int index = Arrays.binarySearch(values, 0, count, value);
+            if(index < 0){
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, count - index - 1);
+            cardinality = count - 1;
+            return true;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            int count = cardinality;
+            return Arrays.binarySearch(values, 0, count, value) >= 0;
+        }
+
+        @Override
+        public int rank(char value) {
+            int count = cardinality;
+            int index = Arrays.binarySearch(values, 0, count, value);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        public int toArray(int [] rows, int offset) {
+            int count = cardinality;
+            char [] array = values;
+            int high = key << 16;
+            for(int index = 0; index < count; index++){
+                rows[offset + index] = high | array[index];
+            }
+            return offset + count;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            return 2L * values.length;
+        }
+
+        @Override
+        public Container and(Container other) {
+            int count = cardinality;
+            char [] array = values;
+            ArrayContainer result = new ArrayContainer(key);
+            result.values = new char[count];
+            int size = 0;
+            for(int index = 0; index < count; index++){
+                if(other.contains(array[index])){
+                    result.values[size++] = array[index];
+                }
+            }
+            result.cardinality = size;
+            return result;
+        }
+
+        @Override
+        public Container copy() {
+            ArrayContainer result = new ArrayContainer(key);
+            int count = cardinality;
+            result.values = Arrays.copyOf(values, count);
+            result.cardinality = count;
+            return result;
+        }
+
+        @Override
+        public Container or(Container other) {
+            if(!ArrayContainer.class.isInstance(other)
+                    || cardinality + other.getCardinality() > MAX_ARRAY_SIZE){
+                return super.or(other);
+            }
+            ArrayContainer otherArray = ArrayContainer.class.cast(other);
+            int count = cardinality;
+            int otherCount = otherArray.cardinality;
+            char [] first = values;
+            char [] second = otherArray.values;
+            char [] merged = new char[count + otherCount];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while(i < count || j < otherCount){
+                if(j == otherCount || (i < count && first[i] < second[j])){
+                    merged[size++] = first[i++];
+                }else if(i == count || first[i] > second[j]){
+                    merged[size++] = second[j++];
+                }else{
+                    merged[size++] = first[i++];
+                    j++;
+                }
+            }
+            ArrayContainer result = new ArrayContainer(key);
+            result.values = merged;
+            result.cardinality = size;
+            return result;
+        }
+    }
+
+    /**
+     * Container that stores a dense set as a bitmap of 65536 bits.
+     */
+    private static final class BitmapContainer extends Container {
+
+        /**
+         * Bits of the values.
+         */
+        private final long [] words = new long[BITMAP_WORDS];
+
+        /**
+         * Number of values.
+         */
+        private volatile int cardinality = 0;
+
+        /**
+         * Class constructor.
+         * @param key The upper 16 bits of the positions.
+         */
+        private BitmapContainer(char key){
+            super(key);
+        }
+
+        @Override
+        public int getCardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            long bit = 1L << value;
+            if((words[value >>> 6] & bit) == 0){
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        /**
+         * Add the values of another container.
+         * @param other The other container.
+         */
+        private void addAll(Container other){
+            if(BitmapContainer.class.isInstance(other)){
+                long [] otherWords = BitmapContainer.class.cast(other).words;
+                int count = 0;
+                for(int index = 0; index < BITMAP_WORDS; index++){
+                    words[index] |= otherWords[index];
+                    count += Long.bitCount(words[index]);
+                }
+                cardinality = count;
+            }else{
+                ArrayContainer array = ArrayContainer.class.cast(other);
+                int count = array.cardinality;
+                char [] values = array.values;
+                for(int index = 0; index < count; index++){
+                    add(values[index]);
+                }
+            }
+        }
+
+        @Override
+        public boolean remove(char value) {
+            long bit = 1L << value;
+            if((words[value >>> 6] & bit) == 0){
+                return false;
+            }
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return true;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int rank(char value) {
+            int word = value >>> 6;
+            int rank = 0;
+            for(int index = 0; index < word; index++){
+                rank += Long.bitCount(words[index]);
+            }
+            return rank + Long.bitCount(words[word] & ((1L << value) - 1));
+        }
+
+        @Override
+        public int toArray(int [] rows, int offset) {
+            int high = key << 16;
+            int position = offset;
+            int limit = offset + cardinality;
+            for(int index = 0; index < BITMAP_WORDS && position < limit; index++){
+                long word = words[index];
+                while(word != 0 && position < limit){
+                    rows[position++] = high | (index << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            return 8L * BITMAP_WORDS;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if(ArrayContainer.class.isInstance(other)){
+                return other.and(this);
+            }
+            long [] otherWords = BitmapContainer.class.cast(other).words;
+            BitmapContainer result = new BitmapContainer(key);
+            int count = 0;
+            for(int index = 0; index < BITMAP_WORDS; index++){
+                result.words[index] = words[index] & otherWords[index];
+                count += Long.bitCount(result.words[index]);
+            }
+            result.cardinality = count;
+            return count <= MAX_ARRAY_SIZE ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        public Container copy() {
+            BitmapContainer result = new BitmapContainer(key);
+            System.arraycopy(words, 0, result.words, 0, BITMAP_WORDS);
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        /**
+         * Convert the container to an array container.
+         * @return An {@link ArrayContainer} with the same values.
+         */
+        private ArrayContainer toArrayContainer(){
+            ArrayContainer result = new ArrayContainer(key);
+            int [] rows = new int[cardinality];
+            toArray(rows, 0);
+            result.values = new char[rows.length];
+            for(int index = 0; index < rows.length; index++){
+                result.values[index] = (char) rows[index];
+            }
+            result.cardinality = rows.length;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of row positions used by the index structures. Lists have a single writer: rows are
+ * stored before the size is published, so readers may copy the list while new rows are added, and
+ * obtain the rows added up to some point.
+ */
+public class RowList {
+
+    /**
+     * Initial capacity of the list.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Row positions.
+     */
+    private volatile int[] rows = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of rows in the list.
+     */
+    private volatile int size = 0;
+
+    /**
+     * Add a row to the list.
+     * @param row The row position.
+     */
+    public void add(int row){
+        int count = size;
+        int[] current = rows;
+        if(count == current.length){
+            current = Arrays.copyOf(current, count + (count >> 1) + 1);
+            rows = current;
+        }
+        current[count] = row;
+        size = count + 1;
+    }
+
+    /**
+     * Remove a row from the list. Rows are shifted in place, so lists must not be read while rows are
+     * removed.
+     * @param row The row position.
+     * @return Whether the row was found.
+     */
+    public boolean remove(int row){
+        for(int index = 0; index < size; index++){
+            if(rows[index] == row){
+                System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of rows in the list.
+     * @return The number of rows.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Get a row of the list.
+     * @param index The position in the list.
+     * @return The row position.
+     */
+    public int get(int index){
+        return rows[index];
+    }
+
+    /**
+     * Copy the rows of the list.
+     * @return An array with the rows in insertion order.
+     */
+    public int[] toArray(){
+        int count = size;
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Get the rows as a sorted array without duplicates.
+     * @return An array of row positions.
+     */
+    public int[] toSortedArray(){
+        int[] result = toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Sort an array of row positions and remove the duplicates.
+     * @param rows The array of row positions.
+     * @param length The number of valid positions in the array.
+     * @return A sorted array without duplicates.
+     */
+    public static int[] sortDistinct(int[] rows, int length){
+        Arrays.sort(rows, 0, length);
+        int distinct = 0;
+        for(int index = 0; index < length; index++){
+            if(distinct == 0 || rows[distinct - 1] != rows[index]){
+                rows[distinct] = rows[index];
+                distinct++;
+            }
+        }
+        return Arrays.copyOf(rows, distinct);
+    }
+
+    /**
+     * Compute the intersection of two sorted arrays of row positions.
+     * @param first The first sorted array.
+     * @param second The second sorted array.
+     * @return A sorted array with the common rows.
+     */
+    public static int[] intersect(int[] first, int[] second){
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while(i < first.length && j < second.length){
+            if(first[i] < second[j]){
+                i++;
+            }else if(first[i] > second[j]){
+                j++;
+            }else{
+                result[size] = first[i];
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Compute the union of two sorted arrays of row positions.
+     * @param first The first sorted array.
+     * @param second The second sorted array.
+     * @return A sorted array with the rows of both arrays without duplicates.
+     */
+    public static int[] union(int[] first, int[] second){
+        int[] result = new int[first.length + second.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while(i < first.length || j < second.length){
+            if(j == second.length || (i < first.length && first[i] < second[j])){
+                result[size] = first[i];
+                i++;
+            }else if(i == first.length || first[i] > second[j]){
+                result[size] = second[j];
+                j++;
+            }else{
+                result[size] = first[i];
+                i++;
+                j++;
+            }
+            size++;
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
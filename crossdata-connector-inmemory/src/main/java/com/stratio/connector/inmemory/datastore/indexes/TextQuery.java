@@ -0,0 +1,164 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Boolean full-text query of a MATCH relation. Queries are a disjunction of conjunctions of phrases:
+ * the words of the query must all appear in the text, the keyword {@code OR} separates alternative
+ * conjunctions, and sequences of words between double quotes must appear consecutively. Words are
+ * tokenized as the indexed text, so a word such as {@code error-code} is a phrase of two tokens.
+ * The keyword {@code AND} is accepted and ignored.
+ */
+public class TextQuery {
+
+    /**
+     * Keyword that separates the conjunctions.
+     */
+    public static final String OR = "OR";
+
+    /**
+     * Optional keyword between the phrases of a conjunction.
+     */
+    public static final String AND = "AND";
+
+    /**
+     * Conjunctions of phrases, each phrase being a sequence of tokens.
+     */
+    private final List<List<String[]>> conjunctions;
+
+    /**
+     * Class constructor.
+     * @param conjunctions The conjunctions of phrases.
+     */
+    private TextQuery(List<List<String[]>> conjunctions){
+        this.conjunctions = conjunctions;
+    }
+
+    /**
+     * Parse a query.
+     * @param query The text of the query.
+     * @return A {@link TextQuery}.
+     */
+    public static TextQuery parse(String query){
+        List<List<String[]>> conjunctions = new ArrayList<>();
+        List<String[]> current = new ArrayList<>();
+        int index = 0;
+        while(index < query.length()){
+            char c = query.charAt(index);
+            if(Character.isWhitespace(c)){
+                index++;
+            }else if(c == '"'){
+                int end = query.indexOf('"', index + 1);
+                if(end < 0){
+                    end = query.length();
+                }
+                addPhrase(current, query.substring(index + 1, end));
+                index = end + 1;
+            }else{
+                int end = index;
+                while(end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"'){
+                    end++;
+                }
+                String word = query.substring(index, end);
+                if(OR.equals(word)){
+                    addConjunction(conjunctions, current);
+                    current = new ArrayList<>();
+                }else if(!AND.equals(word)){
+                    addPhrase(current, word);
+                }
+                index = end;
+            }
+        }
+        addConjunction(conjunctions, current);
+        return new TextQuery(conjunctions);
+    }
+
+    /**
+     * Add the tokens of a phrase to a conjunction.
+     * @param conjunction The conjunction.
+     * @param text The text of the phrase.
+     */
+    private static void addPhrase(List<String[]> conjunction, String text){
+        List<String> tokens = Tokenizer.tokenize(text);
+        if(!tokens.isEmpty()){
+            conjunction.add(tokens.toArray(new String[tokens.size()]));
+        }
+    }
+
+    /**
+     * Add a conjunction to the query if it contains any phrase.
+     * @param conjunctions The conjunctions of the query.
+     * @param conjunction The conjunction.
+     */
+    private static void addConjunction(List<List<String[]>> conjunctions, List<String[]> conjunction){
+        if(!conjunction.isEmpty()){
+            conjunctions.add(Collections.unmodifiableList(conjunction));
+        }
+    }
+
+    /**
+     * Get the conjunctions of the query. A query without conjunctions does not match any text.
+     * @return The list of conjunctions, each one a list of phrases.
+     */
+    public List<List<String[]>> getConjunctions() {
+        return Collections.unmodifiableList(conjunctions);
+    }
+
+    /**
+     * Evaluate the query on a text.
+     * @param text The text.
+     * @return Whether the text satisfies the query.
+     */
+    public boolean matches(String text){
+        List<String> tokens = Tokenizer.tokenize(text);
+        for(List<String[]> conjunction : conjunctions){
+            boolean matched = true;
+            for(int index = 0; matched && index < conjunction.size(); index++){
+                matched = containsPhrase(tokens, conjunction.get(index));
+            }
+            if(matched){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether a sequence of tokens contains a phrase.
+     * @param tokens The tokens of the text.
+     * @param phrase The tokens of the phrase.
+     * @return Whether the phrase appears consecutively.
+     */
+    private static boolean containsPhrase(List<String> tokens, String [] phrase){
+        for(int start = 0; start + phrase.length <= tokens.size(); start++){
+            int matched = 0;
+            while(matched < phrase.length && phrase[matched].equals(tokens.get(start + matched))){
+                matched++;
+            }
+            if(matched == phrase.length){
+                return true;
+            }
+        }
+        return false;
+    }
+}
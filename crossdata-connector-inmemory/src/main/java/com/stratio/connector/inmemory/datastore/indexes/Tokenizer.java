@@ -0,0 +1,57 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer of the text indexed by the full-text indexes. Tokens are the maximal sequences of letters
+ * and digits of the text, converted to lower case, so punctuation and white space separate tokens and
+ * matching is case insensitive.
+ */
+public final class Tokenizer {
+
+    /**
+     * Private constructor as all methods are static.
+     */
+    private Tokenizer(){
+    }
+
+    /**
+     * Split a text into tokens.
+     * @param text The text.
+     * @return The list of tokens in order of appearance.
+     */
+    public static List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for(int index = 0; index <= text.length(); index++){
+            boolean tokenChar = index < text.length() && Character.isLetterOrDigit(text.charAt(index));
+            if(tokenChar && start < 0){
+                start = index;
+            }else if(!tokenChar && start >= 0){
+                tokens.add(text.substring(start, index).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.iterators;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator that returns at most a given number of elements of an underlying iterator. Once the
+ * limit is reached, the underlying iterator is not advanced any further.
+ * @param <T> The type of the elements.
+ */
+public class LimitIterator<T> implements Iterator<T> {
+
+    /**
+     * The underlying iterator.
+     */
+    private final Iterator<T> source;
+
+    /**
+     * Number of elements that can still be returned.
+     */
+    private long remaining;
+
+    /**
+     * Class constructor.
+     * @param source The underlying iterator.
+     * @param limit The maximum number of elements to be returned.
+     */
+    public LimitIterator(Iterator<T> source, long limit){
+        this.source = source;
+        this.remaining = limit;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0 && source.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        return source.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Elements cannot be removed");
+    }
+}
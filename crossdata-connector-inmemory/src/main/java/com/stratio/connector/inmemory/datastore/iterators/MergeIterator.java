@@ -0,0 +1,120 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.iterators;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Iterator that merges a set of sorted iterators into a single sorted sequence. Elements that compare
+ * as equal are returned in the order of their source iterators, so merging the stably sorted segments
+ * of a sequence produces the same result as stably sorting the whole sequence.
+ * @param <T> The type of the elements.
+ */
+public class MergeIterator<T> implements Iterator<T> {
+
+    /**
+     * Heap with the next element of each source.
+     */
+    private final PriorityQueue<Head<T>> heads;
+
+    /**
+     * Class constructor.
+     * @param sources The sorted iterators to be merged.
+     * @param comparator The comparator used to sort the sources.
+     */
+    public MergeIterator(List<? extends Iterator<? extends T>> sources, final Comparator<? super T> comparator){
+        heads = new PriorityQueue<>(Math.max(1, sources.size()), new Comparator<Head<T>>() {
+            @Override
+            public int compare(Head<T> h1, Head<T> h2) {
+                int result = comparator.compare(h1.element, h2.element);
+                if(result == 0){
+                    result = h1.source < h2.source ? -1 : (h1.source == h2.source ? 0 : 1);
+                }
+                return result;
+            }
+        });
+        for(int index = 0; index < sources.size(); index++){
+            Iterator<? extends T> source = sources.get(index);
+            if(source.hasNext()){
+                heads.add(new Head<T>(source, index));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if(heads.isEmpty()){
+            throw new NoSuchElementException();
+        }
+        Head<T> head = heads.poll();
+        T result = head.element;
+        if(head.iterator.hasNext()){
+            head.element = head.iterator.next();
+            heads.add(head);
+        }
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Elements cannot be removed");
+    }
+
+    /**
+     * Current element of a source iterator.
+     * @param <T> The type of the elements.
+     */
+    private static final class Head<T> {
+
+        /**
+         * The source iterator.
+         */
+        private final Iterator<? extends T> iterator;
+
+        /**
+         * Position of the source.
+         */
+        private final int source;
+
+        /**
+         * Current element.
+         */
+        private T element;
+
+        /**
+         * Class constructor.
+         * @param iterator The source iterator, which must have at least one element.
+         * @param source The position of the source.
+         */
+        Head(Iterator<? extends T> iterator, int source){
+            this.iterator = iterator;
+            this.source = source;
+            this.element = iterator.next();
+        }
+    }
+}
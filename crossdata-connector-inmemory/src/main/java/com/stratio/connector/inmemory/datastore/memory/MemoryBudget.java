@@ -0,0 +1,157 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of bytes that a table or a datastore may use. Bytes are reserved before the storage grows,
+ * so a write that does not fit in the budget fails before modifying anything. Budgets may be nested:
+ * the bytes reserved by a table budget are also reserved in the budget of its datastore.
+ */
+public class MemoryBudget {
+
+    /**
+     * Name of the budget owner, used in the error messages.
+     */
+    private final String name;
+
+    /**
+     * Maximum number of bytes, or 0 for no limit.
+     */
+    private final long limit;
+
+    /**
+     * Budget that also accounts the bytes of this one, or null.
+     */
+    private final MemoryBudget parent;
+
+    /**
+     * Number of bytes in use.
+     */
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * Class constructor.
+     * @param name The name of the budget owner.
+     * @param limit The maximum number of bytes, or 0 for no limit.
+     * @param parent The budget that also accounts the bytes of this one, or null.
+     */
+    public MemoryBudget(String name, long limit, MemoryBudget parent){
+        this.name = name;
+        this.limit = limit;
+        this.parent = parent;
+    }
+
+    /**
+     * Create a budget without limit.
+     * @param name The name of the budget owner.
+     * @return A {@link MemoryBudget}.
+     */
+    public static MemoryBudget unlimited(String name){
+        return new MemoryBudget(name, 0, null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the number of bytes in use.
+     * @return The number of bytes.
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Reserve a number of bytes in this budget and its parents.
+     * @param bytes The number of bytes.
+     * @throws Exception If the bytes do not fit in this budget or in any of its parents.
+     */
+    public void reserve(long bytes) throws Exception {
+        if(bytes <= 0){
+            adjust(bytes);
+            return;
+        }
+        long current;
+        do {
+            current = used.get();
+            if(limit > 0 && current + bytes > limit){
+                throw new Exception("Memory budget of " + name + " exceeded: " + current + " bytes used, "
+                        + bytes + " requested, limit " + limit);
+            }
+        } while(!used.compareAndSet(current, current + bytes));
+        if(parent != null){
+            try {
+                parent.reserve(bytes);
+            }catch(Exception e){
+                used.addAndGet(-bytes);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Account a number of bytes without checking the limits, in this budget and its parents. Used to
+     * correct a reservation with the real size of the storage.
+     * @param bytes The number of bytes, negative to release them.
+     */
+    public void adjust(long bytes) {
+        if(bytes != 0){
+            used.addAndGet(bytes);
+            if(parent != null){
+                parent.adjust(bytes);
+            }
+        }
+    }
+
+    /**
+     * Parse a number of bytes with an optional k, m or g suffix.
+     * @param size The size, such as 512m.
+     * @return The number of bytes.
+     * @throws NumberFormatException If the size is not valid.
+     */
+    public static long parseSize(String size){
+        String value = size.trim().toLowerCase();
+        long unit = 1;
+        if(value.endsWith("b")){
+            value = value.substring(0, value.length() - 1);
+        }
+        if(value.endsWith("k")){
+            unit = 1L << 10;
+        }else if(value.endsWith("m")){
+            unit = 1L << 20;
+        }else if(value.endsWith("g")){
+            unit = 1L << 30;
+        }
+        if(unit > 1){
+            value = value.substring(0, value.length() - 1);
+        }
+        long parsed = Long.parseLong(value.trim());
+        if(parsed < 0){
+            throw new NumberFormatException("Negative size " + size);
+        }
+        return parsed * unit;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.memory;
+
+import java.util.Map;
+
+/**
+ * Memory settings of a datastore, read from the options of its cluster.
+ */
+public class MemorySettings {
+
+    /**
+     * Cluster option with the maximum number of bytes of the datastore, such as 4g.
+     */
+    public static final String MEMORY_LIMIT_PROPERTY = "MemoryLimit";
+
+    /**
+     * Cluster option with the maximum number of bytes of each table, such as 512m.
+     */
+    public static final String TABLE_MEMORY_LIMIT_PROPERTY = "TableMemoryLimit";
+
+    /**
+     * Cluster option that stores the fixed-width columns in direct buffers when set to true.
+     */
+    public static final String OFF_HEAP_PROPERTY = "OffHeapStorage";
+
+    /**
+     * Settings without limits and with on-heap storage.
+     */
+    public static final MemorySettings UNLIMITED = new MemorySettings(0, 0, false);
+
+    /**
+     * Maximum number of bytes of the datastore, or 0 for no limit.
+     */
+    private final long memoryLimit;
+
+    /**
+     * Maximum number of bytes of each table, or 0 for no limit.
+     */
+    private final long tableMemoryLimit;
+
+    /**
+     * Whether fixed-width columns are stored off-heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Class constructor.
+     * @param memoryLimit The maximum number of bytes of the datastore, or 0 for no limit.
+     * @param tableMemoryLimit The maximum number of bytes of each table, or 0 for no limit.
+     * @param offHeap Whether fixed-width columns are stored off-heap.
+     */
+    public MemorySettings(long memoryLimit, long tableMemoryLimit, boolean offHeap){
+        this.memoryLimit = memoryLimit;
+        this.tableMemoryLimit = tableMemoryLimit;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Read the settings from the options of a cluster.
+     * @param options The cluster options.
+     * @return The settings.
+     * @throws Exception If an option has an invalid value.
+     */
+    public static MemorySettings fromOptions(Map<String, String> options) throws Exception {
+        return new MemorySettings(getSize(options, MEMORY_LIMIT_PROPERTY), getSize(options, TABLE_MEMORY_LIMIT_PROPERTY),
+                Boolean.parseBoolean(options.get(OFF_HEAP_PROPERTY)));
+    }
+
+    /**
+     * Read an option with a number of bytes.
+     * @param options The cluster options.
+     * @param name The name of the option.
+     * @return The number of bytes, or 0 if the option is not set.
+     * @throws Exception If the option is not a valid size.
+     */
+    private static long getSize(Map<String, String> options, String name) throws Exception {
+        String value = options.get(name);
+        if(value == null || value.trim().isEmpty()){
+            return 0;
+        }
+        try {
+            return MemoryBudget.parseSize(value);
+        }catch(NumberFormatException e){
+            throw new Exception("Invalid " + name + " " + value + ", expecting a number of bytes such as 512m", e);
+        }
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public long getTableMemoryLimit() {
+        return tableMemoryLimit;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import com.stratio.connector.inmemory.datastore.InMemoryCatalog;
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.indexes.AbstractInMemoryIndex;
+
+/**
+ * Durability of a datastore based on snapshots and a write-ahead log. Every operation applied to the
+ * datastore is appended to the log, and a snapshot of every catalog and table is periodically written
+ * with the records needed to rebuild them. Each snapshot starts a new log, so recovery loads the last
+ * snapshot and replays the logs written after it.
+ *
+ * The operations are logged and applied while holding the monitor of the datastore, so the log
+ * follows the order in which they are applied and a snapshot captures the tables at a log boundary.
+ * The tables are captured through their {@link TableSnapshot}, so the rows are written to disk while
+ * writers continue. An operation that cannot be applied is discarded from the log, and once the log
+ * fails to be written no later operation is accepted until the datastore is reopened.
+ */
+public class DatastorePersistence implements Closeable {
+
+    /**
+     * Name of the snapshot file.
+     */
+    public static final String SNAPSHOT_FILE = "datastore.snapshot";
+
+    /**
+     * Number of rows per insert record of a snapshot.
+     */
+    public static final int SNAPSHOT_BATCH_SIZE = 65536;
+
+    /**
+     * Pattern of the log file names.
+     */
+    private static final Pattern LOG_FILE = Pattern.compile("wal-(\\d+)\\.log");
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = Logger.getLogger(DatastorePersistence.class);
+
+    /**
+     * Persisted datastore.
+     */
+    private final InMemoryDatastore datastore;
+
+    /**
+     * Durability settings.
+     */
+    private final PersistenceSettings settings;
+
+    /**
+     * Log where the operations are currently appended.
+     */
+    private volatile WriteAheadLog wal;
+
+    /**
+     * Executor of the periodic flushes and snapshots, if any.
+     */
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Lock held while a snapshot is written.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Class constructor.
+     * @param datastore The persisted datastore.
+     * @param settings The durability settings.
+     */
+    private DatastorePersistence(InMemoryDatastore datastore, PersistenceSettings settings){
+        this.datastore = datastore;
+        this.settings = settings;
+    }
+
+    /**
+     * Recover a datastore from the files of its persistence directory and start logging its operations.
+     * @param datastore The datastore, which must not be persisted yet.
+     * @param settings The durability settings.
+     * @return The {@link DatastorePersistence} of the datastore.
+     * @throws Exception If the datastore cannot be recovered.
+     */
+    public static DatastorePersistence open(InMemoryDatastore datastore, PersistenceSettings settings)
+            throws Exception {
+        DatastorePersistence persistence = new DatastorePersistence(datastore, settings);
+        persistence.recover();
+        persistence.start();
+        return persistence;
+    }
+
+    /**
+     * Load the last snapshot, replay the logs written after it, and open a new log.
+     * @throws Exception If the datastore cannot be recovered.
+     */
+    private void recover() throws Exception {
+        File directory = settings.getDirectory();
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new Exception("Cannot create persistence directory " + directory);
+        }
+        Files.deleteIfExists(temporarySnapshot().toPath());
+        long firstLog = 0;
+        int replayed = 0;
+        File snapshot = new File(directory, SNAPSHOT_FILE);
+        if(snapshot.exists()){
+            try(RecordReader reader = new RecordReader(snapshot)){
+                if(reader.getSequence() < 0){
+                    throw new Exception("Invalid snapshot " + snapshot);
+                }
+                firstLog = reader.getSequence();
+                replayed += replay(reader);
+                if(reader.isTorn()){
+                    throw new Exception("Snapshot " + snapshot + " is corrupted");
+                }
+            }
+        }
+        long nextLog = firstLog;
+        for(File log : listLogs()){
+            long sequence = getSequence(log);
+            if(sequence < firstLog){
+                Files.delete(log.toPath());
+            }else{
+                try(RecordReader reader = new RecordReader(log)){
+                    replayed += replay(reader);
+                    if(reader.isTorn()){
+                        LOG.warn("Discarding the incomplete tail of " + log);
+                    }
+                }
+                nextLog = sequence + 1;
+            }
+        }
+        wal = new WriteAheadLog(logFile(nextLog), nextLog, 0, settings.getSyncPolicy());
+        LOG.info("Recovered " + replayed + " records from " + directory + ", logging with policy "
+                + settings.getSyncPolicy());
+    }
+
+    /**
+     * Apply the records of a file to the datastore. Records whose operation cannot be applied are
+     * discarded from the log, so a record that cannot be replayed means that the datastore cannot hold
+     * the durable state, for instance because its memory or row limits are now lower. Recovery then
+     * fails instead of losing rows. Failed DDL records are logged and skipped, as they fail when the
+     * schema they describe is already in place, such as dropping a table that no longer exists; a data
+     * record that depends on a skipped DDL record fails in turn.
+     * @param reader The reader of the file.
+     * @return The number of records read.
+     * @throws Exception If the file cannot be read or a data record cannot be replayed.
+     */
+    private int replay(RecordReader reader) throws Exception {
+        int count = 0;
+        LogRecord record = reader.next();
+        while(record != null){
+            try {
+                datastore.replay(record);
+            }catch(Exception e){
+                String description = record.getOperation() + " on " + record.getCatalogName()
+                        + (record.getTableName() == null ? "" : "." + record.getTableName());
+                if(isDataRecord(record)){
+                    throw new Exception("Cannot replay " + description + ": " + e.getMessage(), e);
+                }
+                LOG.warn("Skipping " + description + ": " + e.getMessage());
+            }
+            count++;
+            record = reader.next();
+        }
+        return count;
+    }
+
+    /**
+     * Check whether a record modifies the rows of a table.
+     * @param record The record.
+     * @return Whether it inserts, deletes, updates or truncates rows.
+     */
+    private static boolean isDataRecord(LogRecord record){
+        switch(record.getOperation()){
+        case INSERT:
+        case DELETE:
+        case UPDATE:
+        case TRUNCATE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Schedule the periodic flushes and snapshots.
+     */
+    private void start(){
+        boolean periodicSync = SyncPolicy.PERIODIC.equals(settings.getSyncPolicy());
+        if(!periodicSync && settings.getSnapshotInterval() == 0){
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "inmemory-persistence-" + settings.getDirectory().getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if(periodicSync){
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        wal.flush();
+                    }catch(IOException e){
+                        LOG.error("Cannot flush the write-ahead log", e);
+                    }
+                }
+            }, settings.getSyncInterval(), settings.getSyncInterval(), TimeUnit.MILLISECONDS);
+        }
+        if(settings.getSnapshotInterval() > 0){
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        snapshot();
+                    }catch(Exception e){
+                        LOG.error("Cannot write the snapshot", e);
+                    }
+                }
+            }, settings.getSnapshotInterval(), settings.getSnapshotInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Get the position after the last record of the log. The caller must hold the monitor of the
+     * datastore.
+     * @return The position to be passed to {@link #discard(long)}.
+     */
+    public long getPosition() {
+        return wal.getPosition();
+    }
+
+    /**
+     * Append a record to the log. The caller must hold the monitor of the datastore, and must apply the
+     * operation after logging it. If the record cannot be written, the log rejects later records.
+     * @param record The record.
+     * @return The position to be passed to {@link #sync(long)}.
+     * @throws IOException If the record cannot be written, or the log has failed.
+     */
+    public long append(LogRecord record) throws IOException {
+        return wal.append(record);
+    }
+
+    /**
+     * Remove the records appended after a position, because their operation could not be applied. The
+     * caller must hold the monitor of the datastore.
+     * @param position The position returned by {@link #getPosition()} before appending the records.
+     * @throws IOException If the records cannot be removed.
+     */
+    public void discard(long position) throws IOException {
+        wal.truncate(position);
+    }
+
+    /**
+     * Wait until the log is flushed up to a position, as required by the sync policy.
+     * @param position The position returned by {@link #append(LogRecord)}.
+     * @throws IOException If the log cannot be flushed.
+     */
+    public void sync(long position) throws IOException {
+        wal.sync(position);
+    }
+
+    /**
+     * Write a snapshot of the datastore and remove the logs it makes obsolete. No snapshot is written
+     * once the log has failed, as the new log would accept writes before the datastore is reopened.
+     * @throws Exception If the snapshot cannot be written or the log has failed.
+     */
+    public void snapshot() throws Exception {
+        synchronized(snapshotLock){
+            Map<String, List<TableSnapshot>> catalogs = new LinkedHashMap<>();
+            long sequence;
+            synchronized(datastore){
+                for(InMemoryCatalog catalog : datastore.getCatalogs().values()){
+                    List<TableSnapshot> tables = new ArrayList<>();
+                    for(InMemoryTable table : catalog.getTables().values()){
+                        tables.add(table.snapshot());
+                    }
+                    catalogs.put(catalog.getName(), tables);
+                }
+                WriteAheadLog previous = wal;
+                if(previous.isFailed()){
+                    throw new Exception("Cannot write a snapshot after log " + previous.getSequence() + " failed");
+                }
+                sequence = previous.getSequence() + 1;
+                wal = new WriteAheadLog(logFile(sequence), sequence, previous.getPosition(),
+                        settings.getSyncPolicy());
+                previous.close();
+            }
+
+            File temporary = temporarySnapshot();
+            try(FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                out.write(WriteAheadLog.header(sequence).array());
+                for(Map.Entry<String, List<TableSnapshot>> catalog : catalogs.entrySet()){
+                    out.write(WriteAheadLog.frame(LogRecord.createCatalog(catalog.getKey())));
+                    for(TableSnapshot table : catalog.getValue()){
+                        writeTable(out, catalog.getKey(), table);
+                    }
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary.toPath(), new File(settings.getDirectory(), SNAPSHOT_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for(File log : listLogs()){
+                if(getSequence(log) < sequence){
+                    Files.delete(log.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the records that rebuild a table: its creation, its visible rows and its indexes. Rows are
+     * written by column in batches of {@link #SNAPSHOT_BATCH_SIZE} rows, with their write time if they
+     * expire. The rows of materialized views
+     * are not written, as views are recomputed from their base table once it is recovered.
+     * @param out The output.
+     * @param catalogName The name of the catalog.
+     * @param table The snapshot of the table.
+     * @throws Exception If the table cannot be written.
+     */
+    private void writeTable(OutputStream out, String catalogName, TableSnapshot table) throws Exception {
+        InMemoryTable source = table.getTable();
+        String tableName = source.getTableName();
+        String[] columnNames = table.getColumnNames();
+        out.write(WriteAheadLog.frame(LogRecord.createTable(catalogName, tableName, columnNames,
+                source.getColumnTypes(), source.getPrimaryKey(), source.getOptions().asMap())));
+
+        AbstractInMemoryColumn[] columns = new AbstractInMemoryColumn[columnNames.length];
+        for(int column = 0; column < columns.length; column++){
+            columns[column] = table.getColumn(columnNames[column]);
+        }
+        int[] rows = new int[SNAPSHOT_BATCH_SIZE];
+        int count = 0;
+        int numRows = source.getOptions().getView() == null ? table.getNumRows() : 0;
+        for(int row = 0; row < numRows; row++){
+            if(table.isVisible(row)){
+                rows[count++] = row;
+                if(count == rows.length){
+                    writeRows(out, catalogName, table, columnNames, columns, rows, count);
+                    count = 0;
+                }
+            }
+        }
+        if(count > 0){
+            writeRows(out, catalogName, table, columnNames, columns, rows, count);
+        }
+
+        for(AbstractInMemoryIndex index : table.getIndexes().values()){
+            out.write(WriteAheadLog.frame(LogRecord.createIndex(catalogName, tableName, index.getName(),
+                    index.getColumnName(), index.getType())));
+        }
+    }
+
+    /**
+     * Write an insert record with a set of rows of a table.
+     * @param out The output.
+     * @param catalogName The name of the catalog.
+     * @param table The snapshot of the table.
+     * @param columnNames The name of the columns.
+     * @param columns The columns of the table.
+     * @param rows The positions of the rows.
+     * @param count The number of rows.
+     * @throws IOException If the rows cannot be written.
+     */
+    private void writeRows(OutputStream out, String catalogName, TableSnapshot table, String[] columnNames,
+            AbstractInMemoryColumn[] columns, int[] rows, int count) throws IOException {
+        Object[][] values = new Object[columns.length][count];
+        for(int column = 0; column < columns.length; column++){
+            for(int index = 0; index < count; index++){
+                values[column][index] = columns[column].get(rows[index]);
+            }
+        }
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList(columnNames), values, count);
+        if(table.getTable().getOptions().getTtl() > 0){
+            long[] writeTimes = new long[count];
+            for(int index = 0; index < count; index++){
+                writeTimes[index] = table.getWriteTime(rows[index]);
+            }
+            batch.setWriteTimes(writeTimes);
+        }
+        out.write(WriteAheadLog.frame(LogRecord.insert(catalogName, table.getTable().getTableName(), batch)));
+    }
+
+    /**
+     * Get the file where a snapshot is written before replacing the previous one.
+     * @return The temporary file.
+     */
+    private File temporarySnapshot(){
+        return new File(settings.getDirectory(), SNAPSHOT_FILE + ".tmp");
+    }
+
+    /**
+     * Get the file of a log.
+     * @param sequence The sequence number of the log.
+     * @return The log file.
+     */
+    private File logFile(long sequence){
+        return new File(settings.getDirectory(), "wal-" + sequence + ".log");
+    }
+
+    /**
+     * Get the sequence number of a log file.
+     * @param log The log file.
+     * @return The sequence number.
+     */
+    private static long getSequence(File log){
+        Matcher matcher = LOG_FILE.matcher(log.getName());
+        matcher.matches();
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * List the log files of the persistence directory.
+     * @return The log files sorted by sequence number.
+     */
+    private List<File> listLogs(){
+        List<File> logs = new ArrayList<>();
+        File[] files = settings.getDirectory().listFiles();
+        if(files != null){
+            for(File file : files){
+                if(LOG_FILE.matcher(file.getName()).matches()){
+                    logs.add(file);
+                }
+            }
+        }
+        Collections.sort(logs, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(getSequence(first), getSequence(second));
+            }
+        });
+        return logs;
+    }
+
+    /**
+     * Stop the periodic tasks and flush the log.
+     * @throws IOException If the log cannot be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        if(scheduler != null){
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(settings.getSyncInterval(), TimeUnit.MILLISECONDS);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(snapshotLock){
+            wal.close();
+        }
+    }
+}
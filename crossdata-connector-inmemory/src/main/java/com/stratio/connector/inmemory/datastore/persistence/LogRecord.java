@@ -0,0 +1,606 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+
+/**
+ * Operation that modifies a datastore. Records are appended to the write-ahead log and stored in the
+ * snapshots, and they are replayed in order to recover the datastore.
+ */
+public class LogRecord {
+
+    /**
+     * Type of operations.
+     */
+    public enum Operation {
+        CREATE_CATALOG, DROP_CATALOG, CREATE_TABLE, DROP_TABLE, INSERT, TRUNCATE, CREATE_INDEX, DROP_INDEX,
+        DELETE, UPDATE
+    }
+
+    /**
+     * Tag of null values.
+     */
+    private static final byte NULL_VALUE = 0;
+
+    /**
+     * Tag of integer values.
+     */
+    private static final byte INTEGER_VALUE = 1;
+
+    /**
+     * Tag of long values.
+     */
+    private static final byte LONG_VALUE = 2;
+
+    /**
+     * Tag of float values.
+     */
+    private static final byte FLOAT_VALUE = 3;
+
+    /**
+     * Tag of double values.
+     */
+    private static final byte DOUBLE_VALUE = 4;
+
+    /**
+     * Tag of boolean values.
+     */
+    private static final byte BOOLEAN_VALUE = 5;
+
+    /**
+     * Tag of string values, and of any value without a binary representation.
+     */
+    private static final byte STRING_VALUE = 6;
+
+    /**
+     * Tag of date values.
+     */
+    private static final byte DATE_VALUE = 7;
+
+    /**
+     * Type of operation.
+     */
+    private final Operation operation;
+
+    /**
+     * Name of the target catalog.
+     */
+    private final String catalogName;
+
+    /**
+     * Name of the target table, if any.
+     */
+    private String tableName = null;
+
+    /**
+     * Name of the columns of a new table.
+     */
+    private String[] columnNames = null;
+
+    /**
+     * Types of the columns of a new table.
+     */
+    private Class[] columnTypes = null;
+
+    /**
+     * Primary key of a new table.
+     */
+    private List<String> primaryKey = null;
+
+    /**
+     * Options of a new table.
+     */
+    private Map<String, String> options = null;
+
+    /**
+     * Inserted or updated rows, or the primary keys of the deleted rows.
+     */
+    private InMemoryColumnBatch batch = null;
+
+    /**
+     * Name of the target index, if any.
+     */
+    private String indexName = null;
+
+    /**
+     * Name of the indexed column.
+     */
+    private String columnName = null;
+
+    /**
+     * Type of a new index.
+     */
+    private InMemoryIndexType indexType = null;
+
+    /**
+     * Class constructor.
+     * @param operation The type of operation.
+     * @param catalogName The name of the target catalog.
+     * @param tableName The name of the target table, if any.
+     */
+    private LogRecord(Operation operation, String catalogName, String tableName){
+        this.operation = operation;
+        this.catalogName = catalogName;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Record the creation of a catalog.
+     * @param catalogName The name of the catalog.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord createCatalog(String catalogName){
+        return new LogRecord(Operation.CREATE_CATALOG, catalogName, null);
+    }
+
+    /**
+     * Record the removal of a catalog.
+     * @param catalogName The name of the catalog.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord dropCatalog(String catalogName){
+        return new LogRecord(Operation.DROP_CATALOG, catalogName, null);
+    }
+
+    /**
+     * Record the creation of a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param columnNames The name of the columns.
+     * @param columnTypes The types of the columns.
+     * @param primaryKey The list of column names that belong to the primary key.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord createTable(String catalogName, String tableName, String[] columnNames,
+            Class[] columnTypes, List<String> primaryKey){
+        return createTable(catalogName, tableName, columnNames, columnTypes, primaryKey,
+                Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Record the creation of a table with a set of options.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param columnNames The name of the columns.
+     * @param columnTypes The types of the columns.
+     * @param primaryKey The list of column names that belong to the primary key.
+     * @param options The table options.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord createTable(String catalogName, String tableName, String[] columnNames,
+            Class[] columnTypes, List<String> primaryKey, Map<String, String> options){
+        LogRecord record = new LogRecord(Operation.CREATE_TABLE, catalogName, tableName);
+        record.columnNames = columnNames.clone();
+        record.columnTypes = columnTypes.clone();
+        record.primaryKey = new ArrayList<>(primaryKey);
+        record.options = new TreeMap<>(options);
+        return record;
+    }
+
+    /**
+     * Record the removal of a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord dropTable(String catalogName, String tableName){
+        return new LogRecord(Operation.DROP_TABLE, catalogName, tableName);
+    }
+
+    /**
+     * Record the insertion of a batch of rows.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param batch The inserted rows.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord insert(String catalogName, String tableName, InMemoryColumnBatch batch){
+        LogRecord record = new LogRecord(Operation.INSERT, catalogName, tableName);
+        record.batch = batch;
+        return record;
+    }
+
+    /**
+     * Record the deletion of a set of rows.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param keys The primary keys of the deleted rows.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord delete(String catalogName, String tableName, InMemoryColumnBatch keys){
+        LogRecord record = new LogRecord(Operation.DELETE, catalogName, tableName);
+        record.batch = keys;
+        return record;
+    }
+
+    /**
+     * Record the update of a set of existing rows.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param batch The new values of the rows.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord update(String catalogName, String tableName, InMemoryColumnBatch batch){
+        LogRecord record = new LogRecord(Operation.UPDATE, catalogName, tableName);
+        record.batch = batch;
+        return record;
+    }
+
+    /**
+     * Record the truncation of a table.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord truncate(String catalogName, String tableName){
+        return new LogRecord(Operation.TRUNCATE, catalogName, tableName);
+    }
+
+    /**
+     * Record the creation of a secondary index.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @param columnName The name of the indexed column.
+     * @param indexType The type of index.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord createIndex(String catalogName, String tableName, String indexName, String columnName,
+            InMemoryIndexType indexType){
+        LogRecord record = new LogRecord(Operation.CREATE_INDEX, catalogName, tableName);
+        record.indexName = indexName;
+        record.columnName = columnName;
+        record.indexType = indexType;
+        return record;
+    }
+
+    /**
+     * Record the removal of a secondary index.
+     * @param catalogName The name of the catalog.
+     * @param tableName The name of the table.
+     * @param indexName The name of the index.
+     * @return A {@link LogRecord}.
+     */
+    public static LogRecord dropIndex(String catalogName, String tableName, String indexName){
+        LogRecord record = new LogRecord(Operation.DROP_INDEX, catalogName, tableName);
+        record.indexName = indexName;
+        return record;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getCatalogName() {
+        return catalogName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public Class[] getColumnTypes() {
+        return columnTypes;
+    }
+
+    public List<String> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    public InMemoryColumnBatch getBatch() {
+        return batch;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public InMemoryIndexType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Write the binary representation of the record.
+     * @param out The output.
+     * @throws IOException If the record cannot be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(operation.ordinal());
+        writeString(out, catalogName);
+        switch(operation){
+        case CREATE_TABLE:
+            writeString(out, tableName);
+            out.writeInt(columnNames.length);
+            for(int index = 0; index < columnNames.length; index++){
+                writeString(out, columnNames[index]);
+                writeString(out, columnTypes[index].getName());
+            }
+            out.writeInt(primaryKey.size());
+            for(String column : primaryKey){
+                writeString(out, column);
+            }
+            out.writeInt(options.size());
+            for(Map.Entry<String, String> option : options.entrySet()){
+                writeString(out, option.getKey());
+                writeString(out, option.getValue());
+            }
+            break;
+        case INSERT:
+        case DELETE:
+        case UPDATE:
+            writeString(out, tableName);
+            List<String> batchColumns = batch.getColumnNames();
+            out.writeInt(batchColumns.size());
+            out.writeInt(batch.size());
+            for(int column = 0; column < batchColumns.size(); column++){
+                writeString(out, batchColumns.get(column));
+                Object[] values = batch.getValues(column);
+                for(int row = 0; row < batch.size(); row++){
+                    writeValue(out, values[row]);
+                }
+            }
+            long[] writeTimes = batch.getWriteTimes();
+            out.writeBoolean(writeTimes != null);
+            if(writeTimes != null){
+                for(int row = 0; row < batch.size(); row++){
+                    out.writeLong(writeTimes[row]);
+                }
+            }
+            break;
+        case CREATE_INDEX:
+            writeString(out, tableName);
+            writeString(out, indexName);
+            writeString(out, columnName);
+            out.writeByte(indexType.ordinal());
+            break;
+        case DROP_INDEX:
+            writeString(out, tableName);
+            writeString(out, indexName);
+            break;
+        case DROP_TABLE:
+        case TRUNCATE:
+            writeString(out, tableName);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Read a record from its binary representation in the current format.
+     * @param in The input.
+     * @return A {@link LogRecord}.
+     * @throws IOException If the record cannot be read.
+     */
+    public static LogRecord read(DataInput in) throws IOException {
+        return read(in, WriteAheadLog.FORMAT_VERSION);
+    }
+
+    /**
+     * Read a record from its binary representation.
+     * @param in The input.
+     * @param version The version of the binary format.
+     * @return A {@link LogRecord}.
+     * @throws IOException If the record cannot be read.
+     */
+    public static LogRecord read(DataInput in, int version) throws IOException {
+        int type = in.readUnsignedByte();
+        if(type >= Operation.values().length){
+            throw new IOException("Unknown log operation " + type);
+        }
+        Operation operation = Operation.values()[type];
+        String catalogName = readString(in);
+        switch(operation){
+        case CREATE_CATALOG:
+            return createCatalog(catalogName);
+        case DROP_CATALOG:
+            return dropCatalog(catalogName);
+        case CREATE_TABLE:
+            String tableName = readString(in);
+            String[] columnNames = new String[in.readInt()];
+            Class[] columnTypes = new Class[columnNames.length];
+            for(int index = 0; index < columnNames.length; index++){
+                columnNames[index] = readString(in);
+                columnTypes[index] = readClass(in);
+            }
+            String[] primaryKey = new String[in.readInt()];
+            for(int index = 0; index < primaryKey.length; index++){
+                primaryKey[index] = readString(in);
+            }
+            Map<String, String> options = new TreeMap<>();
+            int numOptions = version >= 2 ? in.readInt() : 0;
+            for(int index = 0; index < numOptions; index++){
+                options.put(readString(in), readString(in));
+            }
+            return createTable(catalogName, tableName, columnNames, columnTypes, Arrays.asList(primaryKey),
+                    options);
+        case INSERT:
+        case DELETE:
+        case UPDATE:
+            tableName = readString(in);
+            String[] batchColumns = new String[in.readInt()];
+            int numRows = in.readInt();
+            Object[][] values = new Object[batchColumns.length][numRows];
+            for(int column = 0; column < batchColumns.length; column++){
+                batchColumns[column] = readString(in);
+                for(int row = 0; row < numRows; row++){
+                    values[column][row] = readValue(in);
+                }
+            }
+            InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList(batchColumns), values, numRows);
+            if(version >= 3 && in.readBoolean()){
+                long[] writeTimes = new long[numRows];
+                for(int row = 0; row < numRows; row++){
+                    writeTimes[row] = in.readLong();
+                }
+                batch.setWriteTimes(writeTimes);
+            }
+            if(Operation.DELETE.equals(operation)){
+                return delete(catalogName, tableName, batch);
+            }
+            return Operation.UPDATE.equals(operation) ? update(catalogName, tableName, batch)
+                    : insert(catalogName, tableName, batch);
+        case CREATE_INDEX:
+            tableName = readString(in);
+            String indexName = readString(in);
+            String columnName = readString(in);
+            return createIndex(catalogName, tableName, indexName, columnName,
+                    InMemoryIndexType.values()[in.readUnsignedByte()]);
+        case DROP_INDEX:
+            tableName = readString(in);
+            return dropIndex(catalogName, tableName, readString(in));
+        case DROP_TABLE:
+            return dropTable(catalogName, readString(in));
+        default:
+            return truncate(catalogName, readString(in));
+        }
+    }
+
+    /**
+     * Write a string as its length followed by its UTF-8 bytes.
+     * @param out The output.
+     * @param value The string.
+     * @throws IOException If the string cannot be written.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutput, String)}.
+     * @param in The input.
+     * @return The string.
+     * @throws IOException If the string cannot be read.
+     */
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the name of a class and load it.
+     * @param in The input.
+     * @return The class.
+     * @throws IOException If the class cannot be read or loaded.
+     */
+    private static Class readClass(DataInput in) throws IOException {
+        String name = readString(in);
+        try {
+            return Class.forName(name);
+        }catch(ClassNotFoundException e){
+            throw new IOException("Unknown column type " + name, e);
+        }
+    }
+
+    /**
+     * Write a tagged value. Numbers without a specific tag are written as longs or doubles, and any
+     * other value is written as its string representation.
+     * @param out The output.
+     * @param value The value.
+     * @throws IOException If the value cannot be written.
+     */
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if(value == null){
+            out.writeByte(NULL_VALUE);
+        }else if(Integer.class.isInstance(value)){
+            out.writeByte(INTEGER_VALUE);
+            out.writeInt(Integer.class.cast(value));
+        }else if(Long.class.isInstance(value)){
+            out.writeByte(LONG_VALUE);
+            out.writeLong(Long.class.cast(value));
+        }else if(Float.class.isInstance(value)){
+            out.writeByte(FLOAT_VALUE);
+            out.writeFloat(Float.class.cast(value));
+        }else if(Double.class.isInstance(value)){
+            out.writeByte(DOUBLE_VALUE);
+            out.writeDouble(Double.class.cast(value));
+        }else if(Boolean.class.isInstance(value)){
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean(Boolean.class.cast(value));
+        }else if(Date.class.isInstance(value)){
+            out.writeByte(DATE_VALUE);
+            out.writeLong(Date.class.cast(value).getTime());
+        }else if(Short.class.isInstance(value) || Byte.class.isInstance(value)){
+            out.writeByte(LONG_VALUE);
+            out.writeLong(Number.class.cast(value).longValue());
+        }else{
+            out.writeByte(STRING_VALUE);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Read a value written by {@link #writeValue(DataOutput, Object)}.
+     * @param in The input.
+     * @return The value.
+     * @throws IOException If the value cannot be read.
+     */
+    private static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch(tag){
+        case NULL_VALUE:
+            return null;
+        case INTEGER_VALUE:
+            return in.readInt();
+        case LONG_VALUE:
+            return in.readLong();
+        case FLOAT_VALUE:
+            return in.readFloat();
+        case DOUBLE_VALUE:
+            return in.readDouble();
+        case BOOLEAN_VALUE:
+            return in.readBoolean();
+        case STRING_VALUE:
+            return readString(in);
+        case DATE_VALUE:
+            return new Date(in.readLong());
+        default:
+            throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream that reads a file through memory-mapped windows. The file is mapped in windows of
+ * {@link #WINDOW_SIZE} bytes at most, so files larger than a single mapping can be read.
+ */
+public class MappedInputStream extends InputStream {
+
+    /**
+     * Maximum number of bytes mapped at once.
+     */
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    /**
+     * Channel of the mapped file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of the file.
+     */
+    private final long size;
+
+    /**
+     * Position in the file of the first byte of the current window.
+     */
+    private long windowStart = 0;
+
+    /**
+     * Currently mapped window.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * Class constructor.
+     * @param file The file to be read.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedInputStream(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, size));
+    }
+
+    /**
+     * Get the position of the next byte to be read.
+     * @return The position in the file.
+     */
+    public long position(){
+        return windowStart + window.position();
+    }
+
+    /**
+     * Map the window that starts at the current position.
+     * @return Whether there are bytes left to be read.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private boolean nextWindow() throws IOException {
+        long position = position();
+        if(position >= size){
+            return false;
+        }
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!window.hasRemaining() && !nextWindow()){
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if(length == 0){
+            return 0;
+        }
+        if(!window.hasRemaining() && !nextWindow()){
+            return -1;
+        }
+        int read = Math.min(length, window.remaining());
+        window.get(buffer, offset, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
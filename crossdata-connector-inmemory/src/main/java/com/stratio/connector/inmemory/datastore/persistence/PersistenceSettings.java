@@ -0,0 +1,161 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Durability settings of a datastore, read from the options of its cluster.
+ */
+public class PersistenceSettings {
+
+    /**
+     * Cluster option with the directory where snapshots and logs are stored. Persistence is
+     * disabled when it is not set.
+     */
+    public static final String DIRECTORY_PROPERTY = "PersistenceDirectory";
+
+    /**
+     * Cluster option with the {@link SyncPolicy} of the write-ahead log.
+     */
+    public static final String SYNC_POLICY_PROPERTY = "SyncPolicy";
+
+    /**
+     * Cluster option with the number of milliseconds between flushes of the periodic policy.
+     */
+    public static final String SYNC_INTERVAL_PROPERTY = "SyncInterval";
+
+    /**
+     * Cluster option with the number of milliseconds between snapshots, or 0 to disable them.
+     */
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "SnapshotInterval";
+
+    /**
+     * Default flush interval of the periodic policy in milliseconds.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    /**
+     * Default interval between snapshots in milliseconds.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 10 * 60 * 1000;
+
+    /**
+     * Directory where snapshots and logs are stored.
+     */
+    private final File directory;
+
+    /**
+     * When the log is flushed.
+     */
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * Milliseconds between flushes of the periodic policy.
+     */
+    private final long syncInterval;
+
+    /**
+     * Milliseconds between snapshots.
+     */
+    private final long snapshotInterval;
+
+    /**
+     * Class constructor.
+     * @param directory The directory where snapshots and logs are stored.
+     * @param syncPolicy When the log is flushed.
+     * @param syncInterval The milliseconds between flushes of the periodic policy.
+     * @param snapshotInterval The milliseconds between snapshots, or 0 to disable them.
+     */
+    public PersistenceSettings(File directory, SyncPolicy syncPolicy, long syncInterval, long snapshotInterval){
+        this.directory = directory;
+        this.syncPolicy = syncPolicy;
+        this.syncInterval = syncInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Read the settings from the options of a cluster.
+     * @param options The cluster options.
+     * @return The settings, or null if persistence is not enabled.
+     * @throws Exception If an option has an invalid value.
+     */
+    public static PersistenceSettings fromOptions(Map<String, String> options) throws Exception {
+        String directory = options.get(DIRECTORY_PROPERTY);
+        if(directory == null || directory.trim().isEmpty()){
+            return null;
+        }
+        SyncPolicy syncPolicy = SyncPolicy.GROUP_COMMIT;
+        if(options.get(SYNC_POLICY_PROPERTY) != null){
+            try {
+                syncPolicy = SyncPolicy.fromString(options.get(SYNC_POLICY_PROPERTY));
+            }catch(IllegalArgumentException e){
+                throw new Exception("Invalid " + SYNC_POLICY_PROPERTY + " " + options.get(SYNC_POLICY_PROPERTY)
+                        + ", expecting EVERY_WRITE, GROUP_COMMIT or PERIODIC", e);
+            }
+        }
+        long syncInterval = getMillis(options, SYNC_INTERVAL_PROPERTY, DEFAULT_SYNC_INTERVAL);
+        if(syncInterval <= 0){
+            throw new Exception(SYNC_INTERVAL_PROPERTY + " must be positive");
+        }
+        long snapshotInterval = getMillis(options, SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL);
+        return new PersistenceSettings(new File(directory.trim()), syncPolicy, syncInterval, snapshotInterval);
+    }
+
+    /**
+     * Read an option with a number of milliseconds.
+     * @param options The cluster options.
+     * @param name The name of the option.
+     * @param defaultValue The value used if the option is not set.
+     * @return The number of milliseconds.
+     * @throws Exception If the option is not a valid number.
+     */
+    private static long getMillis(Map<String, String> options, String name, long defaultValue) throws Exception {
+        String value = options.get(name);
+        if(value == null){
+            return defaultValue;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if(millis < 0){
+                throw new Exception(name + " cannot be negative");
+            }
+            return millis;
+        }catch(NumberFormatException e){
+            throw new Exception("Invalid " + name + " " + value + ", expecting a number of milliseconds", e);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Reader of the records of a log or snapshot file. The file is memory-mapped, and reading stops at the
+ * first incomplete or corrupted record, which is the tail left by a crash in the middle of a write.
+ */
+public class RecordReader implements Closeable {
+
+    /**
+     * Memory-mapped file.
+     */
+    private final MappedInputStream mapped;
+
+    /**
+     * Input used to read the frames.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Sequence number stored in the header, or -1 if the header is not valid.
+     */
+    private final long sequence;
+
+    /**
+     * Version of the binary format of the file.
+     */
+    private final int version;
+
+    /**
+     * Whether the file ends with an incomplete or corrupted record.
+     */
+    private boolean torn = false;
+
+    /**
+     * Class constructor.
+     * @param file The file to be read.
+     * @throws IOException If the file cannot be opened.
+     */
+    public RecordReader(File file) throws IOException {
+        this.mapped = new MappedInputStream(file);
+        this.in = new DataInputStream(mapped);
+        int fileVersion = -1;
+        if(mapped.available() >= WriteAheadLog.HEADER_SIZE && in.readInt() == WriteAheadLog.MAGIC){
+            fileVersion = in.readInt();
+        }
+        if(fileVersion < WriteAheadLog.MIN_FORMAT_VERSION || fileVersion > WriteAheadLog.FORMAT_VERSION){
+            version = -1;
+            sequence = -1;
+            torn = true;
+        }else{
+            version = fileVersion;
+            sequence = in.readLong();
+        }
+    }
+
+    /**
+     * Get the sequence number stored in the header.
+     * @return The sequence number, or -1 if the file does not have a valid header.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Whether the file ends with an incomplete or corrupted record.
+     * @return Whether records were discarded.
+     */
+    public boolean isTorn() {
+        return torn;
+    }
+
+    /**
+     * Read the next record.
+     * @return The record, or null if there are no more valid records.
+     * @throws IOException If the file cannot be read.
+     */
+    public LogRecord next() throws IOException {
+        if(torn || mapped.available() == 0){
+            return null;
+        }
+        if(mapped.available() < WriteAheadLog.FRAME_SIZE){
+            torn = true;
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if(length < 0 || length > mapped.available()){
+            torn = true;
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if((int) crc.getValue() != checksum){
+            torn = true;
+            return null;
+        }
+        return LogRecord.read(new DataInputStream(new ByteArrayInputStream(payload)), version);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped.close();
+    }
+}
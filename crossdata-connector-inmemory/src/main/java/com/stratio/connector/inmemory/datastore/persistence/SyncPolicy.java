@@ -0,0 +1,51 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+/**
+ * Policies that decide when the write-ahead log is flushed to the storage device.
+ */
+public enum SyncPolicy {
+
+    /**
+     * Each write is flushed before it is acknowledged.
+     */
+    EVERY_WRITE,
+
+    /**
+     * Writes are acknowledged once flushed, but concurrent writers share a single flush.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Writes are acknowledged immediately and the log is flushed at a fixed interval. A crash may lose
+     * the writes of the last interval.
+     */
+    PERIODIC;
+
+    /**
+     * Get the policy associated with a name, ignoring case and accepting dashes as separators.
+     * @param name The name of the policy.
+     * @return A {@link SyncPolicy}.
+     * @throws IllegalArgumentException If the name does not match any policy.
+     */
+    public static SyncPolicy fromString(String name){
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the operations applied to a datastore. Each file starts with a header, followed
+ * by records framed by their length and CRC so that a record torn by a crash is detected on recovery.
+ * Positions are logical: a log continues the positions of the log it replaces, so writers can wait
+ * for a position regardless of log rotations.
+ *
+ * A log that fails to be written or flushed rejects every later write, as the records appended after a
+ * partially written record would be discarded on recovery. The part of the failed record that was
+ * written is truncated, and the datastore must be reopened to write a new log.
+ */
+public class WriteAheadLog implements Closeable {
+
+    /**
+     * Magic number at the start of the log and snapshot files.
+     */
+    public static final int MAGIC = 0x584D454D;
+
+    /**
+     * Version of the binary format. Version 2 stores the options of the created tables, and version 3
+     * the write time of the inserted and updated rows of the tables whose rows expire.
+     */
+    public static final int FORMAT_VERSION = 3;
+
+    /**
+     * Oldest version of the binary format that can be read.
+     */
+    public static final int MIN_FORMAT_VERSION = 1;
+
+    /**
+     * Size of the file header: magic number, format version and sequence number.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of the record frame: length and CRC of the record.
+     */
+    public static final int FRAME_SIZE = 8;
+
+    /**
+     * Channel of the log file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * When the log is flushed.
+     */
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * Sequence number of the log.
+     */
+    private final long sequence;
+
+    /**
+     * Logical position of the first record.
+     */
+    private final long startPosition;
+
+    /**
+     * Logical position after the last appended record.
+     */
+    private long written;
+
+    /**
+     * Logical position up to which the log has been flushed.
+     */
+    private volatile long synced;
+
+    /**
+     * Lock held while flushing, so concurrent writers share a single flush.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Whether the log has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Error that made the log reject writes, if any.
+     */
+    private IOException failure = null;
+
+    /**
+     * Create a new log file.
+     * @param file The log file, which must not exist.
+     * @param sequence The sequence number of the log.
+     * @param startPosition The logical position of the first record.
+     * @param syncPolicy When the log is flushed.
+     * @throws IOException If the file cannot be created.
+     */
+    public WriteAheadLog(File file, long sequence, long startPosition, SyncPolicy syncPolicy) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), sequence,
+                startPosition, syncPolicy);
+    }
+
+    /**
+     * Create a new log written to a channel.
+     * @param channel The channel of an empty log file.
+     * @param sequence The sequence number of the log.
+     * @param startPosition The logical position of the first record.
+     * @param syncPolicy When the log is flushed.
+     * @throws IOException If the header cannot be written.
+     */
+    WriteAheadLog(FileChannel channel, long sequence, long startPosition, SyncPolicy syncPolicy) throws IOException {
+        this.channel = channel;
+        this.syncPolicy = syncPolicy;
+        this.sequence = sequence;
+        this.startPosition = startPosition;
+        this.written = startPosition;
+        this.synced = startPosition;
+        ByteBuffer header = header(sequence);
+        while(header.hasRemaining()){
+            channel.write(header);
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Get the sequence number of the log.
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the logical position after the last appended record.
+     * @return The position.
+     */
+    public synchronized long getPosition() {
+        return written;
+    }
+
+    /**
+     * Check whether the log rejects writes after failing to write or flush a record.
+     * @return Whether the log has failed.
+     */
+    public synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Append a record. With the {@link SyncPolicy#EVERY_WRITE} policy the record is flushed before
+     * returning. If the record cannot be written, the part that was written is truncated and the log
+     * rejects later writes.
+     * @param record The record.
+     * @return The logical position after the record, to be passed to {@link #sync(long)}.
+     * @throws IOException If the record cannot be written, or the log has failed.
+     */
+    public synchronized long append(LogRecord record) throws IOException {
+        checkWritable();
+        ByteBuffer buffer = ByteBuffer.wrap(frame(record));
+        try {
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            if(SyncPolicy.EVERY_WRITE.equals(syncPolicy)){
+                channel.force(false);
+            }
+        }catch(IOException e){
+            failure = e;
+            try {
+                channel.truncate(offset(written));
+            }catch(IOException truncateError){
+                e.addSuppressed(truncateError);
+            }
+            throw e;
+        }
+        written += buffer.capacity();
+        if(SyncPolicy.EVERY_WRITE.equals(syncPolicy)){
+            synced = written;
+        }
+        return written;
+    }
+
+    /**
+     * Remove the records appended after a position, such as the record of an operation that could not
+     * be applied. The removal is flushed, as the records may have been flushed with other records.
+     * @param position The logical position, returned by {@link #getPosition()} before appending them.
+     * @throws IOException If the records cannot be removed, or the log has failed.
+     */
+    public void truncate(long position) throws IOException {
+        synchronized(syncLock){
+            synchronized(this){
+                checkWritable();
+                try {
+                    channel.truncate(offset(position));
+                    channel.force(true);
+                }catch(IOException e){
+                    failure = e;
+                    throw e;
+                }
+                written = position;
+                synced = position;
+            }
+        }
+    }
+
+    /**
+     * Check that the log accepts writes.
+     * @throws IOException If the log has failed.
+     */
+    private void checkWritable() throws IOException {
+        if(failure != null){
+            throw new IOException("Log " + sequence + " rejects writes after failing, the datastore must be "
+                    + "reopened: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Get the offset in the file of a logical position.
+     * @param position The logical position.
+     * @return The offset in the file.
+     */
+    private long offset(long position){
+        return HEADER_SIZE + position - startPosition;
+    }
+
+    /**
+     * Wait until the log is flushed up to a position, if the {@link SyncPolicy#GROUP_COMMIT} policy is
+     * used. The writer that flushes the log covers every record appended so far, so writers waiting
+     * behind it usually find their records already flushed.
+     * @param position The logical position returned by {@link #append(LogRecord)}.
+     * @throws IOException If the log cannot be flushed.
+     */
+    public void sync(long position) throws IOException {
+        if(SyncPolicy.GROUP_COMMIT.equals(syncPolicy)){
+            flush(position);
+        }
+    }
+
+    /**
+     * Flush every record appended so far.
+     * @throws IOException If the log cannot be flushed.
+     */
+    public void flush() throws IOException {
+        flush(getPosition());
+    }
+
+    /**
+     * Flush the log up to, at least, a position. If the log cannot be flushed, it rejects later writes.
+     * @param position The logical position.
+     * @throws IOException If the log cannot be flushed, or the log has failed.
+     */
+    private void flush(long position) throws IOException {
+        if(synced >= position){
+            return;
+        }
+        synchronized(syncLock){
+            long target;
+            synchronized(this){
+                if(closed || synced >= position){
+                    return;
+                }
+                checkWritable();
+                target = written;
+            }
+            try {
+                channel.force(false);
+            }catch(IOException e){
+                synchronized(this){
+                    failure = e;
+                }
+                throw e;
+            }
+            synced = Math.max(synced, target);
+        }
+    }
+
+    /**
+     * Flush and close the log. A failed log is closed without flushing it.
+     * @throws IOException If the log cannot be flushed or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(syncLock){
+            synchronized(this){
+                if(!closed){
+                    closed = true;
+                    try {
+                        if(failure == null){
+                            channel.force(false);
+                            synced = written;
+                        }
+                    }finally{
+                        channel.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the header of a log or snapshot file.
+     * @param sequence The sequence number stored in the header.
+     * @return A buffer with the header.
+     */
+    public static ByteBuffer header(long sequence){
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sequence);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Serialize a record preceded by its length and CRC.
+     * @param record The record.
+     * @return The framed record.
+     * @throws IOException If the record cannot be serialized.
+     */
+    public static byte[] frame(LogRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0);
+        record.write(out);
+        out.flush();
+        byte[] result = bytes.toByteArray();
+        int length = result.length - FRAME_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(result, FRAME_SIZE, length);
+        ByteBuffer.wrap(result).putInt(length).putInt((int) crc.getValue());
+        return result;
+    }
+}
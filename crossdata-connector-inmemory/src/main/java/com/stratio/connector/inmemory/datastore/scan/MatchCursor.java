@@ -0,0 +1,119 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.evaluators.RowPredicate;
+
+/**
+ * Cursor over the positions of the rows of a table that satisfy a predicate. Cursors do not project
+ * the rows, so operators that only need the row positions, such as aggregations, can consume them
+ * without allocating intermediate rows. Cursors that scan every row ask the predicate for its next
+ * candidate at the start of each zone, skipping the zones whose zone maps exclude any match.
+ */
+public class MatchCursor {
+
+    /**
+     * Position returned when there are no more matching rows.
+     */
+    public static final int END = -1;
+
+    /**
+     * The compiled relations.
+     */
+    private final RowPredicate predicate;
+
+    /**
+     * Candidate row positions, or null to scan every row.
+     */
+    private final int [] candidates;
+
+    /**
+     * Last position to be scanned (exclusive).
+     */
+    private final int end;
+
+    /**
+     * Counter of the rows scanned.
+     */
+    private final ScanMetrics.SegmentCounter counter;
+
+    /**
+     * Next position to be evaluated.
+     */
+    private int position;
+
+    /**
+     * Position at which the predicate is asked for its next candidate.
+     */
+    private int nextCheck;
+
+    /**
+     * Class constructor.
+     * @param predicate The compiled relations.
+     * @param candidates The candidate row positions, or null to scan every row.
+     * @param start The first position to be scanned.
+     * @param end The last position to be scanned (exclusive).
+     * @param counter The counter of the rows scanned, or null.
+     */
+    public MatchCursor(RowPredicate predicate, int [] candidates, int start, int end,
+            ScanMetrics.SegmentCounter counter){
+        this.predicate = predicate;
+        this.candidates = candidates;
+        this.position = start;
+        this.nextCheck = start;
+        this.end = end;
+        this.counter = counter != null ? counter : new ScanMetrics.SegmentCounter();
+    }
+
+    /**
+     * Advance to the next matching row.
+     * @return The row position or {@link #END} if there are no more matching rows.
+     */
+    public int next(){
+        while(position < end){
+            if(candidates == null && position >= nextCheck){
+                skip();
+                if(position >= end){
+                    break;
+                }
+            }
+            int row = candidates == null ? position : candidates[position];
+            position++;
+            boolean matched = predicate.test(row);
+            counter.count(matched);
+            if(matched){
+                return row;
+            }
+        }
+        return END;
+    }
+
+    /**
+     * Skip the rows before the next candidate of the predicate.
+     */
+    private void skip(){
+        int candidate = Math.min(predicate.nextCandidate(position), end);
+        if(candidate > position){
+            counter.skip(candidate - position);
+            position = candidate;
+        }
+        nextCheck = ((position >>> AbstractInMemoryColumn.ZONE_SHIFT) + 1) << AbstractInMemoryColumn.ZONE_SHIFT;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+/**
+ * Cancellation state of a running query. Scans, joins and sorts poll it cooperatively while they
+ * process rows, so a query stops shortly after it is cancelled or its deadline expires, and the
+ * intermediate results it holds become unreachable as soon as the operators unwind.
+ */
+public class QueryCancellation {
+
+    /**
+     * Number of rows or comparisons processed between checks of the cancellation state.
+     */
+    public static final int CHECK_INTERVAL = 1 << 10;
+
+    /**
+     * Mask used to check the state once every {@link #CHECK_INTERVAL} iterations.
+     */
+    private static final long CHECK_MASK = CHECK_INTERVAL - 1;
+
+    /**
+     * Time limit of the query in milliseconds, or 0 if the query has no deadline.
+     */
+    private final long timeout;
+
+    /**
+     * Value of {@link System#nanoTime()} when the deadline expires.
+     */
+    private final long deadline;
+
+    /**
+     * Reason of the cancellation, or null if the query has not been cancelled.
+     */
+    private volatile String reason = null;
+
+    /**
+     * Class constructor of a query without deadline.
+     */
+    public QueryCancellation(){
+        this(0);
+    }
+
+    /**
+     * Class constructor.
+     * @param timeout The time limit of the query in milliseconds, or 0 if the query has no deadline.
+     */
+    public QueryCancellation(long timeout){
+        this.timeout = timeout;
+        this.deadline = System.nanoTime() + timeout * 1000000L;
+    }
+
+    /**
+     * Get the time limit of the query.
+     * @return The time limit in milliseconds, or 0 if the query has no deadline.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Cancel the query. Only the first reason is kept.
+     * @param reason The reason of the cancellation.
+     */
+    public synchronized void cancel(String reason){
+        if(this.reason == null){
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Determine whether the query has been cancelled or its deadline has expired.
+     * @return Whether the query must stop.
+     */
+    public boolean isCancelled(){
+        if(reason == null && timeout > 0 && System.nanoTime() - deadline >= 0){
+            cancel("Deadline of " + timeout + " ms exceeded");
+        }
+        return reason != null;
+    }
+
+    /**
+     * Get the reason of the cancellation.
+     * @return The reason, or null if the query has not been cancelled.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Stop the calling operator if the query has been cancelled.
+     * @throws QueryCancelledException If the query has been cancelled.
+     */
+    public void check(){
+        if(isCancelled()){
+            throw new QueryCancelledException(reason);
+        }
+    }
+
+    /**
+     * Check the cancellation state once every {@link #CHECK_INTERVAL} iterations of a loop.
+     * @param iteration The number of iterations performed.
+     * @throws QueryCancelledException If the query has been cancelled.
+     */
+    public void check(long iteration){
+        if((iteration & CHECK_MASK) == 0){
+            check();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+/**
+ * Exception thrown by the operators of a query that has been cancelled. It is unchecked so that it
+ * can cross iterators, comparators and fork/join tasks, and it is translated into an
+ * execution error by the query engine.
+ */
+public class QueryCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = -2465398721549723151L;
+
+    /**
+     * Class constructor.
+     * @param reason The reason of the cancellation.
+     */
+    public QueryCancelledException(String reason){
+        super("Query cancelled: " + reason);
+    }
+}
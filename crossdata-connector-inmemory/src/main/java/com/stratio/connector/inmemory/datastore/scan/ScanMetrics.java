@@ -0,0 +1,206 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics of the table scans performed by a query. Each segment scanned registers its own counter,
+ * which is only updated by the thread scanning that segment; the totals are computed when requested.
+ * Counters also poll the {@link QueryCancellation} of the query as rows are scanned, so every scan
+ * stops shortly after the query is cancelled.
+ */
+public class ScanMetrics {
+
+    /**
+     * Counters of the segments scanned.
+     */
+    private final List<SegmentCounter> segments = new ArrayList<>();
+
+    /**
+     * Time when the metrics were created.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Cancellation state of the query.
+     */
+    private final QueryCancellation cancellation;
+
+    /**
+     * Class constructor of the metrics of a query that cannot be cancelled.
+     */
+    public ScanMetrics(){
+        this(new QueryCancellation());
+    }
+
+    /**
+     * Class constructor.
+     * @param cancellation The cancellation state of the query.
+     */
+    public ScanMetrics(QueryCancellation cancellation){
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Get the cancellation state of the query.
+     * @return A {@link QueryCancellation}.
+     */
+    public QueryCancellation getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Register a new segment scan.
+     * @return The counter of the segment.
+     */
+    public synchronized SegmentCounter newSegment(){
+        SegmentCounter counter = new SegmentCounter(cancellation);
+        segments.add(counter);
+        return counter;
+    }
+
+    /**
+     * Get the number of segments scanned.
+     * @return The number of segments.
+     */
+    public synchronized int getSegments(){
+        return segments.size();
+    }
+
+    /**
+     * Get the number of rows evaluated.
+     * @return The number of rows.
+     */
+    public synchronized long getScannedRows(){
+        long result = 0;
+        for(SegmentCounter counter : segments){
+            result += counter.scannedRows;
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of rows skipped without being evaluated, because the zone maps or the time
+     * partitions of the table excluded them.
+     * @return The number of rows.
+     */
+    public synchronized long getSkippedRows(){
+        long result = 0;
+        for(SegmentCounter counter : segments){
+            result += counter.skippedRows;
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of rows that satisfied the relations of the query.
+     * @return The number of rows.
+     */
+    public synchronized long getMatchedRows(){
+        long result = 0;
+        for(SegmentCounter counter : segments){
+            result += counter.matchedRows;
+        }
+        return result;
+    }
+
+    /**
+     * Get the time elapsed since the metrics were created.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedTime(){
+        return System.nanoTime() - startTime;
+    }
+
+    @Override
+    public String toString() {
+        return "segments=" + getSegments() + ", scannedRows=" + getScannedRows() + ", skippedRows=" + getSkippedRows()
+                + ", matchedRows=" + getMatchedRows() + ", elapsedNanos=" + getElapsedTime();
+    }
+
+    /**
+     * Counters of a single segment scan.
+     */
+    public static class SegmentCounter {
+
+        /**
+         * Number of rows evaluated.
+         */
+        private long scannedRows = 0;
+
+        /**
+         * Number of rows that satisfied the relations.
+         */
+        private long matchedRows = 0;
+
+        /**
+         * Number of rows skipped without being evaluated.
+         */
+        private long skippedRows = 0;
+
+        /**
+         * Cancellation state of the query, or null if the scan cannot be cancelled.
+         */
+        private final QueryCancellation cancellation;
+
+        /**
+         * Class constructor of a counter that does not check any cancellation.
+         */
+        public SegmentCounter(){
+            this(null);
+        }
+
+        /**
+         * Class constructor.
+         * @param cancellation The cancellation state of the query, or null.
+         */
+        public SegmentCounter(QueryCancellation cancellation){
+            this.cancellation = cancellation;
+        }
+
+        /**
+         * Count a row evaluated.
+         * @param matched Whether the row satisfied the relations.
+         * @throws QueryCancelledException If the query has been cancelled.
+         */
+        public void count(boolean matched){
+            if(cancellation != null){
+                cancellation.check(scannedRows);
+            }
+            scannedRows++;
+            if(matched){
+                matchedRows++;
+            }
+        }
+
+        /**
+         * Count a block of rows skipped without being evaluated.
+         * @param rows The number of rows.
+         * @throws QueryCancelledException If the query has been cancelled.
+         */
+        public void skip(int rows){
+            if(cancellation != null){
+                cancellation.check();
+            }
+            skippedRows += rows;
+        }
+    }
+}
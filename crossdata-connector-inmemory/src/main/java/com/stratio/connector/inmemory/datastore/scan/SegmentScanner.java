@@ -0,0 +1,418 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.GroupTable;
+import com.stratio.connector.inmemory.datastore.aggregations.HashAggregation;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.evaluators.RowPredicate;
+import com.stratio.connector.inmemory.datastore.iterators.MergeIterator;
+import com.stratio.connector.inmemory.datastore.sort.ParallelSort;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Scanner that splits the full scans of large tables into segments of consecutive rows and scans
+ * them on a fork/join pool. Ordered scans sort each segment in parallel and merge the sorted
+ * segments; unordered scans return the rows of each segment as soon as it is scanned, keeping at
+ * most one segment per thread in flight. Scans answered by the indexes, and scans of tables that fit
+ * in a single segment, are performed lazily in the calling thread. Segments check the
+ * {@link QueryCancellation} of the query through their counters, so a cancelled query stops every
+ * segment in flight and no pending segment is submitted.
+ */
+public class SegmentScanner {
+
+    /**
+     * Default number of rows of each segment.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+    /**
+     * Pool used to scan the segments, or null to scan sequentially.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Maximum number of segments scanned at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * Number of rows of each segment.
+     */
+    private final int segmentSize;
+
+    /**
+     * Class constructor.
+     * @param pool The pool used to scan the segments, or null to scan sequentially.
+     * @param parallelism The maximum number of segments scanned at the same time.
+     * @param segmentSize The number of rows of each segment.
+     */
+    public SegmentScanner(ForkJoinPool pool, int parallelism, int segmentSize){
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Build a scanner that scans every table in the calling thread.
+     * @return A {@link SegmentScanner}.
+     */
+    public static SegmentScanner sequential(){
+        return new SegmentScanner(null, 1, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Get the number of rows of each segment.
+     * @return The number of rows.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Scan the rows of a table snapshot that satisfy a set of relations.
+     * @param snapshot The snapshot of the table.
+     * @param relations The list of relationships.
+     * @param outputColumns The output columns in order.
+     * @param order The comparator of the rows, or null if the rows need not be ordered.
+     * @param limit The maximum number of ordered rows to be returned, or -1 for no limit.
+     * @param metrics The metrics of the query.
+     * @return An iterator over the matching rows.
+     * @throws Exception If the scan cannot be performed.
+     */
+    public Iterator<SimpleValue[]> scan(TableSnapshot snapshot, List<InMemoryRelation> relations,
+            List<InMemorySelector> outputColumns, Comparator<SimpleValue[]> order, int limit,
+            ScanMetrics metrics) throws Exception {
+        int [] candidates = snapshot.findCandidates(relations);
+        RowPredicate predicate = snapshot.compilePredicate(relations);
+        int numRows = snapshot.getNumRows();
+        if(candidates != null || pool == null || parallelism <= 1 || numRows <= segmentSize){
+            Iterator<SimpleValue[]> rows = snapshot.scan(predicate, outputColumns, candidates, metrics.newSegment());
+            if(order == null){
+                return rows;
+            }
+            return ParallelSort.sort(rows, order, limit, pool, metrics.getCancellation()).iterator();
+        }
+
+        List<SegmentTask> tasks = new ArrayList<>();
+        for(int start = 0; start < numRows; start += segmentSize){
+            tasks.add(new SegmentTask(snapshot.scanRange(predicate, outputColumns, start, start + segmentSize,
+                    metrics.newSegment()), order, limit, metrics.getCancellation()));
+        }
+        if(order == null){
+            return new UnorderedIterator(tasks);
+        }
+
+        List<Iterator<SimpleValue[]>> sortedSegments = new ArrayList<>(tasks.size());
+        for(Future<List<SimpleValue[]>> future : pool.invokeAll(tasks)){
+            sortedSegments.add(getSegment(future).iterator());
+        }
+        return new MergeIterator<>(sortedSegments, order);
+    }
+
+    /**
+     * Aggregate the rows of a table snapshot that satisfy a set of relations. Large tables are aggregated in
+     * parallel segments, each one into its own group table, and the group tables are merged in
+     * segment order, so groups are returned in order of appearance. Row counts answered by the bitmap
+     * indexes do not read the rows.
+     * @param snapshot The snapshot of the table.
+     * @param relations The list of relationships.
+     * @param aggregation The aggregation.
+     * @param metrics The metrics of the query.
+     * @return The aggregated rows.
+     * @throws Exception If the aggregation cannot be performed.
+     */
+    public List<SimpleValue[]> aggregate(TableSnapshot snapshot, List<InMemoryRelation> relations,
+            HashAggregation aggregation, ScanMetrics metrics) throws Exception {
+        if(aggregation.isRowCount()){
+            int count = snapshot.countRows(relations);
+            if(count >= 0){
+                return aggregation.finishCount(count);
+            }
+        }
+        int [] candidates = snapshot.findCandidates(relations);
+        RowPredicate predicate = snapshot.compilePredicate(relations);
+        int numRows = snapshot.getNumRows();
+        if(candidates != null || pool == null || parallelism <= 1 || numRows <= segmentSize){
+            GroupTable groups = aggregation.newGroupTable();
+            addRows(snapshot.match(predicate, candidates, metrics.newSegment()), groups);
+            return aggregation.finish(groups);
+        }
+
+        List<AggregateTask> tasks = new ArrayList<>();
+        for(int start = 0; start < numRows; start += segmentSize){
+            tasks.add(new AggregateTask(snapshot.matchRange(predicate, start, start + segmentSize,
+                    metrics.newSegment()), aggregation.newGroupTable()));
+        }
+        GroupTable groups = null;
+        for(Future<GroupTable> future : pool.invokeAll(tasks)){
+            GroupTable segment = getSegment(future);
+            if(groups == null){
+                groups = segment;
+            }else{
+                groups.merge(segment);
+            }
+        }
+        return aggregation.finish(groups);
+    }
+
+    /**
+     * Add the matching rows of a cursor to a group table.
+     * @param cursor The cursor.
+     * @param groups The group table.
+     */
+    private static void addRows(MatchCursor cursor, GroupTable groups){
+        int row = cursor.next();
+        while(row != MatchCursor.END){
+            groups.add(row);
+            row = cursor.next();
+        }
+    }
+
+    /**
+     * Get the result of a segment that has been scanned.
+     * @param future The future of the segment task.
+     * @param <T> The type of the result.
+     * @return The result of the segment.
+     * @throws Exception If the scan failed.
+     */
+    private static <T> T getSegment(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(Exception.class.isInstance(cause)){
+                throw Exception.class.cast(cause);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Task that scans a segment, sorting its rows if required.
+     */
+    private final class SegmentTask implements Callable<List<SimpleValue[]>> {
+
+        /**
+         * The lazy scan of the segment.
+         */
+        private final Iterator<SimpleValue[]> rows;
+
+        /**
+         * The comparator of the rows, or null.
+         */
+        private final Comparator<SimpleValue[]> order;
+
+        /**
+         * The maximum number of ordered rows.
+         */
+        private final int limit;
+
+        /**
+         * The cancellation state of the query.
+         */
+        private final QueryCancellation cancellation;
+
+        /**
+         * Class constructor.
+         * @param rows The lazy scan of the segment.
+         * @param order The comparator of the rows, or null.
+         * @param limit The maximum number of ordered rows, or -1 for no limit.
+         * @param cancellation The cancellation state of the query.
+         */
+        SegmentTask(Iterator<SimpleValue[]> rows, Comparator<SimpleValue[]> order, int limit,
+                QueryCancellation cancellation){
+            this.rows = rows;
+            this.order = order;
+            this.limit = limit;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public List<SimpleValue[]> call() {
+            if(order != null){
+                return ParallelSort.sort(rows, order, limit, null, cancellation);
+            }
+            List<SimpleValue[]> result = new ArrayList<>();
+            while(rows.hasNext()){
+                result.add(rows.next());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Task that aggregates the matching rows of a segment.
+     */
+    private static final class AggregateTask implements Callable<GroupTable> {
+
+        /**
+         * The cursor over the matching rows of the segment.
+         */
+        private final MatchCursor cursor;
+
+        /**
+         * The group table of the segment.
+         */
+        private final GroupTable groups;
+
+        /**
+         * Class constructor.
+         * @param cursor The cursor over the matching rows of the segment.
+         * @param groups The group table of the segment.
+         */
+        AggregateTask(MatchCursor cursor, GroupTable groups){
+            this.cursor = cursor;
+            this.groups = groups;
+        }
+
+        @Override
+        public GroupTable call() {
+            addRows(cursor, groups);
+            return groups;
+        }
+    }
+
+    /**
+     * Iterator that returns the rows of the segments in the order their scans complete. A new segment
+     * is submitted each time a scanned segment is consumed, so the consumer may stop at any time
+     * without scanning the whole table.
+     */
+    private final class UnorderedIterator implements Iterator<SimpleValue[]> {
+
+        /**
+         * Segments not submitted yet.
+         */
+        private final Iterator<SegmentTask> pending;
+
+        /**
+         * Completion service of the submitted segments.
+         */
+        private final ExecutorCompletionService<List<SimpleValue[]>> completion;
+
+        /**
+         * Number of segments submitted and not consumed.
+         */
+        private int running = 0;
+
+        /**
+         * Rows of the segment being consumed.
+         */
+        private Iterator<SimpleValue[]> current = Collections.emptyIterator();
+
+        /**
+         * Futures of the segments submitted and not consumed.
+         */
+        private final Set<Future<List<SimpleValue[]>>> submitted = new HashSet<>();
+
+        /**
+         * Class constructor.
+         * @param tasks The segment tasks.
+         */
+        UnorderedIterator(List<SegmentTask> tasks){
+            this.pending = tasks.iterator();
+            this.completion = new ExecutorCompletionService<>(pool);
+            while(running < parallelism && submitNext()){
+                running++;
+            }
+        }
+
+        /**
+         * Submit the next pending segment.
+         * @return Whether a segment was submitted.
+         */
+        private boolean submitNext(){
+            if(pending.hasNext()){
+                submitted.add(completion.submit(pending.next()));
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Stop the scan, cancelling the segments in flight and discarding the pending ones.
+         */
+        private void abort(){
+            for(Future<List<SimpleValue[]>> future : submitted){
+                future.cancel(false);
+            }
+            submitted.clear();
+            while(pending.hasNext()){
+                pending.next();
+            }
+            running = 0;
+            current = Collections.emptyIterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(!current.hasNext() && running > 0){
+                try {
+                    Future<List<SimpleValue[]>> future = completion.take();
+                    submitted.remove(future);
+                    running--;
+                    if(submitNext()){
+                        running++;
+                    }
+                    current = getSegment(future).iterator();
+                } catch (QueryCancelledException e) {
+                    abort();
+                    throw e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    abort();
+                    throw new IllegalStateException("Scan interrupted", e);
+                } catch (Exception e) {
+                    abort();
+                    throw new IllegalStateException("Cannot scan segment: " + e.getMessage(), e);
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public SimpleValue[] next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Rows cannot be removed from a scan");
+        }
+    }
+}
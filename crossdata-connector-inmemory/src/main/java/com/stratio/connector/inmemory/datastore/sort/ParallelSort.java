@@ -0,0 +1,274 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.stratio.connector.inmemory.datastore.scan.QueryCancellation;
+
+/**
+ * Stable merge sort that sorts the halves of large inputs in parallel on a fork/join pool. Small inputs
+ * are sorted sequentially. Sorts of cancellable queries check the {@link QueryCancellation} of the
+ * query as they consume and compare the elements.
+ */
+public final class ParallelSort {
+
+    /**
+     * Minimum number of elements of a partition to be split and sorted in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * Private constructor as all methods are static.
+     */
+    private ParallelSort(){
+    }
+
+    /**
+     * Sort a list.
+     * @param list The list to be sorted in place.
+     * @param comparator The comparator.
+     * @param pool The fork/join pool used for large inputs.
+     * @param <T> The type of the elements.
+     */
+    public static <T> void sort(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool){
+        sort(list, comparator, pool, null);
+    }
+
+    /**
+     * Sort a list, stopping if the query is cancelled.
+     * @param list The list to be sorted in place.
+     * @param comparator The comparator.
+     * @param pool The fork/join pool used for large inputs.
+     * @param cancellation The cancellation state of the query, or null.
+     * @param <T> The type of the elements.
+     * @throws com.stratio.connector.inmemory.datastore.scan.QueryCancelledException If the query is cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool,
+            QueryCancellation cancellation){
+        if(cancellation != null){
+            comparator = new CancellableComparator<T>(comparator, cancellation);
+        }
+        if(list.size() < PARALLEL_THRESHOLD || pool == null){
+            Collections.sort(list, comparator);
+            return;
+        }
+        Object[] elements = list.toArray();
+        Object[] buffer = new Object[elements.length];
+        pool.invoke(new SortTask(elements, buffer, 0, elements.length, (Comparator<Object>) comparator));
+        for(int index = 0; index < elements.length; index++){
+            list.set(index, (T) elements[index]);
+        }
+    }
+
+    /**
+     * Sort the elements returned by an iterator. If a limit is set, only the first elements are kept
+     * using a {@link TopN} heap, so the input is consumed without being stored.
+     * @param elements The elements to be sorted.
+     * @param comparator The comparator.
+     * @param limit The maximum number of elements to be returned, or -1 for no limit.
+     * @param pool The fork/join pool used for large inputs.
+     * @param <T> The type of the elements.
+     * @return A sorted list.
+     */
+    public static <T> List<T> sort(Iterator<? extends T> elements, Comparator<? super T> comparator, int limit,
+            ForkJoinPool pool){
+        return sort(elements, comparator, limit, pool, null);
+    }
+
+    /**
+     * Sort the elements returned by an iterator, stopping if the query is cancelled. If a limit is set,
+     * only the first elements are kept using a {@link TopN} heap.
+     * @param elements The elements to be sorted.
+     * @param comparator The comparator.
+     * @param limit The maximum number of elements to be returned, or -1 for no limit.
+     * @param pool The fork/join pool used for large inputs.
+     * @param cancellation The cancellation state of the query, or null.
+     * @param <T> The type of the elements.
+     * @return A sorted list.
+     * @throws com.stratio.connector.inmemory.datastore.scan.QueryCancelledException If the query is cancelled.
+     */
+    public static <T> List<T> sort(Iterator<? extends T> elements, Comparator<? super T> comparator, int limit,
+            ForkJoinPool pool, QueryCancellation cancellation){
+        long consumed = 0;
+        if(limit >= 0){
+            TopN<T> topN = new TopN<>(limit, comparator);
+            while(elements.hasNext()){
+                checkCancellation(cancellation, consumed++);
+                topN.add(elements.next());
+            }
+            return topN.getResult();
+        }
+        List<T> result = new ArrayList<>();
+        while(elements.hasNext()){
+            checkCancellation(cancellation, consumed++);
+            result.add(elements.next());
+        }
+        sort(result, comparator, pool, cancellation);
+        return result;
+    }
+
+    /**
+     * Check the cancellation state of a query periodically.
+     * @param cancellation The cancellation state of the query, or null.
+     * @param iteration The number of elements processed.
+     */
+    private static void checkCancellation(QueryCancellation cancellation, long iteration){
+        if(cancellation != null){
+            cancellation.check(iteration);
+        }
+    }
+
+    /**
+     * Comparator that checks the cancellation state of a query periodically, so that long sorts stop
+     * shortly after the query is cancelled. The number of comparisons is only approximate when the
+     * comparator is shared by several threads.
+     * @param <T> The type of the elements.
+     */
+    private static final class CancellableComparator<T> implements Comparator<T> {
+
+        /**
+         * The comparator of the elements.
+         */
+        private final Comparator<? super T> comparator;
+
+        /**
+         * The cancellation state of the query.
+         */
+        private final QueryCancellation cancellation;
+
+        /**
+         * Number of comparisons performed.
+         */
+        private long comparisons = 0;
+
+        /**
+         * Class constructor.
+         * @param comparator The comparator of the elements.
+         * @param cancellation The cancellation state of the query.
+         */
+        CancellableComparator(Comparator<? super T> comparator, QueryCancellation cancellation){
+            this.comparator = comparator;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public int compare(T first, T second) {
+            cancellation.check(comparisons++);
+            return comparator.compare(first, second);
+        }
+    }
+
+    /**
+     * Task that sorts a range of an array.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 3183546271418720385L;
+
+        /**
+         * The elements to be sorted.
+         */
+        private final Object[] elements;
+
+        /**
+         * Auxiliary array used by the merge.
+         */
+        private final Object[] buffer;
+
+        /**
+         * First position of the range, inclusive.
+         */
+        private final int from;
+
+        /**
+         * Last position of the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * The comparator.
+         */
+        private final Comparator<Object> comparator;
+
+        /**
+         * Class constructor.
+         * @param elements The elements to be sorted.
+         * @param buffer The auxiliary array.
+         * @param from First position of the range, inclusive.
+         * @param to Last position of the range, exclusive.
+         * @param comparator The comparator.
+         */
+        SortTask(Object[] elements, Object[] buffer, int from, int to, Comparator<Object> comparator){
+            this.elements = elements;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from < PARALLEL_THRESHOLD){
+                Arrays.sort(elements, from, to, comparator);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(elements, buffer, from, middle, comparator),
+                    new SortTask(elements, buffer, middle, to, comparator));
+            merge(middle);
+        }
+
+        /**
+         * Merge the two sorted halves of the range. Elements of the first half go first on ties to keep
+         * the sort stable.
+         * @param middle The first position of the second half.
+         */
+        private void merge(int middle){
+            if(comparator.compare(elements[middle - 1], elements[middle]) <= 0){
+                return;
+            }
+            System.arraycopy(elements, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            int target = from;
+            while(left < middle && right < to){
+                if(comparator.compare(buffer[right], buffer[left]) < 0){
+                    elements[target++] = buffer[right++];
+                }else{
+                    elements[target++] = buffer[left++];
+                }
+            }
+            while(left < middle){
+                elements[target++] = buffer[left++];
+            }
+            while(right < to){
+                elements[target++] = buffer[right++];
+            }
+        }
+    }
+}
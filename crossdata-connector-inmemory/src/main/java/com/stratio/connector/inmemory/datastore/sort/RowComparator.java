@@ -0,0 +1,73 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.sort;
+
+import java.util.Comparator;
+
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.KeyComparator;
+
+/**
+ * Comparator of result rows built once from the list of ORDER BY clauses. Each clause is resolved to
+ * a column position and a direction beforehand, so comparing two rows only reads the values involved.
+ */
+public class RowComparator implements Comparator<SimpleValue[]> {
+
+    /**
+     * Position of the column of each clause.
+     */
+    private final int[] positions;
+
+    /**
+     * Whether each clause sorts in ascending order.
+     */
+    private final boolean[] ascending;
+
+    /**
+     * Class constructor.
+     * @param positions The position of the column of each clause.
+     * @param ascending Whether each clause sorts in ascending order.
+     */
+    public RowComparator(int[] positions, boolean[] ascending){
+        this.positions = positions.clone();
+        this.ascending = ascending.clone();
+    }
+
+    @Override
+    public int compare(SimpleValue[] row1, SimpleValue[] row2) {
+        for(int index = 0; index < positions.length; index++){
+            int result = compareValues(row1[positions[index]].getValue(), row2[positions[index]].getValue());
+            if(result != 0){
+                return ascending[index] ? result : -result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compare two values in ascending order. Numbers of different classes are compared by value, and
+     * null values are sorted first.
+     * @param o1 The first value.
+     * @param o2 The second value.
+     * @return The comparison value.
+     */
+    public static int compareValues(Object o1, Object o2){
+        return KeyComparator.INSTANCE.compare(o1, o2);
+    }
+}
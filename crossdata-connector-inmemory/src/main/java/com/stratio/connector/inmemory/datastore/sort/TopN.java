@@ -0,0 +1,144 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Top-N operator that keeps the first N elements of a sequence according to a comparator using a
+ * bounded heap. Adding M elements takes O(M log N) time and O(N) memory. Ties are resolved by arrival
+ * order, so the result is the same as sorting the whole sequence with a stable sort and keeping the
+ * first N elements.
+ * @param <T> The type of the elements.
+ */
+public class TopN<T> {
+
+    /**
+     * Maximum number of elements to keep.
+     */
+    private final int limit;
+
+    /**
+     * Heap with the worst element on top.
+     */
+    private final PriorityQueue<Entry<T>> heap;
+
+    /**
+     * Comparator of the entries that sorts the best entries first.
+     */
+    private final Comparator<Entry<T>> entryComparator;
+
+    /**
+     * Number of elements added so far.
+     */
+    private long sequence = 0;
+
+    /**
+     * Class constructor.
+     * @param limit The maximum number of elements to keep.
+     * @param comparator The comparator that sorts the best elements first.
+     */
+    public TopN(int limit, final Comparator<? super T> comparator){
+        this.limit = limit;
+        this.entryComparator = new Comparator<Entry<T>>() {
+            @Override
+            public int compare(Entry<T> e1, Entry<T> e2) {
+                int result = comparator.compare(e1.element, e2.element);
+                if(result == 0){
+                    result = e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1);
+                }
+                return result;
+            }
+        };
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024) + 1),
+                Collections.reverseOrder(entryComparator));
+    }
+
+    /**
+     * Offer a new element.
+     * @param element The element.
+     */
+    public void add(T element){
+        if(limit <= 0){
+            return;
+        }
+        Entry<T> entry = new Entry<>(element, sequence++);
+        if(heap.size() < limit){
+            heap.add(entry);
+        }else if(entryComparator.compare(entry, heap.peek()) < 0){
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * Offer a set of elements.
+     * @param elements The elements.
+     */
+    public void addAll(Iterable<? extends T> elements){
+        for(T element : elements){
+            add(element);
+        }
+    }
+
+    /**
+     * Get the elements kept, in order.
+     * @return A sorted list with at most N elements.
+     */
+    public List<T> getResult(){
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        Collections.sort(entries, entryComparator);
+        List<T> result = new ArrayList<>(entries.size());
+        for(Entry<T> entry : entries){
+            result.add(entry.element);
+        }
+        return result;
+    }
+
+    /**
+     * Element of the heap with its arrival order.
+     * @param <T> The type of the element.
+     */
+    private static final class Entry<T> {
+
+        /**
+         * The element.
+         */
+        private final T element;
+
+        /**
+         * Arrival order of the element.
+         */
+        private final long sequence;
+
+        /**
+         * Class constructor.
+         * @param element The element.
+         * @param sequence The arrival order.
+         */
+        Entry(T element, long sequence){
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+}
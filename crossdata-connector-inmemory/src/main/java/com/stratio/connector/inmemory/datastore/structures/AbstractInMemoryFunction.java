@@ -22,6 +22,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.AbstractAggregator;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
 
@@ -63,6 +66,31 @@ public class AbstractInMemoryFunction {
         throw new Exception("Function cannot be applied to a list of rows");
     }
 
+    /**
+     * Create the aggregator that computes this function over the groups of rows of a table.
+     *
+     * @param table The snapshot of the table whose rows are aggregated.
+     * @return An {@link AbstractAggregator} without groups.
+     * @throws Exception If the function is not an aggregation or its arguments are not valid.
+     */
+    public AbstractAggregator createAggregator(TableSnapshot table) throws Exception{
+        throw new Exception("Function cannot be applied to a group of rows");
+    }
+
+    /**
+     * Get the column of a function that takes a single column as argument.
+     *
+     * @param table The snapshot of the table that contains the column.
+     * @return The {@link AbstractInMemoryColumn}.
+     * @throws Exception If the argument is not a single column of the table.
+     */
+    protected AbstractInMemoryColumn getColumnArgument(TableSnapshot table) throws Exception{
+        if(arguments.size() != 1 || !InMemoryColumnSelector.class.isInstance(arguments.get(0))){
+            throw new Exception("Function " + getClass().getSimpleName() + " requires a single column argument");
+        }
+        return table.getColumn(arguments.get(0).getName());
+    }
+
     /**
      *
      * @return true is this function applies to a Row, false if applies to many rows.
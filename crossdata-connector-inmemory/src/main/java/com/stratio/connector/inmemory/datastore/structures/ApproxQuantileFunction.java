@@ -0,0 +1,56 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.structures;
+
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.AbstractAggregator;
+import com.stratio.connector.inmemory.datastore.aggregations.ApproxQuantileAggregator;
+
+/**
+ * Estimate a quantile of the non-null values of a numeric column using a KLL sketch. The first
+ * argument is the column and the second one the quantile, a literal between 0 and 1.
+ */
+public class ApproxQuantileFunction extends AbstractInMemoryFunction {
+
+    /**
+     * Build a ApproxQuantileFunction Object
+     */
+    public ApproxQuantileFunction(){
+        this.rowFunction = false;
+    }
+
+    @Override
+    public AbstractAggregator createAggregator(TableSnapshot table) throws Exception {
+        if(arguments.size() != 2 || !InMemoryColumnSelector.class.isInstance(arguments.get(0))
+                || !InMemoryLiteralSelector.class.isInstance(arguments.get(1))){
+            throw new Exception("Function approxQuantile requires a column and a literal quantile");
+        }
+        double quantile;
+        try {
+            quantile = Double.parseDouble(arguments.get(1).getName());
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid quantile " + arguments.get(1).getName(), e);
+        }
+        if(!(quantile >= 0 && quantile <= 1)){
+            throw new Exception("The quantile must be between 0 and 1, found " + quantile);
+        }
+        return new ApproxQuantileAggregator(SumFunction.getNumericColumn(
+                table.getColumn(arguments.get(0).getName())), quantile);
+    }
+}
@@ -18,6 +18,9 @@
 
 package com.stratio.connector.inmemory.datastore.structures;
 
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.AbstractAggregator;
+import com.stratio.connector.inmemory.datastore.aggregations.CountAggregator;
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
 
 import java.util.ArrayList;
@@ -25,7 +28,8 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Count the number of elements in a list of rows.
+ * Count the number of elements in a list of rows. If the argument is a column, rows with a null value
+ * in that column are not counted.
  */
 public class CountFunction extends AbstractInMemoryFunction {
 
@@ -44,4 +48,12 @@ public class CountFunction extends AbstractInMemoryFunction {
         result.add(size);
         return result;
     }
+
+    @Override
+    public AbstractAggregator createAggregator(TableSnapshot table) throws Exception {
+        if(arguments.size() == 1 && InMemoryColumnSelector.class.isInstance(arguments.get(0))){
+            return new CountAggregator(getColumnArgument(table));
+        }
+        return new CountAggregator(null);
+    }
 }
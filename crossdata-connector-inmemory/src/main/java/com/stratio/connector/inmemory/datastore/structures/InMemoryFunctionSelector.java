@@ -40,6 +40,13 @@ public class InMemoryFunctionSelector extends InMemorySelector {
     static {
         //Aggregations
         FUNCTIONS.put("count", CountFunction.class);
+        FUNCTIONS.put("countDistinct", CountDistinctFunction.class);
+        FUNCTIONS.put("sum", SumFunction.class);
+        FUNCTIONS.put("avg", AvgFunction.class);
+        FUNCTIONS.put("min", MinFunction.class);
+        FUNCTIONS.put("max", MaxFunction.class);
+        FUNCTIONS.put("approxCountDistinct", ApproxCountDistinctFunction.class);
+        FUNCTIONS.put("approxQuantile", ApproxQuantileFunction.class);
         //Simple functions
         FUNCTIONS.put("now", NowFunction.class);
         FUNCTIONS.put("toUpper", ToUpperFunction.class);
@@ -57,6 +64,23 @@ public class InMemoryFunctionSelector extends InMemorySelector {
         this.arguments = arguments;
     }
 
+    /**
+     * Determine whether a function is defined.
+     * @param name The function name.
+     * @return Whether the function exists.
+     */
+    public static boolean exists(String name){
+        return FUNCTIONS.containsKey(name);
+    }
+
+    /**
+     * Get the function arguments.
+     * @return A list of {@link InMemorySelector}.
+     */
+    public List<InMemorySelector> getArguments() {
+        return arguments;
+    }
+
     /**
      * Get the implementing function.
      * @return A {@link AbstractInMemoryFunction}.
@@ -47,4 +47,13 @@ public class InMemoryJoinSelector extends InMemorySelector {
     public Selector getMyTerm() {
         return myTerm;
     }
+
+    /**
+     * Determine whether this selector represents the other side of the same join relation.
+     * @param other The other join selector.
+     * @return Whether the terms of both selectors are swapped.
+     */
+    public boolean isReverseOf(InMemoryJoinSelector other) {
+        return myTerm.equals(other.getOtherTerm()) && otherTerm.equals(other.getMyTerm());
+    }
 }
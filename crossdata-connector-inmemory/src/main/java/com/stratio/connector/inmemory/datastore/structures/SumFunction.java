@@ -0,0 +1,56 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.structures;
+
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.AbstractAggregator;
+import com.stratio.connector.inmemory.datastore.aggregations.SumAggregator;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.columns.AbstractNumericColumn;
+
+/**
+ * Add the non-null values of a numeric column.
+ */
+public class SumFunction extends AbstractInMemoryFunction {
+
+    /**
+     * Build a SumFunction Object
+     */
+    public SumFunction(){
+        this.rowFunction = false;
+    }
+
+    @Override
+    public AbstractAggregator createAggregator(TableSnapshot table) throws Exception {
+        return new SumAggregator(getNumericColumn(getColumnArgument(table)), false);
+    }
+
+    /**
+     * Check that the argument of a numeric aggregation is a numeric column.
+     * @param column The column.
+     * @return The {@link AbstractNumericColumn}.
+     * @throws Exception If the column is not numeric.
+     */
+    static AbstractNumericColumn getNumericColumn(AbstractInMemoryColumn column) throws Exception {
+        if(!AbstractNumericColumn.class.isInstance(column)){
+            throw new Exception("Cannot aggregate non-numeric values of type " + column.getType().getSimpleName());
+        }
+        return AbstractNumericColumn.class.cast(column);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.views;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.stratio.connector.inmemory.datastore.EvictionPolicy;
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.aggregations.GroupTable;
+import com.stratio.connector.inmemory.datastore.aggregations.HashAggregation;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.KeyComparator;
+import com.stratio.connector.inmemory.datastore.scan.MatchCursor;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Materialized view stored in an in-memory table. The view is computed from its base table when it is
+ * created and whenever it becomes stale. Views that can be maintained incrementally over tables whose
+ * rows neither expire nor get evicted are kept up to date as rows are appended to the base table:
+ * the appended rows are filtered into the view, or aggregated and combined with the stored groups.
+ * Deleting, updating or replacing rows of the base table makes the view stale until it is refreshed;
+ * other views are refreshed periodically.
+ */
+public class MaterializedView {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = Logger.getLogger(MaterializedView.class);
+
+    /**
+     * Name of the table of the view.
+     */
+    private final String name;
+
+    /**
+     * The query of the view.
+     */
+    private final ViewDefinition definition;
+
+    /**
+     * Minimum number of milliseconds between refreshes of views that are not maintained incrementally.
+     */
+    private final long refreshInterval;
+
+    /**
+     * Whether the contents of the view do not reflect the base table.
+     */
+    private volatile boolean stale = true;
+
+    /**
+     * Whether the view is kept up to date as rows are appended to the base table.
+     */
+    private volatile boolean maintained = false;
+
+    /**
+     * Time of the last refresh in milliseconds.
+     */
+    private volatile long lastRefresh = 0;
+
+    /**
+     * Class constructor.
+     * @param name The name of the table of the view.
+     * @param definition The query of the view.
+     * @param refreshInterval The minimum number of milliseconds between refreshes.
+     */
+    public MaterializedView(String name, ViewDefinition definition, long refreshInterval) {
+        this.name = name;
+        this.definition = definition;
+        this.refreshInterval = refreshInterval;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ViewDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Determine whether the view reflects every row of the base table and is kept up to date, so it can
+     * answer the queries of the base table.
+     * @return Whether the view is fresh.
+     */
+    public boolean isFresh() {
+        return maintained && !stale;
+    }
+
+    /**
+     * Determine whether the view must be refreshed: it is stale, or it is not maintained incrementally and
+     * its refresh interval has elapsed.
+     * @param now The current time in milliseconds.
+     * @return Whether the view must be refreshed.
+     */
+    public boolean needsRefresh(long now) {
+        return stale || !maintained && now - lastRefresh >= refreshInterval;
+    }
+
+    /**
+     * Mark the view as stale after a change of the base table that cannot be applied incrementally.
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Check that the query of a view can be stored in its columns: there is one selector per column,
+     * the columns read exist in the base table and, for aggregated views, the primary key of the view is
+     * formed by the columns of the grouping columns.
+     * @param definition The query of the view.
+     * @param base The base table.
+     * @param columnNames The names of the columns of the view.
+     * @param primaryKey The primary key of the view.
+     * @throws Exception If the view cannot store the query.
+     */
+    public static void validate(ViewDefinition definition, InMemoryTable base, String[] columnNames,
+            List<String> primaryKey) throws Exception {
+        List<InMemorySelector> selectors = definition.getSelectors();
+        if(selectors.size() != columnNames.length){
+            throw new Exception("Materialized view selects " + selectors.size() + " values but has "
+                    + columnNames.length + " columns");
+        }
+        for(InMemorySelector selector : selectors){
+            checkColumns(selector, base);
+        }
+        for(InMemoryRelation relation : definition.getRelations()){
+            base.getColumn(relation.getColumnName());
+        }
+        for(String column : definition.getGroupByColumns()){
+            base.getColumn(column);
+        }
+        if(!definition.isAggregated()){
+            return;
+        }
+        if(definition.getGroupByColumns().isEmpty()){
+            throw new Exception("Aggregated materialized views require a GROUP BY clause");
+        }
+        List<String> groupColumns = new ArrayList<>();
+        for(int index = 0; index < selectors.size(); index++){
+            InMemorySelector selector = selectors.get(index);
+            if(HashAggregation.isAggregation(selector)){
+                continue;
+            }
+            if(!InMemoryColumnSelector.class.isInstance(selector)
+                    || !definition.getGroupByColumns().contains(selector.getName())){
+                throw new Exception("Column " + columnNames[index] + " of materialized view must select a "
+                        + "grouping column or an aggregation");
+            }
+            groupColumns.add(columnNames[index]);
+        }
+        if(!primaryKey.containsAll(groupColumns) || !groupColumns.containsAll(primaryKey)){
+            throw new Exception("The primary key of the materialized view must be " + groupColumns);
+        }
+    }
+
+    /**
+     * Check that the columns read by a selector exist in a table.
+     * @param selector The selector.
+     * @param table The table.
+     * @throws Exception If a column does not exist.
+     */
+    private static void checkColumns(InMemorySelector selector, InMemoryTable table) throws Exception {
+        if(InMemoryColumnSelector.class.isInstance(selector)){
+            table.getColumn(selector.getName());
+        }else if(InMemoryFunctionSelector.class.isInstance(selector)){
+            for(InMemorySelector argument : InMemoryFunctionSelector.class.cast(selector).getArguments()){
+                checkColumns(argument, table);
+            }
+        }
+    }
+
+    /**
+     * Recompute the view from the base table. Writes to the base table wait until the view is replaced,
+     * so that the rows appended afterwards can be applied incrementally.
+     * @param base The base table.
+     * @param view The table of the view.
+     * @throws Exception If the query of the view cannot be evaluated.
+     */
+    public void refresh(InMemoryTable base, InMemoryTable view) throws Exception {
+        synchronized (base) {
+            TableSnapshot snapshot = base.snapshot();
+            Iterator<SimpleValue[]> rows;
+            if(definition.isAggregated()){
+                HashAggregation aggregation = new HashAggregation(snapshot, definition.getGroupByColumns(),
+                        definition.getSelectors(), Collections.<InMemoryHavingRelation>emptyList());
+                rows = SegmentScanner.sequential().aggregate(snapshot, definition.getRelations(), aggregation,
+                        new ScanMetrics()).iterator();
+            }else{
+                rows = SegmentScanner.sequential().scan(snapshot, definition.getRelations(),
+                        definition.getSelectors(), null, -1, new ScanMetrics());
+            }
+            InMemoryColumnBatch batch = newBatch(view);
+            while(rows.hasNext()){
+                batch.addRow(toValues(rows.next()));
+            }
+            view.reload(batch);
+            maintained = definition.isIncremental() && snapshot.getTable().getOptions().getTtl() == 0
+                    && snapshot.getTable().getOptions().getEvictionPolicy() == EvictionPolicy.NONE;
+            lastRefresh = System.currentTimeMillis();
+            stale = false;
+        }
+    }
+
+    /**
+     * Apply the rows appended to the base table by an insert. The caller must hold the lock of the base
+     * table from before the insert. If the insert replaced, expired, evicted or compacted rows of the
+     * base table, the view becomes stale instead; errors also make the view stale.
+     * @param before The snapshot of the base table before the insert.
+     * @param after The snapshot of the base table after the insert.
+     * @param inserted The number of rows inserted.
+     * @param view The table of the view.
+     */
+    public void applyInsert(TableSnapshot before, TableSnapshot after, int inserted, InMemoryTable view) {
+        if(!isFresh()){
+            return;
+        }
+        if(after.getNumRows() - before.getNumRows() != inserted || after.size() - before.size() != inserted){
+            stale = true;
+            return;
+        }
+        try {
+            if(definition.isAggregated()){
+                applyAggregation(after, before.getNumRows(), view);
+            }else{
+                Iterator<SimpleValue[]> rows = after.scanRange(after.compilePredicate(definition.getRelations()),
+                        definition.getSelectors(), before.getNumRows(), after.getNumRows(),
+                        new ScanMetrics().newSegment());
+                InMemoryColumnBatch batch = newBatch(view);
+                while(rows.hasNext()){
+                    batch.addRow(toValues(rows.next()));
+                }
+                if(batch.size() > 0){
+                    view.insert(batch);
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Cannot maintain materialized view " + name + ", it will be refreshed", e);
+            stale = true;
+        }
+    }
+
+    /**
+     * Aggregate the appended rows and combine each group with the group stored in the view.
+     * @param after The snapshot of the base table after the insert.
+     * @param start The position of the first appended row.
+     * @param view The table of the view.
+     * @throws Exception If the groups cannot be computed or stored.
+     */
+    private void applyAggregation(TableSnapshot after, int start, InMemoryTable view) throws Exception {
+        HashAggregation aggregation = new HashAggregation(after, definition.getGroupByColumns(),
+                definition.getSelectors(), Collections.<InMemoryHavingRelation>emptyList());
+        GroupTable groups = aggregation.newGroupTable();
+        MatchCursor cursor = after.matchRange(after.compilePredicate(definition.getRelations()), start,
+                after.getNumRows(), new ScanMetrics().newSegment());
+        for(int row = cursor.next(); row != MatchCursor.END; row = cursor.next()){
+            groups.add(row);
+        }
+        if(groups.size() == 0){
+            return;
+        }
+
+        String [] columnNames = view.getColumnNames();
+        List<InMemorySelector> outputColumns = new ArrayList<>();
+        for(String column : columnNames){
+            outputColumns.add(new InMemoryColumnSelector(column));
+        }
+        List<InMemorySelector> selectors = definition.getSelectors();
+        TableSnapshot stored = view.snapshot();
+        InMemoryColumnBatch batch = newBatch(view);
+        for(SimpleValue [] delta : aggregation.finish(groups)){
+            Object [] values = toValues(delta);
+            List<InMemoryRelation> key = new ArrayList<>();
+            for(int index = 0; index < values.length; index++){
+                if(!HashAggregation.isAggregation(selectors.get(index))){
+                    key.add(new InMemoryRelation(columnNames[index], InMemoryOperations.EQ, values[index]));
+                }
+            }
+            List<SimpleValue[]> previous = stored.search(key, outputColumns);
+            if(!previous.isEmpty()){
+                Object [] old = toValues(previous.get(0));
+                for(int index = 0; index < values.length; index++){
+                    if(HashAggregation.isAggregation(selectors.get(index))){
+                        values[index] = combine(selectors.get(index).getName(), old[index], values[index]);
+                    }
+                }
+            }
+            batch.addRow(values);
+        }
+        view.insert(batch);
+    }
+
+    /**
+     * Combine the value of an aggregation stored in the view with the value of the appended rows.
+     * @param function The name of the aggregation function.
+     * @param stored The stored value, or null.
+     * @param delta The value of the appended rows, or null.
+     * @return The combined value.
+     */
+    private static Object combine(String function, Object stored, Object delta) {
+        if(stored == null){
+            return delta;
+        }
+        if(delta == null){
+            return stored;
+        }
+        if("min".equals(function)){
+            return KeyComparator.INSTANCE.compare(stored, delta) <= 0 ? stored : delta;
+        }
+        if("max".equals(function)){
+            return KeyComparator.INSTANCE.compare(stored, delta) >= 0 ? stored : delta;
+        }
+        Number first = Number.class.cast(stored);
+        Number second = Number.class.cast(delta);
+        if(isIntegral(first) && isIntegral(second)){
+            return first.longValue() + second.longValue();
+        }
+        return first.doubleValue() + second.doubleValue();
+    }
+
+    /**
+     * Determine whether a number is integral.
+     * @param number The number.
+     * @return Whether it is an integer or a long.
+     */
+    private static boolean isIntegral(Number number) {
+        return Integer.class.isInstance(number) || Long.class.isInstance(number)
+                || Short.class.isInstance(number) || Byte.class.isInstance(number);
+    }
+
+    /**
+     * Create an empty batch with the columns of a view.
+     * @param view The table of the view.
+     * @return The {@link InMemoryColumnBatch}.
+     */
+    private static InMemoryColumnBatch newBatch(InMemoryTable view) {
+        return new InMemoryColumnBatch(Arrays.asList(view.getColumnNames()), 16);
+    }
+
+    /**
+     * Extract the values of a row.
+     * @param row The row.
+     * @return The values in order.
+     */
+    private static Object[] toValues(SimpleValue[] row) {
+        Object [] values = new Object[row.length];
+        for(int index = 0; index < row.length; index++){
+            values[index] = row[index].getValue();
+        }
+        return values;
+    }
+}
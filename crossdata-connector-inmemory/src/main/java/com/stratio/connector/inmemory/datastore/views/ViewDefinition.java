@@ -0,0 +1,615 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.views;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryQuery;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.aggregations.HashAggregation;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Query of a materialized view over a single table:
+ * {@code SELECT selector, ... FROM table [WHERE relation AND ...] [GROUP BY column, ...]}. Selectors are
+ * columns or functions of the datastore, relations compare a column with literals using =, &lt;, &gt;,
+ * &lt;=, &gt;=, IN or BETWEEN, and each selector is stored in the column of the view at the same
+ * position. Views that only filter the table, and aggregated views that only count, add or compare
+ * values, can be maintained incrementally as rows are appended to the table.
+ */
+public class ViewDefinition {
+
+    /**
+     * Aggregation functions whose value can be combined with the value of the appended rows.
+     */
+    private static final List<String> INCREMENTAL_FUNCTIONS = Arrays.asList("count", "sum", "min", "max");
+
+    /**
+     * Operators of the relations.
+     */
+    private static final Map<String, InMemoryOperations> OPERATORS = new HashMap<>();
+
+    static {
+        OPERATORS.put("=", InMemoryOperations.EQ);
+        OPERATORS.put(">", InMemoryOperations.GT);
+        OPERATORS.put("<", InMemoryOperations.LT);
+        OPERATORS.put(">=", InMemoryOperations.GET);
+        OPERATORS.put("<=", InMemoryOperations.LET);
+        OPERATORS.put("IN", InMemoryOperations.IN);
+        OPERATORS.put("BETWEEN", InMemoryOperations.BETWEEN);
+    }
+
+    /**
+     * Name of the table the view reads.
+     */
+    private final String baseTable;
+
+    /**
+     * Selector of each column of the view.
+     */
+    private final List<InMemorySelector> selectors;
+
+    /**
+     * Relations satisfied by the rows of the base table.
+     */
+    private final List<InMemoryRelation> relations;
+
+    /**
+     * Grouping columns of the base table.
+     */
+    private final List<String> groupByColumns;
+
+    /**
+     * Whether the view groups the rows or computes aggregation functions.
+     */
+    private final boolean aggregated;
+
+    /**
+     * Whether the view can be maintained as rows are appended to the base table.
+     */
+    private final boolean incremental;
+
+    /**
+     * Class constructor.
+     * @param baseTable The name of the table the view reads.
+     * @param selectors The selector of each column of the view.
+     * @param relations The relations satisfied by the rows of the base table.
+     * @param groupByColumns The grouping columns.
+     * @throws Exception If a function does not exist.
+     */
+    public ViewDefinition(String baseTable, List<InMemorySelector> selectors, List<InMemoryRelation> relations,
+            List<String> groupByColumns) throws Exception {
+        this.baseTable = baseTable;
+        this.selectors = Collections.unmodifiableList(new ArrayList<>(selectors));
+        this.relations = Collections.unmodifiableList(new ArrayList<>(relations));
+        this.groupByColumns = Collections.unmodifiableList(new ArrayList<>(groupByColumns));
+        boolean hasAggregations = false;
+        boolean combinable = true;
+        for(InMemorySelector selector : selectors){
+            checkFunctions(selector);
+            if(HashAggregation.isAggregation(selector)){
+                hasAggregations = true;
+                combinable &= INCREMENTAL_FUNCTIONS.contains(selector.getName());
+            }
+        }
+        this.aggregated = hasAggregations || !groupByColumns.isEmpty();
+        this.incremental = !aggregated || combinable;
+    }
+
+    /**
+     * Check that the functions of a selector exist.
+     * @param selector The selector.
+     * @throws Exception If a function does not exist.
+     */
+    private static void checkFunctions(InMemorySelector selector) throws Exception {
+        if(InMemoryFunctionSelector.class.isInstance(selector)){
+            InMemoryFunctionSelector function = InMemoryFunctionSelector.class.cast(selector);
+            if(!InMemoryFunctionSelector.exists(function.getName())){
+                throw new Exception("Unknown function " + function.getName() + " in materialized view");
+            }
+            for(InMemorySelector argument : function.getArguments()){
+                checkFunctions(argument);
+            }
+        }
+    }
+
+    /**
+     * Parse the query of a materialized view.
+     * @param query The query.
+     * @return The {@link ViewDefinition}.
+     * @throws Exception If the query is not valid.
+     */
+    public static ViewDefinition parse(String query) throws Exception {
+        return new Parser(query).parseQuery();
+    }
+
+    public String getBaseTable() {
+        return baseTable;
+    }
+
+    public List<InMemorySelector> getSelectors() {
+        return selectors;
+    }
+
+    public List<InMemoryRelation> getRelations() {
+        return relations;
+    }
+
+    public List<String> getGroupByColumns() {
+        return groupByColumns;
+    }
+
+    /**
+     * Determine whether the view groups the rows or computes aggregation functions.
+     * @return Whether the view is aggregated.
+     */
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * Determine whether the view can be maintained as rows are appended to the base table: it only
+     * filters and projects the rows, or its aggregations are counts, sums, minimums and maximums.
+     * @return Whether the view can be maintained incrementally.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Build the query that computes the contents of the view.
+     * @return An {@link InMemoryQuery} over the base table.
+     */
+    public InMemoryQuery toQuery() {
+        InMemoryQuery query = new InMemoryQuery(baseTable, new ArrayList<>(relations), new ArrayList<>(selectors));
+        query.getGroupByColumns().addAll(groupByColumns);
+        return query;
+    }
+
+    /**
+     * Rewrite a query over the base table to read the view. The query must have every relation of the
+     * view, and its other relations must compare columns stored in the view. Queries over an aggregated
+     * view must group by the same columns and select the grouping columns and aggregations of the view;
+     * their HAVING relations become relations over the stored aggregations. Queries over other views
+     * may select, group and aggregate the stored columns.
+     * @param query The query.
+     * @param viewName The name of the table of the view.
+     * @param viewColumns The name of the columns of the view, in the order of the selectors.
+     * @return The rewritten query, or null if the view cannot answer the query.
+     */
+    public InMemoryQuery rewrite(InMemoryQuery query, String viewName, String [] viewColumns) {
+        if(!baseTable.equals(query.getTableName())){
+            return null;
+        }
+        List<InMemoryRelation> residual = new ArrayList<>(query.getRelations());
+        for(InMemoryRelation relation : relations){
+            if(!removeRelation(residual, relation)){
+                return null;
+            }
+        }
+        Map<String, String> columns = new HashMap<>();
+        for(int index = 0; index < selectors.size(); index++){
+            if(InMemoryColumnSelector.class.isInstance(selectors.get(index))){
+                columns.put(selectors.get(index).getName(), viewColumns[index]);
+            }
+        }
+
+        InMemoryQuery result = new InMemoryQuery();
+        result.setTableName(viewName);
+        result.setCatalogName(query.getCatalogName());
+        result.setJoinType(query.getJoinType());
+        for(InMemoryRelation relation : residual){
+            if(!InMemoryRelation.class.equals(relation.getClass()) || !columns.containsKey(relation.getColumnName())){
+                return null;
+            }
+            result.getRelations().add(new InMemoryRelation(columns.get(relation.getColumnName()),
+                    relation.getRelation(), relation.getRightPart()));
+        }
+        if(aggregated){
+            if(!new HashSet<>(groupByColumns).equals(new HashSet<>(query.getGroupByColumns()))){
+                return null;
+            }
+            for(InMemorySelector selector : query.getOutputColumns()){
+                InMemorySelector stored = findStored(selector, viewColumns);
+                if(stored == null){
+                    return null;
+                }
+                result.getOutputColumns().add(stored);
+            }
+            for(InMemoryHavingRelation having : query.getHaving()){
+                InMemorySelector stored = findStored(having.getSelector(), viewColumns);
+                if(!InMemoryColumnSelector.class.isInstance(stored)){
+                    return null;
+                }
+                result.getRelations().add(new InMemoryRelation(stored.getName(), having.getRelation(),
+                        having.getRightPart()));
+            }
+            return result;
+        }
+        for(InMemorySelector selector : query.getOutputColumns()){
+            InMemorySelector renamed = rename(selector, columns);
+            if(renamed == null){
+                return null;
+            }
+            result.getOutputColumns().add(renamed);
+        }
+        for(String column : query.getGroupByColumns()){
+            if(!columns.containsKey(column)){
+                return null;
+            }
+            result.getGroupByColumns().add(columns.get(column));
+        }
+        for(InMemoryHavingRelation having : query.getHaving()){
+            InMemorySelector renamed = rename(having.getSelector(), columns);
+            if(renamed == null){
+                return null;
+            }
+            result.getHaving().add(new InMemoryHavingRelation(renamed, having.getRelation(), having.getRightPart()));
+        }
+        return result;
+    }
+
+    /**
+     * Remove a relation equal to a given one from a list.
+     * @param relations The list of relations.
+     * @param relation The relation.
+     * @return Whether the relation was found.
+     */
+    private static boolean removeRelation(List<InMemoryRelation> relations, InMemoryRelation relation){
+        for(int index = 0; index < relations.size(); index++){
+            InMemoryRelation candidate = relations.get(index);
+            if(relation.getColumnName().equals(candidate.getColumnName())
+                    && relation.getRelation() == candidate.getRelation()
+                    && String.valueOf(relation.getRightPart()).equals(String.valueOf(candidate.getRightPart()))){
+                relations.remove(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the column of the view that stores the value of a selector.
+     * @param selector The selector of the query.
+     * @param viewColumns The name of the columns of the view.
+     * @return A selector of the column, the literal itself, or null if the view does not store the value.
+     */
+    private InMemorySelector findStored(InMemorySelector selector, String [] viewColumns){
+        if(InMemoryLiteralSelector.class.isInstance(selector)){
+            return selector;
+        }
+        for(int index = 0; index < selectors.size(); index++){
+            if(isSame(selectors.get(index), selector)){
+                return new InMemoryColumnSelector(viewColumns[index]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the columns of the base table of a selector with the columns of the view.
+     * @param selector The selector of the query.
+     * @param columns Map associating the columns of the base table with the columns of the view.
+     * @return The renamed selector, or null if a column is not stored in the view.
+     */
+    private static InMemorySelector rename(InMemorySelector selector, Map<String, String> columns){
+        if(InMemoryColumnSelector.class.isInstance(selector)){
+            String column = columns.get(selector.getName());
+            return column == null ? null : new InMemoryColumnSelector(column);
+        }
+        if(InMemoryFunctionSelector.class.isInstance(selector)){
+            List<InMemorySelector> arguments = new ArrayList<>();
+            for(InMemorySelector argument : InMemoryFunctionSelector.class.cast(selector).getArguments()){
+                InMemorySelector renamed = rename(argument, columns);
+                if(renamed == null){
+                    return null;
+                }
+                arguments.add(renamed);
+            }
+            return new InMemoryFunctionSelector(selector.getName(), arguments);
+        }
+        return InMemoryLiteralSelector.class.isInstance(selector) ? selector : null;
+    }
+
+    /**
+     * Determine whether two selectors compute the same value.
+     * @param first The first selector.
+     * @param second The second selector.
+     * @return Whether both are the same column, literal or function of the same arguments.
+     */
+    private static boolean isSame(InMemorySelector first, InMemorySelector second){
+        if(!first.getClass().equals(second.getClass()) || !first.getName().equals(second.getName())){
+            return false;
+        }
+        if(InMemoryFunctionSelector.class.isInstance(first)){
+            List<InMemorySelector> firstArguments = InMemoryFunctionSelector.class.cast(first).getArguments();
+            List<InMemorySelector> secondArguments = InMemoryFunctionSelector.class.cast(second).getArguments();
+            if(firstArguments.size() != secondArguments.size()){
+                return false;
+            }
+            for(int index = 0; index < firstArguments.size(); index++){
+                if(!isSame(firstArguments.get(index), secondArguments.get(index))){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recursive descent parser of the queries of the views.
+     */
+    private static final class Parser {
+
+        /**
+         * The query.
+         */
+        private final String query;
+
+        /**
+         * Position of the next character.
+         */
+        private int position = 0;
+
+        /**
+         * The current token, or null at the end of the query.
+         */
+        private String token;
+
+        /**
+         * Whether the current token is a quoted string.
+         */
+        private boolean quoted;
+
+        /**
+         * Class constructor.
+         * @param query The query.
+         * @throws Exception If the first token is not valid.
+         */
+        Parser(String query) throws Exception {
+            this.query = query;
+            next();
+        }
+
+        /**
+         * Parse the whole query.
+         * @return The {@link ViewDefinition}.
+         * @throws Exception If the query is not valid.
+         */
+        ViewDefinition parseQuery() throws Exception {
+            expect("SELECT");
+            List<InMemorySelector> selectors = new ArrayList<>();
+            do {
+                selectors.add(parseSelector());
+            } while(accept(","));
+            expect("FROM");
+            String table = parseIdentifier();
+            List<InMemoryRelation> relations = new ArrayList<>();
+            if(accept("WHERE")){
+                do {
+                    relations.add(parseRelation());
+                } while(accept("AND"));
+            }
+            List<String> groupByColumns = new ArrayList<>();
+            if(accept("GROUP")){
+                expect("BY");
+                do {
+                    groupByColumns.add(parseIdentifier());
+                } while(accept(","));
+            }
+            if(token != null){
+                throw error("end of query");
+            }
+            return new ViewDefinition(table.substring(table.lastIndexOf('.') + 1), selectors, relations,
+                    groupByColumns);
+        }
+
+        /**
+         * Parse a column, a function or, as an argument of a function, a literal or an asterisk.
+         * @return The {@link InMemorySelector}.
+         * @throws Exception If the selector is not valid.
+         */
+        private InMemorySelector parseSelector() throws Exception {
+            String name = parseIdentifier();
+            if(!accept("(")){
+                return new InMemoryColumnSelector(name);
+            }
+            List<InMemorySelector> arguments = new ArrayList<>();
+            if(!accept(")")){
+                do {
+                    if(accept("*")){
+                        arguments.add(new InMemoryLiteralSelector("*"));
+                    }else if(quoted || isNumber()){
+                        arguments.add(new InMemoryLiteralSelector(token));
+                        next();
+                    }else{
+                        arguments.add(parseSelector());
+                    }
+                } while(accept(","));
+                expect(")");
+            }
+            return new InMemoryFunctionSelector(name, arguments);
+        }
+
+        /**
+         * Parse a relation between a column and literals.
+         * @return The {@link InMemoryRelation}.
+         * @throws Exception If the relation is not valid.
+         */
+        private InMemoryRelation parseRelation() throws Exception {
+            String column = parseIdentifier();
+            InMemoryOperations operation = token == null || quoted ? null : OPERATORS.get(token.toUpperCase());
+            if(operation == null){
+                throw error("comparison operator");
+            }
+            next();
+            Object rightPart;
+            if(operation == InMemoryOperations.IN){
+                expect("(");
+                List<Object> values = new ArrayList<>();
+                do {
+                    values.add(parseLiteral());
+                } while(accept(","));
+                expect(")");
+                rightPart = values;
+            }else if(operation == InMemoryOperations.BETWEEN){
+                Object lower = parseLiteral();
+                expect("AND");
+                rightPart = Arrays.asList(lower, parseLiteral());
+            }else{
+                rightPart = parseLiteral();
+            }
+            return new InMemoryRelation(column, operation, rightPart);
+        }
+
+        /**
+         * Parse a string, a number or a boolean.
+         * @return The value.
+         * @throws Exception If the token is not a literal.
+         */
+        private Object parseLiteral() throws Exception {
+            Object value;
+            if(token == null){
+                throw error("literal");
+            }else if(quoted){
+                value = token;
+            }else if("true".equalsIgnoreCase(token) || "false".equalsIgnoreCase(token)){
+                value = Boolean.valueOf(token);
+            }else if(isNumber()){
+                value = token.contains(".") ? (Object) Double.valueOf(token) : (Object) Long.valueOf(token);
+            }else{
+                throw error("literal");
+            }
+            next();
+            return value;
+        }
+
+        /**
+         * Parse an identifier.
+         * @return The identifier.
+         * @throws Exception If the token is not an identifier.
+         */
+        private String parseIdentifier() throws Exception {
+            if(token == null || quoted || !Character.isLetter(token.charAt(0)) && token.charAt(0) != '_'){
+                throw error("identifier");
+            }
+            String identifier = token;
+            next();
+            return identifier;
+        }
+
+        /**
+         * Determine whether the current token is a number.
+         * @return Whether it is a number.
+         */
+        private boolean isNumber(){
+            return token != null && !quoted && (Character.isDigit(token.charAt(0))
+                    || token.length() > 1 && token.charAt(0) == '-');
+        }
+
+        /**
+         * Consume the current token if it is a given keyword or symbol.
+         * @param expected The keyword or symbol, keywords are not case sensitive.
+         * @return Whether the token was consumed.
+         * @throws Exception If the next token is not valid.
+         */
+        private boolean accept(String expected) throws Exception {
+            if(token != null && !quoted && token.equalsIgnoreCase(expected)){
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consume the current token, which must be a given keyword or symbol.
+         * @param expected The keyword or symbol.
+         * @throws Exception If the token is not the expected one.
+         */
+        private void expect(String expected) throws Exception {
+            if(!accept(expected)){
+                throw error(expected);
+            }
+        }
+
+        /**
+         * Build the error of an unexpected token.
+         * @param expected The description of the expected token.
+         * @return The exception.
+         */
+        private Exception error(String expected){
+            return new Exception("Invalid materialized view " + query + ": expecting " + expected + " but found "
+                    + (token == null ? "end of query" : token));
+        }
+
+        /**
+         * Read the next token: an identifier, a number, a quoted string or a symbol.
+         * @throws Exception If a string is not terminated or a character is not valid.
+         */
+        private void next() throws Exception {
+            while(position < query.length() && Character.isWhitespace(query.charAt(position))){
+                position++;
+            }
+            quoted = false;
+            if(position == query.length()){
+                token = null;
+                return;
+            }
+            int start = position;
+            char first = query.charAt(position);
+            if(first == '\'' || first == '"'){
+                int end = query.indexOf(first, position + 1);
+                if(end < 0){
+                    throw new Exception("Invalid materialized view " + query + ": unterminated string");
+                }
+                token = query.substring(position + 1, end);
+                quoted = true;
+                position = end + 1;
+            }else if(Character.isLetterOrDigit(first) || first == '_'
+                    || first == '-' && position + 1 < query.length() && Character.isDigit(query.charAt(position + 1))){
+                position++;
+                while(position < query.length() && (Character.isLetterOrDigit(query.charAt(position))
+                        || query.charAt(position) == '_' || query.charAt(position) == '.')){
+                    position++;
+                }
+                token = query.substring(start, position);
+            }else if((first == '<' || first == '>') && position + 1 < query.length()
+                    && query.charAt(position + 1) == '='){
+                position += 2;
+                token = query.substring(start, position);
+            }else if("(),*=<>".indexOf(first) >= 0){
+                position++;
+                token = String.valueOf(first);
+            }else{
+                throw new Exception("Invalid materialized view " + query + ": unexpected character " + first);
+            }
+        }
+    }
+}
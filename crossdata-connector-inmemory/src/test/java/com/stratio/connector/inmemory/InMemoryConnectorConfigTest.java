@@ -0,0 +1,60 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Connector settings tests.
+ */
+public class InMemoryConnectorConfigTest {
+
+    @Test
+    public void readSettings(){
+        InMemoryConnectorConfig config = new InMemoryConnectorConfig(ConfigFactory.parseString(
+                InMemoryConnectorConfig.SCAN_PARALLELISM + " = 3\n"
+                + InMemoryConnectorConfig.SCAN_SEGMENT_SIZE + " = 1024\n"
+                + InMemoryConnectorConfig.QUERY_THREADS + " = 2\n"
+                + InMemoryConnectorConfig.QUERY_QUEUE_SIZE + " = 10\n"
+                + InMemoryConnectorConfig.MAINTENANCE_INTERVAL + " = 500"));
+        assertEquals(config.getScanParallelism(), 3, "Invalid parallelism");
+        assertEquals(config.getScanSegmentSize(), 1024, "Invalid segment size");
+        assertEquals(config.getQueryThreads(), 2, "Invalid number of query threads");
+        assertEquals(config.getQueryQueueSize(), 10, "Invalid query queue size");
+        assertEquals(config.getMaintenanceInterval(), 500, "Invalid maintenance interval");
+    }
+
+    @Test
+    public void defaultSettings(){
+        InMemoryConnectorConfig config = new InMemoryConnectorConfig(ConfigFactory.parseString(
+                InMemoryConnectorConfig.SCAN_SEGMENT_SIZE + " = invalid"));
+        assertEquals(config.getScanParallelism(), Runtime.getRuntime().availableProcessors(),
+                "The parallelism should default to the number of processors");
+        assertEquals(config.getScanSegmentSize(), SegmentScanner.DEFAULT_SEGMENT_SIZE, "Invalid default segment size");
+        assertEquals(config.getQueryQueueSize(), InMemoryConnectorConfig.DEFAULT_QUERY_QUEUE_SIZE,
+                "Invalid default query queue size");
+        assertEquals(config.getMaintenanceInterval(), InMemoryConnectorConfig.DEFAULT_MAINTENANCE_INTERVAL,
+                "Invalid default maintenance interval");
+    }
+}
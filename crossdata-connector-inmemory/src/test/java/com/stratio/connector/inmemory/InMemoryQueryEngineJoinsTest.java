@@ -25,6 +25,7 @@ import static org.testng.Assert.fail;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -34,7 +35,9 @@ import java.util.Set;
 import org.testng.annotations.Test;
 
 import com.stratio.crossdata.common.data.ColumnName;
+import com.stratio.crossdata.common.data.JoinType;
 import com.stratio.crossdata.common.data.ResultSet;
+import com.stratio.crossdata.common.data.Row;
 import com.stratio.crossdata.common.exceptions.ConnectorException;
 import com.stratio.crossdata.common.logicalplan.Filter;
 import com.stratio.crossdata.common.logicalplan.Join;
@@ -154,6 +157,140 @@ public class InMemoryQueryEngineJoinsTest extends InMemoryQueryEngineTestParent
         checkResultMetadata(results, new String[]{"name", "phone"}, new ColumnType[]{new ColumnType(DataType.TEXT), new ColumnType(DataType.TEXT)});
     }
 
+    @Test
+    public void leftOuterJoin() {
+        TableMetadata usersTable = buildUsersTable();
+        TableMetadata phonesTable = buildPhonesTable();
+        insertUser(usersTable, NUM_ROWS);
+        insertUser(usersTable, NUM_ROWS + 1);
+
+        ResultSet results = executeJoin(usersTable, phonesTable, JoinType.LEFT_OUTER,
+                Operations.SELECT_LEFT_OUTER_JOIN, new String[]{"id"}, new String[]{"user_id"});
+
+        assertEquals(results.size(), NUM_ROWS + 2, "Invalid number of results returned");
+        assertEquals(countNulls(results, "phone"), 2, "Users without phones should have a null phone");
+    }
+
+    @Test
+    public void rightOuterJoin() {
+        TableMetadata usersTable = buildUsersTable();
+        TableMetadata phonesTable = buildPhonesTable();
+        insertPhone(phonesTable, 100, 100);
+
+        ResultSet results = executeJoin(usersTable, phonesTable, JoinType.RIGHT_OUTER,
+                Operations.SELECT_RIGHT_OUTER_JOIN, new String[]{"id"}, new String[]{"user_id"});
+
+        assertEquals(results.size(), NUM_ROWS + 1, "Invalid number of results returned");
+        assertEquals(countNulls(results, "name"), 1, "Phones without users should have a null name");
+    }
+
+    @Test
+    public void crossJoin() {
+        TableMetadata usersTable = buildUsersTable();
+        TableMetadata phonesTable = buildPhonesTable();
+
+        ResultSet results = executeJoin(usersTable, phonesTable, JoinType.CROSS,
+                Operations.SELECT_CROSS_JOIN, new String[0], new String[0]);
+
+        assertEquals(results.size(), NUM_ROWS * NUM_ROWS, "Invalid number of results returned");
+    }
+
+    @Test
+    public void multiColumnJoin() {
+        TableMetadata usersTable = buildUsersTable();
+        TableMetadata phonesTable = buildPhonesTable();
+        insertUser(usersTable, NUM_ROWS);
+        insertPhone(phonesTable, NUM_ROWS, NUM_ROWS + 1);
+
+        ResultSet results = executeJoin(usersTable, phonesTable, JoinType.INNER,
+                Operations.SELECT_INNER_JOIN, new String[]{"id", "id"}, new String[]{"id", "user_id"});
+
+        assertEquals(results.size(), NUM_ROWS, "Rows should match on every join column");
+    }
+
+    /**
+     * Execute a join between the users and the phones tables.
+     * @param usersTable The users table.
+     * @param phonesTable The phones table.
+     * @param type The type of join.
+     * @param operation The join operation.
+     * @param usersColumns The join columns of the users table.
+     * @param phonesColumns The join columns of the phones table.
+     * @return The {@link ResultSet}.
+     */
+    private ResultSet executeJoin(TableMetadata usersTable, TableMetadata phonesTable, JoinType type,
+            Operations operation, String[] usersColumns, String[] phonesColumns) {
+        String [] usersColumnNames = {"id", "name"};
+        ColumnType[] usersTypes = {new ColumnType(DataType.INT), new ColumnType(DataType.TEXT)};
+
+        String [] phonesColumnNames = {"id", "user_id", "phone"};
+        ColumnType[] phonesTypes = {new ColumnType(DataType.INT), new ColumnType(DataType.INT), new ColumnType(DataType.TEXT)};
+
+        Project projectUsers = generateProjectAndSelect(usersColumnNames, usersTypes, usersTable.getName());
+        Project projectPhones = generateProjectAndSelect(phonesColumnNames, phonesTypes, phonesTable.getName());
+
+        Join join = new Join(Collections.singleton(operation), type.name());
+        join.setType(type);
+        join.getSourceIdentifiers().add(usersTable.getName().getQualifiedName());
+        join.getSourceIdentifiers().add(phonesTable.getName().getQualifiedName());
+        for(int index = 0; index < usersColumns.length; index++){
+            Selector left = new ColumnSelector(new ColumnName(usersTable.getName(), usersColumns[index]));
+            Selector right = new ColumnSelector(new ColumnName(phonesTable.getName(), phonesColumns[index]));
+            join.addJoinRelation(new Relation(left, Operator.EQ, right));
+        }
+        projectUsers.getNextStep().setNextStep(join);
+        projectPhones.getNextStep().setNextStep(join);
+        join.setPreviousSteps(Arrays.asList(projectUsers.getNextStep(), projectPhones.getNextStep()));
+
+        Select select = getSelect(usersTable, phonesTable);
+        join.setNextStep(select);
+        select.setPrevious(join);
+
+        LogicalWorkflow workflow = new LogicalWorkflow(Arrays.<LogicalStep>asList(projectUsers, projectPhones));
+        workflow.setLastStep(select);
+
+        ResultSet results = null;
+        try {
+            results = connector.getQueryEngine().execute(workflow).getResultSet();
+        } catch (ConnectorException e) {
+            fail("Cannot retrieve data", e);
+        }
+        checkResultMetadata(results, new String[]{"name", "phone"}, new ColumnType[]{new ColumnType(DataType.TEXT), new ColumnType(DataType.TEXT)});
+        return results;
+    }
+
+    /**
+     * Count the number of null values of a column.
+     * @param results The {@link ResultSet}.
+     * @param column The column alias.
+     * @return The number of null values.
+     */
+    private int countNulls(ResultSet results, String column) {
+        int nulls = 0;
+        for(Row row : results.getRows()){
+            if(row.getCell(column).getValue() == null){
+                nulls++;
+            }
+        }
+        return nulls;
+    }
+
+    private void insertUser(TableMetadata usersTable, int id) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("name", "User-" + id);
+        values.put("boss", false);
+        insertTestData(clusterName, usersTable, values);
+    }
+
+    private void insertPhone(TableMetadata phonesTable, int id, int userId) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", id);
+        values.put("user_id", userId);
+        values.put("phone", "555-555-" + id);
+        insertTestData(clusterName, phonesTable, values);
+    }
+
     private Select getSelect(TableMetadata usersTable, TableMetadata phonesTable) {
         Map<Selector, String> columnMap = new LinkedHashMap<>();
         Map<String, ColumnType> typeMap = new LinkedHashMap<>();
@@ -0,0 +1,330 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory;
+
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+import com.stratio.crossdata.common.connector.IQueryEngine;
+import com.stratio.crossdata.common.connector.IResultHandler;
+import com.stratio.crossdata.common.data.ResultSet;
+import com.stratio.crossdata.common.exceptions.ConnectorException;
+import com.stratio.crossdata.common.exceptions.ExecutionException;
+import com.stratio.crossdata.common.logicalplan.Limit;
+import com.stratio.crossdata.common.logicalplan.LogicalStep;
+import com.stratio.crossdata.common.logicalplan.LogicalWorkflow;
+import com.stratio.crossdata.common.logicalplan.OrderBy;
+import com.stratio.crossdata.common.logicalplan.Project;
+import com.stratio.crossdata.common.logicalplan.Select;
+import com.stratio.crossdata.common.logicalplan.Window;
+import com.stratio.crossdata.common.metadata.ColumnType;
+import com.stratio.crossdata.common.metadata.DataType;
+import com.stratio.crossdata.common.metadata.Operations;
+import com.stratio.crossdata.common.metadata.TableMetadata;
+import com.stratio.crossdata.common.result.QueryResult;
+import com.stratio.crossdata.common.statements.structures.OrderDirection;
+import com.stratio.crossdata.common.statements.structures.window.WindowType;
+
+/**
+ * Paged execution and limit tests.
+ */
+public class InMemoryQueryEnginePagingTest extends InMemoryQueryEngineTestParent {
+
+    /**
+     * Maximum number of seconds to wait for a query running in the background.
+     */
+    private static final int TIMEOUT_SECONDS = 10;
+
+    /**
+     * Result handler that stores the pages received.
+     */
+    private static class PageCollector implements IResultHandler {
+
+        /**
+         * The pages received.
+         */
+        private final List<QueryResult> pages = Collections.synchronizedList(new ArrayList<QueryResult>());
+
+        /**
+         * Latch released when the last page or an error is received.
+         */
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        /**
+         * The error received, if any.
+         */
+        private volatile ExecutionException exception = null;
+
+        @Override
+        public void processException(String queryId, ExecutionException exception) {
+            this.exception = exception;
+            finished.countDown();
+        }
+
+        @Override
+        public void processResult(QueryResult result) {
+            pages.add(result);
+            if(result.isLastResultSet()){
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Wait until the query finishes.
+         * @return The error received, or null if the query succeeded.
+         */
+        ExecutionException await(){
+            try {
+                assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "The query did not finish");
+            } catch (InterruptedException e) {
+                fail("Interrupted while waiting for the query", e);
+            }
+            return exception;
+        }
+    }
+
+    /**
+     * Build a workflow selecting the id of the users.
+     * @param usersTable The users table.
+     * @param orderBy The optional order by step.
+     * @param limit The limit or -1 for no limit.
+     * @return A {@link com.stratio.crossdata.common.logicalplan.LogicalWorkflow}.
+     */
+    private LogicalWorkflow buildWorkflow(TableMetadata usersTable, OrderBy orderBy, int limit){
+        String [] columnNames = {"id"};
+        ColumnType[] types = {new ColumnType(DataType.INT)};
+        Project project = generateProjectAndSelect(columnNames, types, usersTable.getName(), orderBy);
+        if(limit != -1){
+            LogicalStep previous = orderBy != null ? orderBy : project;
+            Select select = Select.class.cast(previous.getNextStep());
+            Limit limitStep = new Limit(Collections.singleton(Operations.SELECT_LIMIT), limit);
+            previous.setNextStep(limitStep);
+            limitStep.setPrevious(previous);
+            limitStep.setNextStep(select);
+            select.setPrevious(limitStep);
+        }
+        return new LogicalWorkflow(singletonList((LogicalStep) project));
+    }
+
+    /**
+     * Execute a workflow in pages.
+     * @param workflow The workflow.
+     * @param pageSize The page size.
+     * @return The pages received.
+     */
+    private List<QueryResult> executePaged(LogicalWorkflow workflow, int pageSize){
+        PageCollector collector = new PageCollector();
+        try {
+            connector.getQueryEngine().pagedExecute("query", workflow, collector, pageSize);
+        } catch (ConnectorException e) {
+            fail("Cannot retrieve data", e);
+        }
+        ExecutionException exception = collector.await();
+        if(exception != null){
+            fail("Unexpected exception in query", exception);
+        }
+        return collector.pages;
+    }
+
+    @Test
+    public void pagedExecute() {
+        List<QueryResult> pages = executePaged(buildWorkflow(buildUsersTable(), null, -1), 3);
+        assertEquals(pages.size(), 4, "Invalid number of pages");
+        int rows = 0;
+        for(int index = 0; index < pages.size(); index++){
+            QueryResult page = pages.get(index);
+            assertEquals(page.getResultPage(), index, "Invalid page number");
+            assertEquals(page.isLastResultSet(), index == pages.size() - 1, "Invalid last page flag");
+            assertEquals(page.getQueryId(), "query", "Invalid query id");
+            rows += page.getResultSet().size();
+        }
+        assertEquals(pages.get(0).getResultSet().size(), 3, "Invalid page size");
+        assertEquals(rows, NUM_ROWS, "Invalid number of rows");
+    }
+
+    @Test
+    public void pagedExecuteExactPages() {
+        List<QueryResult> pages = executePaged(buildWorkflow(buildUsersTable(), null, -1), NUM_ROWS / 2);
+        assertEquals(pages.size(), 2, "No empty page should be sent");
+        assertTrue(pages.get(1).isLastResultSet(), "The second page should be the last one");
+    }
+
+    @Test
+    public void pagedExecuteWithLimit() {
+        List<QueryResult> pages = executePaged(buildWorkflow(buildUsersTable(), null, 4), 3);
+        assertEquals(pages.size(), 2, "Invalid number of pages");
+        assertFalse(pages.get(0).isLastResultSet(), "The first page should not be the last one");
+        assertEquals(pages.get(1).getResultSet().size(), 1, "Invalid size of the last page");
+    }
+
+    @Test
+    public void executeWithLimit() throws ConnectorException {
+        ResultSet results = connector.getQueryEngine().execute(buildWorkflow(buildUsersTable(), null, 3)).getResultSet();
+        assertEquals(results.size(), 3, "Invalid number of results returned");
+    }
+
+    @Test
+    public void executeWithOrderAndLimit() throws ConnectorException {
+        TableMetadata usersTable = buildUsersTable();
+        OrderBy orderBy = generateOrderByClausule(usersTable.getName(), "id", OrderDirection.DESC);
+        ResultSet results = connector.getQueryEngine().execute(buildWorkflow(usersTable, orderBy, 3)).getResultSet();
+        assertEquals(results.size(), 3, "Invalid number of results returned");
+        for(int index = 0; index < results.size(); index++){
+            assertEquals(results.getRows().get(index).getCell("id").getValue(), NUM_ROWS - 1 - index,
+                    "Invalid order");
+        }
+    }
+
+    @Test
+    public void stopPagedQuery() throws ConnectorException {
+        final IQueryEngine engine = connector.getQueryEngine();
+        PageCollector collector = new PageCollector(){
+            @Override
+            public void processResult(QueryResult result) {
+                super.processResult(result);
+                try {
+                    engine.stop("stopped");
+                } catch (ConnectorException e) {
+                    fail("Cannot stop the query", e);
+                }
+            }
+        };
+        engine.pagedExecute("stopped", buildWorkflow(buildUsersTable(), null, -1), collector, 3);
+        ExecutionException exception = collector.await();
+        assertTrue(exception != null && exception.getMessage().contains("stopped on request"),
+                "The query should be stopped: " + exception);
+        assertEquals(collector.pages.size(), 1, "No page should be sent after stopping the query");
+        try {
+            engine.stop("missing");
+            fail("Queries that are not running cannot be stopped");
+        } catch (ExecutionException e) {
+            assertTrue(e.getMessage().contains("not running"), "Invalid error: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void pagedExecuteReturnsImmediately() throws Exception {
+        final CountDownLatch returned = new CountDownLatch(1);
+        final AtomicBoolean notBlocked = new AtomicBoolean(false);
+        PageCollector collector = new PageCollector(){
+            @Override
+            public void processResult(QueryResult result) {
+                try {
+                    notBlocked.compareAndSet(false, returned.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.processResult(result);
+            }
+        };
+        connector.getQueryEngine().pagedExecute("background", buildWorkflow(buildUsersTable(), null, -1), collector, 3);
+        returned.countDown();
+        assertEquals(collector.await(), null, "Unexpected exception");
+        assertTrue(notBlocked.get(), "Pages should be produced after the call returns");
+        assertEquals(collector.pages.size(), 4, "Invalid number of pages");
+    }
+
+    @Test
+    public void asyncExecute() throws Exception {
+        PageCollector collector = new PageCollector();
+        connector.getQueryEngine().asyncExecute("async", buildWorkflow(buildUsersTable(), null, -1), collector);
+        assertEquals(collector.await(), null, "Unexpected exception");
+        assertEquals(collector.pages.size(), 1, "Invalid number of results");
+        assertEquals(collector.pages.get(0).getResultSet().size(), NUM_ROWS, "Invalid number of rows");
+        assertEquals(collector.pages.get(0).getQueryId(), "async", "Invalid query id");
+    }
+
+    /**
+     * Add a window step before the select step of a single table workflow.
+     * @param workflow The workflow.
+     * @param window The window step.
+     * @return The workflow.
+     */
+    private LogicalWorkflow addWindow(LogicalWorkflow workflow, Window window){
+        LogicalStep previous = workflow.getInitialSteps().get(0);
+        Select select = Select.class.cast(previous.getNextStep());
+        previous.setNextStep(window);
+        window.setPrevious(previous);
+        window.setNextStep(select);
+        select.setPrevious(window);
+        return workflow;
+    }
+
+    @Test
+    public void windowQuery() throws Exception {
+        TableMetadata usersTable = buildUsersTable();
+        Window window = new Window(Collections.singleton(Operations.SELECT_WINDOW), WindowType.TEMPORAL);
+        window.setTimeWindow(1, com.stratio.crossdata.common.statements.structures.window.TimeUnit.SECONDS);
+        PageCollector collector = new PageCollector();
+        IQueryEngine engine = connector.getQueryEngine();
+        engine.asyncExecute("window", addWindow(buildWorkflow(usersTable, null, -1), window), collector);
+        for(int id = NUM_ROWS; id < NUM_ROWS + 3; id++){
+            Map<String, Object> values = new HashMap<>();
+            values.put("id", id);
+            values.put("name", "User-" + id);
+            values.put("boss", false);
+            insertTestData(clusterName, usersTable, values);
+        }
+        List<Object> ids = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while(ids.size() < 3 && System.currentTimeMillis() < deadline){
+            Thread.sleep(100);
+            synchronized (collector.pages){
+                ids.clear();
+                for(QueryResult page : collector.pages){
+                    assertFalse(page.isLastResultSet(), "Window queries should not finish");
+                    for(int row = 0; row < page.getResultSet().size(); row++){
+                        ids.add(page.getResultSet().getRows().get(row).getCell("id").getValue());
+                    }
+                }
+            }
+        }
+        engine.stop("window");
+        assertEquals(collector.exception, null, "Unexpected exception");
+        assertEquals(ids, Arrays.<Object>asList(NUM_ROWS, NUM_ROWS + 1, NUM_ROWS + 2),
+                "Only the inserted rows should be returned");
+        int pages = collector.pages.size();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+        assertEquals(collector.pages.size(), pages, "No page should be sent after stopping the query");
+
+        window = new Window(Collections.singleton(Operations.SELECT_WINDOW), WindowType.NUM_ROWS);
+        window.setNumRows(5);
+        try {
+            engine.asyncExecute("rows", addWindow(buildWorkflow(usersTable, null, -1), window), collector);
+            fail("Row windows should not be supported");
+        } catch (ConnectorException e) {
+            assertTrue(e.getMessage().contains("time windows"), "Invalid error: " + e.getMessage());
+        }
+    }
+}
@@ -27,9 +27,11 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,7 +50,10 @@ import com.stratio.crossdata.common.data.TableName;
 import com.stratio.crossdata.common.exceptions.ConnectorException;
 import com.stratio.crossdata.common.exceptions.ExecutionException;
 import com.stratio.crossdata.common.exceptions.UnsupportedException;
+import com.stratio.crossdata.common.logicalplan.Disjunction;
 import com.stratio.crossdata.common.logicalplan.Filter;
+import com.stratio.crossdata.common.logicalplan.GroupBy;
+import com.stratio.crossdata.common.logicalplan.ITerm;
 import com.stratio.crossdata.common.logicalplan.LogicalStep;
 import com.stratio.crossdata.common.logicalplan.LogicalWorkflow;
 import com.stratio.crossdata.common.logicalplan.OrderBy;
@@ -59,6 +64,8 @@ import com.stratio.crossdata.common.metadata.DataType;
 import com.stratio.crossdata.common.metadata.Operations;
 import com.stratio.crossdata.common.metadata.TableMetadata;
 import com.stratio.crossdata.common.result.QueryResult;
+import com.stratio.crossdata.common.statements.structures.AbstractRelation;
+import com.stratio.crossdata.common.statements.structures.AsteriskSelector;
 import com.stratio.crossdata.common.statements.structures.BooleanSelector;
 import com.stratio.crossdata.common.statements.structures.ColumnSelector;
 import com.stratio.crossdata.common.statements.structures.FloatingPointSelector;
@@ -156,6 +163,42 @@ public class InMemoryQueryEngineTest extends InMemoryQueryEngineTestParent {
         checkResultMetadata(results, usersColumnNames, usersTypes);
     }
 
+    @Test
+    public void simpleSelectDisjunction() {
+        TableMetadata usersTable = buildUsersTable();
+
+        String [] usersColumnNames = {"id", "name"};
+        ColumnType[] usersTypes = {new ColumnType(DataType.INT), new ColumnType(DataType.TEXT)};
+
+        Project projectUsers = generateProjectAndSelect(usersColumnNames, usersTypes, usersTable.getName());
+
+        ColumnSelector name = new ColumnSelector(projectUsers.getColumnList().get(1));
+        List<List<ITerm>> terms = new ArrayList<>();
+        terms.add(Arrays.<ITerm>asList(new Filter(singleton(Operations.FILTER_NON_INDEXED_EQ),
+                new Relation(name, Operator.EQ, new StringSelector(projectUsers.getTableName(), "User-9")))));
+        terms.add(Arrays.<ITerm>asList(new Filter(singleton(Operations.FILTER_NON_INDEXED_EQ),
+                new Relation(name, Operator.EQ, new StringSelector(projectUsers.getTableName(), "User-3")))));
+        Disjunction disjunction = new Disjunction(singleton(Operations.FILTER_DISJUNCTION), terms);
+
+        Select s = Select.class.cast(projectUsers.getNextStep());
+        disjunction.setNextStep(s);
+        projectUsers.setNextStep(disjunction);
+        disjunction.setPrevious(projectUsers);
+        s.setPrevious(disjunction);
+        LogicalWorkflow workflow = new LogicalWorkflow(singletonList((LogicalStep) projectUsers));
+
+        ResultSet results = null;
+        try {
+            QueryResult result = connector.getQueryEngine().execute(workflow);
+            results = result.getResultSet();
+        } catch (ConnectorException e) {
+            fail("Cannot retrieve data", e);
+        }
+
+        assertEquals(results.size(), 2, "Invalid number of results returned");
+        checkResultMetadata(results, usersColumnNames, usersTypes);
+    }
+
     @Test
     public void selectWithFunctionAndAlias(){
         TableMetadata usersTable = buildUsersTable();
@@ -573,4 +616,56 @@ public class InMemoryQueryEngineTest extends InMemoryQueryEngineTestParent {
 
     }
 
+    @Test
+    public void selectGroupByHaving() {
+        TableMetadata usersTable = buildUsersTable();
+        TableName tableName = usersTable.getName();
+
+        Project project = new Project(singleton(Operations.PROJECT), tableName, clusterName);
+        project.addColumn(new ColumnName(tableName, "id"));
+        project.addColumn(new ColumnName(tableName, "boss"));
+
+        ColumnSelector boss = new ColumnSelector(new ColumnName(tableName, "boss"));
+        List<Selector> countArguments = new ArrayList<>();
+        countArguments.add(new AsteriskSelector());
+        FunctionSelector count = new FunctionSelector(tableName, "count", countArguments);
+        List<Selector> maxArguments = new ArrayList<>();
+        maxArguments.add(new ColumnSelector(new ColumnName(tableName, "id")));
+        FunctionSelector max = new FunctionSelector(tableName, "max", maxArguments);
+
+        List<AbstractRelation> having = new ArrayList<>();
+        having.add(new Relation(max, Operator.GT, new IntegerSelector(8)));
+        GroupBy groupBy = new GroupBy(singleton(Operations.SELECT_GROUP_BY),
+                singletonList((Selector) boss), having);
+
+        Map<Selector, String> columnMap = new LinkedHashMap<>();
+        columnMap.put(boss, "boss");
+        columnMap.put(count, "count(*)");
+        Map<String, ColumnType> typeMap = new LinkedHashMap<>();
+        typeMap.put("boss", new ColumnType(DataType.BOOLEAN));
+        typeMap.put("count(*)", new ColumnType(DataType.INT));
+        Map<Selector, ColumnType> typeMapFromColumnName = new LinkedHashMap<>();
+        typeMapFromColumnName.put(boss, new ColumnType(DataType.BOOLEAN));
+        typeMapFromColumnName.put(count, new ColumnType(DataType.INT));
+        Select select = new Select(singleton(Operations.SELECT_OPERATOR), columnMap, typeMap, typeMapFromColumnName);
+
+        project.setNextStep(groupBy);
+        groupBy.setPrevious(project);
+        groupBy.setNextStep(select);
+        select.setPrevious(groupBy);
+
+        LogicalWorkflow workflow = new LogicalWorkflow(singletonList((LogicalStep) project), select, 10);
+        ResultSet results = null;
+        try {
+            results = connector.getQueryEngine().execute(workflow).getResultSet();
+        } catch (ConnectorException e) {
+            fail("Cannot retrieve data", e);
+        }
+
+        assertEquals(results.size(), 1, "Only the group of odd ids should satisfy HAVING");
+        Row row = results.getRows().get(0);
+        assertEquals(row.getCell("boss").getValue(), false, "Invalid group");
+        assertEquals(row.getCell("count(*)").getValue(), NUM_ROWS / 2, "Invalid count");
+    }
+
 }
@@ -19,21 +19,28 @@
 package com.stratio.connector.inmemory.datastore;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancellation;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+import com.stratio.crossdata.common.data.JoinType;
 
 /**
  * Datastore tests.
@@ -48,11 +55,11 @@ public class InMemoryDatastoreTest {
 
     @BeforeClass
     public void setUp() {
-        db.createCatalog(CATALOG_NAME);
         String[] columnNames = new String[] { "string_col", "integer_col", "boolean_col" };
         Class[] columnTypes = new Class[] { String.class, Integer.class, Boolean.class };
         List<String> primaryKey = Arrays.asList("string_col");
         try {
+            db.createCatalog(CATALOG_NAME);
             db.createTable(CATALOG_NAME, TEST_TABLE1, columnNames, columnTypes, primaryKey);
         } catch (Exception e) {
             fail("Cannot create test table", e);
@@ -92,4 +99,54 @@ public class InMemoryDatastoreTest {
         assertEquals(row[0].getValue(), InMemoryTableTest.INSERT_TEST_SIZE, "Invalid count");
     }
 
+    @Test
+    public void selectCountWithBitmapIndex() throws Exception {
+        db.createIndex(CATALOG_NAME, TEST_TABLE1, "boolean_idx", "boolean_col", InMemoryIndexType.BITMAP);
+        InMemorySelector count = new InMemoryFunctionSelector("count",
+                Arrays.<InMemorySelector>asList(new InMemoryLiteralSelector("1")));
+        List<List<InMemoryRelation>> terms = new ArrayList<>();
+        terms.add(Arrays.asList(new InMemoryRelation("boolean_col", InMemoryOperations.EQ, true)));
+        terms.add(Arrays.asList(new InMemoryRelation("boolean_col", InMemoryOperations.IN,
+                Arrays.<Object>asList(false))));
+        List<InMemoryRelation> relations = Arrays.<InMemoryRelation>asList(
+                new InMemoryRelation("boolean_col", InMemoryOperations.EQ, true), new InMemoryDisjunction(terms));
+        ScanMetrics metrics = new ScanMetrics();
+        List<SimpleValue[]> result = db.search(CATALOG_NAME, new InMemoryQuery(TEST_TABLE1, relations,
+                Arrays.asList(count)), metrics);
+        assertEquals(result.get(0)[0].getValue(), InMemoryTableTest.INSERT_TEST_SIZE / 2, "Invalid count");
+        assertEquals(metrics.getScannedRows(), 0, "The count should be answered by the index");
+
+        relations = Arrays.asList(new InMemoryRelation("integer_col", InMemoryOperations.LT, 10));
+        metrics = new ScanMetrics();
+        result = db.search(CATALOG_NAME, new InMemoryQuery(TEST_TABLE1, relations, Arrays.asList(count)), metrics);
+        assertEquals(result.get(0)[0].getValue(), 10, "Invalid count");
+        assertTrue(metrics.getScannedRows() > 0, "Non indexed relations should be scanned");
+        db.dropIndex(CATALOG_NAME, TEST_TABLE1, "boolean_idx");
+    }
+
+    @Test
+    public void crossJoinLazily(){
+        int numRows = 100000;
+        List<InMemoryQuery> queries = new ArrayList<>();
+        List<List<SimpleValue[]>> tables = new ArrayList<>();
+        for(String column : Arrays.asList("left", "right")){
+            InMemorySelector selector = new InMemoryColumnSelector(column);
+            InMemoryQuery query = new InMemoryQuery(column, new ArrayList<InMemoryRelation>(),
+                    Arrays.asList(selector));
+            query.setJoinType(JoinType.CROSS);
+            queries.add(query);
+            List<SimpleValue[]> rows = new ArrayList<>(numRows);
+            for(int index = 0; index < numRows; index++){
+                rows.add(new SimpleValue[]{ new SimpleValue(selector, index) });
+            }
+            tables.add(rows);
+        }
+        Iterator<SimpleValue[]> joined = db.joinRows(queries, tables, new QueryCancellation());
+        for(int index = 0; index < 3; index++){
+            SimpleValue[] row = joined.next();
+            assertEquals(row[0].getValue(), 0, "Invalid left value");
+            assertEquals(row[1].getValue(), index, "Invalid right value");
+        }
+        assertTrue(joined.hasNext(), "The product should not be computed before it is read");
+    }
 }
@@ -74,6 +74,25 @@ public class InMemoryOperationsTest {
     }
 
 
+    @Test
+    public void getAndLet(){
+        assertTrue(InMemoryOperations.GET.compare(b1, b1), "GET fail on true = true");
+        assertTrue(InMemoryOperations.GET.compare(b1, b2), "GET fail on true = false");
+        assertFalse(InMemoryOperations.GET.compare(b2, b1), "GET fail on false = true");
+
+        assertTrue(InMemoryOperations.LET.compare(b2, b2), "LET fail on false = false");
+        assertTrue(InMemoryOperations.LET.compare(b2, b1), "LET fail on false = true");
+        assertFalse(InMemoryOperations.LET.compare(b1, b2), "LET fail on true = false");
+    }
+
+    @Test
+    public void between(){
+        assertTrue(InMemoryOperations.BETWEEN.compare(n1, Arrays.asList(n1, n2)), "BETWEEN fail on 1 BETWEEN 1 AND 10");
+        assertTrue(InMemoryOperations.BETWEEN.compare(5, Arrays.asList(n1, n2)), "BETWEEN fail on 5 BETWEEN 1 AND 10");
+        assertFalse(InMemoryOperations.BETWEEN.compare(11, Arrays.asList(n1, n2)), "BETWEEN fail on 11 BETWEEN 1 AND 10");
+        assertTrue(InMemoryOperations.BETWEEN.compare("m", Arrays.asList(s1, s2)), "BETWEEN fail on m BETWEEN a AND z");
+    }
+
     @Test
     public void in(){
 
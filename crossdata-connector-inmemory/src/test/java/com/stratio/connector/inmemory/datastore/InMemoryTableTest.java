@@ -20,16 +20,28 @@ package com.stratio.connector.inmemory.datastore;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+import com.stratio.connector.inmemory.datastore.memory.MemoryBudget;
+import com.stratio.connector.inmemory.datastore.scan.MatchCursor;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
 import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
@@ -108,6 +120,30 @@ public class InMemoryTableTest {
         assertEquals(table.size(), INSERT_TEST_SIZE, "Invalid size");
     }
 
+    @Test
+    public void insertExistingKey() {
+        String tableName = "testTable";
+        String[] columnNames = new String[] { "col1", "col2" };
+        Class[] columnTypes = new Class[] { String.class, Integer.class };
+        List<String> primaryKey = Arrays.asList("col1");
+        InMemoryTable table = createTestTable(tableName, columnNames, columnTypes, primaryKey);
+        List<SimpleValue[]> result = null;
+        try {
+            Map<String, Object> row = new HashMap<>();
+            row.put(columnNames[0], "key");
+            row.put(columnNames[1], 1);
+            table.insert(row);
+            row.put(columnNames[1], 2);
+            table.insert(row);
+            result = table.fullScanSearch(new ArrayList<InMemoryRelation>(),
+                    Arrays.<InMemorySelector>asList(new InMemoryColumnSelector(columnNames[1])));
+        } catch (Exception e) {
+            fail("Insert should work", e);
+        }
+        assertEquals(table.size(), 1, "Invalid size");
+        assertEquals(result.get(0)[0].getValue(), 2, "The row should have been replaced");
+    }
+
     @Test
     public void basicSelect(){
         String tableName = "testTable";
@@ -226,4 +262,533 @@ public class InMemoryTableTest {
         }
     }
 
+
+    @Test
+    public void lazyScan() throws Exception {
+        String[] columnNames = new String[] { "id", "value" };
+        Class[] columnTypes = new Class[] { Integer.class, Integer.class };
+        InMemoryTable table = createTestTable("testTable", columnNames, columnTypes, Arrays.asList("id"));
+        for (int index = 0; index < INSERT_TEST_SIZE; index++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put(columnNames[0], index);
+            row.put(columnNames[1], index % 2);
+            table.insert(row);
+        }
+
+        InMemoryRelation relation = new InMemoryRelation(columnNames[1], InMemoryOperations.EQ, 1);
+        Iterator<SimpleValue[]> rows = table.scan(Arrays.asList(relation),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector(columnNames[0])));
+        assertTrue(rows.hasNext(), "The scan should return rows");
+        assertEquals(rows.next()[0].getValue(), 1, "Invalid first row");
+
+        Map<String, Object> row = new HashMap<>();
+        row.put(columnNames[0], INSERT_TEST_SIZE + 1);
+        row.put(columnNames[1], 1);
+        table.insert(row);
+
+        int found = 1;
+        while(rows.hasNext()){
+            rows.next();
+            found++;
+        }
+        assertEquals(found, INSERT_TEST_SIZE / 2, "Rows inserted after the scan started should not be returned");
+    }
+
+    /**
+     * Create a table with an integer primary key and an integer value.
+     * @param maxRows The maximum number of rows.
+     * @param numRows The number of rows to be inserted.
+     * @return An {@link com.stratio.connector.inmemory.datastore.InMemoryTable}.
+     * @throws Exception If the rows cannot be inserted.
+     */
+    private InMemoryTable createVersionedTable(int maxRows, int numRows) throws Exception {
+        InMemoryTable table = new InMemoryTable("versioned", new String[] { "id", "value" },
+                new Class[] { Integer.class, Integer.class }, Arrays.asList("id"), maxRows);
+        for (int index = 0; index < numRows; index++) {
+            insertVersion(table, index, index);
+        }
+        return table;
+    }
+
+    /**
+     * Insert a row in a table created with {@link #createVersionedTable(int, int)}.
+     * @param table The table.
+     * @param id The primary key.
+     * @param value The value.
+     * @throws Exception If the row cannot be inserted.
+     */
+    private void insertVersion(InMemoryTable table, int id, int value) throws Exception {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("value", value);
+        table.insert(row);
+    }
+
+    @Test
+    public void snapshotIsolation() throws Exception {
+        InMemoryTable table = createVersionedTable(TABLE_MAX_ROWS, INSERT_TEST_SIZE);
+        table.createIndex("valueIndex", "value", InMemoryIndexType.HASH);
+        List<InMemorySelector> output = Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("value"));
+        List<InMemoryRelation> byKey = Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 0));
+        List<InMemoryRelation> byValue = Arrays.asList(new InMemoryRelation("value", InMemoryOperations.EQ, 0));
+
+        TableSnapshot before = table.snapshot();
+        insertVersion(table, 0, 100);
+        insertVersion(table, INSERT_TEST_SIZE, INSERT_TEST_SIZE);
+
+        assertEquals(before.size(), INSERT_TEST_SIZE, "Invalid snapshot size");
+        assertEquals(before.fullScanSearch(new ArrayList<InMemoryRelation>(), output).size(), INSERT_TEST_SIZE,
+                "Rows written after the snapshot should not be visible");
+        assertEquals(before.search(byKey, output).get(0)[0].getValue(), 0, "The snapshot should see the old version");
+        assertEquals(before.search(byValue, output).size(), 1, "The index should return the old version");
+
+        assertEquals(table.size(), INSERT_TEST_SIZE + 1, "Invalid size");
+        assertEquals(table.search(byKey, output).get(0)[0].getValue(), 100, "The table should see the new version");
+        assertTrue(table.search(byValue, output).isEmpty(), "The replaced version should not be visible");
+
+        table.truncate();
+        assertEquals(table.size(), 0, "Invalid size after truncate");
+        assertEquals(before.fullScanSearch(new ArrayList<InMemoryRelation>(), output).size(), INSERT_TEST_SIZE,
+                "The snapshot should not be affected by the truncate");
+    }
+
+    @Test
+    public void compactReplacedVersions() throws Exception {
+        InMemoryTable table = createVersionedTable(TABLE_MAX_ROWS, INSERT_TEST_SIZE);
+        table.createIndex("valueIndex", "value", InMemoryIndexType.ORDERED);
+        int updates = InMemoryTable.COMPACTION_THRESHOLD / INSERT_TEST_SIZE + 1;
+        for (int update = 1; update <= updates; update++) {
+            for (int index = 0; index < INSERT_TEST_SIZE; index++) {
+                insertVersion(table, index, update * INSERT_TEST_SIZE + index);
+            }
+        }
+        TableSnapshot snapshot = table.snapshot();
+        assertEquals(snapshot.size(), INSERT_TEST_SIZE, "Invalid size");
+        assertTrue(snapshot.getNumRows() < INSERT_TEST_SIZE * (updates + 1), "Replaced versions should be compacted");
+        List<InMemorySelector> output = Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"));
+        List<SimpleValue[]> rows = snapshot.search(Arrays.asList(
+                new InMemoryRelation("value", InMemoryOperations.GET, updates * INSERT_TEST_SIZE)), output);
+        assertEquals(rows.size(), INSERT_TEST_SIZE, "The latest versions should be indexed");
+        rows = snapshot.search(Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 3)),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("value")));
+        assertEquals(rows.get(0)[0].getValue(), updates * INSERT_TEST_SIZE + 3, "Invalid latest version");
+    }
+
+    @Test
+    public void concurrentInsertAndScan() throws Exception {
+        final int keys = 5000;
+        final int writes = 4 * keys;
+        final InMemoryTable table = createVersionedTable(writes, 0);
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int index = 0; index < writes; index++) {
+                        insertVersion(table, index % keys, index);
+                    }
+                } catch (Throwable t) {
+                    errors.add(t);
+                } finally {
+                    writing.set(false);
+                }
+            }
+        });
+        Runnable scan = new Runnable() {
+            @Override
+            public void run() {
+                List<InMemorySelector> output = Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"));
+                try {
+                    while (writing.get()) {
+                        TableSnapshot snapshot = table.snapshot();
+                        Set<Object> ids = new HashSet<>();
+                        for (SimpleValue[] row : snapshot.fullScanSearch(new ArrayList<InMemoryRelation>(), output)) {
+                            if (!ids.add(row[0].getValue())) {
+                                throw new AssertionError("Duplicated version of row " + row[0].getValue());
+                            }
+                        }
+                        if (ids.size() != snapshot.size()) {
+                            throw new AssertionError("Found " + ids.size() + " rows in a snapshot of " + snapshot.size());
+                        }
+                    }
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            }
+        };
+        Thread[] readers = new Thread[] { new Thread(scan), new Thread(scan) };
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(errors.isEmpty(), "Concurrent scans failed: " + errors);
+        assertEquals(table.size(), keys, "Invalid size");
+    }
+
+    @Test
+    public void batchInsert() throws Exception {
+        InMemoryTable table = new InMemoryTable("batch", new String[] { "id", "name", "value" },
+                new Class[] { Integer.class, String.class, Double.class }, Arrays.asList("id"), TABLE_MAX_ROWS);
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "value"), 2);
+        batch.addRow(1, "1.5");
+        batch.addRow(2, 2.0);
+        batch.addRow(1, 3.0);
+        table.insert(batch);
+        assertEquals(table.size(), 2, "Duplicated keys in the batch should replace the previous row");
+
+        List<SimpleValue[]> rows = table.search(Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 1)),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("name"), new InMemoryColumnSelector("value")));
+        assertEquals(rows.size(), 1, "Invalid number of rows");
+        assertNull(rows.get(0)[0].getValue(), "Columns not in the batch should be null");
+        assertEquals(rows.get(0)[1].getValue(), 3.0, "Invalid value");
+
+        InMemoryColumnBatch large = new InMemoryColumnBatch(Arrays.asList("id"), TABLE_MAX_ROWS);
+        for (int index = 0; index < TABLE_MAX_ROWS; index++) {
+            large.addRow(index + 10);
+        }
+        try {
+            table.insert(large);
+            fail("The batch should exceed the table capacity");
+        } catch (Exception e) {
+            assertEquals(table.size(), 2, "Rejected batches should not be inserted");
+        }
+
+        InMemoryColumnBatch noKey = new InMemoryColumnBatch(Arrays.asList("value"), 1);
+        noKey.addRow(1.0);
+        try {
+            table.insert(noKey);
+            fail("Batches without the primary key should be rejected");
+        } catch (Exception e) {
+            assertEquals(table.size(), 2, "Rejected batches should not be inserted");
+        }
+    }
+
+    @Test
+    public void memoryBudget() throws Exception {
+        MemoryBudget datastore = new MemoryBudget("datastore", 0, null);
+        MemoryBudget budget = new MemoryBudget("budget", 64 * 1024, datastore);
+        InMemoryTable table = new InMemoryTable("budget", new String[] { "id", "value" },
+                new Class[] { Integer.class, Long.class }, Arrays.asList("id"), Integer.MAX_VALUE, budget, false);
+        long empty = budget.getUsed();
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "value"), 100);
+        for (int index = 0; index < 100; index++) {
+            batch.addRow(index, (long) index);
+        }
+        table.insert(batch);
+        assertTrue(budget.getUsed() > empty, "Inserted rows should be accounted");
+        assertEquals(datastore.getUsed(), budget.getUsed(), "Table bytes should be accounted in the datastore");
+
+        InMemoryColumnBatch large = new InMemoryColumnBatch(Arrays.asList("id", "value"), 10000);
+        for (int index = 0; index < 10000; index++) {
+            large.addRow(index + 100, (long) index);
+        }
+        long used = budget.getUsed();
+        try {
+            table.insert(large);
+            fail("The batch should exceed the memory budget");
+        } catch (Exception e) {
+            assertEquals(table.size(), 100, "Rejected batches should not be inserted");
+            assertEquals(budget.getUsed(), used, "Rejected batches should not be accounted");
+        }
+
+        table.truncate();
+        assertEquals(budget.getUsed(), empty, "Truncated rows should be released");
+        table.releaseMemory();
+        assertEquals(datastore.getUsed(), 0, "Dropped tables should be released");
+    }
+
+    @Test
+    public void offHeapTable() throws Exception {
+        InMemoryTable table = new InMemoryTable("offHeap", new String[] { "id", "value", "name" },
+                new Class[] { Integer.class, Double.class, String.class }, Arrays.asList("id"), TABLE_MAX_ROWS,
+                MemoryBudget.unlimited("offHeap"), true);
+        for (int index = 0; index < INSERT_TEST_SIZE; index++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", index);
+            row.put("value", index * 1.5);
+            row.put("name", "name" + index);
+            table.insert(row);
+        }
+        assertTrue(table.getOffHeapUsage() > 0, "Fixed-width columns should be stored off-heap");
+        List<SimpleValue[]> rows = table.search(Arrays.asList(new InMemoryRelation("value", InMemoryOperations.GT, 12.0)),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"), new InMemoryColumnSelector("name")));
+        assertEquals(rows.size(), 1, "Invalid number of rows");
+        assertEquals(rows.get(0)[0].getValue(), 9, "Invalid value");
+        assertEquals(rows.get(0)[1].getValue(), "name9", "Invalid value");
+    }
+
+    /**
+     * Create a table of events whose timestamp grows with their key.
+     * @param options The table options.
+     * @param numRows The number of events.
+     * @param step The difference between consecutive timestamps.
+     * @return An {@link InMemoryTable}.
+     * @throws Exception If the events cannot be inserted.
+     */
+    private InMemoryTable createEventTable(Map<String, String> options, int numRows, long step) throws Exception {
+        InMemoryTable table = new InMemoryTable("events", new String[] { "id", "ts", "value" },
+                new Class[] { Integer.class, Long.class, Double.class }, Arrays.asList("id"), numRows + 1,
+                MemoryBudget.unlimited("events"), false, TableOptions.fromOptions(options));
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "ts", "value"), numRows);
+        for (int index = 0; index < numRows; index++) {
+            batch.addRow(index, index * step, index * 0.5);
+        }
+        table.insert(batch);
+        return table;
+    }
+
+    /**
+     * Count the rows of a table that satisfy a relation.
+     * @param table The table.
+     * @param relation The relation.
+     * @param metrics The metrics of the scan.
+     * @return The number of matching rows.
+     * @throws Exception If the relation cannot be compiled.
+     */
+    private int count(InMemoryTable table, InMemoryRelation relation, ScanMetrics metrics) throws Exception {
+        TableSnapshot snapshot = table.snapshot();
+        MatchCursor cursor = snapshot.match(snapshot.compilePredicate(Arrays.asList(relation)), null,
+                metrics.newSegment());
+        int count = 0;
+        while (cursor.next() != MatchCursor.END) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void zoneMapsSkipZones() throws Exception {
+        int numRows = 20000;
+        InMemoryTable table = createEventTable(new HashMap<String, String>(), numRows, 1);
+        ScanMetrics metrics = new ScanMetrics();
+        assertEquals(count(table, new InMemoryRelation("ts", InMemoryOperations.GET, 18000L), metrics), 2000,
+                "Invalid number of rows");
+        assertEquals(metrics.getSkippedRows(), 4L * 4096, "Zones before the bound should be skipped");
+
+        metrics = new ScanMetrics();
+        assertEquals(count(table, new InMemoryRelation("value", InMemoryOperations.BETWEEN,
+                Arrays.<Object>asList(2100.0, 2200.0)), metrics), 201, "Invalid number of rows");
+        assertEquals(metrics.getScannedRows(), 4096L, "Only the zone with the range should be scanned");
+
+        metrics = new ScanMetrics();
+        assertEquals(count(table, new InMemoryRelation("ts", InMemoryOperations.LT, -1L), metrics), 0,
+                "Invalid number of rows");
+        assertEquals(metrics.getScannedRows(), 0L, "Every zone should be skipped");
+        assertEquals(table.getColumn("ts").getNullCount(0), 0, "Invalid null count");
+    }
+
+    @Test
+    public void timePartitions() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("timePartitionColumn", "ts");
+        options.put("timePartitionInterval", "1s");
+        InMemoryTable table = createEventTable(options, 2000, 10);
+        assertEquals(table.getOptions().getTimePartitionInterval(), 1000L, "Invalid interval");
+        ScanMetrics metrics = new ScanMetrics();
+        InMemoryRelation recent = new InMemoryRelation("ts", InMemoryOperations.GT, 19500L);
+        assertEquals(count(table, recent, metrics), 49, "Invalid number of rows");
+        assertEquals(metrics.getSkippedRows(), 1900L, "Older partitions should be skipped");
+
+        Map<String, Object> late = new HashMap<>();
+        late.put("id", 5000);
+        late.put("ts", 19999L);
+        late.put("value", 0.0);
+        table.insert(late);
+        assertEquals(count(table, recent, new ScanMetrics()), 50, "Late rows should be found");
+        table.truncate();
+        assertEquals(count(table, recent, new ScanMetrics()), 0, "Truncated rows should not be found");
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void invalidTimePartitionColumn() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.TIME_PARTITION_COLUMN_OPTION, "value");
+        TableOptions.fromOptions(options).validate(new String[] { "id", "value" },
+                new Class[] { Integer.class, Double.class });
+    }
+
+    /**
+     * Create a cache table of integer keys.
+     * @param ttl The time to live of the rows, or null.
+     * @param policy The eviction policy, or null.
+     * @return An {@link InMemoryTable} with a maximum of {@link #INSERT_TEST_SIZE} rows.
+     * @throws Exception If the options are not valid.
+     */
+    private InMemoryTable createCacheTable(String ttl, String policy) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        if (ttl != null) {
+            options.put("ttl", ttl);
+        }
+        if (policy != null) {
+            options.put("evictionPolicy", policy);
+        }
+        return new InMemoryTable("cache", new String[] { "id", "value" }, new Class[] { Integer.class, String.class },
+                Arrays.asList("id"), INSERT_TEST_SIZE, MemoryBudget.unlimited("cache"), false,
+                TableOptions.fromOptions(options));
+    }
+
+    /**
+     * Insert a row in a cache table.
+     * @param table The table.
+     * @param id The key of the row.
+     * @throws Exception If the row cannot be inserted.
+     */
+    private void insertCacheRow(InMemoryTable table, int id) throws Exception {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("value", "value" + id);
+        table.insert(row);
+    }
+
+    /**
+     * Get the sorted keys of the rows of a cache table that satisfy a relation.
+     * @param table The table.
+     * @param relations The relations.
+     * @return The keys.
+     * @throws Exception If the search fails.
+     */
+    private List<Integer> getCacheKeys(InMemoryTable table, List<InMemoryRelation> relations) throws Exception {
+        List<Integer> keys = new ArrayList<>();
+        for (SimpleValue[] row : table.search(relations,
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id")))) {
+            keys.add((Integer) row[0].getValue());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Test
+    public void cacheOptions() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("ttl", "2m");
+        options.put("EVICTIONPOLICY", "lru");
+        TableOptions parsed = TableOptions.fromOptions(options);
+        assertEquals(parsed.getTtl(), 120000L, "Invalid time to live");
+        assertEquals(parsed.getEvictionPolicy(), EvictionPolicy.LRU, "Invalid eviction policy");
+        assertEquals(TableOptions.DEFAULT.getEvictionPolicy(), EvictionPolicy.NONE, "Invalid default policy");
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void invalidEvictionPolicy() throws Exception {
+        createCacheTable(null, "random");
+    }
+
+    @Test
+    public void fifoEviction() throws Exception {
+        InMemoryTable table = createCacheTable(null, "FIFO");
+        for (int id = 0; id < INSERT_TEST_SIZE; id++) {
+            insertCacheRow(table, id);
+        }
+        TableSnapshot full = table.snapshot();
+        insertCacheRow(table, 0);
+        for (int id = INSERT_TEST_SIZE; id < INSERT_TEST_SIZE + 3; id++) {
+            insertCacheRow(table, id);
+        }
+        assertEquals(table.size(), INSERT_TEST_SIZE, "Invalid size");
+        assertEquals(table.getEvictedRows(), 3L, "Invalid number of evicted rows");
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()),
+                Arrays.asList(0, 4, 5, 6, 7, 8, 9, 10, 11, 12), "The oldest rows should be evicted");
+        assertEquals(full.size(), INSERT_TEST_SIZE, "Evicted rows should remain in older snapshots");
+        assertEquals(full.search(Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 1)),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"))).size(), 1,
+                "Evicted rows should remain in older snapshots");
+
+        InMemoryTable bounded = createCacheTable(null, null);
+        for (int id = 0; id < INSERT_TEST_SIZE; id++) {
+            insertCacheRow(bounded, id);
+        }
+        try {
+            insertCacheRow(bounded, INSERT_TEST_SIZE);
+            fail("Tables without eviction policy should reject the rows");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("capacity"), "Invalid error");
+        }
+    }
+
+    @Test
+    public void lruEviction() throws Exception {
+        InMemoryTable table = createCacheTable(null, "LRU");
+        for (int id = 0; id < INSERT_TEST_SIZE; id++) {
+            insertCacheRow(table, id);
+        }
+        List<InMemoryRelation> recent = Arrays.asList(new InMemoryRelation("id", InMemoryOperations.LT, 5));
+        assertEquals(getCacheKeys(table, recent).size(), 5, "Invalid number of rows");
+        for (int id = INSERT_TEST_SIZE; id < INSERT_TEST_SIZE + 5; id++) {
+            insertCacheRow(table, id);
+        }
+        assertEquals(table.getEvictedRows(), 5L, "Invalid number of evicted rows");
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()),
+                Arrays.asList(0, 1, 2, 3, 4, 10, 11, 12, 13, 14), "The rows not read should be evicted");
+    }
+
+    @Test
+    public void rowExpiration() throws Exception {
+        InMemoryTable table = createCacheTable("200", null);
+        for (int id = 0; id < INSERT_TEST_SIZE; id++) {
+            insertCacheRow(table, id);
+        }
+        assertEquals(table.expire(INSERT_TEST_SIZE), 0, "Rows should not have expired");
+        Thread.sleep(300);
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()).size(), 0,
+                "Expired rows should not be returned");
+        assertEquals(getCacheKeys(table, Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 1)))
+                .size(), 0, "Expired rows should not be found by key");
+        assertEquals(table.size(), INSERT_TEST_SIZE, "Expired rows should be removed in the background");
+        assertEquals(table.expire(4), 4, "Invalid number of examined rows");
+        assertEquals(table.expire(INSERT_TEST_SIZE), INSERT_TEST_SIZE - 4, "Invalid number of examined rows");
+        assertEquals(table.size(), 0, "Invalid size");
+        assertEquals(table.getExpiredRows(), (long) INSERT_TEST_SIZE, "Invalid number of expired rows");
+        insertCacheRow(table, 1);
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()), Arrays.asList(1),
+                "Expired keys should be inserted again");
+    }
+
+    @Test
+    public void filteredDeleteAndUpdate() throws Exception {
+        InMemoryTable table = new InMemoryTable("cache", new String[] { "id", "value" },
+                new Class[] { Integer.class, String.class }, Arrays.asList("id"), TABLE_MAX_ROWS);
+        table.createIndex("value_idx", "value", InMemoryIndexType.BITMAP);
+        for (int id = 0; id < INSERT_TEST_SIZE * 2; id++) {
+            insertCacheRow(table, id % INSERT_TEST_SIZE);
+        }
+        TableSnapshot before = table.snapshot();
+        List<InMemoryRelation> low = Arrays.asList(new InMemoryRelation("id", InMemoryOperations.LT, 3));
+        assertEquals(table.delete(table.findKeys(low)), 3, "Invalid number of deleted rows");
+        assertEquals(table.delete(table.findKeys(low)), 0, "Deleted rows should not match");
+        List<InMemoryRelation> indexed = Arrays.asList(new InMemoryRelation("value", InMemoryOperations.EQ, "value5"));
+        Map<String, Object> assignments = new HashMap<>();
+        assignments.put("value", "updated");
+        assertEquals(table.update(table.findUpdates(indexed, assignments)), 1, "Invalid number of updated rows");
+
+        assertEquals(table.size(), INSERT_TEST_SIZE - 3, "Invalid size");
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()),
+                Arrays.asList(3, 4, 5, 6, 7, 8, 9), "Invalid remaining rows");
+        assertEquals(getCacheKeys(table, indexed).size(), 0, "The old value should not be found");
+        assertEquals(getCacheKeys(table, Arrays.asList(new InMemoryRelation("value", InMemoryOperations.EQ,
+                "updated"))), Arrays.asList(5), "The new value should be found");
+        assertEquals(before.size(), INSERT_TEST_SIZE, "Older snapshots should keep the deleted rows");
+
+        assertTrue(table.compactDeleted(), "The storage should be compacted");
+        assertEquals(table.snapshot().getNumRows(), INSERT_TEST_SIZE - 3, "Deleted rows should be discarded");
+        assertEquals(getCacheKeys(table, new ArrayList<InMemoryRelation>()),
+                Arrays.asList(3, 4, 5, 6, 7, 8, 9), "Invalid rows after compaction");
+        insertCacheRow(table, 1);
+        assertEquals(table.size(), INSERT_TEST_SIZE - 2, "Deleted keys should be inserted again");
+        assertEquals(table.update(table.findUpdates(Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ,
+                50)), assignments)), 0, "Updates should not insert rows");
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void updatePrimaryKey() throws Exception {
+        InMemoryTable table = createCacheTable(null, null);
+        insertCacheRow(table, 1);
+        Map<String, Object> assignments = new HashMap<>();
+        assignments.put("id", 2);
+        table.findUpdates(new ArrayList<InMemoryRelation>(), assignments);
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.aggregations;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.scan.SegmentScanner;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Hash aggregation tests.
+ */
+public class HashAggregationTest {
+
+    /**
+     * Number of rows of the test table.
+     */
+    private static final int NUM_ROWS = 1000;
+
+    /**
+     * Number of groups of the test table.
+     */
+    private static final int NUM_GROUPS = 10;
+
+    /**
+     * Number of threads of the pool.
+     */
+    private static final int PARALLELISM = 4;
+
+    /**
+     * Pool used to aggregate the segments.
+     */
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    @AfterClass
+    public void shutdown(){
+        pool.shutdown();
+    }
+
+    /**
+     * Create a table where row i has the group "group" + (i % 10), the amount i, the price i / 2.0
+     * and the tag i % 3. Every seventh row has a null price.
+     * @return An {@link InMemoryTable}.
+     * @throws Exception If the table cannot be filled.
+     */
+    private InMemoryTable createTable() throws Exception {
+        InMemoryTable table = new InMemoryTable("test", new String[]{"id", "category", "amount", "price", "tag"},
+                new Class[]{Integer.class, String.class, Long.class, Double.class, Integer.class},
+                Arrays.asList("id"), NUM_ROWS);
+        for(int id = 0; id < NUM_ROWS; id++){
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", id);
+            row.put("category", "group" + (id % NUM_GROUPS));
+            row.put("amount", (long) id);
+            row.put("price", id % 7 == 0 ? null : id / 2.0);
+            row.put("tag", id % 3);
+            table.insert(row);
+        }
+        return table;
+    }
+
+    /**
+     * Build an aggregation function selector over a column.
+     * @param function The function name.
+     * @param column The column name.
+     * @return An {@link InMemoryFunctionSelector}.
+     */
+    private InMemorySelector function(String function, String column){
+        return new InMemoryFunctionSelector(function, Arrays.<InMemorySelector>asList(new InMemoryColumnSelector(column)));
+    }
+
+    /**
+     * Aggregate the test table grouping by category.
+     * @param scanner The scanner.
+     * @param having The HAVING relations.
+     * @return The aggregated rows.
+     * @throws Exception If the aggregation fails.
+     */
+    private List<SimpleValue[]> aggregateByCategory(SegmentScanner scanner, List<InMemoryHavingRelation> having)
+            throws Exception {
+        InMemoryTable table = createTable();
+        List<InMemorySelector> outputColumns = Arrays.asList(
+                new InMemoryColumnSelector("category"),
+                function("count", "price"),
+                function("sum", "amount"),
+                function("avg", "amount"),
+                function("min", "price"),
+                function("max", "amount"),
+                function("countDistinct", "tag"));
+        HashAggregation aggregation = new HashAggregation(table.snapshot(), Arrays.asList("category"), outputColumns, having);
+        return scanner.aggregate(table.snapshot(), new ArrayList<InMemoryRelation>(), aggregation, new ScanMetrics());
+    }
+
+    /**
+     * Check the values of the groups of {@link #aggregateByCategory(SegmentScanner, List)}.
+     * @param rows The aggregated rows.
+     */
+    private void checkGroups(List<SimpleValue[]> rows){
+        assertEquals(rows.size(), NUM_GROUPS, "Invalid number of groups");
+        for(int group = 0; group < NUM_GROUPS; group++){
+            SimpleValue [] row = rows.get(group);
+            long sum = 0;
+            int count = 0;
+            Double min = null;
+            for(int id = group; id < NUM_ROWS; id += NUM_GROUPS){
+                sum += id;
+                if(id % 7 != 0){
+                    count++;
+                    min = min == null ? id / 2.0 : Math.min(min, id / 2.0);
+                }
+            }
+            assertEquals(row[0].getValue(), "group" + group, "Groups should be returned in order of appearance");
+            assertEquals(row[1].getValue(), count, "Invalid count of non-null values");
+            assertEquals(row[2].getValue(), sum, "Invalid sum");
+            assertEquals(row[3].getValue(), sum / (double) (NUM_ROWS / NUM_GROUPS), "Invalid average");
+            assertEquals(row[4].getValue(), min, "Invalid minimum");
+            assertEquals(row[5].getValue(), (long) (NUM_ROWS - NUM_GROUPS + group), "Invalid maximum");
+            assertEquals(row[6].getValue(), 3, "Invalid number of distinct values");
+        }
+    }
+
+    @Test
+    public void groupBy() throws Exception {
+        checkGroups(aggregateByCategory(SegmentScanner.sequential(), new ArrayList<InMemoryHavingRelation>()));
+    }
+
+    @Test
+    public void parallelGroupBy() throws Exception {
+        SegmentScanner scanner = new SegmentScanner(pool, PARALLELISM, 64);
+        checkGroups(aggregateByCategory(scanner, new ArrayList<InMemoryHavingRelation>()));
+    }
+
+    @Test
+    public void having() throws Exception {
+        InMemoryHavingRelation relation = new InMemoryHavingRelation(function("max", "amount"),
+                InMemoryOperations.GET, NUM_ROWS - 3);
+        List<SimpleValue[]> rows = aggregateByCategory(SegmentScanner.sequential(), Arrays.asList(relation));
+        assertEquals(rows.size(), 3, "Invalid number of groups");
+        assertEquals(rows.get(0).length, 7, "HAVING values should not be returned");
+        assertEquals(rows.get(0)[0].getValue(), "group7", "Invalid group");
+    }
+
+    @Test
+    public void globalAggregation() throws Exception {
+        InMemoryTable table = createTable();
+        List<InMemorySelector> outputColumns = Arrays.asList(
+                new InMemoryFunctionSelector("count", Arrays.<InMemorySelector>asList(new InMemoryLiteralSelector("*"))),
+                function("sum", "price"),
+                new InMemoryLiteralSelector("literal"));
+        HashAggregation aggregation = new HashAggregation(table.snapshot(), new ArrayList<String>(), outputColumns,
+                new ArrayList<InMemoryHavingRelation>());
+        InMemoryRelation noRows = new InMemoryRelation("amount", InMemoryOperations.LT, 0);
+        List<SimpleValue[]> rows = SegmentScanner.sequential().aggregate(table.snapshot(), Arrays.asList(noRows),
+                aggregation, new ScanMetrics());
+        assertEquals(rows.size(), 1, "Global aggregations should return a row without matching rows");
+        assertEquals(rows.get(0)[0].getValue(), 0, "Invalid count");
+        assertNull(rows.get(0)[1].getValue(), "The sum of no values should be null");
+        assertEquals(rows.get(0)[2].getValue(), "literal", "Invalid literal");
+
+        rows = new SegmentScanner(pool, PARALLELISM, 64).aggregate(table.snapshot(), new ArrayList<InMemoryRelation>(),
+                aggregation, new ScanMetrics());
+        assertEquals(rows.get(0)[0].getValue(), NUM_ROWS, "Invalid count");
+    }
+
+    @Test
+    public void approximateAggregation() throws Exception {
+        InMemoryTable table = createTable();
+        List<InMemorySelector> outputColumns = Arrays.asList(
+                function("approxCountDistinct", "amount"),
+                function("approxCountDistinct", "tag"),
+                new InMemoryFunctionSelector("approxQuantile", Arrays.<InMemorySelector>asList(
+                        new InMemoryColumnSelector("amount"), new InMemoryLiteralSelector("0.5"))),
+                new InMemoryFunctionSelector("approxQuantile", Arrays.<InMemorySelector>asList(
+                        new InMemoryColumnSelector("amount"), new InMemoryLiteralSelector("1"))));
+        HashAggregation aggregation = new HashAggregation(table.snapshot(), new ArrayList<String>(), outputColumns,
+                new ArrayList<InMemoryHavingRelation>());
+        for(SegmentScanner scanner : Arrays.asList(SegmentScanner.sequential(), new SegmentScanner(pool, PARALLELISM, 64))){
+            SimpleValue [] row = scanner.aggregate(table.snapshot(), new ArrayList<InMemoryRelation>(), aggregation,
+                    new ScanMetrics()).get(0);
+            int distinct = (Integer) row[0].getValue();
+            assertTrue(Math.abs(distinct - NUM_ROWS) < NUM_ROWS * 0.05, "Invalid distinct estimate " + distinct);
+            assertEquals(row[1].getValue(), 3, "Small cardinalities should be exact");
+            double median = (Double) row[2].getValue();
+            assertTrue(Math.abs(median - NUM_ROWS / 2) < NUM_ROWS * 0.05, "Invalid median estimate " + median);
+            assertEquals(row[3].getValue(), (double) (NUM_ROWS - 1), "The maximum should be kept");
+        }
+    }
+
+    @Test
+    public void mergeSketches(){
+        int numValues = 100000;
+        HyperLogLog [] distinct = new HyperLogLog[]{ new HyperLogLog(), new HyperLogLog() };
+        QuantileSketch [] quantiles = new QuantileSketch[]{ new QuantileSketch(), new QuantileSketch() };
+        for(int value = 0; value < numValues; value++){
+            distinct[value % 2].add(HyperLogLog.hash(value % (numValues / 2)));
+            quantiles[value % 2].add(value);
+        }
+        distinct[0].merge(distinct[1]);
+        quantiles[0].merge(quantiles[1]);
+        long estimate = distinct[0].estimate();
+        assertTrue(Math.abs(estimate - numValues / 2) < numValues * 0.05 / 2, "Invalid distinct estimate " + estimate);
+        assertEquals(quantiles[0].getCount(), numValues, "Invalid number of values");
+        for(double quantile : new double[]{ 0.01, 0.25, 0.5, 0.99 }){
+            double value = quantiles[0].getQuantile(quantile);
+            assertTrue(Math.abs(value - quantile * numValues) < numValues * 0.02,
+                    "Invalid estimate of quantile " + quantile + ": " + value);
+        }
+        assertNull(new QuantileSketch().getQuantile(0.5), "Empty sketches should not have quantiles");
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.changes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryQuery;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.scan.ScanMetrics;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Change log and continuous query tests.
+ */
+public class ContinuousQueryTest {
+
+    private static final String CATALOG_NAME = "events";
+
+    private static final String TABLE_NAME = "clicks";
+
+    /**
+     * Create a datastore with a table of clicks.
+     * @return The {@link InMemoryDatastore}.
+     * @throws Exception If the table cannot be created.
+     */
+    private InMemoryDatastore createDatastore() throws Exception {
+        InMemoryDatastore db = new InMemoryDatastore(100000);
+        db.createCatalog(CATALOG_NAME);
+        db.createTable(CATALOG_NAME, TABLE_NAME, new String[]{ "id", "page" },
+                new Class[]{ Integer.class, String.class }, Arrays.asList("id"));
+        return db;
+    }
+
+    /**
+     * Insert clicks, the page of even clicks is "home".
+     * @param db The datastore.
+     * @param first The first identifier.
+     * @param count The number of clicks.
+     * @throws Exception If the clicks cannot be inserted.
+     */
+    private void insertClicks(InMemoryDatastore db, int first, int count) throws Exception {
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "page"), count);
+        for(int id = first; id < first + count; id++){
+            batch.addRow(id, id % 2 == 0 ? "home" : "cart");
+        }
+        db.insert(CATALOG_NAME, TABLE_NAME, batch);
+    }
+
+    /**
+     * Poll a continuous query.
+     * @param query The query.
+     * @return The identifiers returned.
+     * @throws Exception If the query cannot be polled.
+     */
+    private List<Object> poll(ContinuousQuery query) throws Exception {
+        List<Object> ids = new ArrayList<>();
+        for(SimpleValue [] row : query.poll(new ScanMetrics())){
+            ids.add(row[0].getValue());
+        }
+        return ids;
+    }
+
+    private InMemoryQuery homeClicks(){
+        return new InMemoryQuery(TABLE_NAME, Arrays.asList(new InMemoryRelation("page", InMemoryOperations.EQ, "home")),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id")));
+    }
+
+    @Test
+    public void pollInsertedRows() throws Exception {
+        InMemoryDatastore db = createDatastore();
+        insertClicks(db, 0, 10);
+        ContinuousQuery query = db.subscribe(CATALOG_NAME, homeClicks());
+        assertEquals(poll(query), new ArrayList<>(), "Rows inserted before subscribing should not be returned");
+        insertClicks(db, 10, 4);
+        insertClicks(db, 14, 3);
+        assertEquals(poll(query), Arrays.<Object>asList(10, 12, 14, 16), "Invalid new rows");
+        assertEquals(poll(query), new ArrayList<>(), "Rows should be returned once");
+
+        InMemoryTable table = db.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME);
+        assertEquals(table.getChangeLog().size(), 0, "Read changes should be discarded");
+        query.close();
+        insertClicks(db, 20, 2);
+        assertFalse(table.getChangeLog().hasSubscribers(), "The query should be unsubscribed");
+        assertEquals(table.getChangeLog().size(), 0, "Inserts should not be logged without subscribers");
+        try {
+            query.poll(new ScanMetrics());
+            fail("Closed queries should not be polled");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("Not subscribed"), "Invalid message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void pollAcrossCompactions() throws Exception {
+        InMemoryDatastore db = createDatastore();
+        insertClicks(db, 0, 10);
+        ContinuousQuery first = db.subscribe(CATALOG_NAME, homeClicks());
+        ContinuousQuery second = db.subscribe(CATALOG_NAME, homeClicks());
+        insertClicks(db, 10, 2);
+        db.delete(CATALOG_NAME, TABLE_NAME, Arrays.asList(new InMemoryRelation("id", InMemoryOperations.LT, 8)));
+        assertEquals(db.compactTables(), 1, "The table should be compacted");
+        insertClicks(db, 20, 2);
+        insertClicks(db, 11, 2);
+        assertEquals(poll(first), Arrays.<Object>asList(10, 20, 12), "Invalid rows across compactions");
+        InMemoryTable table = db.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME);
+        assertEquals(table.getChangeLog().size(), 3, "Changes should be kept for the other subscriber");
+        assertEquals(poll(second), Arrays.<Object>asList(10, 20, 12), "Invalid rows for the other subscriber");
+        assertEquals(table.getChangeLog().size(), 0, "Read changes should be discarded");
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void rejectAggregations() throws Exception {
+        InMemoryDatastore db = createDatastore();
+        InMemoryQuery query = homeClicks();
+        query.setOutputColumns(Arrays.<InMemorySelector>asList(new InMemoryFunctionSelector("count",
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id")))));
+        try {
+            db.subscribe(CATALOG_NAME, query);
+            fail("Aggregated continuous queries should be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("aggregation"), "Invalid message: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.stratio.connector.inmemory.datastore.columns.encoding.SegmentedValues;
+
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+/**
+ * Column storage tests.
+ */
+public class InMemoryColumnTest {
+
+    /**
+     * Number of values to be appended in the tests.
+     */
+    private static final int NUM_VALUES = 100;
+
+    @Test
+    public void createByType(){
+        assertTrue(IntegerColumn.class.isInstance(AbstractInMemoryColumn.create(Integer.class)), "Invalid column");
+        assertTrue(LongColumn.class.isInstance(AbstractInMemoryColumn.create(Long.class)), "Invalid column");
+        assertTrue(DoubleColumn.class.isInstance(AbstractInMemoryColumn.create(Double.class)), "Invalid column");
+        assertTrue(FloatColumn.class.isInstance(AbstractInMemoryColumn.create(Float.class)), "Invalid column");
+        assertTrue(BooleanColumn.class.isInstance(AbstractInMemoryColumn.create(Boolean.class)), "Invalid column");
+        assertTrue(StringColumn.class.isInstance(AbstractInMemoryColumn.create(String.class)), "Invalid column");
+        assertTrue(ObjectColumn.class.isInstance(AbstractInMemoryColumn.create(Date.class)), "Invalid column");
+    }
+
+    @Test
+    public void appendIntegers(){
+        IntegerColumn column = new IntegerColumn();
+        for(int index = 0; index < NUM_VALUES; index++){
+            column.append(index);
+        }
+        assertEquals(column.size(), NUM_VALUES, "Invalid size");
+        for(int index = 0; index < NUM_VALUES; index++){
+            assertEquals(column.getInt(index), index, "Invalid value");
+            assertEquals(column.get(index), index, "Invalid boxed value");
+        }
+    }
+
+    @Test
+    public void convertNumbers(){
+        LongColumn column = new LongColumn();
+        column.append(1);
+        column.append("2");
+        assertEquals(column.get(0), 1L, "Invalid conversion from integer");
+        assertEquals(column.get(1), 2L, "Invalid conversion from string");
+    }
+
+    @Test
+    public void nullValues(){
+        DoubleColumn column = new DoubleColumn();
+        column.append(1.5);
+        column.append(null);
+        assertFalse(column.isNull(0), "Value should not be null");
+        assertTrue(column.isNull(1), "Value should be null");
+        assertNull(column.get(1), "Value should be null");
+        column.set(1, 2.5);
+        assertEquals(column.get(1), 2.5, "Invalid value after set");
+        column.set(0, null);
+        assertNull(column.get(0), "Value should be null after set");
+    }
+
+    @Test
+    public void dictionaryEncoding(){
+        StringColumn column = new StringColumn();
+        for(int index = 0; index < NUM_VALUES; index++){
+            column.append("value" + (index % 3));
+        }
+        assertEquals(column.getDictionarySize(), 3, "Invalid dictionary size");
+        assertEquals(column.getCode(0), column.getCode(3), "Equal values should share the code");
+        assertEquals(column.get(4), "value1", "Invalid value");
+        assertEquals(column.lookupCode("value2"), column.getCode(2), "Invalid code lookup");
+        assertEquals(column.lookupCode("missing"), StringColumn.NO_CODE, "Unknown values should not have a code");
+    }
+
+    @Test
+    public void clear(){
+        BooleanColumn column = new BooleanColumn();
+        column.append(true);
+        column.append(false);
+        column.clear();
+        assertEquals(column.size(), 0, "Column should be empty");
+        column.append(false);
+        assertEquals(column.get(0), false, "Invalid value after clear");
+    }
+
+    @Test
+    public void offHeapValues(){
+        assertTrue(OffHeapIntegerColumn.class.isInstance(AbstractInMemoryColumn.create(Integer.class, true)),
+                "Invalid column");
+        assertTrue(StringColumn.class.isInstance(AbstractInMemoryColumn.create(String.class, true)),
+                "Variable size columns should remain on-heap");
+        LongColumn column = LongColumn.class.cast(AbstractInMemoryColumn.create(Long.class, true));
+        int numValues = SlabBuffer.SLAB_SIZE / 8 + NUM_VALUES;
+        for(int index = 0; index < numValues; index++){
+            column.append(index % 10 == 0 ? null : (long) index);
+        }
+        assertEquals(column.getOffHeapUsage(), 2L * SlabBuffer.SLAB_SIZE, "Invalid off-heap usage");
+        assertEquals(column.getLong(numValues - 1), numValues - 1, "Invalid value");
+        assertEquals(column.getAsDouble(12345), 12345.0, "Invalid value");
+        assertNull(column.get((numValues - 1) / 10 * 10), "Value should be null");
+        column.clear();
+        assertEquals(column.getOffHeapUsage(), 0, "Slabs should be released");
+    }
+
+    @Test
+    public void memoryUsage(){
+        IntegerColumn column = new IntegerColumn();
+        long initial = column.getMemoryUsage();
+        long estimate = column.estimateAppend(null, NUM_VALUES);
+        for(int index = 0; index < NUM_VALUES; index++){
+            column.append(index);
+        }
+        assertTrue(column.getMemoryUsage() >= initial + estimate, "The estimate should cover the values");
+        StringColumn strings = new StringColumn();
+        Object[] values = new Object[]{ "a", "b", "a" };
+        assertTrue(strings.estimateAppend(values, 3) > strings.estimateAppend(new Object[]{ "a" }, 1),
+                "New dictionary entries should be estimated");
+    }
+
+    @Test
+    public void encodedSegments(){
+        StringColumn strings = new StringColumn();
+        DoubleColumn doubles = new DoubleColumn();
+        int numValues = SegmentedValues.SEGMENT_SIZE * 2 + NUM_VALUES;
+        for(int index = 0; index < numValues; index++){
+            strings.append(index % 7 == 0 ? null : "value" + (index / 1000));
+            doubles.append(index % 7 == 0 ? null : index * 0.5);
+        }
+        for(int index = 0; index < numValues; index++){
+            if(index % 7 == 0){
+                assertNull(strings.get(index), "Value should be null");
+                assertNull(doubles.get(index), "Value should be null");
+            }else{
+                assertEquals(strings.get(index), "value" + (index / 1000), "Invalid value");
+                assertEquals(doubles.getDouble(index), index * 0.5, "Invalid value");
+            }
+        }
+        assertTrue(strings.getMemoryUsage() < numValues, "Codes should be compressed");
+    }
+
+    @Test
+    public void zoneMaps(){
+        DoubleColumn column = new DoubleColumn();
+        int numValues = AbstractInMemoryColumn.ZONE_SIZE + NUM_VALUES;
+        for(int index = 0; index < numValues; index++){
+            column.append(index % 10 == 0 ? null : (index < AbstractInMemoryColumn.ZONE_SIZE ? -index : index));
+        }
+        column.append(Double.NaN);
+        ZoneMap zones = column.getZoneMap();
+        assertEquals(zones.getNumZones(), 2, "Invalid number of zones");
+        assertEquals(zones.getMinimum(0), ZoneMap.toKey(-(AbstractInMemoryColumn.ZONE_SIZE - 1)), "Invalid minimum");
+        assertEquals(zones.getMaximum(0), ZoneMap.toKey(-1), "Invalid maximum");
+        assertFalse(zones.mayContain(0, ZoneMap.toKey(0.0), Long.MAX_VALUE), "Zone should not contain positive values");
+        assertTrue(zones.mayContain(1, ZoneMap.toKey(-0.0), ZoneMap.toKey(numValues)), "Zone should contain the values");
+        assertTrue(ZoneMap.toKey(-0.5) < ZoneMap.toKey(-0.0), "Keys should preserve the order");
+        assertEquals(ZoneMap.toKey(-0.0), ZoneMap.toKey(0.0), "Zeros should share the key");
+        assertEquals(column.getNullCount(0), AbstractInMemoryColumn.ZONE_SIZE / 10 + 1, "Invalid null count");
+        assertEquals(column.getNullCount(1), NUM_VALUES / 10, "Invalid null count");
+    }
+}
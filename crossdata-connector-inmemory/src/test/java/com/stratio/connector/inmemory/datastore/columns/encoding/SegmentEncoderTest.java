@@ -0,0 +1,132 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.columns.encoding;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Segment encoding tests.
+ */
+public class SegmentEncoderTest {
+
+    /**
+     * Number of values of the encoded segments.
+     */
+    private static final int NUM_VALUES = 1000;
+
+    /**
+     * Check that a segment returns the encoded values.
+     * @param segment The segment.
+     * @param values The expected values.
+     */
+    private void assertValues(EncodedSegment segment, long [] values){
+        for(int offset = 0; offset < values.length; offset++){
+            assertEquals(segment.get(offset), values[offset], "Invalid value at " + offset);
+        }
+    }
+
+    @Test
+    public void runLength(){
+        long [] values = new long[NUM_VALUES];
+        for(int offset = 0; offset < NUM_VALUES; offset++){
+            values[offset] = offset / 100 * 1000000007L;
+        }
+        EncodedSegment segment = SegmentEncoder.encode(values, NUM_VALUES);
+        assertEquals(segment.getEncoding(), Encoding.RUN_LENGTH, "Invalid encoding");
+        assertEquals(RunLengthSegment.class.cast(segment).getRuns(), 10, "Invalid number of runs");
+        assertValues(segment, values);
+    }
+
+    @Test
+    public void bitPacked(){
+        long [] values = new long[NUM_VALUES];
+        Random random = new Random(7);
+        for(int offset = 0; offset < NUM_VALUES; offset++){
+            values[offset] = -5000 + random.nextInt(1000);
+        }
+        EncodedSegment segment = SegmentEncoder.encode(values, NUM_VALUES);
+        assertEquals(segment.getEncoding(), Encoding.BIT_PACKED, "Invalid encoding");
+        assertEquals(BitPackedSegment.class.cast(segment).getWidth(), 10, "Invalid width");
+        assertTrue(segment.getMemoryUsage() < NUM_VALUES * 2, "Values should be packed");
+        assertValues(segment, values);
+    }
+
+    @Test
+    public void delta(){
+        long [] values = new long[NUM_VALUES];
+        for(int offset = 0; offset < NUM_VALUES; offset++){
+            values[offset] = 1400000000000L + offset * 1000L + offset % 3;
+        }
+        EncodedSegment segment = SegmentEncoder.encode(values, NUM_VALUES);
+        assertEquals(segment.getEncoding(), Encoding.DELTA, "Invalid encoding");
+        assertEquals(BitPackedSegment.class.cast(segment).getWidth(), 2, "Invalid width");
+        assertValues(segment, values);
+    }
+
+    @Test
+    public void randomValues(){
+        long [] values = new long[NUM_VALUES];
+        Random random = new Random(11);
+        for(int offset = 0; offset < NUM_VALUES; offset++){
+            values[offset] = random.nextLong();
+        }
+        values[0] = Long.MIN_VALUE;
+        values[1] = Long.MAX_VALUE;
+        EncodedSegment segment = SegmentEncoder.encode(values, NUM_VALUES);
+        assertEquals(BitPackedSegment.class.cast(segment).getWidth(), Long.SIZE, "Invalid width");
+        assertValues(segment, values);
+    }
+
+    @Test
+    public void constantValues(){
+        long [] values = new long[NUM_VALUES];
+        EncodedSegment segment = SegmentEncoder.encode(values, NUM_VALUES);
+        assertTrue(segment.getMemoryUsage() <= EncodedSegment.OVERHEAD + 64, "Constant values should be compact");
+        assertValues(segment, values);
+    }
+
+    @Test
+    public void segmentedValues(){
+        SegmentedValues values = new SegmentedValues();
+        int numRows = SegmentedValues.SEGMENT_SIZE * 3 + 10;
+        for(int row = 0; row < numRows; row++){
+            values.set(row, row < SegmentedValues.SEGMENT_SIZE ? row * 10 : row / 1000);
+        }
+        assertEquals(values.getEncoding(0), Encoding.DELTA, "Sorted values should be delta encoded");
+        assertEquals(values.getEncoding(1), Encoding.RUN_LENGTH, "Repeated values should be run-length encoded");
+        assertEquals(values.getEncoding(3), Encoding.PLAIN, "The tail should not be encoded");
+        for(int row = 0; row < numRows; row++){
+            assertEquals(values.get(row), row < SegmentedValues.SEGMENT_SIZE ? row * 10 : row / 1000,
+                    "Invalid value");
+        }
+        assertTrue(values.getMemoryUsage() < numRows, "Segments should be compressed");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void immutableSegments(){
+        SegmentedValues values = new SegmentedValues();
+        values.set(SegmentedValues.SEGMENT_SIZE, 1);
+        values.set(0, 1);
+    }
+}
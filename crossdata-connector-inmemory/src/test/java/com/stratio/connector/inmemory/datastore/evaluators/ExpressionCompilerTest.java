@@ -0,0 +1,180 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.evaluators;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Expression compiler tests.
+ */
+public class ExpressionCompilerTest {
+
+    /**
+     * Number of rows in the test table.
+     */
+    private static final int NUM_ROWS = 10;
+
+    /**
+     * Create a table with one column of each type. Row i contains i, i, i + 0.1, i + 0.1, "value" + i
+     * and whether i is even. The last row has a null int_col.
+     * @return An {@link InMemoryTable}.
+     * @throws Exception If the rows cannot be inserted.
+     */
+    private InMemoryTable createTable() throws Exception {
+        String [] columnNames = {"id", "int_col", "long_col", "double_col", "float_col", "string_col", "bool_col"};
+        Class [] columnTypes = {Integer.class, Integer.class, Long.class, Double.class, Float.class,
+                String.class, Boolean.class};
+        InMemoryTable table = new InMemoryTable("table", columnNames, columnTypes, Arrays.asList("id"), 100);
+        for(int index = 0; index < NUM_ROWS; index++){
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", index);
+            row.put("int_col", index == NUM_ROWS - 1 ? null : index);
+            row.put("long_col", (long) index);
+            row.put("double_col", index + 0.1);
+            row.put("float_col", index + 0.1f);
+            row.put("string_col", "value" + index);
+            row.put("bool_col", index % 2 == 0);
+            table.insert(row);
+        }
+        return table;
+    }
+
+    /**
+     * Count the rows matching a relation, checking that the compiled predicate agrees with the
+     * generic evaluation.
+     * @param table The table.
+     * @param relation The relation.
+     * @return The number of matching rows.
+     * @throws Exception If the relation cannot be compiled.
+     */
+    private int count(InMemoryTable table, InMemoryRelation relation) throws Exception {
+        RowPredicate compiled = ExpressionCompiler.compilePredicate(table.snapshot(), Arrays.asList(relation));
+        RowPredicate generic = new GenericPredicate(table.getColumn(relation.getColumnName()),
+                relation.getRelation(), relation.getRightPart());
+        int result = 0;
+        for(int row = 0; row < table.size(); row++){
+            assertEquals(compiled.test(row), generic.test(row), "Invalid evaluation of row " + row);
+            if(compiled.test(row)){
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void specializedPredicates() throws Exception {
+        InMemoryTable table = createTable();
+        InMemoryRelation intRelation = new InMemoryRelation("int_col", InMemoryOperations.GT, 5);
+        InMemoryRelation longRelation = new InMemoryRelation("long_col", InMemoryOperations.EQ, 3);
+        InMemoryRelation doubleRelation = new InMemoryRelation("double_col", InMemoryOperations.LT, 2.5);
+        InMemoryRelation stringRelation = new InMemoryRelation("string_col", InMemoryOperations.EQ, "value4");
+        InMemoryRelation boolRelation = new InMemoryRelation("bool_col", InMemoryOperations.EQ, true);
+        assertTrue(LongPredicate.class.isInstance(
+                ExpressionCompiler.compilePredicate(table.snapshot(), Arrays.asList(intRelation))), "Expecting long predicate");
+        assertTrue(DoublePredicate.class.isInstance(
+                ExpressionCompiler.compilePredicate(table.snapshot(), Arrays.asList(doubleRelation))), "Expecting double predicate");
+        assertTrue(StringPredicate.class.isInstance(
+                ExpressionCompiler.compilePredicate(table.snapshot(), Arrays.asList(stringRelation))), "Expecting string predicate");
+        assertTrue(BooleanPredicate.class.isInstance(
+                ExpressionCompiler.compilePredicate(table.snapshot(), Arrays.asList(boolRelation))), "Expecting boolean predicate");
+        assertEquals(count(table, intRelation), 3, "Invalid integer evaluation");
+        assertEquals(count(table, longRelation), 1, "Invalid long evaluation");
+        assertEquals(count(table, doubleRelation), 3, "Invalid double evaluation");
+        assertEquals(count(table, stringRelation), 1, "Invalid string evaluation");
+        assertEquals(count(table, boolRelation), NUM_ROWS / 2, "Invalid boolean evaluation");
+        assertTrue(AndPredicate.class.isInstance(ExpressionCompiler.compilePredicate(table.snapshot(),
+                Arrays.asList(intRelation, boolRelation))), "Expecting conjunction");
+        assertTrue(ExpressionCompiler.compilePredicate(table.snapshot(), new ArrayList<InMemoryRelation>()).test(0),
+                "Empty relations should match every row");
+    }
+
+    @Test
+    public void literalConversion() throws Exception {
+        InMemoryTable table = createTable();
+        assertEquals(count(table, new InMemoryRelation("int_col", InMemoryOperations.LT, 2.5)), 3,
+                "Fractional literals should not be truncated");
+        assertEquals(count(table, new InMemoryRelation("long_col", InMemoryOperations.EQ, new BigDecimal("3.0"))), 1,
+                "Invalid decimal literal");
+        assertEquals(count(table, new InMemoryRelation("float_col", InMemoryOperations.EQ, 1.1)), 1,
+                "Float values should match double literals");
+        assertEquals(count(table, new InMemoryRelation("double_col", InMemoryOperations.EQ, 1.1f)), 1,
+                "Double values should match float literals");
+        assertEquals(count(table, new InMemoryRelation("string_col", InMemoryOperations.GET, "value7")), 3,
+                "Invalid string range");
+        assertEquals(count(table, new InMemoryRelation("string_col", InMemoryOperations.EQ, "missing")), 0,
+                "Unknown strings should not match");
+        assertEquals(count(table, new InMemoryRelation("string_col", InMemoryOperations.EQ, 4)), 0,
+                "Strings should not match numbers");
+    }
+
+    @Test
+    public void listOperands() throws Exception {
+        InMemoryTable table = createTable();
+        assertEquals(count(table, new InMemoryRelation("int_col", InMemoryOperations.IN,
+                Arrays.<Object>asList(7, 2L, "x", 9))), 2, "Invalid IN evaluation");
+        assertEquals(count(table, new InMemoryRelation("string_col", InMemoryOperations.IN,
+                Arrays.<Object>asList("value1", "value2", "missing"))), 2, "Invalid IN evaluation");
+        assertEquals(count(table, new InMemoryRelation("double_col", InMemoryOperations.BETWEEN,
+                Arrays.<Object>asList(2, 5))), 3, "Invalid BETWEEN evaluation");
+        assertEquals(count(table, new InMemoryRelation("int_col", InMemoryOperations.BETWEEN,
+                Arrays.<Object>asList(7, 20))), 2, "Null values should not match");
+    }
+
+    @Test
+    public void projection() throws Exception {
+        InMemoryTable table = createTable();
+        InMemorySelector stringColumn = new InMemoryColumnSelector("string_col");
+        InMemorySelector toUpper = new InMemoryFunctionSelector("toUpper", Arrays.asList(stringColumn));
+        InMemorySelector literal = new InMemoryLiteralSelector("literal");
+        InMemorySelector count = new InMemoryFunctionSelector("count", new ArrayList<InMemorySelector>());
+        RowProjector projector = ExpressionCompiler.compileProjection(table.snapshot(),
+                Arrays.asList(stringColumn, toUpper, literal, count, new InMemoryColumnSelector("int_col")));
+        for(int row = 0; row < 2; row++){
+            SimpleValue [] result = projector.project(row);
+            assertEquals(result[0].getValue(), "value" + row, "Invalid column value");
+            assertEquals(result[1].getValue(), "VALUE" + row, "Invalid function value");
+            assertEquals(result[2].getValue(), "literal", "Invalid literal value");
+            assertNull(result[3], "Aggregations should not be projected");
+            assertEquals(result[4].getValue(), row, "Invalid integer value");
+        }
+        assertNull(projector.project(NUM_ROWS - 1)[4].getValue(), "Expecting null value");
+        assertFalse(projector.project(0) == projector.project(0), "Rows should not be shared");
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryDisjunction;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Secondary index tests.
+ */
+public class InMemoryIndexTest {
+
+    /**
+     * Number of values to be indexed in the tests.
+     */
+    private static final int NUM_VALUES = 20;
+
+    /**
+     * Build an index with the values 0 to NUM_VALUES - 1, where each value is stored in the row with
+     * the same position.
+     * @param type The type of index.
+     * @return An {@link AbstractInMemoryIndex}.
+     */
+    private AbstractInMemoryIndex createTestIndex(InMemoryIndexType type){
+        AbstractInMemoryIndex index = AbstractInMemoryIndex.create(type, "idx", "col");
+        for(int row = 0; row < NUM_VALUES; row++){
+            index.insert(row, row);
+        }
+        return index;
+    }
+
+    @Test
+    public void hashIndex() throws Exception {
+        AbstractInMemoryIndex index = createTestIndex(InMemoryIndexType.HASH);
+        assertTrue(index.supports(InMemoryOperations.EQ), "Hash indexes should support EQ");
+        assertFalse(index.supports(InMemoryOperations.GT), "Hash indexes should not support GT");
+        assertEquals(index.search(InMemoryOperations.EQ, 5L), new int[]{5}, "Invalid EQ lookup");
+        assertEquals(index.search(InMemoryOperations.EQ, 5.0), new int[]{5}, "Invalid EQ lookup with double");
+        assertEquals(index.search(InMemoryOperations.IN, Arrays.<Object>asList(7, 3, 100)), new int[]{3, 7},
+                "Invalid IN lookup");
+        index.remove(5, 5);
+        assertEquals(index.search(InMemoryOperations.EQ, 5).length, 0, "Value should have been removed");
+    }
+
+    @Test
+    public void orderedIndex() throws Exception {
+        AbstractInMemoryIndex index = createTestIndex(InMemoryIndexType.ORDERED);
+        assertEquals(index.search(InMemoryOperations.GT, 17).length, 2, "Invalid GT lookup");
+        assertEquals(index.search(InMemoryOperations.GET, 17).length, 3, "Invalid GET lookup");
+        assertEquals(index.search(InMemoryOperations.LT, 2), new int[]{0, 1}, "Invalid LT lookup");
+        assertEquals(index.search(InMemoryOperations.LET, 2), new int[]{0, 1, 2}, "Invalid LET lookup");
+        assertEquals(index.search(InMemoryOperations.BETWEEN, Arrays.<Object>asList(4, 6)), new int[]{4, 5, 6},
+                "Invalid BETWEEN lookup");
+        assertEquals(index.search(InMemoryOperations.BETWEEN, Arrays.<Object>asList(6, 4)).length, 0,
+                "Empty ranges should not return rows");
+        index.clear();
+        assertEquals(index.search(InMemoryOperations.GET, 0).length, 0, "Index should be empty");
+    }
+
+    @Test
+    public void bitmapIndex() throws Exception {
+        AbstractInMemoryIndex index = createTestIndex(InMemoryIndexType.BITMAP);
+        assertTrue(index.supports(InMemoryOperations.IN), "Bitmap indexes should support IN");
+        assertFalse(index.supports(InMemoryOperations.GT), "Bitmap indexes should not support GT");
+        assertEquals(index.search(InMemoryOperations.EQ, 5.0), new int[]{5}, "Invalid EQ lookup with double");
+        assertEquals(index.search(InMemoryOperations.IN, Arrays.<Object>asList(7, 3, 100)), new int[]{3, 7},
+                "Invalid IN lookup");
+        index.remove(5, 5);
+        assertEquals(index.search(InMemoryOperations.EQ, 5).length, 0, "Value should have been removed");
+    }
+
+    @Test
+    public void roaringBitmap() {
+        RoaringBitmap sparse = new RoaringBitmap();
+        RoaringBitmap dense = new RoaringBitmap();
+        for(int row = 0; row < 3 * 65536; row++){
+            if(row % 1000 == 0){
+                sparse.add(row);
+            }
+            if(row >= 65536 && row % 3 == 0){
+                dense.add(row);
+            }
+        }
+        assertEquals(sparse.getCardinality(), 197, "Invalid sparse cardinality");
+        assertEquals(dense.getCardinality(), 43690, "Invalid dense cardinality");
+        assertTrue(dense.contains(65538) && !dense.contains(65537), "Invalid membership");
+        assertEquals(dense.rank(65536 + 9), 3, "Invalid rank");
+
+        RoaringBitmap common = sparse.and(dense);
+        int [] expected = new int[sparse.getCardinality()];
+        int size = 0;
+        for(int row = 66000; row < 3 * 65536; row += 3000){
+            expected[size++] = row;
+        }
+        assertEquals(common.toArray(), Arrays.copyOf(expected, size), "Invalid intersection");
+        RoaringBitmap all = sparse.or(dense);
+        assertEquals(all.getCardinality(), sparse.getCardinality() + dense.getCardinality() - size,
+                "Invalid union");
+        assertEquals(dense.and(all).getCardinality(), dense.getCardinality(), "Invalid dense intersection");
+        assertEquals(RoaringBitmap.of(all.toArray()).getCardinality(), all.getCardinality(), "Invalid copy");
+        dense.remove(65538);
+        assertFalse(dense.contains(65538), "Row should have been removed");
+        assertTrue(new RoaringBitmap().and(dense).isEmpty(), "Intersection should be empty");
+    }
+
+    @Test
+    public void fullTextIndex() throws Exception {
+        AbstractInMemoryIndex index = AbstractInMemoryIndex.create(InMemoryIndexType.FULL_TEXT, "idx", "col");
+        index.insert("The quick brown fox", 0);
+        index.insert("A quick-thinking dog", 1);
+        index.insert("brown dogs and the quick FOX", 2);
+        assertTrue(index.supports(InMemoryOperations.MATCH), "Full-text indexes should support MATCH");
+        assertFalse(index.supports(InMemoryOperations.EQ), "Full-text indexes should not support EQ");
+        assertEquals(index.search(InMemoryOperations.MATCH, "quick"), new int[]{0, 1, 2}, "Invalid term lookup");
+        assertEquals(index.search(InMemoryOperations.MATCH, "fox brown"), new int[]{0, 2}, "Invalid conjunction");
+        assertEquals(index.search(InMemoryOperations.MATCH, "\"quick fox\""), new int[]{2}, "Invalid phrase");
+        assertEquals(index.search(InMemoryOperations.MATCH, "\"brown fox\" OR dog"), new int[]{0, 1},
+                "Invalid disjunction");
+        assertEquals(index.search(InMemoryOperations.MATCH, "cat").length, 0, "Unknown terms should not match");
+        index.remove("The quick brown fox", 0);
+        assertEquals(index.search(InMemoryOperations.MATCH, "fox"), new int[]{2}, "Row should have been removed");
+    }
+
+    @Test
+    public void textQuery() {
+        TextQuery query = TextQuery.parse("red AND \"big apple\" OR pear");
+        assertEquals(query.getConjunctions().size(), 2, "Invalid number of conjunctions");
+        assertTrue(query.matches("A big apple, red and shiny"), "The first conjunction should match");
+        assertTrue(query.matches("Pear"), "The second conjunction should match");
+        assertFalse(query.matches("A red apple that is big"), "Phrases should be consecutive");
+        assertFalse(TextQuery.parse(" \"\" ").matches("anything"), "Empty queries should not match");
+        assertEquals(Tokenizer.tokenize("Hello, World-42!"), Arrays.asList("hello", "world", "42"),
+                "Invalid tokens");
+    }
+
+    @Test
+    public void tableSearch() {
+        String[] columnNames = new String[] { "id", "category", "amount" };
+        Class[] columnTypes = new Class[] { String.class, String.class, Integer.class };
+        InMemoryTable table = new InMemoryTable("testTable", columnNames, columnTypes, Arrays.asList("id"),
+                NUM_VALUES * 2);
+        List<InMemorySelector> outputColumns = Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"));
+        try {
+            for (int row = 0; row < NUM_VALUES / 2; row++) {
+                table.insert(createRow(row));
+            }
+            table.createIndex("category_idx", "category", InMemoryIndexType.HASH);
+            table.createIndex("amount_idx", "amount", InMemoryIndexType.ORDERED);
+            for (int row = NUM_VALUES / 2; row < NUM_VALUES; row++) {
+                table.insert(createRow(row));
+            }
+
+            List<InMemoryRelation> relations = Arrays.asList(
+                    new InMemoryRelation("category", InMemoryOperations.EQ, "c1"),
+                    new InMemoryRelation("amount", InMemoryOperations.GET, 10L));
+            List<SimpleValue[]> result = table.search(relations, outputColumns);
+            assertEquals(result.size(), table.fullScanSearch(relations, outputColumns).size(),
+                    "Indexed search should return the same rows as a full scan");
+            assertEquals(result.size(), 5, "Invalid number of rows");
+
+            Map<String, Object> update = createRow(1);
+            update.put("category", "c0");
+            table.insert(update);
+            relations = Arrays.asList(new InMemoryRelation("category", InMemoryOperations.EQ, "c0"));
+            assertEquals(table.search(relations, outputColumns).size(), 11, "The index should be updated");
+
+            table.createIndex("bitmap_idx", "category", InMemoryIndexType.BITMAP);
+            List<List<InMemoryRelation>> terms = new ArrayList<>();
+            terms.add(Arrays.asList(new InMemoryRelation("category", InMemoryOperations.EQ, "c1")));
+            terms.add(Arrays.asList(new InMemoryRelation("amount", InMemoryOperations.LT, 3)));
+            relations = Arrays.<InMemoryRelation>asList(new InMemoryDisjunction(terms));
+            assertEquals(table.search(relations, outputColumns).size(), 12, "Invalid disjunction");
+            assertEquals(table.fullScanSearch(relations, outputColumns).size(), 12, "Invalid disjunction scan");
+            assertEquals(table.snapshot().countRows(relations), -1, "Ordered indexes should not give counts");
+            relations = Arrays.asList(new InMemoryRelation("category", InMemoryOperations.EQ, "c1"));
+            assertEquals(table.snapshot().countRows(relations), 9, "Invalid count of the visible rows");
+
+            table.createIndex("text_idx", "category", InMemoryIndexType.FULL_TEXT);
+            relations = Arrays.asList(new InMemoryRelation("category", InMemoryOperations.MATCH, "C0 OR c9"));
+            assertEquals(table.search(relations, outputColumns).size(), 11, "Invalid full-text search");
+            assertEquals(table.fullScanSearch(relations, outputColumns).size(), 11, "Invalid full-text scan");
+            try {
+                table.createIndex("amount_text_idx", "amount", InMemoryIndexType.FULL_TEXT);
+                fail("Full-text indexes should require a text column");
+            } catch (Exception e) {
+                assertTrue(e.getMessage().contains("text column"), "Invalid error: " + e.getMessage());
+            }
+
+            relations = Arrays.asList(new InMemoryRelation("category", InMemoryOperations.EQ, "c0"));
+            table.dropIndex("category_idx");
+            assertEquals(table.search(relations, outputColumns).size(), 11, "Invalid search without index");
+
+            table.truncate();
+            relations = Arrays.asList(new InMemoryRelation("amount", InMemoryOperations.GET, 0));
+            assertEquals(table.search(relations, outputColumns).size(), 0, "The index should be empty");
+        } catch (Exception e) {
+            fail("Indexed search should work", e);
+        }
+    }
+
+    /**
+     * Create a test row.
+     * @param index The row number.
+     * @return A map associating column names with values.
+     */
+    private Map<String, Object> createRow(int index){
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", "id" + index);
+        row.put("category", "c" + (index % 2));
+        row.put("amount", index);
+        return row;
+    }
+}
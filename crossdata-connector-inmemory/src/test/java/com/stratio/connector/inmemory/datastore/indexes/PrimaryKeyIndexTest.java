@@ -0,0 +1,112 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.indexes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+
+/**
+ * Primary key index tests.
+ */
+public class PrimaryKeyIndexTest {
+
+    /**
+     * Number of values of each key column.
+     */
+    private static final int NUM_VALUES = 10;
+
+    /**
+     * Build an index over a composite key (country, id) where country takes the values c0 to c9, and
+     * id the values 0 to 9. The row position is country * NUM_VALUES + id.
+     * @return A {@link PrimaryKeyIndex}.
+     */
+    private PrimaryKeyIndex createTestIndex(){
+        PrimaryKeyIndex index = new PrimaryKeyIndex(new String[]{"country", "id"},
+                new Class[]{String.class, Integer.class});
+        for(int country = 0; country < NUM_VALUES; country++){
+            for(int id = 0; id < NUM_VALUES; id++){
+                index.put(index.createKey(new Object[]{"c" + country, id}), country * NUM_VALUES + id);
+            }
+        }
+        return index;
+    }
+
+    @Test
+    public void keyComparison(){
+        assertEquals(new PrimaryKey("a", 1), new PrimaryKey("a", 1L), "Numeric components should be normalized");
+        assertEquals(new PrimaryKey(1.0).hashCode(), new PrimaryKey(1).hashCode(), "Invalid hash code");
+        assertTrue(new PrimaryKey("a").compareTo(new PrimaryKey("a", 1)) < 0, "Prefixes should be sorted first");
+        assertTrue(new PrimaryKey("a", 2).compareTo(new PrimaryKey("a", 10)) < 0, "Invalid numeric order");
+    }
+
+    @Test
+    public void pointLookup(){
+        PrimaryKeyIndex index = createTestIndex();
+        List<InMemoryRelation> relations = Arrays.asList(
+                new InMemoryRelation("country", InMemoryOperations.EQ, "c3"),
+                new InMemoryRelation("id", InMemoryOperations.EQ, 4L));
+        assertEquals(index.search(relations), new int[]{34}, "Invalid point lookup");
+        assertEquals(index.get(index.createKey(new Object[]{"c3", "4"})), Integer.valueOf(34),
+                "Keys should be converted to the column type");
+    }
+
+    @Test
+    public void batchLookup(){
+        PrimaryKeyIndex index = createTestIndex();
+        List<InMemoryRelation> relations = Arrays.asList(
+                new InMemoryRelation("country", InMemoryOperations.IN, Arrays.<Object>asList("c1", "c2", "missing")),
+                new InMemoryRelation("id", InMemoryOperations.IN, Arrays.<Object>asList(9, 0)));
+        assertEquals(index.search(relations), new int[]{10, 19, 20, 29}, "Invalid IN lookup");
+    }
+
+    @Test
+    public void prefixRange(){
+        PrimaryKeyIndex index = createTestIndex();
+        List<InMemoryRelation> relations = new ArrayList<>();
+        relations.add(new InMemoryRelation("country", InMemoryOperations.EQ, "c5"));
+        assertEquals(index.search(relations).length, NUM_VALUES, "Invalid prefix lookup");
+
+        relations.add(new InMemoryRelation("id", InMemoryOperations.GT, 6));
+        assertEquals(index.search(relations), new int[]{57, 58, 59}, "Invalid prefix range");
+
+        relations.add(new InMemoryRelation("id", InMemoryOperations.LET, 8));
+        assertEquals(index.search(relations), new int[]{57, 58}, "Invalid bounded prefix range");
+
+        relations = Arrays.asList(new InMemoryRelation("country", InMemoryOperations.BETWEEN,
+                Arrays.<Object>asList("c8", "c9")));
+        assertEquals(index.search(relations).length, 2 * NUM_VALUES, "Invalid range over the first column");
+    }
+
+    @Test
+    public void fallback(){
+        PrimaryKeyIndex index = createTestIndex();
+        List<InMemoryRelation> relations = Arrays.asList(new InMemoryRelation("id", InMemoryOperations.EQ, 1));
+        assertNull(index.search(relations), "Relations that do not restrict the first column require a scan");
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+/**
+ * Memory budget tests.
+ */
+public class MemoryBudgetTest {
+
+    @Test
+    public void reserveWithinLimits() throws Exception {
+        MemoryBudget datastore = new MemoryBudget("datastore", 1000, null);
+        MemoryBudget table = new MemoryBudget("table", 600, datastore);
+        table.reserve(500);
+        assertEquals(table.getUsed(), 500, "Invalid table usage");
+        assertEquals(datastore.getUsed(), 500, "Table bytes should be accounted in the datastore");
+        table.adjust(-200);
+        assertEquals(table.getUsed(), 300, "Invalid table usage after release");
+        assertEquals(datastore.getUsed(), 300, "Invalid datastore usage after release");
+    }
+
+    @Test
+    public void rejectOverLimit() throws Exception {
+        MemoryBudget datastore = new MemoryBudget("datastore", 1000, null);
+        MemoryBudget first = new MemoryBudget("first", 0, datastore);
+        MemoryBudget second = new MemoryBudget("second", 0, datastore);
+        first.reserve(800);
+        try {
+            second.reserve(300);
+            fail("The datastore limit should be enforced");
+        }catch(Exception e){
+            assertEquals(second.getUsed(), 0, "Rejected bytes should not be accounted");
+            assertEquals(datastore.getUsed(), 800, "Rejected bytes should not be accounted in the datastore");
+        }
+        second.reserve(200);
+        assertEquals(datastore.getUsed(), 1000, "Invalid datastore usage");
+    }
+
+    @Test
+    public void parseSizes(){
+        assertEquals(MemoryBudget.parseSize("1024"), 1024, "Invalid bytes");
+        assertEquals(MemoryBudget.parseSize("64k"), 64L << 10, "Invalid kilobytes");
+        assertEquals(MemoryBudget.parseSize("512M"), 512L << 20, "Invalid megabytes");
+        assertEquals(MemoryBudget.parseSize("4gb"), 4L << 30, "Invalid gigabytes");
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void invalidSize(){
+        MemoryBudget.parseSize("lots");
+    }
+}
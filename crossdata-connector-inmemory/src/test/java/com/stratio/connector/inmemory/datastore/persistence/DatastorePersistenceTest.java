@@ -0,0 +1,604 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.persistence;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.TableOptions;
+import com.stratio.connector.inmemory.datastore.TableSnapshot;
+import com.stratio.connector.inmemory.datastore.indexes.InMemoryIndexType;
+
+/**
+ * Snapshot and write-ahead log tests.
+ */
+public class DatastorePersistenceTest {
+
+    /**
+     * Maximum number of rows in a table.
+     */
+    private static final int TABLE_MAX_ROWS = 100000;
+
+    /**
+     * Name of the test catalog.
+     */
+    private static final String CATALOG_NAME = "persisted_catalog";
+
+    /**
+     * Name of the test table.
+     */
+    private static final String TABLE_NAME = "persisted_table";
+
+    /**
+     * Persistence directory of each test.
+     */
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("inmemory-persistence").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file : files){
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+
+    /**
+     * Create a persisted datastore, recovering the content of the test directory.
+     * @param syncPolicy The sync policy.
+     * @return The datastore.
+     * @throws Exception If the datastore cannot be recovered.
+     */
+    private InMemoryDatastore openDatastore(SyncPolicy syncPolicy) throws Exception {
+        InMemoryDatastore datastore = new InMemoryDatastore(TABLE_MAX_ROWS);
+        datastore.enablePersistence(new PersistenceSettings(directory, syncPolicy,
+                PersistenceSettings.DEFAULT_SYNC_INTERVAL, 0));
+        return datastore;
+    }
+
+    /**
+     * Create the test catalog and table.
+     * @param datastore The datastore.
+     * @throws Exception If the table cannot be created.
+     */
+    private void createTable(InMemoryDatastore datastore) throws Exception {
+        datastore.createCatalog(CATALOG_NAME);
+        datastore.createTable(CATALOG_NAME, TABLE_NAME, new String[]{ "id", "value", "created" },
+                new Class[]{ Integer.class, String.class, Date.class }, Arrays.asList("id"));
+    }
+
+    /**
+     * Insert a range of rows whose value is derived from their key.
+     * @param datastore The datastore.
+     * @param from The first key.
+     * @param to The last key, exclusive.
+     * @param prefix The prefix of the values.
+     * @throws Exception If the rows cannot be inserted.
+     */
+    private void insertRows(InMemoryDatastore datastore, int from, int to, String prefix) throws Exception {
+        datastore.insert(CATALOG_NAME, TABLE_NAME, createRows(from, to, prefix));
+    }
+
+    /**
+     * Create a range of rows whose value is derived from their key.
+     * @param from The first key.
+     * @param to The last key, exclusive.
+     * @param prefix The prefix of the values.
+     * @return The batch of rows.
+     */
+    private InMemoryColumnBatch createRows(int from, int to, String prefix) {
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "value", "created"), to - from);
+        for(int id = from; id < to; id++){
+            batch.addRow(id, prefix + id, new Date(id));
+        }
+        return batch;
+    }
+
+    /**
+     * Read the visible rows of the test table.
+     * @param datastore The datastore.
+     * @return A map associating the key of each row with its value.
+     * @throws Exception If the table cannot be read.
+     */
+    private Map<Object, Object> readRows(InMemoryDatastore datastore) throws Exception {
+        TableSnapshot table = datastore.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME).snapshot();
+        Map<Object, Object> rows = new HashMap<>();
+        for(int row = 0; row < table.getNumRows(); row++){
+            if(table.isVisible(row)){
+                rows.put(table.getColumn("id").get(row), table.getColumn("value").get(row));
+                assertEquals(table.getColumn("created").get(row), new Date((Integer) table.getColumn("id").get(row)),
+                        "Invalid date");
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void recoverFromLog() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        createTable(datastore);
+        datastore.createIndex(CATALOG_NAME, TABLE_NAME, "value_idx", "value", InMemoryIndexType.HASH);
+        insertRows(datastore, 0, 100, "old");
+        datastore.truncateTable(CATALOG_NAME, TABLE_NAME);
+        insertRows(datastore, 0, 50, "new");
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 7);
+        row.put("value", "updated");
+        row.put("created", new Date(7));
+        datastore.insert(CATALOG_NAME, TABLE_NAME, row);
+        Map<Object, Object> expected = readRows(datastore);
+        datastore.close();
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(recovered), expected, "Invalid recovered rows");
+        assertEquals(recovered.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME).getIndexes().keySet(),
+                Collections.singleton("value_idx"), "Invalid recovered indexes");
+        recovered.close();
+    }
+
+    @Test
+    public void recoverDeletesAndUpdates() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        createTable(datastore);
+        insertRows(datastore, 0, 100, "old");
+        assertEquals(datastore.delete(CATALOG_NAME, TABLE_NAME, Arrays.asList(
+                new InMemoryRelation("id", InMemoryOperations.GET, 90))), 10, "Invalid number of deleted rows");
+        Map<String, Object> assignments = new HashMap<>();
+        assignments.put("value", "updated");
+        assertEquals(datastore.update(CATALOG_NAME, TABLE_NAME, Arrays.asList(
+                new InMemoryRelation("id", InMemoryOperations.LT, 5)), assignments), 5,
+                "Invalid number of updated rows");
+        Map<Object, Object> expected = readRows(datastore);
+        assertEquals(expected.size(), 90, "Invalid number of rows");
+        assertEquals(expected.get(3), "updated", "Invalid updated value");
+        datastore.close();
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(recovered), expected, "Invalid recovered rows");
+        recovered.close();
+    }
+
+    @Test
+    public void recoverTableOptions() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        datastore.createCatalog(CATALOG_NAME);
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.TIME_PARTITION_COLUMN_OPTION, "id");
+        datastore.createTable(CATALOG_NAME, TABLE_NAME, new String[]{ "id", "value", "created" },
+                new Class[]{ Integer.class, String.class, Date.class }, Arrays.asList("id"), options);
+        datastore.getPersistence().snapshot();
+        datastore.close();
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(recovered.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME).getOptions()
+                .getTimePartitionColumn(), "id", "Invalid recovered options");
+        recovered.close();
+    }
+
+    @Test
+    public void recoverFromSnapshotAndLog() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.GROUP_COMMIT);
+        createTable(datastore);
+        insertRows(datastore, 0, 1000, "first");
+        insertRows(datastore, 0, 10, "second");
+        datastore.getPersistence().snapshot();
+        insertRows(datastore, 1000, 1100, "third");
+        Map<Object, Object> expected = readRows(datastore);
+        datastore.close();
+
+        List<String> files = new ArrayList<>(Arrays.asList(directory.list()));
+        assertTrue(files.contains(DatastorePersistence.SNAPSHOT_FILE), "Snapshot not found: " + files);
+        assertFalse(files.contains("wal-0.log"), "Logs included in the snapshot should be removed: " + files);
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.GROUP_COMMIT);
+        Map<Object, Object> rows = readRows(recovered);
+        assertEquals(rows.size(), 1100, "Invalid number of rows");
+        assertEquals(rows, expected, "Invalid recovered rows");
+        assertEquals(rows.get(5), "second5", "Replaced rows should keep their last value");
+        recovered.close();
+    }
+
+    @Test
+    public void discardTornTail() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        createTable(datastore);
+        insertRows(datastore, 0, 10, "value");
+        datastore.close();
+
+        File log = new File(directory, "wal-0.log");
+        try(RandomAccessFile file = new RandomAccessFile(log, "rw")){
+            file.seek(file.length());
+            file.writeInt(1000);
+            file.writeInt(0);
+            file.write(new byte[]{ 1, 2, 3 });
+        }
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(recovered).size(), 10, "Valid records should be recovered");
+        insertRows(recovered, 10, 20, "value");
+        recovered.close();
+
+        InMemoryDatastore again = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(again).size(), 20, "Records after recovery should be logged");
+        again.close();
+    }
+
+    /**
+     * Read the write time of the visible rows of the test table.
+     * @param datastore The datastore.
+     * @return A map associating the key of each row with its write time.
+     * @throws Exception If the table cannot be read.
+     */
+    private Map<Object, Long> readWriteTimes(InMemoryDatastore datastore) throws Exception {
+        TableSnapshot table = datastore.getCatalogs().get(CATALOG_NAME).getTable(TABLE_NAME).snapshot();
+        Map<Object, Long> times = new HashMap<>();
+        for(int row = 0; row < table.getNumRows(); row++){
+            if(table.isVisible(row)){
+                times.put(table.getColumn("id").get(row), table.getWriteTime(row));
+            }
+        }
+        return times;
+    }
+
+    @Test
+    public void recoverWriteTimes() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        datastore.createCatalog(CATALOG_NAME);
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.TTL_OPTION, "1h");
+        datastore.createTable(CATALOG_NAME, TABLE_NAME, new String[]{ "id", "value", "created" },
+                new Class[]{ Integer.class, String.class, Date.class }, Arrays.asList("id"), options);
+        insertRows(datastore, 0, 10, "first");
+        datastore.getPersistence().snapshot();
+        Thread.sleep(5);
+        insertRows(datastore, 10, 20, "second");
+        Thread.sleep(5);
+        Map<String, Object> assignments = new HashMap<>();
+        assignments.put("value", "updated");
+        datastore.update(CATALOG_NAME, TABLE_NAME, Arrays.asList(
+                new InMemoryRelation("id", InMemoryOperations.EQ, 3)), assignments);
+        Map<Object, Long> expected = readWriteTimes(datastore);
+        datastore.close();
+        Thread.sleep(20);
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readWriteTimes(recovered), expected, "Recovered rows should keep their write time");
+        recovered.close();
+    }
+
+    @Test
+    public void failOnLostRows() throws Exception {
+        InMemoryDatastore datastore = openDatastore(SyncPolicy.EVERY_WRITE);
+        createTable(datastore);
+        insertRows(datastore, 0, 100, "value");
+        datastore.close();
+
+        InMemoryDatastore smaller = new InMemoryDatastore(10);
+        try {
+            smaller.enablePersistence(new PersistenceSettings(directory, SyncPolicy.EVERY_WRITE,
+                    PersistenceSettings.DEFAULT_SYNC_INTERVAL, 0));
+            fail("Recovery should fail if logged rows cannot be replayed");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("INSERT"), "Invalid message: " + e.getMessage());
+        }
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(recovered).size(), 100, "A failed recovery should keep the logged rows");
+        recovered.close();
+    }
+
+    @Test
+    public void discardFailedOperations() throws Exception {
+        PersistenceSettings settings = new PersistenceSettings(directory, SyncPolicy.EVERY_WRITE,
+                PersistenceSettings.DEFAULT_SYNC_INTERVAL, 0);
+        InMemoryDatastore datastore = new InMemoryDatastore(10);
+        datastore.enablePersistence(settings);
+        createTable(datastore);
+        insertRows(datastore, 0, 10, "value");
+        try {
+            insertRows(datastore, 10, 20, "value");
+            fail("Rows over the row limit should not be inserted");
+        } catch (Exception e) {
+            assertFalse(e instanceof IOException, "Unexpected log error: " + e);
+        }
+        insertRows(datastore, 0, 5, "second");
+        datastore.close();
+
+        InMemoryDatastore recovered = new InMemoryDatastore(10);
+        recovered.enablePersistence(settings);
+        Map<Object, Object> rows = readRows(recovered);
+        assertEquals(rows.size(), 10, "Failed operations should not be recovered");
+        assertEquals(rows.get(4), "second4", "Operations after a failed one should be recovered");
+        recovered.close();
+    }
+
+    @Test
+    public void rejectWritesAfterFailedAppend() throws Exception {
+        LogRecord[] records = new LogRecord[]{
+                LogRecord.createCatalog(CATALOG_NAME),
+                LogRecord.createTable(CATALOG_NAME, TABLE_NAME, new String[]{ "id", "value", "created" },
+                        new Class[]{ Integer.class, String.class, Date.class }, Arrays.asList("id")),
+                LogRecord.insert(CATALOG_NAME, TABLE_NAME, createRows(0, 10, "value")),
+                LogRecord.insert(CATALOG_NAME, TABLE_NAME, createRows(10, 20, "value")),
+                LogRecord.insert(CATALOG_NAME, TABLE_NAME, createRows(20, 30, "value"))
+        };
+        long capacity = WriteAheadLog.HEADER_SIZE + WriteAheadLog.frame(records[3]).length / 2;
+        for(int index = 0; index < 3; index++){
+            capacity += WriteAheadLog.frame(records[index]).length;
+        }
+        File file = new File(directory, "wal-0.log");
+        FileChannel channel = new FailingChannel(FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE), capacity);
+        WriteAheadLog log = new WriteAheadLog(channel, 0, 0, SyncPolicy.EVERY_WRITE);
+        for(int index = 0; index < 3; index++){
+            log.append(records[index]);
+        }
+        for(int index = 3; index < records.length; index++){
+            try {
+                log.append(records[index]);
+                fail("Records should be rejected after a failed append");
+            } catch (IOException e) {
+                assertTrue(log.isFailed(), "The log should fail");
+            }
+        }
+        log.close();
+        try(RecordReader reader = new RecordReader(file)){
+            int count = 0;
+            while(reader.next() != null){
+                count++;
+            }
+            assertEquals(count, 3, "Invalid number of logged records");
+            assertFalse(reader.isTorn(), "The failed record should be truncated");
+        }
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.EVERY_WRITE);
+        assertEquals(readRows(recovered).size(), 10, "Records before the failure should be recovered");
+        insertRows(recovered, 30, 40, "value");
+        recovered.close();
+
+        InMemoryDatastore again = openDatastore(SyncPolicy.EVERY_WRITE);
+        Map<Object, Object> rows = readRows(again);
+        assertEquals(rows.size(), 20, "Records after reopening should be recovered");
+        assertTrue(rows.containsKey(35), "Records after reopening should be recovered");
+        again.close();
+    }
+
+    @Test
+    public void concurrentGroupCommit() throws Exception {
+        final InMemoryDatastore datastore = openDatastore(SyncPolicy.GROUP_COMMIT);
+        createTable(datastore);
+        final int rowsPerThread = 200;
+        List<Thread> threads = new ArrayList<>();
+        final List<Exception> errors = new ArrayList<>();
+        for(int thread = 0; thread < 4; thread++){
+            final int first = thread * rowsPerThread;
+            threads.add(new Thread(){
+                @Override
+                public void run() {
+                    try {
+                        for(int id = first; id < first + rowsPerThread; id++){
+                            insertRows(datastore, id, id + 1, "value");
+                        }
+                    }catch(Exception e){
+                        synchronized(errors){
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for(Thread thread : threads){
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), "Concurrent inserts failed: " + errors);
+        datastore.close();
+
+        InMemoryDatastore recovered = openDatastore(SyncPolicy.GROUP_COMMIT);
+        assertEquals(readRows(recovered).size(), 4 * rowsPerThread, "Invalid number of recovered rows");
+        recovered.close();
+    }
+
+    @Test
+    public void readSettings() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("TableRowLimit", "10");
+        assertEquals(PersistenceSettings.fromOptions(options), null, "Persistence should be disabled");
+        options.put(PersistenceSettings.DIRECTORY_PROPERTY, directory.getPath());
+        options.put(PersistenceSettings.SYNC_POLICY_PROPERTY, "periodic");
+        options.put(PersistenceSettings.SYNC_INTERVAL_PROPERTY, "250");
+        PersistenceSettings settings = PersistenceSettings.fromOptions(options);
+        assertEquals(settings.getDirectory(), directory, "Invalid directory");
+        assertEquals(settings.getSyncPolicy(), SyncPolicy.PERIODIC, "Invalid sync policy");
+        assertEquals(settings.getSyncInterval(), 250, "Invalid sync interval");
+        assertEquals(settings.getSnapshotInterval(), PersistenceSettings.DEFAULT_SNAPSHOT_INTERVAL,
+                "Invalid snapshot interval");
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void invalidSyncPolicy() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(PersistenceSettings.DIRECTORY_PROPERTY, directory.getPath());
+        options.put(PersistenceSettings.SYNC_POLICY_PROPERTY, "sometimes");
+        PersistenceSettings.fromOptions(options);
+    }
+
+    /**
+     * Channel that fails once a number of bytes have been written, writing part of the record that
+     * exceeds them as a full disk would.
+     */
+    private static class FailingChannel extends FileChannel {
+
+        /**
+         * Channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Number of bytes that can still be written.
+         */
+        private long capacity;
+
+        /**
+         * Class constructor.
+         * @param channel The channel of the file.
+         * @param capacity The number of bytes that can be written.
+         */
+        public FailingChannel(FileChannel channel, long capacity) {
+            this.channel = channel;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if(capacity == 0){
+                throw new IOException("No space left on device");
+            }
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + (int) Math.min(part.remaining(), capacity));
+            int written = channel.write(part);
+            src.position(src.position() + written);
+            capacity -= written;
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for(int index = offset; index < offset + length; index++){
+                written += write(srcs[index]);
+            }
+            return written;
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            throw new IOException("Positional writes are not supported");
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            throw new IOException("Transfers are not supported");
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
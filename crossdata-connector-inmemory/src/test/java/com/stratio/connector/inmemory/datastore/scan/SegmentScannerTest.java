@@ -0,0 +1,255 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.scan;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.InMemorySample;
+import com.stratio.connector.inmemory.datastore.InMemoryTable;
+import com.stratio.connector.inmemory.datastore.columns.AbstractInMemoryColumn;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.iterators.LimitIterator;
+import com.stratio.connector.inmemory.datastore.sort.RowComparator;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Segment scan tests.
+ */
+public class SegmentScannerTest {
+
+    /**
+     * Number of rows of the test table.
+     */
+    private static final int NUM_ROWS = 1000;
+
+    /**
+     * Number of rows of each segment.
+     */
+    private static final int SEGMENT_SIZE = 64;
+
+    /**
+     * Number of threads of the pool.
+     */
+    private static final int PARALLELISM = 4;
+
+    /**
+     * Pool used to scan the segments.
+     */
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    /**
+     * Scanner under test.
+     */
+    private final SegmentScanner scanner = new SegmentScanner(pool, PARALLELISM, SEGMENT_SIZE);
+
+    @AfterClass
+    public void shutdown(){
+        pool.shutdown();
+    }
+
+    /**
+     * Create a table with an id and a value column, where the value is id modulo 10.
+     * @return An {@link InMemoryTable}.
+     * @throws Exception If the table cannot be filled.
+     */
+    private InMemoryTable createTable() throws Exception {
+        InMemoryTable table = new InMemoryTable("test", new String[]{"id", "value"},
+                new Class[]{Integer.class, Integer.class}, Arrays.asList("id"), NUM_ROWS);
+        for(int id = 0; id < NUM_ROWS; id++){
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", id);
+            row.put("value", id % 10);
+            table.insert(row);
+        }
+        return table;
+    }
+
+    /**
+     * Get the output columns of the test queries.
+     * @return The id and value columns.
+     */
+    private List<InMemorySelector> outputColumns(){
+        return Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"), new InMemoryColumnSelector("value"));
+    }
+
+    @Test
+    public void unorderedScan() throws Exception {
+        InMemoryTable table = createTable();
+        ScanMetrics metrics = new ScanMetrics();
+        InMemoryRelation relation = new InMemoryRelation("value", InMemoryOperations.EQ, 3);
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), Arrays.asList(relation), outputColumns(), null, -1, metrics);
+        Set<Object> ids = new HashSet<>();
+        while(rows.hasNext()){
+            SimpleValue[] row = rows.next();
+            assertEquals(row[1].getValue(), 3, "Invalid row");
+            ids.add(row[0].getValue());
+        }
+        assertEquals(ids.size(), NUM_ROWS / 10, "Invalid number of rows");
+        assertEquals(metrics.getSegments(), (NUM_ROWS + SEGMENT_SIZE - 1) / SEGMENT_SIZE, "Invalid number of segments");
+        assertEquals(metrics.getScannedRows(), NUM_ROWS, "Invalid number of scanned rows");
+        assertEquals(metrics.getMatchedRows(), NUM_ROWS / 10, "Invalid number of matched rows");
+    }
+
+    @Test
+    public void limitStopsScan() throws Exception {
+        InMemoryTable table = createTable();
+        ScanMetrics metrics = new ScanMetrics();
+        Iterator<SimpleValue[]> rows = new LimitIterator<>(scanner.scan(table.snapshot(), new ArrayList<InMemoryRelation>(),
+                outputColumns(), null, -1, metrics), 5);
+        int count = 0;
+        while(rows.hasNext()){
+            rows.next();
+            count++;
+        }
+        assertEquals(count, 5, "Invalid number of rows");
+        assertTrue(metrics.getScannedRows() <= (PARALLELISM + 1) * SEGMENT_SIZE,
+                "The scan should stop after the limit: " + metrics);
+    }
+
+    @Test
+    public void orderedScan() throws Exception {
+        InMemoryTable table = createTable();
+        RowComparator order = new RowComparator(new int[]{1, 0}, new boolean[]{false, true});
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), new ArrayList<InMemoryRelation>(), outputColumns(),
+                order, -1, new ScanMetrics());
+        int count = 0;
+        SimpleValue[] previous = null;
+        while(rows.hasNext()){
+            SimpleValue[] row = rows.next();
+            if(previous != null){
+                assertTrue(order.compare(previous, row) < 0, "Rows are not ordered");
+            }
+            previous = row;
+            count++;
+        }
+        assertEquals(count, NUM_ROWS, "Invalid number of rows");
+    }
+
+    @Test
+    public void orderedScanWithLimit() throws Exception {
+        InMemoryTable table = createTable();
+        RowComparator order = new RowComparator(new int[]{0}, new boolean[]{false});
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), new ArrayList<InMemoryRelation>(), outputColumns(),
+                order, 3, new ScanMetrics());
+        List<Object> ids = new ArrayList<>();
+        for(int index = 0; index < 3; index++){
+            ids.add(rows.next()[0].getValue());
+        }
+        assertEquals(ids, Arrays.<Object>asList(NUM_ROWS - 1, NUM_ROWS - 2, NUM_ROWS - 3), "Invalid top rows");
+    }
+
+    @Test
+    public void indexedScanIsSequential() throws Exception {
+        InMemoryTable table = createTable();
+        ScanMetrics metrics = new ScanMetrics();
+        InMemoryRelation relation = new InMemoryRelation("id", InMemoryOperations.EQ, 42);
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), Arrays.asList(relation), outputColumns(), null, -1, metrics);
+        assertEquals(rows.next()[0].getValue(), 42, "Invalid row");
+        assertEquals(metrics.getSegments(), 1, "Primary key lookups should not be split");
+        assertEquals(metrics.getScannedRows(), 1, "Only the candidate row should be scanned");
+    }
+
+    @Test
+    public void cancelledScanStops() throws Exception {
+        InMemoryTable table = createTable();
+        QueryCancellation cancellation = new QueryCancellation();
+        ScanMetrics metrics = new ScanMetrics(cancellation);
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), new ArrayList<InMemoryRelation>(), outputColumns(),
+                null, -1, metrics);
+        rows.next();
+        cancellation.cancel("test");
+        try {
+            while(rows.hasNext()){
+                rows.next();
+            }
+            fail("The scan should be cancelled");
+        } catch (QueryCancelledException e) {
+            assertTrue(e.getMessage().contains("test"), "Invalid reason");
+        }
+        assertTrue(metrics.getScannedRows() < NUM_ROWS, "The scan should stop: " + metrics);
+        RowComparator order = new RowComparator(new int[]{0}, new boolean[]{true});
+        try {
+            scanner.scan(table.snapshot(), new ArrayList<InMemoryRelation>(), outputColumns(), order, -1, metrics);
+            fail("The ordered scan should be cancelled");
+        } catch (QueryCancelledException e) {
+            assertTrue(cancellation.isCancelled(), "The query should remain cancelled");
+        }
+    }
+
+    @Test
+    public void deadlineCancelsScan() throws Exception {
+        QueryCancellation cancellation = new QueryCancellation(1);
+        Thread.sleep(5);
+        assertTrue(cancellation.isCancelled(), "The deadline should have expired");
+        assertTrue(cancellation.getReason().contains("Deadline"), "Invalid reason");
+        assertFalse(new QueryCancellation().isCancelled(), "Queries without deadline should not expire");
+    }
+
+    @Test
+    public void sampledScan() throws Exception {
+        int numZones = 32;
+        InMemoryTable table = new InMemoryTable("test", new String[]{"id"}, new Class[]{Integer.class},
+                Arrays.asList("id"), numZones * AbstractInMemoryColumn.ZONE_SIZE);
+        for(int id = 0; id < numZones * AbstractInMemoryColumn.ZONE_SIZE; id++){
+            table.insert(Collections.<String, Object>singletonMap("id", id));
+        }
+        List<InMemoryRelation> sample = Arrays.<InMemoryRelation>asList(new InMemorySample(0.5, 42));
+        List<InMemorySelector> outputColumns = Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id"));
+        ScanMetrics metrics = new ScanMetrics();
+        Iterator<SimpleValue[]> rows = scanner.scan(table.snapshot(), sample, outputColumns, null, -1, metrics);
+        Set<Integer> zones = new HashSet<>();
+        int count = 0;
+        while(rows.hasNext()){
+            zones.add((Integer) rows.next()[0].getValue() / AbstractInMemoryColumn.ZONE_SIZE);
+            count++;
+        }
+        assertTrue(zones.size() > 0 && zones.size() < numZones, "Invalid number of sampled zones " + zones.size());
+        assertEquals(count, zones.size() * AbstractInMemoryColumn.ZONE_SIZE, "Sampled zones should be complete");
+        assertEquals(metrics.getScannedRows(), count, "Zones not sampled should be skipped");
+
+        rows = SegmentScanner.sequential().scan(table.snapshot(), sample, outputColumns, null, -1, new ScanMetrics());
+        int repeated = 0;
+        while(rows.hasNext()){
+            assertTrue(zones.contains((Integer) rows.next()[0].getValue() / AbstractInMemoryColumn.ZONE_SIZE),
+                    "Samples with the same seed should be repeatable");
+            repeated++;
+        }
+        assertEquals(repeated, count, "Invalid number of sampled rows");
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.sort;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancellation;
+import com.stratio.connector.inmemory.datastore.scan.QueryCancelledException;
+
+/**
+ * Sorting tests.
+ */
+public class SortTest {
+
+    /**
+     * Number of rows to be sorted in the tests.
+     */
+    private static final int NUM_ROWS = ParallelSort.PARALLEL_THRESHOLD * 4;
+
+    /**
+     * Number of distinct keys, lower than the number of rows to check the stability.
+     */
+    private static final int NUM_KEYS = 100;
+
+    /**
+     * Pool used to sort in parallel.
+     */
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void shutdown(){
+        pool.shutdown();
+    }
+
+    /**
+     * Create a list of rows with a random key column and a sequence column.
+     * @return A list of rows.
+     */
+    private List<SimpleValue[]> createRows(){
+        Random random = new Random(42);
+        List<SimpleValue[]> rows = new ArrayList<>(NUM_ROWS);
+        for(int index = 0; index < NUM_ROWS; index++){
+            rows.add(new SimpleValue[]{
+                    new SimpleValue(random.nextInt(NUM_KEYS)),
+                    new SimpleValue(index)});
+        }
+        return rows;
+    }
+
+    @Test
+    public void compareValues(){
+        assertEquals(RowComparator.compareValues(null, 1), -1, "Nulls should go first");
+        assertEquals(RowComparator.compareValues(1, 2L), -1, "Invalid numeric comparison");
+        assertEquals(RowComparator.compareValues(2.5, 2), 1, "Invalid numeric comparison");
+        assertEquals(RowComparator.compareValues("a", "a"), 0, "Invalid string comparison");
+    }
+
+    @Test
+    public void parallelSortIsStable(){
+        List<SimpleValue[]> rows = createRows();
+        RowComparator comparator = new RowComparator(new int[]{0}, new boolean[]{false});
+        ParallelSort.sort(rows, comparator, pool);
+        assertEquals(rows.size(), NUM_ROWS, "Invalid number of rows");
+        for(int index = 1; index < rows.size(); index++){
+            int key1 = (Integer) rows.get(index - 1)[0].getValue();
+            int key2 = (Integer) rows.get(index)[0].getValue();
+            assertEquals(key1 >= key2, true, "Rows are not sorted in descending order");
+            if(key1 == key2){
+                int seq1 = (Integer) rows.get(index - 1)[1].getValue();
+                int seq2 = (Integer) rows.get(index)[1].getValue();
+                assertEquals(seq1 < seq2, true, "Sort is not stable");
+            }
+        }
+    }
+
+    @Test
+    public void topNMatchesFullSort(){
+        List<SimpleValue[]> rows = createRows();
+        Comparator<SimpleValue[]> comparator = new RowComparator(new int[]{0}, new boolean[]{true});
+        TopN<SimpleValue[]> topN = new TopN<>(50, comparator);
+        topN.addAll(rows);
+        List<SimpleValue[]> result = topN.getResult();
+
+        List<SimpleValue[]> expected = new ArrayList<>(rows);
+        Collections.sort(expected, comparator);
+        assertEquals(result.size(), 50, "Invalid number of rows");
+        for(int index = 0; index < result.size(); index++){
+            assertEquals(result.get(index)[1].getValue(), expected.get(index)[1].getValue(), "Invalid row " + index);
+        }
+    }
+
+    @Test
+    public void topNWithFewRows(){
+        TopN<Integer> topN = new TopN<>(10, Collections.<Integer>reverseOrder());
+        topN.addAll(Arrays.asList(3, 1, 2));
+        assertEquals(topN.getResult(), Arrays.asList(3, 2, 1), "Invalid result");
+        TopN<Integer> empty = new TopN<>(0, Collections.<Integer>reverseOrder());
+        empty.add(1);
+        assertEquals(empty.getResult().size(), 0, "Limit 0 should return no rows");
+    }
+
+    @Test
+    public void cancelledSortStops(){
+        List<SimpleValue[]> rows = createRows();
+        final QueryCancellation cancellation = new QueryCancellation();
+        final RowComparator order = new RowComparator(new int[]{0}, new boolean[]{true});
+        Comparator<SimpleValue[]> comparator = new Comparator<SimpleValue[]>() {
+            private int comparisons = 0;
+
+            @Override
+            public int compare(SimpleValue[] first, SimpleValue[] second) {
+                if(++comparisons >= NUM_ROWS){
+                    cancellation.cancel("test");
+                }
+                return order.compare(first, second);
+            }
+        };
+        try {
+            ParallelSort.sort(rows, comparator, pool, cancellation);
+            fail("The sort should be cancelled");
+        } catch (QueryCancelledException e) {
+            assertTrue(cancellation.isCancelled(), "The query should be cancelled");
+        }
+        try {
+            ParallelSort.sort(rows.iterator(), order, 10, null, cancellation);
+            fail("The top-n sort should be cancelled");
+        } catch (QueryCancelledException e) {
+            assertTrue(e.getMessage().contains("test"), "Invalid reason");
+        }
+    }
+}
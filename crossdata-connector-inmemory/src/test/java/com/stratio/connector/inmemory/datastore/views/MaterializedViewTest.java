@@ -0,0 +1,294 @@
+/*
+ * Licensed to STRATIO (C) under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.  The STRATIO (C) licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.stratio.connector.inmemory.datastore.views;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.stratio.connector.inmemory.datastore.InMemoryColumnBatch;
+import com.stratio.connector.inmemory.datastore.InMemoryDatastore;
+import com.stratio.connector.inmemory.datastore.InMemoryHavingRelation;
+import com.stratio.connector.inmemory.datastore.InMemoryOperations;
+import com.stratio.connector.inmemory.datastore.InMemoryQuery;
+import com.stratio.connector.inmemory.datastore.InMemoryRelation;
+import com.stratio.connector.inmemory.datastore.TableOptions;
+import com.stratio.connector.inmemory.datastore.datatypes.SimpleValue;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryColumnSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryFunctionSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemoryLiteralSelector;
+import com.stratio.connector.inmemory.datastore.structures.InMemorySelector;
+
+/**
+ * Materialized view tests.
+ */
+public class MaterializedViewTest {
+
+    private static final String CATALOG_NAME = "shop";
+
+    private static final String BASE_TABLE = "sales";
+
+    private static final String CATEGORIES = "sales_by_category";
+
+    private static final String LARGE_SALES = "large_sales";
+
+    private static final String [] CATEGORY_NAMES = { "books", "games", "music" };
+
+    private InMemoryDatastore db;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        db = new InMemoryDatastore(100000);
+        db.createCatalog(CATALOG_NAME);
+        db.createTable(CATALOG_NAME, BASE_TABLE, new String[]{ "id", "category", "amount" },
+                new Class[]{ Integer.class, String.class, Long.class }, Arrays.asList("id"));
+        insertSales(0, 30);
+    }
+
+    /**
+     * Insert sales whose amount is their identifier.
+     * @param first The first identifier.
+     * @param count The number of sales.
+     * @throws Exception If the sales cannot be inserted.
+     */
+    private void insertSales(int first, int count) throws Exception {
+        InMemoryColumnBatch batch = new InMemoryColumnBatch(Arrays.asList("id", "category", "amount"), count);
+        for(int id = first; id < first + count; id++){
+            batch.addRow(id, CATEGORY_NAMES[id % CATEGORY_NAMES.length], (long) id);
+        }
+        db.insert(CATALOG_NAME, BASE_TABLE, batch);
+    }
+
+    /**
+     * Create the view of the sales of each category.
+     * @throws Exception If the view cannot be created.
+     */
+    private void createCategoryView() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.MATERIALIZED_VIEW_OPTION,
+                "SELECT category, count(*), sum(amount), max(amount) FROM shop.sales GROUP BY category");
+        db.createTable(CATALOG_NAME, CATEGORIES, new String[]{ "category", "sales", "total", "top" },
+                new Class[]{ String.class, Long.class, Long.class, Long.class }, Arrays.asList("category"), options);
+    }
+
+    /**
+     * Read the rows of a view ordered by their first column.
+     * @param viewName The name of the view.
+     * @param columns The columns to be read.
+     * @return A map associating the first column with the values of the row.
+     * @throws Exception If the view cannot be read.
+     */
+    private Map<Object, List<Object>> readView(String viewName, String... columns) throws Exception {
+        List<InMemorySelector> selectors = new ArrayList<>();
+        for(String column : columns){
+            selectors.add(new InMemoryColumnSelector(column));
+        }
+        Map<Object, List<Object>> result = new HashMap<>();
+        for(SimpleValue [] row : db.search(CATALOG_NAME, new InMemoryQuery(viewName,
+                new ArrayList<InMemoryRelation>(), selectors))){
+            List<Object> values = new ArrayList<>();
+            for(SimpleValue value : row){
+                values.add(value.getValue());
+            }
+            result.put(values.get(0), values);
+        }
+        return result;
+    }
+
+    /**
+     * Compute the expected row of a category of the view.
+     * @param category The position of the category.
+     * @param numSales The number of sales inserted.
+     * @return The values of the row.
+     */
+    private static List<Object> expectedCategory(int category, int numSales){
+        long count = 0;
+        long total = 0;
+        long top = 0;
+        for(int id = category; id < numSales; id += CATEGORY_NAMES.length){
+            count++;
+            total += id;
+            top = id;
+        }
+        return Arrays.<Object>asList(CATEGORY_NAMES[category], count, total, top);
+    }
+
+    private static InMemorySelector function(String name, InMemorySelector argument){
+        return new InMemoryFunctionSelector(name, Arrays.asList(argument));
+    }
+
+    @Test
+    public void parseDefinition() throws Exception {
+        ViewDefinition definition = ViewDefinition.parse("select category, count(*), sum(amount) from shop.sales "
+                + "where amount >= 10 and category in ('books', \"games\") and id between 1 and 100 group by category");
+        assertEquals(definition.getBaseTable(), BASE_TABLE, "Invalid base table");
+        assertEquals(definition.getSelectors().size(), 3, "Invalid selectors");
+        assertEquals(definition.getRelations().size(), 3, "Invalid relations");
+        assertEquals(definition.getRelations().get(0).getRightPart(), 10L, "Invalid literal");
+        assertEquals(definition.getRelations().get(1).getRightPart(), Arrays.asList("books", "games"),
+                "Invalid list");
+        assertEquals(definition.getGroupByColumns(), Arrays.asList("category"), "Invalid grouping columns");
+        assertTrue(definition.isAggregated(), "The view should be aggregated");
+        assertTrue(definition.isIncremental(), "Counts and sums should be maintained");
+
+        definition = ViewDefinition.parse("SELECT category, avg(amount) FROM sales GROUP BY category");
+        assertFalse(definition.isIncremental(), "Averages should be refreshed");
+        definition = ViewDefinition.parse("SELECT id, toUpper(category) FROM sales WHERE amount < 1.5");
+        assertFalse(definition.isAggregated(), "The view should not be aggregated");
+        assertTrue(definition.isIncremental(), "Filters should be maintained");
+
+        for(String invalid : Arrays.asList("SELECT FROM sales", "SELECT id FROM sales WHERE id ! 3",
+                "SELECT unknown(id) FROM sales", "SELECT id FROM sales GROUP category", "SELECT id FROM 'sales")){
+            try {
+                ViewDefinition.parse(invalid);
+                fail("Invalid view should be rejected: " + invalid);
+            } catch (Exception e) {
+                assertTrue(e.getMessage().contains("materialized view"), "Invalid message: " + e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void maintainAggregatedView() throws Exception {
+        createCategoryView();
+        assertTrue(db.getCatalogs().get(CATALOG_NAME).getViews().get(CATEGORIES).isFresh(), "View should be fresh");
+        insertSales(30, 20);
+        insertSales(50, 1);
+        Map<Object, List<Object>> rows = readView(CATEGORIES, "category", "sales", "total", "top");
+        assertEquals(rows.size(), CATEGORY_NAMES.length, "Invalid number of groups");
+        for(int category = 0; category < CATEGORY_NAMES.length; category++){
+            assertEquals(rows.get(CATEGORY_NAMES[category]), expectedCategory(category, 51), "Invalid group");
+        }
+        assertTrue(db.getCatalogs().get(CATALOG_NAME).getViews().get(CATEGORIES).isFresh(),
+                "Appends should keep the view fresh");
+    }
+
+    @Test
+    public void maintainFilteredView() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.MATERIALIZED_VIEW_OPTION, "SELECT id, amount FROM sales WHERE amount >= 25");
+        db.createTable(CATALOG_NAME, LARGE_SALES, new String[]{ "sale", "amount" },
+                new Class[]{ Integer.class, Long.class }, Arrays.asList("sale"), options);
+        insertSales(30, 10);
+        Map<Object, List<Object>> rows = readView(LARGE_SALES, "sale", "amount");
+        assertEquals(rows.size(), 15, "Invalid number of rows");
+        assertEquals(rows.get(39), Arrays.<Object>asList(39, 39L), "Invalid row");
+
+        InMemoryQuery query = new InMemoryQuery(BASE_TABLE, Arrays.asList(
+                new InMemoryRelation("amount", InMemoryOperations.GET, 25L),
+                new InMemoryRelation("id", InMemoryOperations.LT, 30)),
+                Arrays.<InMemorySelector>asList(new InMemoryColumnSelector("id")));
+        ViewDefinition definition = db.getCatalogs().get(CATALOG_NAME).getViews().get(LARGE_SALES).getDefinition();
+        InMemoryQuery rewritten = definition.rewrite(query, LARGE_SALES, new String[]{ "sale", "amount" });
+        assertEquals(rewritten.getTableName(), LARGE_SALES, "The query should read the view");
+        assertEquals(rewritten.getRelations().get(0).getColumnName(), "sale", "Invalid residual relation");
+        List<SimpleValue[]> result = db.search(CATALOG_NAME, query);
+        assertEquals(result.size(), 5, "Invalid number of rows");
+        assertEquals(result.get(0)[0].getColumn().getName(), "id", "Rows should keep the selectors of the query");
+
+        query.getRelations().set(0, new InMemoryRelation("amount", InMemoryOperations.GET, 20L));
+        assertEquals(definition.rewrite(query, LARGE_SALES, new String[]{ "sale", "amount" }), null,
+                "Queries that read other rows should not be rewritten");
+        assertEquals(db.search(CATALOG_NAME, query).size(), 10, "Invalid number of rows");
+    }
+
+    @Test
+    public void rewriteAggregation() throws Exception {
+        createCategoryView();
+        InMemorySelector total = function("sum", new InMemoryColumnSelector("amount"));
+        InMemoryQuery query = new InMemoryQuery(BASE_TABLE, new ArrayList<InMemoryRelation>(),
+                Arrays.asList(new InMemoryColumnSelector("category"), total));
+        query.getGroupByColumns().add("category");
+        query.getHaving().add(new InMemoryHavingRelation(total, InMemoryOperations.GT, 140L));
+        List<SimpleValue[]> result = db.search(CATALOG_NAME, query);
+        assertEquals(result.size(), 2, "Invalid number of groups");
+        for(SimpleValue [] row : result){
+            assertTrue((Long) row[1].getValue() > 140, "Invalid group");
+            assertEquals(row[1].getColumn(), total, "Rows should keep the selectors of the query");
+        }
+        ViewDefinition definition = db.getCatalogs().get(CATALOG_NAME).getViews().get(CATEGORIES).getDefinition();
+        String [] columns = { "category", "sales", "total", "top" };
+        assertEquals(definition.rewrite(query, CATEGORIES, columns).getRelations().get(0).getColumnName(), "total",
+                "HAVING should filter the stored aggregation");
+
+        query.getOutputColumns().set(1, function("min", new InMemoryColumnSelector("amount")));
+        query.getHaving().clear();
+        assertEquals(definition.rewrite(query, CATEGORIES, columns), null,
+                "Aggregations not stored in the view should not be rewritten");
+        query.getOutputColumns().set(1, function("count", new InMemoryLiteralSelector("*")));
+        query.getGroupByColumns().clear();
+        assertEquals(definition.rewrite(query, CATEGORIES, columns), null,
+                "Other groups should not be rewritten");
+    }
+
+    @Test
+    public void refreshStaleView() throws Exception {
+        createCategoryView();
+        MaterializedView view = db.getCatalogs().get(CATALOG_NAME).getViews().get(CATEGORIES);
+        db.delete(CATALOG_NAME, BASE_TABLE, Arrays.asList(new InMemoryRelation("id", InMemoryOperations.GET, 20)));
+        assertFalse(view.isFresh(), "Deletes should make the view stale");
+        insertSales(0, 3);
+        assertFalse(view.isFresh(), "Replacing rows should keep the view stale");
+        assertEquals(db.refreshViews(), 1, "The view should be refreshed");
+        assertTrue(view.isFresh(), "The view should be fresh");
+        Map<Object, List<Object>> rows = readView(CATEGORIES, "category", "sales", "total", "top");
+        for(int category = 0; category < CATEGORY_NAMES.length; category++){
+            assertEquals(rows.get(CATEGORY_NAMES[category]), expectedCategory(category, 20), "Invalid group");
+        }
+        assertEquals(db.refreshViews(), 0, "Fresh views should not be refreshed");
+    }
+
+    @Test
+    public void rejectInvalidViews() throws Exception {
+        createCategoryView();
+        try {
+            db.insert(CATALOG_NAME, CATEGORIES, new InMemoryColumnBatch(Arrays.asList("category"), 1));
+            fail("Views should not be modified");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("materialized view"), "Invalid message: " + e.getMessage());
+        }
+        try {
+            db.dropTable(CATALOG_NAME, BASE_TABLE);
+            fail("Tables with views should not be dropped");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains(CATEGORIES), "Invalid message: " + e.getMessage());
+        }
+        Map<String, String> options = new HashMap<>();
+        options.put(TableOptions.MATERIALIZED_VIEW_OPTION, "SELECT category, sum(amount) FROM sales GROUP BY category");
+        try {
+            db.createTable(CATALOG_NAME, "invalid", new String[]{ "category", "total" },
+                    new Class[]{ String.class, Long.class }, Arrays.asList("total"), options);
+            fail("The primary key should be the grouping columns");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("primary key"), "Invalid message: " + e.getMessage());
+        }
+        db.dropTable(CATALOG_NAME, CATEGORIES);
+        db.dropTable(CATALOG_NAME, BASE_TABLE);
+    }
+}